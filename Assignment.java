@@ -0,0 +1,874 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/Assignment.java
+// STARTED ON. . Thu Apr  2 15:17:43 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This class solves the <i>assignment problem</i> on the weighted edges
+ * of a <a href="BipartiteGraph.html"><tt>BipartiteGraph</tt></a>: it
+ * finds a perfect matching (see <a
+ * href="BipartiteGraph.html#matchings"><tt>BipartiteGraph</tt></a>)
+ * whose cost, the sum of the weights of its edges, is minimum (or
+ * maximum). Only the edges of the graph are considered: its non-edges
+ * are never given any (infinite) cost, so that the work and memory are
+ * proportional to the number of edges rather than to the square of the
+ * number of nodes. If the graph has no perfect matching, a
+ * <tt>RuntimeException</tt> is thrown.<p/>
+ *
+ * The optimal assignment is computed once and for all when this object
+ * is constructed, with one of the following methods:
+ *
+ * <ul>
+ * <li><tt>JONKER_VOLGENANT</tt>: Jonker and Volgenant's shortest
+ * augmenting path algorithm on sparse costs, maintaining dual
+ * <i>potentials</i> <tt>v</tt> of the right nodes such that all
+ * <i>reduced costs</i> <tt>c(i,j)-v(j)-u(i)</tt> are non-negative and
+ * those of the matched edges are zero, where <tt>u(i)</tt> is
+ * <tt>c(i,j)-v(j)</tt> for the mate <tt>j</tt> of <tt>i</tt>. The
+ * potentials are initialized by <i>column reduction</i> (each
+ * <tt>v(j)</tt> is the least cost of an edge of <tt>j</tt>), which also
+ * yields an initial partial assignment. Then, each free left node is
+ * assigned by a shortest augmenting path, found by Dijkstra's algorithm
+ * with a binary heap on reduced costs, after which the potentials of
+ * the right nodes scanned by the search are updated. It takes
+ * <tt>O(n&middot;E&middot;log n)</tt> time in the worst case for
+ * <tt>n</tt> left nodes and <tt>E</tt> edges, but far less in practice
+ * since most nodes are assigned by column reduction and a search stops
+ * at the first free right node.</li>
+ *
+ * <li><tt>AUCTION_GAUSS_SEIDEL</tt>: Bertsekas's auction algorithm,
+ * where left nodes (<i>persons</i>) bid for right nodes
+ * (<i>objects</i>) carrying <i>prices</i>. An unassigned person bids
+ * for the object of best value (benefit minus price), raising its price
+ * by the difference with the second best value plus <tt>&epsilon;</tt>,
+ * and takes it from its current owner, if any. Bids are made one at a
+ * time, each seeing the prices raised by the previous ones.</li>
+ *
+ * <li><tt>AUCTION_JACOBI</tt>: the same auction where all unassigned
+ * persons bid at once against the same prices, their bids being
+ * computed in parallel on <tt>Matrix.forkJoinPool()</tt> when the <a
+ * href="Matrix.html#parallel">parallel execution mode</a> is on and
+ * there are enough of them; each object then goes to its highest
+ * bidder. The bids and their outcome do not depend on whether they are
+ * computed in parallel.</li>
+ *
+ * <li><tt>BOTTLENECK</tt>: an assignment whose <i>bottleneck</i> is
+ * optimal, rather than its cost: its greatest weight is minimum (or its
+ * least weight is maximum, which is the value of the best perfect
+ * matching of a fuzzy relation under the <tt>MaxMinAlgebra</tt>). The
+ * edges of each left node are sorted once by weight, so that those
+ * within a threshold form a prefix of them, and the least threshold
+ * within which there is a perfect matching is found by binary search
+ * over the sorted distinct weights. A single matching is kept across
+ * probes: a probe removes its edges beyond the threshold, if any, and
+ * extends it to maximum cardinality with Hopcroft and Karp's algorithm,
+ * which only needs to augment the matching it is given. Among the
+ * assignments of optimal bottleneck, the one returned is not otherwise
+ * optimized.</li>
+ * </ul>
+ *
+ * Both auctions use <i>&epsilon;-scaling</i>: they are run for a
+ * decreasing sequence of values of <tt>&epsilon;</tt>, each run
+ * starting from the prices left by the previous one. This sequence
+ * starts at an <i>initial epsilon</i> (by default a fifth of the range
+ * of the weights) and is divided by an <i>epsilon factor</i> (by default
+ * <tt>5</tt>) down to a <i>final epsilon</i>. The cost of the resulting
+ * assignment is within <tt>n</tt> times the final epsilon of the optimum
+ * for <tt>n</tt> left nodes, so that it is optimal when all weights are
+ * integers and the final epsilon is less than <tt>1/n</tt>, which is
+ * its default value for integer weights (for other weights it is by
+ * default <tt>10<sup>-9</sup></tt> times their range divided by
+ * <tt>n</tt>). Since an auction does not terminate when there is no
+ * perfect matching, it is preceded by a maximum cardinality matching
+ * check (see <a
+ * href="BipartiteGraph.html#matchings"><tt>BipartiteGraph</tt></a>).<p/>
+ *
+ * As in <tt>BipartiteGraph</tt>, nodes are counted from <tt>0</tt>.
+ *
+ * @see         BipartiteGraph
+ */
+public class Assignment
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * Denotes the Jonker-Volgenant shortest augmenting path method.
+   */
+  static final public int JONKER_VOLGENANT = 0;
+
+  /**
+   * Denotes the auction method with bids made one at a time.
+   */
+  static final public int AUCTION_GAUSS_SEIDEL = 1;
+
+  /**
+   * Denotes the auction method with simultaneous (possibly parallel)
+   * bids.
+   */
+  static final public int AUCTION_JACOBI = 2;
+
+  /**
+   * Denotes the bottleneck method.
+   */
+  static final public int BOTTLENECK = 3;
+
+  /**
+   * The default ratio between two successive values of epsilon of the
+   * auction methods.
+   */
+  static final public double DEFAULT_EPSILON_FACTOR = 5.0;
+
+  /**
+   * The number of left (and right) nodes.
+   */
+  private int order;
+
+  /**
+   * Whether the cost is maximized rather than minimized.
+   */
+  private boolean maximize;
+
+  /**
+   * The method that computed the assignment.
+   */
+  private int method;
+
+  /**
+   * The right node assigned to each left node.
+   */
+  private int[] mates;
+
+  /**
+   * The sum of the weights of the assigned edges.
+   */
+  private double cost;
+
+  /**
+   * The least (when maximizing) or greatest (when minimizing) weight of
+   * the assigned edges.
+   */
+  private double bottleneck;
+
+  /**
+   * The dual potentials of the right nodes (for costs negated when
+   * maximizing).
+   */
+  private double[] potentials;
+
+  /**
+   * The epsilon schedule of the auction methods.
+   */
+  private double initialEpsilon;
+  private double finalEpsilon;
+  private double epsilonFactor;
+
+  /**
+   * Compute an assignment of the given <tt>graph</tt> of minimum (or
+   * maximum, if <tt>maximize</tt> is <tt>true</tt>) cost.
+   */
+  public Assignment (BipartiteGraph graph, boolean maximize)
+  {
+    this(graph,maximize,JONKER_VOLGENANT);
+  }
+
+  /**
+   * Compute an assignment of the given <tt>graph</tt> of minimum (or
+   * maximum, if <tt>maximize</tt> is <tt>true</tt>) cost with the given
+   * <tt>method</tt>.
+   */
+  public Assignment (BipartiteGraph graph, boolean maximize, int method)
+  {
+    this(graph,maximize,method,0.0,0.0,0.0);
+  }
+
+  /**
+   * Compute an assignment of the given <tt>graph</tt> of minimum (or
+   * maximum, if <tt>maximize</tt> is <tt>true</tt>) cost with the given
+   * <tt>method</tt>, using the given epsilon schedule if it is an auction
+   * method. A non-positive <tt>initialEpsilon</tt>,
+   * <tt>finalEpsilon</tt>, or <tt>epsilonFactor</tt> (which must
+   * otherwise be greater than <tt>1</tt>) stands for its default value
+   * (see the class documentation).
+   */
+  public Assignment (BipartiteGraph graph, boolean maximize, int method,
+		     double initialEpsilon, double finalEpsilon, double epsilonFactor)
+  {
+    order = graph.rows();
+    this.maximize = maximize;
+    this.method = method;
+
+    if (epsilonFactor > 0.0 && epsilonFactor <= 1.0)
+      throw new RuntimeException("Non-decreasing epsilon schedule: factor = "+epsilonFactor);
+
+    // the edges of left node i are targets[offsets[i]..offsets[i+1]),
+    // of costs costs[offsets[i]..offsets[i+1]) (negated weights when
+    // maximizing), taken from the graph's CSR structure (targets being
+    // copied since the bottleneck method reorders them)
+    int[] offsets = graph.succOffsets();
+    int[] targets = graph.succTargets().clone();
+    double[] costs = new double[targets.length];
+    for (int left = 0; left < order; left++)
+      for (int edge = offsets[left]; edge < offsets[left+1]; edge++)
+	costs[edge] = maximize ? -graph.entry(left,targets[edge]) : graph.entry(left,targets[edge]);
+
+    switch (method)
+      {
+      case JONKER_VOLGENANT:
+	jonkerVolgenant(offsets,targets,costs);
+	break;
+      case AUCTION_GAUSS_SEIDEL:
+      case AUCTION_JACOBI:
+	if (!graph.hasPerfectMatching())
+	  throw new RuntimeException("No perfect matching: the auction would not terminate");
+	setSchedule(costs,initialEpsilon,finalEpsilon,epsilonFactor);
+	auction(offsets,targets,costs,method == AUCTION_JACOBI);
+	break;
+      case BOTTLENECK:
+	bottleneck(graph,offsets,targets,costs);
+	break;
+      default:
+	throw new RuntimeException("Unknown assignment method: "+method);
+      }
+
+    cost = 0.0;
+    bottleneck = maximize ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+    for (int left = 0; left < order; left++)
+      {
+	double weight = graph.entry(left,mates[left]);
+	cost += weight;
+	bottleneck = maximize ? Math.min(bottleneck,weight) : Math.max(bottleneck,weight);
+      }
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Accessors
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of left (and right) nodes.
+   */
+  public final int order ()
+  {
+    return order;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this assignment is of maximum cost.
+   */
+  public final boolean isMaximization ()
+  {
+    return maximize;
+  }
+
+  /**
+   * Return the method that computed this assignment.
+   */
+  public final int method ()
+  {
+    return method;
+  }
+
+  /**
+   * Return the cost of this assignment: the sum of the weights of its
+   * edges.
+   */
+  public final double cost ()
+  {
+    return cost;
+  }
+
+  /**
+   * Return the bottleneck of this assignment: the least weight of its
+   * edges if it is a maximization, and their greatest weight
+   * otherwise.
+   */
+  public final double bottleneck ()
+  {
+    return bottleneck;
+  }
+
+  /**
+   * Return the right node assigned to the given <tt>left</tt> node.
+   */
+  public final int mate (int left)
+  {
+    return mates[left];
+  }
+
+  /**
+   * Return a new array of the right node assigned to each left node.
+   */
+  public final int[] mates ()
+  {
+    return mates.clone();
+  }
+
+  /**
+   * Return a new array of the dual potentials of the right nodes, for the
+   * costs of the edges when minimizing, and for their opposites when
+   * maximizing, or <tt>null</tt> if the method computed none.
+   */
+  public final double[] potentials ()
+  {
+    return potentials == null ? null : potentials.clone();
+  }
+
+  /**
+   * Return the first value of epsilon used by an auction method, or
+   * <tt>0</tt> for other methods.
+   */
+  public final double initialEpsilon ()
+  {
+    return initialEpsilon;
+  }
+
+  /**
+   * Return the last value of epsilon used by an auction method, or
+   * <tt>0</tt> for other methods: the cost of this assignment is within
+   * <tt>order()</tt> times this value of the optimum.
+   */
+  public final double finalEpsilon ()
+  {
+    return finalEpsilon;
+  }
+
+  /**
+   * Return the ratio between successive values of epsilon used by an
+   * auction method, or <tt>0</tt> for other methods.
+   */
+  public final double epsilonFactor ()
+  {
+    return epsilonFactor;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Jonker-Volgenant Method
+   * </span></h3>
+   */
+
+  /**
+   * Set <tt>mates</tt> to an assignment of minimum cost for the edges
+   * given by the compressed adjacency arrays (see the class
+   * documentation), and <tt>potentials</tt> to its dual potentials.
+   */
+  private void jonkerVolgenant (int[] offsets, int[] targets, double[] costs)
+  {
+    int n = order;
+    double[] v = new double[n];
+    int[] leftOf = new int[n];          // the left mate of each right node, or -1
+    int[] rightOf = new int[n];         // the right mate of each left node, or -1
+    double[] matchedCost = new double[n]; // the cost of the edge of each matched left node
+
+    java.util.Arrays.fill(v,Double.POSITIVE_INFINITY);
+    java.util.Arrays.fill(leftOf,-1);
+    java.util.Arrays.fill(rightOf,-1);
+
+    // column reduction: v(j) is the least cost of an edge of j, and j is
+    // tentatively assigned to a left node achieving it
+    int[] best = new int[n];
+    for (int left = 0; left < n; left++)
+      for (int edge = offsets[left]; edge < offsets[left+1]; edge++)
+	if (costs[edge] < v[targets[edge]])
+	  {
+	    v[targets[edge]] = costs[edge];
+	    best[targets[edge]] = left;
+	  }
+
+    for (int right = n; right-- > 0;)
+      {
+	if (v[right] == Double.POSITIVE_INFINITY)
+	  throw new RuntimeException("No perfect matching: right node "+right+" has no edge");
+
+	int left = best[right];
+	if (rightOf[left] < 0)
+	  {
+	    rightOf[left] = right;
+	    leftOf[right] = left;
+	    matchedCost[left] = v[right];
+	  }
+      }
+
+    // shortest augmenting paths from each free left node
+    double[] d = new double[n];
+    int[] pred = new int[n];             // the left node preceding each right node
+    double[] predCost = new double[n];   // the cost of the edge from it
+    int[] heap = new int[n];
+    int[] position = new int[n];         // -1: not reached; -2: scanned
+    int[] touched = new int[n];          // the right nodes reached by a search
+    int[] scannedNodes = new int[n];     // the right nodes scanned by a search
+
+    java.util.Arrays.fill(position,-1);
+
+    for (int free = 0; free < n; free++)
+      {
+	if (rightOf[free] >= 0)
+	  continue;
+
+	int size = 0, reached = 0, scanned = 0;
+	int end = -1;
+
+	for (int edge = offsets[free]; edge < offsets[free+1]; edge++)
+	  {
+	    int right = targets[edge];
+	    double dist = costs[edge]-v[right];
+
+	    if (position[right] == -1)
+	      {
+		touched[reached++] = right;
+		d[right] = dist;
+	      }
+	    else if (dist >= d[right])
+	      continue;
+	    else
+	      d[right] = dist;
+
+	    pred[right] = free;
+	    predCost[right] = costs[edge];
+	    siftUp(heap,position,d,right,position[right] == -1 ? size++ : position[right]);
+	  }
+
+	// Dijkstra's algorithm on reduced costs
+	while (end < 0)
+	  {
+	    if (size == 0)
+	      throw new RuntimeException("No perfect matching: left node "+free+
+					 " cannot be assigned");
+
+	    int right = heap[0];
+	    if (--size > 0)
+	      siftDown(heap,position,d,size,heap[size],0);
+
+	    scannedNodes[scanned++] = right;
+	    position[right] = -2;
+
+	    int left = leftOf[right];
+	    if (left < 0)
+	      {
+		end = right;
+		break;
+	      }
+
+	    double base = d[right]-(matchedCost[left]-v[right]);
+
+	    for (int edge = offsets[left]; edge < offsets[left+1]; edge++)
+	      {
+		int next = targets[edge];
+
+		if (position[next] == -2)
+		  continue;
+
+		double dist = base+costs[edge]-v[next];
+
+		if (position[next] == -1)
+		  touched[reached++] = next;
+		else if (dist >= d[next])
+		  continue;
+
+		d[next] = dist;
+		pred[next] = left;
+		predCost[next] = costs[edge];
+		siftUp(heap,position,d,next,position[next] == -1 ? size++ : position[next]);
+	      }
+	  }
+
+	// update the potentials of the scanned right nodes
+	double dmin = d[end];
+	for (int k = 0; k < scanned; k++)
+	  v[scannedNodes[k]] += d[scannedNodes[k]]-dmin;
+
+	// augment along the path to end
+	for (int right = end;;)
+	  {
+	    int left = pred[right];
+	    int previous = rightOf[left];
+
+	    leftOf[right] = left;
+	    rightOf[left] = right;
+	    matchedCost[left] = predCost[right];
+
+	    if (left == free)
+	      break;
+
+	    right = previous;
+	  }
+
+	for (int k = 0; k < reached; k++)
+	  position[touched[k]] = -1;
+      }
+
+    mates = rightOf;
+    potentials = v;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Auction Methods
+   * </span></h3>
+   */
+
+  /**
+   * Set the epsilon schedule from the given values, non-positive ones
+   * being replaced by their defaults for the given edge costs.
+   */
+  private void setSchedule (double[] costs, double initial, double last, double factor)
+  {
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    boolean integral = true;
+
+    for (int edge = 0; edge < costs.length; edge++)
+      {
+	min = Math.min(min,costs[edge]);
+	max = Math.max(max,costs[edge]);
+	integral &= costs[edge] == Math.rint(costs[edge]);
+      }
+
+    double range = max > min ? max-min : 1.0;
+
+    finalEpsilon = last > 0.0 ? last
+		 : integral ? 1.0/(order+1)
+		 : 1e-9*range/order;
+    initialEpsilon = Math.max(finalEpsilon,initial > 0.0 ? initial : range/5);
+    epsilonFactor = factor > 0.0 ? factor : DEFAULT_EPSILON_FACTOR;
+  }
+
+  /**
+   * Set <tt>mates</tt> to an assignment of minimum cost for the edges
+   * given by the compressed adjacency arrays, within <tt>order</tt>
+   * times the final epsilon, by an auction on benefits opposite to the
+   * costs, with simultaneous bids if <tt>jacobi</tt> is <tt>true</tt>,
+   * and <tt>potentials</tt> to the opposites of the final prices.
+   */
+  private void auction (int[] offsets, int[] targets, double[] costs, boolean jacobi)
+  {
+    int n = order;
+    double[] prices = new double[n];
+    int[] owners = new int[n];          // the person owning each object, or -1
+    int[] objects = new int[n];         // the object owned by each person, or -1
+    int[] bidders = new int[n];         // the persons left to bid
+    int[] bidObjects = new int[n];      // the object of each simultaneous bid
+    double[] bidPrices = new double[n]; // the price offered by each simultaneous bid
+    int[] winners = new int[n];         // the best simultaneous bidder for each object, or -1
+    int[] contested = new int[n];       // the objects receiving simultaneous bids
+
+    // the price increment of a person with a single object, for which any
+    // amount keeps it epsilon-happy
+    double lonely = 0.0;
+    for (int edge = 0; edge < costs.length; edge++)
+      lonely = Math.max(lonely,Math.abs(costs[edge]));
+    lonely = 2*lonely + initialEpsilon;
+
+    java.util.Arrays.fill(winners,-1);
+
+    for (double epsilon = initialEpsilon;; epsilon = Math.max(finalEpsilon,epsilon/epsilonFactor))
+      {
+	java.util.Arrays.fill(owners,-1);
+	java.util.Arrays.fill(objects,-1);
+	for (int person = 0; person < n; person++)
+	  bidders[person] = person;
+
+	int count = n;
+
+	if (jacobi)
+	  while (count > 0)
+	    count = jacobiRound(offsets,targets,costs,prices,owners,objects,
+				bidders,count,bidObjects,bidPrices,winners,contested,
+				epsilon,lonely);
+	else
+	  while (count > 0)
+	    {
+	      int person = bidders[--count];
+	      int object = bid(offsets,targets,costs,prices,person,epsilon,lonely,bidPrices);
+	      int owner = owners[object];
+
+	      prices[object] = bidPrices[person];
+	      owners[object] = person;
+	      objects[person] = object;
+
+	      if (owner >= 0)
+		{
+		  objects[owner] = -1;
+		  bidders[count++] = owner;
+		}
+	    }
+
+	if (epsilon <= finalEpsilon)
+	  break;
+      }
+
+    for (int object = 0; object < n; object++)
+      prices[object] = -prices[object];
+
+    mates = objects;
+    potentials = prices;
+  }
+
+  /**
+   * Perform one round of simultaneous bids by the first <tt>count</tt>
+   * persons of <tt>bidders</tt>, and return the number of persons left
+   * unassigned, which are moved to the front of <tt>bidders</tt>.
+   */
+  private int jacobiRound (int[] offsets, int[] targets, double[] costs, double[] prices,
+			   int[] owners, int[] objects, int[] bidders, int count,
+			   int[] bidObjects, double[] bidPrices, int[] winners, int[] contested,
+			   double epsilon, double lonely)
+  {
+    // compute the bids against the current prices, in parallel if
+    // worthwhile; bidPrices is indexed by person, bidObjects by bid
+    MatrixTasks.forRowBlocks(count,Math.max(1,targets.length/order),(from,to) ->
+      {
+	for (int k = from; k < to; k++)
+	  bidObjects[k] = bid(offsets,targets,costs,prices,bidders[k],epsilon,lonely,bidPrices);
+      });
+
+    // find the highest bidder for each object, ties going to the
+    // earliest bid
+    int contestedCount = 0;
+    for (int k = 0; k < count; k++)
+      {
+	int object = bidObjects[k];
+	int winner = winners[object];
+
+	if (winner < 0)
+	  contested[contestedCount++] = object;
+	else if (bidPrices[bidders[k]] <= bidPrices[winner])
+	  continue;
+
+	winners[object] = bidders[k];
+      }
+
+    // the losers and evicted owners bid again in the next round
+    int left = 0;
+    for (int k = 0; k < count; k++)
+      if (winners[bidObjects[k]] != bidders[k])
+	bidders[left++] = bidders[k];
+
+    for (int k = 0; k < contestedCount; k++)
+      {
+	int object = contested[k];
+	int winner = winners[object];
+	int owner = owners[object];
+
+	prices[object] = bidPrices[winner];
+	owners[object] = winner;
+	objects[winner] = object;
+	winners[object] = -1;
+
+	if (owner >= 0)
+	  {
+	    objects[owner] = -1;
+	    bidders[left++] = owner;
+	  }
+      }
+
+    return left;
+  }
+
+  /**
+   * Return the object of best value (benefit minus price) for the given
+   * <tt>person</tt>, and set <tt>bids[person]</tt> to the price it
+   * offers for it: its current price plus the difference between the
+   * best and second best values, plus <tt>epsilon</tt>.
+   */
+  static private int bid (int[] offsets, int[] targets, double[] costs, double[] prices,
+			  int person, double epsilon, double lonely, double[] bids)
+  {
+    int best = -1;
+    double first = Double.NEGATIVE_INFINITY, second = Double.NEGATIVE_INFINITY;
+
+    for (int edge = offsets[person]; edge < offsets[person+1]; edge++)
+      {
+	double value = -costs[edge]-prices[targets[edge]];
+
+	if (value > first)
+	  {
+	    second = first;
+	    first = value;
+	    best = targets[edge];
+	  }
+	else if (value > second)
+	  second = value;
+      }
+
+    bids[person] = prices[best] + epsilon
+		 + (second == Double.NEGATIVE_INFINITY ? lonely : first-second);
+
+    return best;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Bottleneck Method
+   * </span></h3>
+   */
+
+  /**
+   * Set <tt>mates</tt> to an assignment of the given <tt>graph</tt> whose
+   * greatest edge cost is minimum, for the edges given by the compressed
+   * adjacency arrays, which are reordered by increasing cost within each
+   * left node.
+   */
+  private void bottleneck (BipartiteGraph graph, int[] offsets, int[] targets, double[] costs)
+  {
+    int n = order;
+
+    // the distinct costs, sorted once; edges are then ranked by cost
+    double[] levels = costs.clone();
+    java.util.Arrays.sort(levels);
+    int count = 0;
+    for (int k = 0; k < levels.length; k++)
+      if (count == 0 || levels[k] != levels[count-1])
+	levels[count++] = levels[k];
+
+    // sort the edges of each left node by rank, packing each edge into a
+    // long as its rank followed by its target; ranks[edge] is the rank of
+    // targets[edge] after sorting
+    int[] ranks = new int[targets.length];
+    long[] keys = new long[targets.length];
+    for (int edge = 0; edge < targets.length; edge++)
+      keys[edge] = (long)java.util.Arrays.binarySearch(levels,0,count,costs[edge]) << 32
+		 | targets[edge];
+    for (int left = 0; left < n; left++)
+      java.util.Arrays.sort(keys,offsets[left],offsets[left+1]);
+    for (int edge = 0; edge < targets.length; edge++)
+      {
+	ranks[edge] = (int)(keys[edge] >>> 32);
+	targets[edge] = (int)keys[edge];
+      }
+    keys = null;
+
+    // no threshold below the least rank of an edge of each node admits a
+    // perfect matching
+    int[] least = new int[n];
+    java.util.Arrays.fill(least,Integer.MAX_VALUE);
+    int low = 0;
+    for (int left = 0; left < n; left++)
+      {
+	if (offsets[left] == offsets[left+1])
+	  throw new RuntimeException("No perfect matching: left node "+left+" has no edge");
+
+	low = Math.max(low,ranks[offsets[left]]);
+	for (int edge = offsets[left]; edge < offsets[left+1]; edge++)
+	  least[targets[edge]] = Math.min(least[targets[edge]],ranks[edge]);
+      }
+    for (int right = 0; right < n; right++)
+      {
+	if (least[right] == Integer.MAX_VALUE)
+	  throw new RuntimeException("No perfect matching: right node "+right+" has no edge");
+
+	low = Math.max(low,least[right]);
+      }
+
+    BipartiteGraph.Matching matching = new BipartiteGraph.Matching(graph);
+    int[] ends = new int[n];
+    int high = count-1;
+
+    if (!probe(matching,offsets,targets,ranks,ends,high).isPerfect())
+      throw new RuntimeException("No perfect matching");
+
+    // the least rank within which there is a perfect matching is in
+    // [low,high]; the matching is always within the last probed rank
+    int probed = high;
+    while (low < high)
+      {
+	int middle = (low+high) >>> 1;
+
+	if (probe(matching,offsets,targets,ranks,ends,probed = middle).isPerfect())
+	  high = middle;
+	else
+	  low = middle+1;
+      }
+
+    if (probed != high)
+      probe(matching,offsets,targets,ranks,ends,high);
+
+    mates = matching.leftMates;
+  }
+
+  /**
+   * Restrict the given <tt>matching</tt> to the edges of rank at most
+   * <tt>rank</tt>, setting each <tt>ends[left]</tt> to the end of those of
+   * <tt>left</tt>, extend it to maximum cardinality within them, and
+   * return it.
+   */
+  static private BipartiteGraph.Matching probe (BipartiteGraph.Matching matching,
+						int[] offsets, int[] targets, int[] ranks,
+						int[] ends, int rank)
+  {
+    for (int left = 0; left < ends.length; left++)
+      {
+	int low = offsets[left], high = offsets[left+1];
+	while (low < high)
+	  {
+	    int middle = (low+high) >>> 1;
+	    if (ranks[middle] <= rank)
+	      low = middle+1;
+	    else
+	      high = middle;
+	  }
+	ends[left] = low;
+      }
+
+    return matching.restrict(offsets,targets,ends).maximize(offsets,targets,ends);
+  }
+
+  /**
+   * Move the node <tt>v</tt> up the heap from the slot <tt>hole</tt> to
+   * its place according to its distance.
+   */
+  static private void siftUp (int[] heap, int[] position, double[] d, int v, int hole)
+  {
+    double key = d[v];
+
+    while (hole > 0)
+      {
+	int parent = (hole-1) >>> 1;
+	int u = heap[parent];
+	if (d[u] <= key)
+	  break;
+	heap[hole] = u;
+	position[u] = hole;
+	hole = parent;
+      }
+
+    heap[hole] = v;
+    position[v] = hole;
+  }
+
+  /**
+   * Move the node <tt>v</tt> down the heap of the given <tt>size</tt> from
+   * the slot <tt>hole</tt> to its place according to its distance.
+   */
+  static private void siftDown (int[] heap, int[] position, double[] d, int size, int v, int hole)
+  {
+    double key = d[v];
+
+    for (;;)
+      {
+	int child = 2*hole+1;
+	if (child >= size)
+	  break;
+	if (child+1 < size && d[heap[child+1]] < d[heap[child]])
+	  child++;
+	int u = heap[child];
+	if (key <= d[u])
+	  break;
+	heap[hole] = u;
+	position[u] = hole;
+	hole = child;
+      }
+
+    heap[hole] = v;
+    position[v] = hole;
+  }
+}
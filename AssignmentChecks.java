@@ -0,0 +1,418 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/AssignmentChecks.java
+// STARTED ON. . Thu Apr 23 16:12:55 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>Assignment</tt>: that the
+ * assignments computed by the Jonker-Volgenant method are perfect
+ * matchings of the edges of their graphs, whose cost is that of an
+ * enumeration of all the matchings of small random graphs, and whose
+ * potentials prove them optimal on larger sparse ones; that those
+ * computed by either auction are so too, up to their final epsilon,
+ * whatever their epsilon schedule, and that simultaneous bids are the
+ * same in parallel; that those computed by the bottleneck method have
+ * the bottleneck of the enumeration, or one that no perfect matching
+ * of better edges improves on; and that graphs with no perfect
+ * matching are refused. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         Assignment
+ * @see         GraphChecks
+ * @see         MatrixChecks
+ */
+final class AssignmentChecks
+{
+  static void run (Random random)
+  {
+    checkJonkerVolgenant(random);
+    checkAuctions(random);
+    checkBottlenecks(random);
+  }
+
+  /**
+   * Return the least (or greatest, if <tt>maximize</tt> is
+   * <tt>true</tt>) cost (if <tt>bottleneck</tt> is <tt>false</tt>) or
+   * bottleneck (otherwise) of the perfect matchings of the left nodes
+   * from <tt>left</tt> on to the right nodes not in <tt>used</tt> (a bit
+   * set), by trying all of them, or <tt>NaN</tt> if there is none.
+   */
+  static private double bruteAssignment (double[][] weights, boolean maximize, boolean bottleneck,
+					 int left, int used)
+  {
+    if (left == weights.length)
+      return bottleneck ? (maximize ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY) : 0.0;
+
+    double best = Double.NaN;
+
+    for (int right = 0; right < weights.length; right++)
+      if (weights[left][right] != 0.0 && (used & (1 << right)) == 0)
+	{
+	  double rest = bruteAssignment(weights,maximize,bottleneck,left+1,used | (1 << right));
+
+	  if (Double.isNaN(rest))
+	    continue;
+
+	  double value = !bottleneck ? weights[left][right]+rest
+		       : maximize ? Math.min(weights[left][right],rest)
+		       : Math.max(weights[left][right],rest);
+
+	  if (Double.isNaN(best) || (maximize ? value > best : value < best))
+	    best = value;
+	}
+
+    return best;
+  }
+
+  /**
+   * Return the weights of a random bipartite graph of the given
+   * <tt>order</tt> and edge <tt>density</tt> that has a perfect
+   * matching: those of <tt>GraphChecks.randomWeights</tt>, or uniform in
+   * <tt>(0,1]</tt> if <tt>integer</tt> is <tt>false</tt>, with the edges
+   * of a random permutation added.
+   */
+  static private double[][] assignableWeights (Random random, int order, double density, boolean integer)
+  {
+    double[][] weights = GraphChecks.randomWeights(random,order,density);
+    int[] permutation = new int[order];
+
+    for (int left = 0; left < order; left++)
+      {
+	int k = random.nextInt(left+1);
+	permutation[left] = permutation[k];
+	permutation[k] = left;
+      }
+
+    for (int left = 0; left < order; left++)
+      if (weights[left][permutation[left]] == 0.0)
+	weights[left][permutation[left]] = 1+random.nextInt(20);
+
+    if (!integer)
+      for (int left = 0; left < order; left++)
+	for (int right = 0; right < order; right++)
+	  if (weights[left][right] != 0.0)
+	    weights[left][right] = 1.0-random.nextDouble();
+
+    return weights;
+  }
+
+  /**
+   * Check that <tt>assignment</tt> is a perfect matching of the edges of
+   * the given <tt>weights</tt>, of the cost and bottleneck it reports,
+   * and return its cost.
+   */
+  static private double checkMatching (double[][] weights, Assignment assignment, String what)
+  {
+    int order = weights.length;
+    int[] mates = assignment.mates();
+    boolean[] used = new boolean[order];
+    double cost = 0.0;
+    double bottleneck = assignment.isMaximization() ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+
+    MatrixChecks.check(assignment.order() == order && mates.length == order,what+": order");
+    for (int left = 0; left < order; left++)
+      {
+	MatrixChecks.check(mates[left] >= 0 && mates[left] < order && weights[left][mates[left]] != 0.0
+			   && assignment.mate(left) == mates[left],what+": non-edge");
+	MatrixChecks.check(!used[mates[left]],what+": right node assigned twice");
+	used[mates[left]] = true;
+	cost += weights[left][mates[left]];
+	bottleneck = assignment.isMaximization() ? Math.min(bottleneck,weights[left][mates[left]])
+					       : Math.max(bottleneck,weights[left][mates[left]]);
+      }
+
+    MatrixChecks.check(cost == assignment.cost(),what+": cost "+assignment.cost()+" instead of "+cost);
+    MatrixChecks.check(bottleneck == assignment.bottleneck(),
+		       what+": bottleneck "+assignment.bottleneck()+" instead of "+bottleneck);
+    return cost;
+  }
+
+  /**
+   * Return <tt>true</tt> iff computing an assignment of <tt>graph</tt>
+   * with the given <tt>method</tt> fails.
+   */
+  static private boolean refused (BipartiteGraph graph, boolean maximize, int method)
+  {
+    return MatrixChecks.fails(() -> new Assignment(graph,maximize,method));
+  }
+
+  /**
+   * Return <tt>true</tt> iff computing an assignment of <tt>graph</tt>
+   * with the given <tt>method</tt> and epsilon schedule fails.
+   */
+  static private boolean refused (BipartiteGraph graph, boolean maximize, int method,
+				  double initialEpsilon, double finalEpsilon, double epsilonFactor)
+  {
+    return MatrixChecks.fails(() -> new Assignment(graph,maximize,method,
+						   initialEpsilon,finalEpsilon,epsilonFactor));
+  }
+
+  /**
+   * Return <tt>true</tt> iff the potentials of <tt>assignment</tt> prove
+   * it optimal within <tt>epsilon</tt> per left node: no reduced cost of
+   * an edge of the given <tt>weights</tt> (negated when maximizing) is
+   * less than that of the edge assigned to its left node minus
+   * <tt>epsilon</tt>, up to rounding errors.
+   */
+  static private boolean dualFeasible (double[][] weights, Assignment assignment, double epsilon)
+  {
+    double sign = assignment.isMaximization() ? -1.0 : 1.0;
+    double[] v = assignment.potentials();
+
+    for (int left = 0; left < weights.length; left++)
+      {
+	int mate = assignment.mate(left);
+	double u = sign*weights[left][mate]-v[mate];
+
+	for (int right = 0; right < weights.length; right++)
+	  if (weights[left][right] != 0.0 && sign*weights[left][right]-v[right] < u-epsilon-1e-9*(1+Math.abs(u)))
+	    return false;
+      }
+
+    return true;
+  }
+
+  static private void checkJonkerVolgenant (Random random)
+  {
+    for (int trial = 0; trial < 200; trial++)
+      {
+	int order = 1+random.nextInt(7);
+	double[][] weights = GraphChecks.randomWeights(random,order,0.5+random.nextDouble()/2);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	boolean perfect = GraphChecks.bruteMatchingSize(weights,0,0) == order;
+
+	for (boolean maximize : new boolean[] { false, true })
+	  {
+	    String what = "Jonker-Volgenant assignment"+(maximize ? " (max)" : " (min)");
+
+	    if (!perfect)
+	      {
+		MatrixChecks.check(refused(graph,maximize,Assignment.JONKER_VOLGENANT),
+				   what+" of a graph with no perfect matching");
+		continue;
+	      }
+
+	    Assignment assignment = new Assignment(graph,maximize,Assignment.JONKER_VOLGENANT);
+	    double cost = checkMatching(weights,assignment,what);
+	    double expected = bruteAssignment(weights,maximize,false,0,0);
+
+	    MatrixChecks.check(cost == expected,what+": cost "+cost+" instead of "+expected);
+	    MatrixChecks.check(dualFeasible(weights,assignment,0.0),what+": potentials");
+	  }
+      }
+
+    // larger sparse graphs, of integer weights or not
+    for (int trial = 0; trial < 40; trial++)
+      {
+	int order = 50+random.nextInt(250);
+	double[][] weights = assignableWeights(random,order,4.0/order,trial % 2 == 0);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+
+	for (boolean maximize : new boolean[] { false, true })
+	  {
+	    String what = order+"x"+order+" Jonker-Volgenant assignment"+(maximize ? " (max)" : " (min)");
+	    Assignment assignment = new Assignment(graph,maximize,Assignment.JONKER_VOLGENANT);
+
+	    checkMatching(weights,assignment,what);
+	    MatrixChecks.check(dualFeasible(weights,assignment,0.0),what+": potentials");
+	    MatrixChecks.check(assignment.method() == Assignment.JONKER_VOLGENANT
+			       && assignment.isMaximization() == maximize && assignment.initialEpsilon() == 0.0
+			       && assignment.finalEpsilon() == 0.0 && assignment.epsilonFactor() == 0.0,
+			       what+": accessors");
+	  }
+
+	MatrixChecks.check(graph.minimumCostAssignment().cost()
+			   == new Assignment(graph,false,Assignment.JONKER_VOLGENANT).cost()
+			   && graph.maximumWeightAssignment().cost()
+			   == new Assignment(graph,true,Assignment.JONKER_VOLGENANT).cost(),
+			   "default assignments");
+      }
+
+    BipartiteGraph graph = new BipartiteGraph(new double[][] { { 1, 0 }, { 0, 1 } });
+    MatrixChecks.check(refused(graph,false,4) && refused(graph,false,-1),"unknown assignment method");
+  }
+
+  static private void checkAuctions (Random random)
+  {
+    int[] methods = { Assignment.AUCTION_GAUSS_SEIDEL, Assignment.AUCTION_JACOBI };
+
+    for (int trial = 0; trial < 200; trial++)
+      {
+	int order = 1+random.nextInt(7);
+	double[][] weights = GraphChecks.randomWeights(random,order,0.5+random.nextDouble()/2);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	boolean perfect = GraphChecks.bruteMatchingSize(weights,0,0) == order;
+
+	for (boolean maximize : new boolean[] { false, true })
+	  for (int method : methods)
+	    {
+	      String what = "auction "+method+" assignment"+(maximize ? " (max)" : " (min)");
+
+	      if (!perfect)
+		{
+		  MatrixChecks.check(refused(graph,maximize,method),what+" of a graph with no perfect matching");
+		  continue;
+		}
+
+	      // integer weights make the default final epsilon exact
+	      Assignment assignment = new Assignment(graph,maximize,method);
+	      double cost = checkMatching(weights,assignment,what);
+	      double expected = bruteAssignment(weights,maximize,false,0,0);
+
+	      MatrixChecks.check(cost == expected,what+": cost "+cost+" instead of "+expected);
+	      MatrixChecks.check(assignment.finalEpsilon() == 1.0/(order+1)
+				 && assignment.initialEpsilon() >= assignment.finalEpsilon()
+				 && assignment.epsilonFactor() == Assignment.DEFAULT_EPSILON_FACTOR,
+				 what+": default epsilon schedule");
+	      MatrixChecks.check(dualFeasible(weights,assignment,assignment.finalEpsilon()),what+": prices");
+	    }
+      }
+
+    // larger sparse graphs, of integer weights or not, against the
+    // Jonker-Volgenant method, with default or given schedules
+    for (int trial = 0; trial < 30; trial++)
+      {
+	int order = 50+random.nextInt(250);
+	boolean integer = trial % 2 == 0;
+	double[][] weights = assignableWeights(random,order,4.0/order,integer);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	boolean given = trial % 3 == 0;
+	double initial = given ? 10*random.nextDouble() : 0.0, last = given ? random.nextDouble()/order : 0.0;
+	double factor = given ? 2+4*random.nextDouble() : 0.0;
+
+	for (boolean maximize : new boolean[] { false, true })
+	  {
+	    double optimum = new Assignment(graph,maximize,Assignment.JONKER_VOLGENANT).cost();
+
+	    for (int method : methods)
+	      {
+		String what = order+"x"+order+" auction "+method+" assignment"+(maximize ? " (max)" : " (min)")
+			      +(given ? " of epsilons "+initial+", "+last+", "+factor : "");
+		Assignment assignment = new Assignment(graph,maximize,method,initial,last,factor);
+		double cost = checkMatching(weights,assignment,what);
+
+		MatrixChecks.check(Math.abs(cost-optimum) <= order*assignment.finalEpsilon()+1e-9*order,
+				   what+": cost "+cost+" instead of "+optimum);
+		MatrixChecks.check(!integer || given || cost == optimum,what+": cost "+cost+" instead of "+optimum);
+		MatrixChecks.check(dualFeasible(weights,assignment,assignment.finalEpsilon()),what+": prices");
+		MatrixChecks.check(assignment.method() == method
+				   && (given ? assignment.finalEpsilon() == last
+				       && assignment.initialEpsilon() == Math.max(last,initial)
+				       && assignment.epsilonFactor() == factor
+				       : assignment.epsilonFactor() == Assignment.DEFAULT_EPSILON_FACTOR),
+				   what+": epsilon schedule");
+	      }
+	  }
+      }
+
+    // simultaneous bids do not depend on parallel execution
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	double[][] weights = assignableWeights(random,800,8.0/800,false);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+
+	Matrix.setParallel(false);
+	int[] mates = new Assignment(graph,true,Assignment.AUCTION_JACOBI).mates();
+
+	Matrix.setParallel(true);
+	Matrix.setParallelThreshold(1);
+	Matrix.setForkJoinPool(pool);
+	MatrixChecks.check(java.util.Arrays.equals(new Assignment(graph,true,Assignment.AUCTION_JACOBI).mates(),
+						   mates),"auction assignment in parallel");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+
+    BipartiteGraph graph = new BipartiteGraph(new double[][] { { 1, 2 }, { 3, 4 } });
+    MatrixChecks.check(refused(graph,false,Assignment.AUCTION_JACOBI,1.0,0.1,1.0)
+		       && refused(graph,true,Assignment.AUCTION_GAUSS_SEIDEL,1.0,0.1,0.5),
+		       "non-decreasing epsilon schedule");
+  }
+
+  /**
+   * Return <tt>true</tt> iff the edges of the given <tt>weights</tt>
+   * greater (or less, if <tt>maximize</tt> is <tt>false</tt>) than
+   * <tt>bottleneck</tt> have a perfect matching.
+   */
+  static private boolean improvable (double[][] weights, boolean maximize, double bottleneck)
+  {
+    double[][] better = new double[weights.length][weights.length];
+
+    for (int left = 0; left < weights.length; left++)
+      for (int right = 0; right < weights.length; right++)
+	if (weights[left][right] != 0.0
+	    && (maximize ? weights[left][right] > bottleneck : weights[left][right] < bottleneck))
+	  better[left][right] = weights[left][right];
+
+    return new BipartiteGraph(better).hasPerfectMatching();
+  }
+
+  static private void checkBottlenecks (Random random)
+  {
+    for (int trial = 0; trial < 200; trial++)
+      {
+	int order = 1+random.nextInt(7);
+	double[][] weights = GraphChecks.randomWeights(random,order,0.5+random.nextDouble()/2);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	boolean perfect = GraphChecks.bruteMatchingSize(weights,0,0) == order;
+
+	for (boolean maximize : new boolean[] { false, true })
+	  {
+	    String what = "bottleneck assignment"+(maximize ? " (max)" : " (min)");
+
+	    if (!perfect)
+	      {
+		MatrixChecks.check(refused(graph,maximize,Assignment.BOTTLENECK),
+				   what+" of a graph with no perfect matching");
+		continue;
+	      }
+
+	    Assignment assignment = new Assignment(graph,maximize,Assignment.BOTTLENECK);
+	    double expected = bruteAssignment(weights,maximize,true,0,0);
+
+	    checkMatching(weights,assignment,what);
+	    MatrixChecks.check(assignment.bottleneck() == expected,
+			       what+": bottleneck "+assignment.bottleneck()+" instead of "+expected);
+	  }
+      }
+
+    // larger sparse graphs, of integer weights (with many ties) or
+    // fuzzy relations
+    for (int trial = 0; trial < 40; trial++)
+      {
+	int order = 50+random.nextInt(250);
+	double[][] weights = assignableWeights(random,order,4.0/order,trial % 2 == 0);
+	BipartiteGraph graph = new BipartiteGraph(weights);
+
+	for (boolean maximize : new boolean[] { false, true })
+	  {
+	    String what = order+"x"+order+" bottleneck assignment"+(maximize ? " (max)" : " (min)");
+	    Assignment assignment = new Assignment(graph,maximize,Assignment.BOTTLENECK);
+
+	    checkMatching(weights,assignment,what);
+	    MatrixChecks.check(!improvable(weights,maximize,assignment.bottleneck()),
+			       what+": bottleneck "+assignment.bottleneck()+" improvable");
+	    MatrixChecks.check(assignment.method() == Assignment.BOTTLENECK,what+": method");
+	  }
+
+	MatrixChecks.check(graph.maxMinAssignment().bottleneck()
+			   == new Assignment(graph,true,Assignment.BOTTLENECK).bottleneck(),
+			   "max-min assignment");
+      }
+  }
+}
@@ -15,10 +15,7 @@ package hlt.math.matrix;
  * documentation listing</a>
  */
 
-import java.util.Iterator;
-
 import hlt.language.util.ArrayList;
-import hlt.language.util.IntArrayList;
 import hlt.language.util.IntIterator;
 
 /**
@@ -143,7 +140,11 @@ public class BipartiteGraph extends Matrix
    */
   public BipartiteGraph (double[][] data)
   {
-    setData(data);
+    super(data);
+
+    if (rows != cols)
+      throw new RuntimeException("Non-square bipartite graph data: ("+rows+","+cols+")");
+
     initializeGraphComponents();
   }
 
@@ -154,69 +155,46 @@ public class BipartiteGraph extends Matrix
    *
    * In addition to the components it inherits form its <a
    * href="./Matrix.html"><tt>Matrix</tt></a> superclass, a
-   * <tt>BipartiteGraph</tt> has one specific additional component which
-   * is a <tt>boolean[][]</tt> array. It also keeps handy information in
-   * node-indexed arrays.
+   * <tt>BipartiteGraph</tt> keeps its edges in two <i>compressed sparse
+   * row</i> (CSR) structures: one for the successors of left nodes, and
+   * one for the predecessors of right nodes. Each is a pair of flat
+   * <tt>int[]</tt> arrays: the nodes adjacent to node <tt>u</tt> are the
+   * entries of the targets array from index <tt>offsets[u]</tt>
+   * (inclusive) to <tt>offsets[u+1]</tt> (exclusive), in increasing
+   * order. Hence, the graph structure takes <tt>O(n+E)</tt> memory for
+   * <tt>n</tt> nodes and <tt>E</tt> edges, an edge is looked up by binary
+   * search, and iterating over the neighbors of a node allocates nothing:
+   * <pre>
+   * int[] offsets = graph.succOffsets(), targets = graph.succTargets();
+   * for (int edge = offsets[left]; edge &lt; offsets[left+1]; edge++)
+   *   ... targets[edge] ...
+   * </pre>
+   * These arrays are immutable once created.
    */
 
   /**
-   * This is a square array of <tt>boolean</tt>s having the same sign pattern
-   * as the data array at graph creation time.  It serves as a mask on the
-   * <tt>data</tt> array of this <tt>BipartiteGraph</tt> to identify which
-   * entries in its <tt>data</tt> array are its edges. Hence, it is immutable
-   * once created.
+   * The start of the successors of each left node in
+   * <tt>succTargets</tt>, followed by the number of edges.
    */
-  private boolean[][] isEdge;
+  private int[] succOffsets;
 
   /**
-   * This is an array of <tt>IntArrayList</tt>s containing the lists of
-   * successors of left nodes.
+   * The successors of all left nodes, those of each left node in
+   * increasing order.
    */
-  private IntArrayList[] succLists;
+  private int[] succTargets;
 
   /**
-   * This is an array of right node indices, each of which is the first
-   * successor of a left node, or <tt>-1</tt> if a left node has no
-   * successor.
+   * The start of the predecessors of each right node in
+   * <tt>predTargets</tt>, followed by the number of edges.
    */
-  private int[] firstSuccs;
+  private int[] predOffsets;
 
   /**
-   * This is an array of right node indices, each of which is the last
-   * successor of a left node, or <tt>-1</tt> if a left node has no
-   * successor.
+   * The predecessors of all right nodes, those of each right node in
+   * increasing order.
    */
-  private int[] lastSuccs;
-
-  /**
-   * This is an array of <tt>IntArrayList</tt>s containing the lists of
-   * predecessors of right nodes.
-   */
-  private IntArrayList[] predLists;
-
-  /**
-   * This is an array of left node indices, each of which is the first
-   * predecessor of a right node, or <tt>-1</tt> if a right node has no
-   * predecessor.
-   */
-  private int[] firstPreds;
-
-  /**
-   * This is an array of left node indices, each of which is the last
-   * predecessor of a right node, or <tt>-1</tt> if a right node has no
-   * predecessor.
-   */
-  private int[] lastPreds;
-
-  /**
-  * Contains the number of successors of each left node.
-  */
-  private int[] numOfSuccs;
-
-  /**
-  * Contains the number of predecessors of each right node.
-  */
-  private int[] numOfPreds;
+  private int[] predTargets;
 
   /**
    * <h3 align="center"><span style="font-family:arial,helvetica;">
@@ -237,7 +215,7 @@ public class BipartiteGraph extends Matrix
    */
   public final boolean isEdge (int left, int right)
   {
-    return isEdge[left][right];
+    return edgeIndex(left,right) >= 0;
   }
 
   /**
@@ -247,7 +225,86 @@ public class BipartiteGraph extends Matrix
    */
   public final boolean isDualEdge (int right, int left)
   {
-    return isEdge[left][right];
+    return edgeIndex(left,right) >= 0;
+  }
+
+  /**
+   * Return the index in <tt>succTargets()</tt> of the edge between
+   * <tt>left</tt> node and <tt>right</tt> node, found by binary search,
+   * or <tt>-1</tt> if there is no such edge. Edges are numbered this way
+   * from <tt>0</tt> to <tt>numOfEdges()-1</tt>, by left node then by right
+   * node, which can be used to index arrays of edge attributes.
+   */
+  public final int edgeIndex (int left, int right)
+  {
+    int edge = java.util.Arrays.binarySearch(succTargets,succOffsets[left],succOffsets[left+1],right);
+    return edge < 0 ? -1 : edge;
+  }
+
+  /**
+   * Return the number of edges of this <tt>BipartiteGraph</tt>.
+   */
+  public final int numOfEdges ()
+  {
+    return succTargets.length;
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> whose entry <tt>(left+1,right+1)</tt>
+   * is <tt>true</tt> iff there is an edge between <tt>left</tt> node and
+   * <tt>right</tt> node in this <tt>BipartiteGraph</tt>.
+   */
+  public final BitMatrix edgeMask ()
+  {
+    BitMatrix mask = new BitMatrix(rows,cols);
+
+    for (int left = 0; left < rows; left++)
+      for (int edge = succOffsets[left]; edge < succOffsets[left+1]; edge++)
+	mask.set(left+1,succTargets[edge]+1,true);
+
+    return mask;
+  }
+
+  /**
+   * Return the array of the start of the successors of each left node in
+   * <tt>succTargets()</tt>, followed by the number of edges (see <a
+   * href="#components">the CSR structures</a>). It is shared and must
+   * not be modified.
+   */
+  public final int[] succOffsets ()
+  {
+    return succOffsets;
+  }
+
+  /**
+   * Return the array of the successors of all left nodes, those of each
+   * left node in increasing order (see <a href="#components">the CSR
+   * structures</a>). It is shared and must not be modified.
+   */
+  public final int[] succTargets ()
+  {
+    return succTargets;
+  }
+
+  /**
+   * Return the array of the start of the predecessors of each right node
+   * in <tt>predTargets()</tt>, followed by the number of edges (see <a
+   * href="#components">the CSR structures</a>). It is shared and must
+   * not be modified.
+   */
+  public final int[] predOffsets ()
+  {
+    return predOffsets;
+  }
+
+  /**
+   * Return the array of the predecessors of all right nodes, those of each
+   * right node in increasing order (see <a href="#components">the CSR
+   * structures</a>). It is shared and must not be modified.
+   */
+  public final int[] predTargets ()
+  {
+    return predTargets;
   }
 
   /**
@@ -255,7 +312,7 @@ public class BipartiteGraph extends Matrix
    */
   public final int numOfSuccessors (int left)
   {
-    return numOfSuccs[left];
+    return succOffsets[left+1] - succOffsets[left];
   }
 
   /**
@@ -263,7 +320,25 @@ public class BipartiteGraph extends Matrix
    */
   public final int numOfPredecessors (int right)
   {
-    return numOfPreds[right];
+    return predOffsets[right+1] - predOffsets[right];
+  }
+
+  /**
+   * Return the <tt>k</tt>-th successor (counted from <tt>0</tt>, in
+   * increasing order) of the given <tt>left</tt> node.
+   */
+  public final int successor (int left, int k)
+  {
+    return succTargets[succOffsets[left]+k];
+  }
+
+  /**
+   * Return the <tt>k</tt>-th predecessor (counted from <tt>0</tt>, in
+   * increasing order) of the given <tt>right</tt> node.
+   */
+  public final int predecessor (int right, int k)
+  {
+    return predTargets[predOffsets[right]+k];
   }
 
   /**
@@ -272,7 +347,7 @@ public class BipartiteGraph extends Matrix
    */
   public final int firstSuccessor (int left)
   {
-    return firstSuccs[left];
+    return succOffsets[left] == succOffsets[left+1] ? -1 : succTargets[succOffsets[left]];
   }
 
   /**
@@ -281,7 +356,7 @@ public class BipartiteGraph extends Matrix
    */
   public final int lastSuccessor (int left)
   {
-    return lastSuccs[left];
+    return succOffsets[left] == succOffsets[left+1] ? -1 : succTargets[succOffsets[left+1]-1];
   }
 
   /**
@@ -290,7 +365,7 @@ public class BipartiteGraph extends Matrix
    */
   public final int firstPredecessor (int right)
   {
-    return firstPreds[right];
+    return predOffsets[right] == predOffsets[right+1] ? -1 : predTargets[predOffsets[right]];
   }
 
   /**
@@ -299,7 +374,7 @@ public class BipartiteGraph extends Matrix
    */
   public final int lastPredecessor (int right)
   {
-    return lastPreds[right];
+    return predOffsets[right] == predOffsets[right+1] ? -1 : predTargets[predOffsets[right+1]-1];
   }
 
   /**
@@ -328,7 +403,7 @@ public class BipartiteGraph extends Matrix
 	
 	for (int col = 0; col < cols; col++)
 	  if (isEdge(row,col))
-	    System.out.printf(floatFormatString(),data[row][col]);
+	    System.out.printf(floatFormatString(),entry(row,col));
 	  else
 	    jot(noEdgeString());
 
@@ -346,14 +421,14 @@ public class BipartiteGraph extends Matrix
     sln("Showing the successors of each left node:");
 
     for (int left = 0; left < order; left++)
-      say("\t"+(left+1)+": " + numOfSuccs[left]+" succs. = "+succSetString(left));
+      say("\t"+(left+1)+": " + numOfSuccessors(left)+" succs. = "+succSetString(left));
 
     ln();
 
     sln("Showing the predecessors of each right node:");
 
     for (int right = 0; right < order; right++)
-      say("\t"+(right+1)+": " + numOfPreds[right]+" preds. = "+predSetString(right));
+      say("\t"+(right+1)+": " + numOfPredecessors(right)+" preds. = "+predSetString(right));
   }
 
   /**
@@ -366,11 +441,11 @@ public class BipartiteGraph extends Matrix
 
     buf.append('{');
 
-    for (IntIterator it = succsIterator(left); it.hasNext();)
+    for (int edge = succOffsets[left]; edge < succOffsets[left+1]; edge++)
       {
-	buf.append(Integer.toString(it.next()+1));
-	if (it.hasNext())
+	if (edge > succOffsets[left])
 	  buf.append(',');
+	buf.append(Integer.toString(succTargets[edge]+1));
       }
 
     return buf.append('}').toString();
@@ -386,11 +461,11 @@ public class BipartiteGraph extends Matrix
 
     buf.append('{');
 
-    for (IntIterator it = predsIterator(right); it.hasNext();)
+    for (int edge = predOffsets[right]; edge < predOffsets[right+1]; edge++)
       {
-	buf.append(Integer.toString(it.next()+1));
-	if (it.hasNext())
+	if (edge > predOffsets[right])
 	  buf.append(',');
+	buf.append(Integer.toString(predTargets[edge]+1));
       }
 
     return buf.append('}').toString();
@@ -422,229 +497,238 @@ public class BipartiteGraph extends Matrix
    * <p/>
    *
    * A <i>matching</i> <tt>M</tt> of this bipartite graph is a set of pairs
-   * of left/right node indices (for us, an <tt>ArrayList</tt> of
-   * <tt>Edge</tt> objects) such that no two pairs share a node (<i>i.e.</i>,
-   * the degree of all nodes in <tt>M</tt> is either <tt>0</tt> or <tt>1</tt>).
+   * of left/right node indices (for us, a <tt>Matching</tt> object
+   * recording the mate of each node in two <tt>int[]</tt> arrays) such
+   * that no two pairs share a node (<i>i.e.</i>, the degree of all nodes in
+   * <tt>M</tt> is either <tt>0</tt> or <tt>1</tt>).
    *
    * <p/>
    *
    * A node of this bipartite graph will be said to be <i>used</i> by  a
    * matching <tt>M</tt> if it appears as the left or right node of an edge
-   * in <tt>M</tt> (<i>i.e.</i>, if it has degree <tt>1</tt> in <tt>M</tt>).
+   * in <tt>M</tt> (<i>i.e.</i>, if it has degree <tt>1</tt> in <tt>M</tt>);
+   * otherwise, it is <i>free</i>.
    *
    * <p/>
    *
-   * An <i>alternating path</i> of this bipartite graph with respect to a
-   * matching <tt>M</tt> is a set of pairs of left/right node indices (for
-   * us, an <tt>ArrayList</tt> of <tt>Edge</tt>s) such that no pair share a
-   * node.
+   * A <i>path</i> of this bipartite graph is a sequence of edges taken in
+   * alternating directions (left to right, then right to left, <i>etc.</i>),
+   * where each edge ends at the node where the following one starts.
    *
    * <p/>
    *
-   * A <i>path</i> of this bipartite graph is a sequence of such
-   * <i>directed</i> <tt>Edge</tt>s starting at left node where the right
-   * node of an edge is the left node of the following
+   * An <i>alternating path</i> of this bipartite graph with respect to a
+   * matching <tt>M</tt> is a path whose edges are alternately not in
+   * <tt>M</tt> and in <tt>M</tt>. An <i>augmenting path</i> is an
+   * alternating path from a free left node to a free right node: exchanging
+   * its edges not in <tt>M</tt> with its edges in <tt>M</tt> yields a
+   * matching with one more edge. A matching is of <i>maximum</i>
+   * cardinality iff it has no augmenting path (Berge's theorem), and it is
+   * <i>perfect</i> iff it uses all nodes (<i>i.e.</i>, it has <tt>n</tt>
+   * edges).
    *
    * <p/>
    *
-   *
-   * Algorithm for finding a maximum bipartite-graph matching:
+   * Algorithm for finding a maximum bipartite-graph matching (Hopcroft and
+   * Karp's, which takes <tt>O(E&middot;&radic;V)</tt> time for
+   * <tt>E</tt> edges and <tt>V</tt> nodes):
    *
    * <ul>
    *
-   * <li>Start with empty matching <tt>M</tt>  </li>
+   * <li>Start with a greedy matching <tt>M</tt> (each left node in turn is
+   * matched with its first free successor, if any).</li>
    *
-   * <li></li>
+   * <li>Repeat the following <i>phase</i> until no augmenting path is
+   * found: a breadth-first search from all the free left nodes at once
+   * labels each left node with its distance (number of edges in
+   * <tt>M</tt>) from a free left node along alternating paths, and stops at
+   * the first layer reaching a free right node; then, a depth-first search
+   * from each free left node along the edges that increase this distance
+   * by one finds a maximal set of node-disjoint shortest augmenting paths,
+   * each of which is used to augment <tt>M</tt> as soon as it is
+   * found.</li>
    *
-   * <li></li>
+   * <li>Each phase takes <tt>O(E)</tt> time, since a depth-first search
+   * never tries an edge twice (each left node keeps the position of the
+   * next successor to try, and a node from which no augmenting path is
+   * found is removed from the layers), and there are at most
+   * <tt>O(&radic;V)</tt> phases.</li>
    *
    * </ul>
    *
+   * All searches are iterative and use <tt>int[]</tt> arrays for the mates
+   * and distance labels of nodes, so that no object is allocated per node
+   * or edge. As everywhere in this class, nodes are counted from
+   * <tt>0</tt> by the following methods.
    */
 
   /**
-   * <h4 align="center"><span style="font-family:arial,helvetica;">
-   * <a name="private" href="#contents">Local Private Methods</a>
-   * </span></h4>
+   * Return a new array of the right node matched with each left node by
+   * a maximum matching of this <tt>BipartiteGraph</tt>, or <tt>-1</tt>
+   * for the left nodes left free.
    */
+  public int[] maximumMatching ()
+  {
+    return new Matching(this).maximize().leftMates();
+  }
 
   /**
-   * Return the right node that is the first successor of <tt>left</tt> node,
-   * or <tt>-1</tt> if <tt>left</tt> has no successor.
+   * Return the number of edges of a maximum matching of this
+   * <tt>BipartiteGraph</tt>.
    */
-  private int getFirstSucc (int left)
+  public int maximumMatchingSize ()
   {
-    if (succLists[left].isEmpty())
-      return -1;
-
-    return succLists[left].firstElement();
+    return new Matching(this).maximize().size();
   }
 
   /**
-   * Return the right node that is the last successor of <tt>left</tt> node,
-   * or <tt>-1</tt> if <tt>left</tt> has no successor.
+   * Return <tt>true</tt> iff this <tt>BipartiteGraph</tt> has a perfect
+   * matching (<i>i.e.</i>, one using all nodes).
    */
-  private int getLastSucc (int left)
+  public boolean hasPerfectMatching ()
   {
-    if (succLists[left].isEmpty())
-      return -1;
+    for (int node = 0; node < rows; node++)
+      if (numOfSuccessors(node) == 0 || numOfPredecessors(node) == 0)
+	return false;
 
-    return succLists[left].lastElement();
+    return new Matching(this).maximize().isPerfect();
   }
 
   /**
-   * Return the right node that is the first predecessor of <tt>right</tt>
-   * node, or <tt>-1</tt> if <tt>right</tt> has no predecessor.
+   * Return an <a href="Assignment.html"><tt>Assignment</tt></a> of this
+   * <tt>BipartiteGraph</tt>: a perfect matching whose sum of edge weights
+   * is minimum. Throws a <tt>RuntimeException</tt> if there is no perfect
+   * matching.
    */
-  private int getFirstPred (int right)
+  public Assignment minimumCostAssignment ()
   {
-    if (predLists[right].isEmpty())
-      return -1;
-
-    return predLists[right].firstElement();
+    return new Assignment(this,false);
   }
 
   /**
-   * Return the right node that is the last predecessor of <tt>right</tt>
-   * node, or <tt>-1</tt> if <tt>right</tt> has no predecessor.
+   * Return an <a href="Assignment.html"><tt>Assignment</tt></a> of this
+   * <tt>BipartiteGraph</tt>: a perfect matching whose sum of edge weights
+   * is maximum. Throws a <tt>RuntimeException</tt> if there is no perfect
+   * matching.
    */
-  private int getLastPred (int right)
+  public Assignment maximumWeightAssignment ()
   {
-    if (predLists[right].isEmpty())
-      return -1;
+    return new Assignment(this,true);
+  }
 
-    return predLists[right].lastElement();
+  /**
+   * Return an <a href="Assignment.html"><tt>Assignment</tt></a> of this
+   * <tt>BipartiteGraph</tt> whose least edge weight is maximum: for a
+   * fuzzy relation, this is a best perfect matching under the
+   * <tt>MaxMinAlgebra</tt>. Throws a <tt>RuntimeException</tt> if there is
+   * no perfect matching.
+   */
+  public Assignment maxMinAssignment ()
+  {
+    return new Assignment(this,true,Assignment.BOTTLENECK);
   }
 
   /**
-   * Initialize the <tt>isEdge</tt> array and successor/predecessor arrays of
-   * this <tt>BipartiteGraph</tt> at creation time, setting an entry to
-   * <tt>true</tt> iff the corresponding edge exists (<i>i.e.</i>, iff the
-   * entry in the <tt>data</tt> array is non-zero at creation time).
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="private" href="#contents">Local Private Methods</a>
+   * </span></h4>
+   */
+
+  /**
+   * Initialize the CSR structures of this <tt>BipartiteGraph</tt> at
+   * creation time, with an edge for each entry that is non-zero in the
+   * <tt>data</tt> array at creation time. The successors are collected in
+   * a single pass over the entries, which also counts the predecessors;
+   * the predecessors are then distributed from the successors. As it is
+   * called by the constructor, this reads the inherited components
+   * directly rather than through their accessors, so that <tt>this</tt>
+   * is not passed to any method before the graph is fully built.
    */
   private final void initializeGraphComponents ()
   {
     int order = rows;
 
-    // create the isEdge array
-    isEdge = new boolean[order][order];
-
-    // create the arrays containing the numbers of successors/predecessors
-    // for each left/right node.
-    numOfSuccs = new int[order];
-    numOfPreds = new int[order];
+    succOffsets = new int[order+1];
+    predOffsets = new int[order+1];
+    succTargets = new int[Math.max(16,4*order)];
 
-    // initialize isEdge, succLists, and numOfSuccs
-    succLists = new IntArrayList[order]; // an array of lists of successor indices
+    int count = 0;
     for (int left = 0; left < order; left++)
       {
-	succLists[left] = new IntArrayList();
-	for (int right = 0; right < order; right++)
-	  {
-	    if (isEdge[left][right] = (data[left][right] != 0.0))
-	      {
-		succLists[left].add(right);
-		numOfSuccs[left]++;
-	      }
-	  }
-      }
+	int base = offset+left*stride;
 
-    // System.err.println(">>> Succ Lists:");
-    // for (int left = 0; left < order; left++)
-    //   {
-    // 	System.err.print(">>>\t"+(left+1)+":");
-    // 	for (IntIterator it = succsIterator(left); it.hasNext();)
-    // 	  System.err.print(" "+(it.next()+1));
-    // 	System.err.println();
-    //   }
-
-    // initialize predLists and numOfPreds
-    predLists = new IntArrayList[order]; // an array of lists of predecessor indices
-    for (int right = 0; right < order; right++)
-      {
-	predLists[right] = new IntArrayList();
-	for (int left = 0; left < order; left++)
-	  {
-	    if (isEdge[left][right])
-	      {
-		predLists[right].add(left);
-		numOfPreds[right]++;
-	      }
-	  }
+	for (int right = 0; right < order; right++)
+	  if (entries[base+right*colStride] != 0.0)
+	    {
+	      if (count == succTargets.length)
+		succTargets = java.util.Arrays.copyOf(succTargets,2*count);
+	      succTargets[count++] = right;
+	      predOffsets[right+1]++;
+	    }
+
+	succOffsets[left+1] = count;
       }
 
-    // System.err.println(">>> Pred Lists:");
-    // for (int right = 0; right < order; right++)
-    //   {
-    // 	System.err.print(">>>\t"+(right+1)+":");
-    // 	for (IntIterator it = predsIterator(right); it.hasNext();)
-    // 	  System.err.print(" "+(it.next()+1));
-    // 	System.err.println();
-    //   }
-
-    // create and initialize the array containing the first-successor right
-    // node of each left node
-    firstSuccs = new int[order];
-    for (int left = 0; left < order; left++)
-      firstSuccs[left] = getFirstSucc(left);
-
-    // System.err.print("firstSuccs:");
-    // for (int i = 0; i < order; i++)
-    //   System.err.print(" "+(firstSuccs[i]+1));
-    // System.err.println();
+    succTargets = java.util.Arrays.copyOf(succTargets,count);
 
-    // create and initialize the array containing the last-successor right
-    // node of each left node
-    lastSuccs = new int[order];
-    for (int left = 0; left < order; left++)
-      lastSuccs[left] = getFirstSucc(left);
-
-    // System.err.print("lastSuccs: ");
-    // for (int i = 0; i < order; i++)
-    //   System.err.print(" "+(lastSuccs[i]+1));
-    // System.err.println();
-
-    // create and initialize the array containing the first-predecessor left
-    // node of each right node
-    firstPreds = new int[order];
     for (int right = 0; right < order; right++)
-      firstPreds[right] = getFirstPred(right);
+      predOffsets[right+1] += predOffsets[right];
 
-    // System.err.print("firstPreds:");
-    // for (int i = 0; i < order; i++)
-    //   System.err.print(" "+(firstPreds[i]+1));
-    // System.err.println();
-
-    // create and initialize the array containing the last-predecessor left
-    // node of each right node
-    lastPreds = new int[order];
-    for (int right = 0; right < order; right++)
-      lastPreds[right] = getLastPred(right);
-
-    // System.err.print("lastPreds: ");
-    // for (int i = 0; i < order; i++)
-    //   System.err.print(" "+(lastPreds[i]+1));
-    // System.err.println();
-
-    // showComponents();
+    // left nodes are visited in increasing order, so the predecessors of
+    // each right node come out sorted
+    predTargets = new int[count];
+    int[] next = java.util.Arrays.copyOf(predOffsets,order);
+    for (int left = 0; left < order; left++)
+      for (int edge = succOffsets[left]; edge < succOffsets[left+1]; edge++)
+	predTargets[next[succTargets[edge]]++] = left;
   }
 
   /**
    * Return an <tt>IntIterator</tt> for the list of successors of
-   * <tt>left</tt> node.
+   * <tt>left</tt> node, in increasing order. Since it allocates an
+   * iterator per call, loops over many nodes should rather use <a
+   * href="#succOffsets()"><tt>succOffsets()</tt></a> and <a
+   * href="#succTargets()"><tt>succTargets()</tt></a>.
    */
   public IntIterator succsIterator (int left)
   {
-    return succLists[left].iterator();
+    return sliceIterator(succTargets,succOffsets[left],succOffsets[left+1]);
   }
 
   /**
    * Return an <tt>IntIterator</tt> for the list of predecessors of
-   * <tt>right</tt> node.
+   * <tt>right</tt> node, in increasing order. Since it allocates an
+   * iterator per call, loops over many nodes should rather use <a
+   * href="#predOffsets()"><tt>predOffsets()</tt></a> and <a
+   * href="#predTargets()"><tt>predTargets()</tt></a>.
    */
   public IntIterator predsIterator (int right)
   {
-    return predLists[right].iterator();
+    return sliceIterator(predTargets,predOffsets[right],predOffsets[right+1]);
+  }
+
+  /**
+   * Return an <tt>IntIterator</tt> over <tt>targets[from..to)</tt>.
+   */
+  static private IntIterator sliceIterator (int[] targets, int from, int to)
+  {
+    return new IntIterator()
+      {
+	private int next = from;
+
+	public boolean hasNext ()
+	{
+	  return next < to;
+	}
+
+	public int next ()
+	{
+	  if (next == to)
+	    throw new java.util.NoSuchElementException();
+
+	  return targets[next++];
+	}
+      };
   }
 
   /**
@@ -727,157 +811,405 @@ public class BipartiteGraph extends Matrix
    */
 
 
-}// end BipartiteGraph class
-
-/**
- * <h3 align="center"><span style="font-family:arial,helvetica;">
- * <a name="classes" href="#contents">Local Classes</a>
- * </span></h3>
- */
-
-/**
- * <h4 align="center"><span style="font-family:arial,helvetica;">
- * <a name="edge" href="#contents">Edge Class</a>
- * </span></h4>
- */
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="classes" href="#contents">Local Classes</a>
+   * </span></h3>
+   */
 
-/**
- * A local class representing a (<tt>left</tt>,<tt>right</tt>) edge between a
- * left node of index <tt>left</tt>, and a right node of index <tt>right</tt>.
- */
-class Edge
-{
-  int left;
-  int right;
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="edge" href="#contents">Edge Class</a>
+   * </span></h4>
+   */
 
-  Edge (int left, int right)
+  /**
+   * A nested class representing a (<tt>left</tt>,<tt>right</tt>) edge between a
+   * left node of index <tt>left</tt>, and a right node of index <tt>right</tt>.
+   */
+  static class Edge
   {
-    this.left  = left;
-    this.right = right;
-  }
+    int left;
+    int right;
 
-  boolean startsWith (int left)
-  {
-    return this.left == left;
-  }
+    Edge (int left, int right)
+    {
+      this.left  = left;
+      this.right = right;
+    }
 
-  boolean endsWith (int right)
-  {
-    return this.right == right;
-  }
+    boolean startsWith (int left)
+    {
+      return this.left == left;
+    }
 
-  boolean isFollowedBy (Edge next)
-  {
-    return right == next.left;
-  }
+    boolean endsWith (int right)
+    {
+      return this.right == right;
+    }
 
-  public boolean equal (Object other)
-  {
-    if (!(other instanceof Edge))
-      return false;
+    boolean isFollowedBy (Edge next)
+    {
+      return right == next.left;
+    }
 
-    return (left == ((Edge)other).left) && (right == ((Edge)other).right);
-  }
+    public boolean equal (Object other)
+    {
+      if (!(other instanceof Edge))
+	return false;
 
-  public String toString ()
-  {
-    return "("+left+","+right+")";
-  }
+      return (left == ((Edge)other).left) && (right == ((Edge)other).right);
+    }
 
-}// end Edge class
+    public String toString ()
+    {
+      return "("+left+","+right+")";
+    }
 
-/**
- * <h4 align="center"><span style="font-family:arial,helvetica;">
- * <a name="matching" href="#contents">Matching Class</a>
- * </span></h4>
- */
-
-/**
- * A local class representing a matching of a <tt>BipartiteGraph</tt>.
- */
-class Matching
-{
-  ArrayList matching = new ArrayList();
-
-  BipartiteGraph graph;
-
-  Matching (BipartiteGraph graph)
-  {
-    this.graph = graph;
-  }
+  }// end Edge class
 
   /**
-   * Return <tt>true</tt> iff this <tt>Matching</tt> is maximum for its
-   * <tt>BipartiteGraph</tt>.
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="matching" href="#contents">Matching Class</a>
+   * </span></h4>
    */
-  boolean isMaximum ()
-  {
-    return matching.size() == graph.rows();
-  }
 
   /**
-   * Return <tt>true</tt> iff this <tt>Matching</tt> uses the given
-   * <tt>edge</tt>.
+   * A nested class representing a matching of a <tt>BipartiteGraph</tt>. It
+   * records the mate of each left node and of each right node in two
+   * <tt>int[]</tt> arrays (<tt>-1</tt> standing for a free node), so that
+   * testing whether a node is used, adding an edge, and augmenting along a
+   * path all take constant time per node. Nodes are counted from
+   * <tt>0</tt>.
    */
-  boolean uses (Edge edge)
+  static class Matching
   {
-    return uses(edge.left) || uses(edge.right);
-  }
+    /**
+     * The distance label of a node that is not (or no longer) in the layers
+     * of a phase of <tt>maximize()</tt>.
+     */
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    BipartiteGraph graph;
+
+    /**
+     * The right mate of each left node, or <tt>-1</tt>.
+     */
+    int[] leftMates;
+
+    /**
+     * The left mate of each right node, or <tt>-1</tt>.
+     */
+    int[] rightMates;
+
+    /**
+     * The number of edges of this matching.
+     */
+    int size;
+
+    /**
+     * Construct an empty <tt>Matching</tt> of the given <tt>graph</tt>.
+     */
+    Matching (BipartiteGraph graph)
+    {
+      this.graph = graph;
+      leftMates = new int[graph.rows()];
+      rightMates = new int[graph.rows()];
+      java.util.Arrays.fill(leftMates,-1);
+      java.util.Arrays.fill(rightMates,-1);
+    }
+
+    /**
+     * Return the number of edges of this <tt>Matching</tt>.
+     */
+    int size ()
+    {
+      return size;
+    }
+
+    /**
+     * Return <tt>true</tt> iff this <tt>Matching</tt> is perfect for its
+     * <tt>BipartiteGraph</tt> (<i>i.e.</i>, it uses all nodes).
+     */
+    boolean isPerfect ()
+    {
+      return size == graph.rows();
+    }
+
+    /**
+     * Return a copy of the array of the right mates of left nodes.
+     */
+    int[] leftMates ()
+    {
+      return leftMates.clone();
+    }
+
+    /**
+     * Return <tt>true</tt> iff this <tt>Matching</tt> uses either node of
+     * the given <tt>edge</tt>.
+     */
+    boolean uses (Edge edge)
+    {
+      return usesLeft(edge.left) || usesRight(edge.right);
+    }
+
+    /**
+     * Return <tt>true</tt> iff this <tt>Matching</tt> uses the given
+     * <tt>left</tt> node.
+     */
+    boolean usesLeft (int left)
+    {
+      return leftMates[left] >= 0;
+    }
+
+    /**
+     * Return <tt>true</tt> iff this <tt>Matching</tt> uses the given
+     * <tt>right</tt> node.
+     */
+    boolean usesRight (int right)
+    {
+      return rightMates[right] >= 0;
+    }
+
+    /**
+     * Return the degree (<tt>0</tt> or <tt>1</tt>) of the given
+     * <tt>left</tt> node in this <tt>Matching</tt>.
+     */
+    int leftDegree (int left)
+    {
+      return usesLeft(left) ? 1 : 0;
+    }
+
+    /**
+     * Return the degree (<tt>0</tt> or <tt>1</tt>) of the given
+     * <tt>right</tt> node in this <tt>Matching</tt>.
+     */
+    int rightDegree (int right)
+    {
+      return usesRight(right) ? 1 : 0;
+    }
+
+    /**
+     * Add the given <tt>edge</tt> of the graph, neither node of which may be
+     * used, to this <tt>Matching</tt> and return it.
+     */
+    Matching add (Edge edge)
+    {
+      if (!graph.isEdge(edge.left,edge.right))
+	throw new RuntimeException("No such edge in the graph: "+edge);
+
+      if (uses(edge))
+	throw new RuntimeException("Edge "+edge+" shares a node with the matching");
+
+      leftMates[edge.left] = edge.right;
+      rightMates[edge.right] = edge.left;
+      size++;
+
+      return this;
+    }
+
+    /**
+     * Extend this <tt>Matching</tt> into one of maximum cardinality with
+     * Hopcroft and Karp's algorithm (see <a
+     * href="BipartiteGraph.html#matchings">the description in
+     * <tt>BipartiteGraph</tt></a>), and return it.
+     */
+    Matching maximize ()
+    {
+      int order = graph.rows();
+
+      int[] offsets = graph.succOffsets();
+      return maximize(offsets,graph.succTargets(),java.util.Arrays.copyOfRange(offsets,1,order+1));
+    }
+
+    /**
+     * Extend this <tt>Matching</tt> into one of maximum cardinality of the
+     * subgraph whose edges from each left node <tt>u</tt> are
+     * <tt>targets[offsets[u]..ends[u])</tt>, which must contain those of
+     * this <tt>Matching</tt>, and return it.
+     */
+    Matching maximize (int[] offsets, int[] targets, int[] ends)
+    {
+      int order = graph.rows();
+
+      // greedy initial matching
+      for (int left = 0; left < order; left++)
+	if (leftMates[left] < 0)
+	  for (int edge = offsets[left]; edge < ends[left]; edge++)
+	    if (rightMates[targets[edge]] < 0)
+	      {
+		leftMates[left] = targets[edge];
+		rightMates[targets[edge]] = left;
+		size++;
+		break;
+	      }
 
-  /**
-   * Return <tt>true</tt> iff this <tt>Matching</tt> uses the given
-   * <tt>node</tt>.
-   */
-  boolean uses (int node)
-  {
-    return degree(node) == 1;
-  }
+      int[] dist = new int[order];
+      int[] queue = new int[order];
+      int[] next = new int[order];
+
+      while (size < order)
+	{
+	  int limit = layers(offsets,targets,ends,dist,queue);
+
+	  if (limit == INFINITY)
+	    break;
+
+	  System.arraycopy(offsets,0,next,0,order);
+
+	  for (int left = 0; left < order; left++)
+	    if (leftMates[left] < 0 && augment(left,limit,targets,ends,dist,next,queue))
+	      size++;
+	}
+
+      return this;
+    }
+
+    /**
+     * Label each left node with its distance from a free left node along
+     * alternating paths, by a breadth-first search stopping at the first
+     * layer reaching a free right node, and return the length of the
+     * shortest augmenting paths (counted as the distance label a free right
+     * node would have), or <tt>INFINITY</tt> if there is none.
+     */
+    private int layers (int[] offsets, int[] targets, int[] ends, int[] dist, int[] queue)
+    {
+      int head = 0, tail = 0;
+      int limit = INFINITY;
+
+      for (int left = 0; left < dist.length; left++)
+	if (leftMates[left] < 0)
+	  {
+	    dist[left] = 0;
+	    queue[tail++] = left;
+	  }
+	else
+	  dist[left] = INFINITY;
+
+      while (head < tail)
+	{
+	  int left = queue[head++];
+
+	  if (dist[left] >= limit)
+	    break;
+
+	  for (int edge = offsets[left]; edge < ends[left]; edge++)
+	    {
+	      int mate = rightMates[targets[edge]];
+
+	      if (mate < 0)
+		limit = Math.min(limit,dist[left]+1);
+	      else if (dist[mate] == INFINITY)
+		{
+		  dist[mate] = dist[left]+1;
+		  queue[tail++] = mate;
+		}
+	    }
+	}
+
+      return limit;
+    }
+
+    /**
+     * Search, depth first and iteratively, for an augmenting path from the
+     * given free <tt>root</tt> left node along the layers of the current
+     * phase, and augment this matching along it if found. Each left node
+     * tries its successors from <tt>next[left]</tt> on, and is removed from
+     * the layers when none of them leads to a free right node, so that no
+     * edge is tried twice in a phase. Return <tt>true</tt> iff a path was
+     * found.
+     */
+    private boolean augment (int root, int limit, int[] targets, int[] ends,
+			     int[] dist, int[] next, int[] stack)
+    {
+      int top = 0;
+      stack[0] = root;
+
+      while (top >= 0)
+	{
+	  int left = stack[top];
+
+	  if (next[left] == ends[left])
+	    { // dead end: remove left from the layers and backtrack
+	      dist[left] = INFINITY;
+	      if (--top >= 0)
+		next[stack[top]]++;
+	      continue;
+	    }
+
+	  int right = targets[next[left]];
+	  int mate = rightMates[right];
+
+	  if (mate < 0)
+	    {
+	      if (dist[left]+1 == limit)
+		{ // augment along the path on the stack
+		  for (; top >= 0; top--)
+		    {
+		      int u = stack[top], v = targets[next[u]];
+		      leftMates[u] = v;
+		      rightMates[v] = u;
+		    }
+		  return true;
+		}
+	      next[left]++;
+	    }
+	  else if (dist[mate] == dist[left]+1)
+	    stack[++top] = mate;
+	  else
+	    next[left]++;
+	}
 
-  /**
-   * Return the degree of the given <tt>node</tt> in this
-   * <tt>Matching</tt>. This is the number of <tt>Edge</tt> objects in this
-   * <tt>Matching</tt> for which the given <tt>node</tt> is a <tt>left</tt>
-   * or <tt>right</tt>.
-   */
-  int degree (int node)
-  {
-    int degree = 0;
-    
-    for (Iterator it = matching.iterator(); it.hasNext();)
-      {
-	Edge edge = (Edge)it.next();
-	if (edge.left == node || edge.right == node)
-	  degree++;
-      }
+      return false;
+    }
+
+    /**
+     * Remove from this <tt>Matching</tt> the edges that are not in the
+     * subgraph whose edges from each left node <tt>u</tt> are
+     * <tt>targets[offsets[u]..ends[u])</tt>, and return it.
+     */
+    Matching restrict (int[] offsets, int[] targets, int[] ends)
+    {
+      for (int left = 0; left < leftMates.length; left++)
+	if (leftMates[left] >= 0)
+	  {
+	    int edge = offsets[left];
+	    while (edge < ends[left] && targets[edge] != leftMates[left])
+	      edge++;
 
-    return degree;
-  }
+	    if (edge == ends[left])
+	      {
+		rightMates[leftMates[left]] = -1;
+		leftMates[left] = -1;
+		size--;
+	      }
+	  }
 
-  /**
-   * 
-   */
-  Matching add (Edge edge)
-  {
-    
-    return this;
-  }
+      return this;
+    }
 
-  public boolean equal (Object other)
-  {
-    if (!(other instanceof Matching))
-      return false;
+    public boolean equal (Object other)
+    {
+      if (!(other instanceof Matching))
+	return false;
 
-    // TO FINISH
-    return true;
-  }
+      return java.util.Arrays.equals(leftMates,((Matching)other).leftMates);
+    }
 
-  public String toString ()
-  {
-    StringBuilder buf = new StringBuilder();
-    
-    // TO FINISH
-    return "{"+buf+"}";
-  }
+    public String toString ()
+    {
+      StringBuilder buf = new StringBuilder();
+
+      for (int left = 0; left < leftMates.length; left++)
+	if (leftMates[left] >= 0)
+	  {
+	    if (buf.length() > 0)
+	      buf.append(',');
+	    buf.append("("+(left+1)+","+(leftMates[left]+1)+")");
+	  }
+
+      return "{"+buf+"}";
+    }
+  }// end Matching class
 
-  
-}// end Matching class
+}// end BipartiteGraph class
@@ -0,0 +1,646 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/BitMatrix.java
+// STARTED ON. . Mon Mar  9 14:36:50 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a class of Boolean matrices packing their entries as bits of
+ * <tt>long</tt> words: each row is stored in <tt>wordsPerRow()</tt>
+ * consecutive words of a flat array, the entry at column <tt>col</tt>
+ * (counted from <tt>0</tt>) being bit <tt>col%64</tt> of word
+ * <tt>col/64</tt> of its row (the unused bits of the last word of a row
+ * are always <tt>0</tt>). A <tt>BitMatrix</tt> thus takes one bit per
+ * entry, and its operations process 64 entries at a time.<p/>
+ *
+ * It provides the entry-wise <tt>and</tt>, <tt>or</tt>, and
+ * <tt>xor</tt> operations, population counts, and the Boolean product
+ * (<i>i.e.</i>, that of the Boolean semiring, where <tt>sum</tt> is
+ * <i>or</i> and <tt>product</tt> is <i>and</i>) and transitive closure
+ * of Boolean matrices, both computed with the <i>Four Russians</i>
+ * method: the rows of the right operand are taken 8 at a time, all
+ * 256 <i>or</i>-combinations of each group are tabulated, and each
+ * row of the result is then updated by one table look-up per byte of
+ * the left operand's row (see <tt>times</tt> and <tt>closure</tt>).
+ * These run by blocks of rows in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>.<p/>
+ *
+ * Conversions from any <tt>Matrix</tt> (whose entries that differ from
+ * the <tt>zero()</tt> of the current <a
+ * href="NumberAlgebra.html"><tt>NumberAlgebra</tt></a> are
+ * <tt>true</tt>) and to a <tt>Matrix</tt> are provided. Like those of
+ * <tt>Matrix</tt>, the <tt>get</tt> and <tt>set</tt> methods count
+ * rows and columns from <tt>1</tt>.
+ *
+ * @see         Matrix
+ * @see         BipartiteGraph
+ */
+public class BitMatrix
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * The number of rows of this matrix.
+   */
+  private int rows;
+
+  /**
+   * The number of columns of this matrix.
+   */
+  private int cols;
+
+  /**
+   * The number of words of each row: <tt>ceiling(cols/64)</tt>.
+   */
+  private int wordsPerRow;
+
+  /**
+   * The row-major words of this matrix.
+   */
+  private long[] words;
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>BitMatrix</tt> all
+   * of whose entries are <tt>false</tt>.
+   */
+  public BitMatrix (int rows, int cols)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+
+    this.rows = rows;
+    this.cols = cols;
+    wordsPerRow = (cols+63) >>> 6;
+    words = new long[Math.multiplyExact(rows,wordsPerRow)];
+  }
+
+  /**
+   * Construct a square <tt>BitMatrix</tt> of the given <tt>order</tt>
+   * all of whose entries are <tt>false</tt>.
+   */
+  public BitMatrix (int order)
+  {
+    this(order,order);
+  }
+
+  /**
+   * Construct a <tt>BitMatrix</tt> whose <tt>true</tt> entries are
+   * those of the given <tt>Matrix</tt> that differ from the
+   * <tt>zero()</tt> of the current number algebra.
+   */
+  public BitMatrix (Matrix M)
+  {
+    this(M,NumberAlgebra.getCurrentAlgebra().zero());
+  }
+
+  /**
+   * Construct a <tt>BitMatrix</tt> whose <tt>true</tt> entries are
+   * those of the given <tt>Matrix</tt> that differ from the given
+   * <tt>zero</tt>.
+   */
+  public BitMatrix (Matrix M, double zero)
+  {
+    this(M.rows(),M.cols());
+
+    double[] entries = M.entries();
+    int stride = M.stride(), colStride = M.colStride();
+
+    for (int row = 0; row < rows; row++)
+      {
+	int base = M.offset()+row*stride;
+	int w = row*wordsPerRow;
+
+	for (int col = 0; col < cols; col++)
+	  if (entries[base+col*colStride] != zero)
+	    words[w+(col >>> 6)] |= 1L << col;
+      }
+  }
+
+  /**
+   * Construct a new <tt>BitMatrix</tt> equal to the given one.
+   */
+  public BitMatrix (BitMatrix B)
+  {
+    rows = B.rows;
+    cols = B.cols;
+    wordsPerRow = B.wordsPerRow;
+    words = B.words.clone();
+  }
+
+  /**
+   * Return a new identity <tt>BitMatrix</tt> of the given
+   * <tt>order</tt>.
+   */
+  static public BitMatrix identity (int order)
+  {
+    BitMatrix I = new BitMatrix(order);
+
+    for (int i = 0; i < order; i++)
+      I.words[i*I.wordsPerRow+(i >>> 6)] |= 1L << i;
+
+    return I;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Accessors and Conversions
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of rows of this matrix.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return the number of words of each row of this matrix.
+   */
+  public final int wordsPerRow ()
+  {
+    return wordsPerRow;
+  }
+
+  /**
+   * Return the (shared) row-major words of this matrix (see the class
+   * documentation).
+   */
+  public final long[] words ()
+  {
+    return words;
+  }
+
+  /**
+   * Return the entry at row <tt>i</tt> and column <tt>j</tt> (counted
+   * from <tt>1</tt>).
+   */
+  public final boolean get (int i, int j)
+  {
+    checkBounds(i,j);
+    return isSet(i-1,j-1);
+  }
+
+  /**
+   * Set the entry at row <tt>i</tt> and column <tt>j</tt> (counted from
+   * <tt>1</tt>) to the given <tt>value</tt>, and return this matrix.
+   */
+  public final BitMatrix set (int i, int j, boolean value)
+  {
+    checkBounds(i,j);
+
+    int w = (i-1)*wordsPerRow+((j-1) >>> 6);
+
+    if (value)
+      words[w] |= 1L << (j-1);
+    else
+      words[w] &= ~(1L << (j-1));
+
+    return this;
+  }
+
+  /**
+   * Return the entry at <tt>row</tt> and <tt>col</tt> (counted from
+   * <tt>0</tt>), without checking bounds.
+   */
+  final boolean isSet (int row, int col)
+  {
+    return (words[row*wordsPerRow+(col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> if <tt>(i,j)</tt> is not within
+   * the bounds (counted from <tt>1</tt>) of this matrix.
+   */
+  private void checkBounds (int i, int j)
+  {
+    if (i < 1 || i > rows || j < 1 || j > cols)
+      throw new RuntimeException("Matrix entry ("+i+","+j+") out of bounds [1,"+
+				 rows+"]x[1,"+cols+"]");
+  }
+
+  /**
+   * Return the column (counted from <tt>0</tt>) of the first
+   * <tt>true</tt> entry of <tt>row</tt> (counted from <tt>0</tt>) at or
+   * after column <tt>from</tt>, or <tt>-1</tt> if there is none. This
+   * skips 64 <tt>false</tt> entries at a time; <i>e.g.</i>, the
+   * <tt>true</tt> entries of a row are enumerated by:
+   * <pre>
+   * for (int col = B.nextSetBit(row,0); col >= 0; col = B.nextSetBit(row,col+1))
+   *   ...
+   * </pre>
+   */
+  public final int nextSetBit (int row, int from)
+  {
+    if (from >= cols)
+      return -1;
+
+    int base = row*wordsPerRow;
+    int w = from >>> 6;
+    long word = words[base+w] & (-1L << from);
+
+    for (;;)
+      {
+	if (word != 0)
+	  return (w << 6)+Long.numberOfTrailingZeros(word);
+	if (++w == wordsPerRow)
+	  return -1;
+	word = words[base+w];
+      }
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> whose entries are the <tt>one()</tt>
+   * of the current number algebra where this matrix is <tt>true</tt>,
+   * and its <tt>zero()</tt> elsewhere.
+   */
+  public Matrix toMatrix ()
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    double zero = algebra.zero(), one = algebra.one();
+    double[] entries = new double[Matrix.checkedSize(rows,cols)];
+
+    for (int row = 0; row < rows; row++)
+      for (int col = 0; col < cols; col++)
+	entries[row*cols+col] = isSet(row,col) ? one : zero;
+
+    return new Matrix(rows,cols,entries,true);
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Population Counts
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of <tt>true</tt> entries of this matrix.
+   */
+  public final long cardinality ()
+  {
+    long count = 0;
+
+    for (long word : words)
+      count += Long.bitCount(word);
+
+    return count;
+  }
+
+  /**
+   * Return the number of <tt>true</tt> entries of the given
+   * <tt>row</tt> (counted from <tt>0</tt>).
+   */
+  public final int rowCardinality (int row)
+  {
+    int count = 0;
+
+    for (int w = row*wordsPerRow; w < (row+1)*wordsPerRow; w++)
+      count += Long.bitCount(words[w]);
+
+    return count;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Entry-Wise Operations
+   * </span></h3>
+   */
+
+  /**
+   * Codes for the entry-wise operations.
+   */
+  static final int AND = 0, OR = 1, XOR = 2;
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the entry-wise <i>and</i>
+   * of this matrix and the given one.
+   */
+  public BitMatrix and (BitMatrix B)
+  {
+    return combine(AND,this,B,new BitMatrix(rows,cols));
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the entry-wise <i>or</i>
+   * of this matrix and the given one.
+   */
+  public BitMatrix or (BitMatrix B)
+  {
+    return combine(OR,this,B,new BitMatrix(rows,cols));
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the entry-wise <i>xor</i>
+   * of this matrix and the given one.
+   */
+  public BitMatrix xor (BitMatrix B)
+  {
+    return combine(XOR,this,B,new BitMatrix(rows,cols));
+  }
+
+  /**
+   * Set this matrix to its entry-wise <i>and</i> with the given one, and
+   * return it.
+   */
+  public BitMatrix i_and (BitMatrix B)
+  {
+    return combine(AND,this,B,this);
+  }
+
+  /**
+   * Set this matrix to its entry-wise <i>or</i> with the given one, and
+   * return it.
+   */
+  public BitMatrix i_or (BitMatrix B)
+  {
+    return combine(OR,this,B,this);
+  }
+
+  /**
+   * Set this matrix to its entry-wise <i>xor</i> with the given one, and
+   * return it.
+   */
+  public BitMatrix i_xor (BitMatrix B)
+  {
+    return combine(XOR,this,B,this);
+  }
+
+  /**
+   * Set <tt>C</tt> to the <tt>AND</tt>, <tt>OR</tt>, or <tt>XOR</tt>
+   * (according to <tt>op</tt>) of <tt>A</tt> and <tt>B</tt>, all of
+   * the same dimensions, and return <tt>C</tt>.
+   */
+  static private BitMatrix combine (int op, BitMatrix A, BitMatrix B, BitMatrix C)
+  {
+    if (A.rows != B.rows || A.cols != B.cols)
+      throw new IncompatibleMatrixDimensionException(B.rows,B.cols,A.rows,A.cols);
+
+    long[] a = A.words, b = B.words, c = C.words;
+    int wpr = A.wordsPerRow;
+
+    MatrixTasks.forRowBlocks(A.rows,wpr,(from,to) ->
+      {
+	int end = to*wpr;
+
+	if (op == AND)
+	  for (int w = from*wpr; w < end; w++)
+	    c[w] = a[w] & b[w];
+	else if (op == OR)
+	  for (int w = from*wpr; w < end; w++)
+	    c[w] = a[w] | b[w];
+	else
+	  for (int w = from*wpr; w < end; w++)
+	    c[w] = a[w] ^ b[w];
+      });
+
+    return C;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Boolean Product and Closure
+   * </span></h3>
+   */
+
+  /**
+   * The number of words of the columns of a panel of the tables of
+   * <i>or</i>-combinations, so that the 8 tables of 256 combinations of
+   * a group of 64 rows (1MB) stay in the L2/L3 cache.
+   */
+  static final int PANEL = 64;
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the Boolean product of
+   * this matrix by the given one: its entry <tt>(i,j)</tt> is
+   * <tt>true</tt> iff there is a <tt>k</tt> such that this matrix's
+   * entry <tt>(i,k)</tt> and the given one's entry <tt>(k,j)</tt> are
+   * both <tt>true</tt>.<p/>
+   *
+   * By the Four Russians method, for each group of 64 consecutive rows
+   * of <tt>B</tt> (and panel of <tt>PANEL</tt> words of columns), the
+   * <i>or</i> of each of the 256 subsets of each of its 8 subgroups of
+   * 8 rows is tabulated (with one <i>or</i> of rows each); each row
+   * <tt>i</tt> of the product then <i>or</i>s in the 8 entries indexed
+   * by the 8 bytes of the word of row <tt>i</tt> of <tt>A</tt> that
+   * covers the group. This takes <tt>O(mkn/512)</tt> word operations
+   * for an <tt>m</tt>-by-<tt>k</tt> by <tt>k</tt>-by-<tt>n</tt>
+   * product.
+   */
+  public BitMatrix times (BitMatrix B)
+  {
+    if (cols != B.rows)
+      throw new IncompatibleMatrixDimensionException(B.rows,B.cols,rows,cols);
+
+    BitMatrix C = new BitMatrix(rows,B.cols);
+    long[] tables = new long[8*256*Math.min(PANEL,C.wordsPerRow)];
+
+    for (int w0 = 0; w0 < C.wordsPerRow; w0 += PANEL)
+      {
+	int width = Math.min(PANEL,C.wordsPerRow-w0);
+
+	for (int k0 = 0; k0 < cols; k0 += 64)
+	  {
+	    tabulate(B,k0,Math.min(64,cols-k0),w0,width,tables);
+	    orCombinations(this,k0 >>> 6,tables,C,w0,width,0,rows,-1,-1);
+	  }
+      }
+
+    return C;
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the transitive closure of
+   * this square matrix (<i>i.e.</i>, the sum of all its Boolean powers):
+   * its entry <tt>(i,j)</tt> is <tt>true</tt> iff there is a path of
+   * one or more arcs from <tt>i</tt> to <tt>j</tt> in the graph whose
+   * adjacency matrix is this matrix.<p/>
+   *
+   * This is Warshall's algorithm processing 64 intermediate nodes at a
+   * time: the rows of a group <tt>K</tt> of 64 nodes are first closed
+   * through the nodes of <tt>K</tt> by Warshall's algorithm on rows;
+   * then, every other row <tt>i</tt> becomes the <i>or</i> of itself
+   * and of the rows of the nodes <tt>k</tt> of <tt>K</tt> such that
+   * entry <tt>(i,k)</tt> is <tt>true</tt>, which is done by the Four
+   * Russians method as for <tt>times</tt>. This takes
+   * <tt>O(n<sup>3</sup>/512)</tt> word operations for order
+   * <tt>n</tt>.
+   */
+  public BitMatrix closure ()
+  {
+    if (rows != cols)
+      throw new RuntimeException("Cannot compute the closure of a non-square matrix");
+
+    BitMatrix C = new BitMatrix(this);
+    long[] c = C.words;
+    int wpr = wordsPerRow;
+    long[] tables = new long[8*256*Math.min(PANEL,wpr)];
+
+    for (int k0 = 0; k0 < rows; k0 += 64)
+      {
+	int k1 = Math.min(rows,k0+64);
+
+	// close the rows of K through the nodes of K
+	for (int k = k0; k < k1; k++)
+	  for (int i = k0; i < k1; i++)
+	    if (C.isSet(i,k))
+	      for (int w = 0; w < wpr; w++)
+		c[i*wpr+w] |= c[k*wpr+w];
+
+	// or them into the other rows
+	for (int w0 = 0; w0 < wpr; w0 += PANEL)
+	  {
+	    int width = Math.min(PANEL,wpr-w0);
+
+	    tabulate(C,k0,k1-k0,w0,width,tables);
+	    orCombinations(C,k0 >>> 6,tables,C,w0,width,0,rows,k0,k1);
+	  }
+      }
+
+    return C;
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> equal to the reflexive transitive
+   * closure of this square matrix (<i>i.e.</i>, its closure <i>or</i>
+   * the identity).
+   */
+  public BitMatrix reflexiveClosure ()
+  {
+    BitMatrix C = closure();
+
+    for (int i = 0; i < rows; i++)
+      C.words[i*wordsPerRow+(i >>> 6)] |= 1L << i;
+
+    return C;
+  }
+
+  /**
+   * Fill <tt>tables</tt> with the <i>or</i>-combinations of the words
+   * <tt>[w0,w0+width)</tt> of the <tt>count</tt> (at most 64) rows of
+   * <tt>B</tt> from row <tt>k0</tt> on: the <tt>width</tt> words at
+   * <tt>((8*b+mask)*width)</tt> are the <i>or</i> of the rows
+   * <tt>k0+8*b+t</tt> for each bit <tt>t</tt> of <tt>mask</tt>. Each
+   * combination is that of a smaller one and a single row.
+   */
+  static private void tabulate (BitMatrix B, int k0, int count, int w0, int width, long[] tables)
+  {
+    long[] b = B.words;
+    int wpr = B.wordsPerRow;
+
+    for (int g = 0; g < 8; g++)
+      {
+	int table = g*256*width;
+	java.util.Arrays.fill(tables,table,table+width,0L);
+
+	for (int mask = 1; mask < 256; mask++)
+	  {
+	    int low = Integer.numberOfTrailingZeros(mask);
+	    int k = k0+8*g+low;
+	    int dst = table+mask*width, src = table+(mask & (mask-1))*width;
+
+	    if (8*g+low < count)
+	      for (int w = 0, row = k*wpr+w0; w < width; w++)
+		tables[dst+w] = tables[src+w] | b[row+w];
+	    else
+	      System.arraycopy(tables,src,tables,dst,width);
+	  }
+      }
+  }
+
+  /**
+   * For each row <tt>i</tt> in <tt>[from,to)</tt> but not in
+   * <tt>[skip0,skip1)</tt>, <i>or</i> into the words
+   * <tt>[w0,w0+width)</tt> of row <tt>i</tt> of <tt>C</tt> the 8
+   * entries of the <tt>tables</tt> indexed by the bytes of word
+   * <tt>kw</tt> of row <tt>i</tt> of <tt>A</tt>, by blocks of rows in
+   * parallel.
+   */
+  static private void orCombinations (BitMatrix A, int kw, long[] tables,
+				      BitMatrix C, int w0, int width,
+				      int from, int to, int skip0, int skip1)
+  {
+    long[] a = A.words, c = C.words;
+    int aWpr = A.wordsPerRow, cWpr = C.wordsPerRow;
+
+    MatrixTasks.forRowBlocks(to-from,8*width,(first,last) ->
+      {
+	for (int i = from+first; i < from+last; i++)
+	  {
+	    if (i >= skip0 && i < skip1)
+	      continue;
+
+	    long word = a[i*aWpr+kw];
+	    int row = i*cWpr+w0;
+
+	    for (int g = 0; word != 0; g++, word >>>= 8)
+	      {
+		int mask = (int)word & 0xFF;
+
+		if (mask != 0)
+		  for (int w = 0, src = (g*256+mask)*width; w < width; w++)
+		    c[row+w] |= tables[src+w];
+	      }
+	  }
+      });
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Object Methods
+   * </span></h3>
+   */
+
+  /**
+   * Return <tt>true</tt> iff the given object is a <tt>BitMatrix</tt>
+   * of the same dimensions and entries as this one.
+   */
+  public boolean equals (Object other)
+  {
+    if (!(other instanceof BitMatrix))
+      return false;
+
+    BitMatrix B = (BitMatrix)other;
+
+    return rows == B.rows && cols == B.cols && java.util.Arrays.equals(words,B.words);
+  }
+
+  public int hashCode ()
+  {
+    return 31*(31*rows+cols)+java.util.Arrays.hashCode(words);
+  }
+
+  /**
+   * Return a <tt>String</tt> form of this matrix as lines of
+   * <tt>1</tt>'s and <tt>0</tt>'s.
+   */
+  public String toString ()
+  {
+    StringBuilder buf = new StringBuilder();
+
+    for (int row = 0; row < rows; row++)
+      {
+	for (int col = 0; col < cols; col++)
+	  buf.append(isSet(row,col) ? '1' : '0');
+	buf.append('\n');
+      }
+
+    return buf.toString();
+  }
+}
@@ -0,0 +1,340 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/BitMatrixChecks.java
+// STARTED ON. . Wed Apr 22 09:44:21 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>BitMatrix</tt> against
+ * <tt>boolean[][]</tt> arrays: its conversions from and to
+ * <tt>Matrix</tt> under several algebras, its accessors and population
+ * counts, its entry-wise operations, and its product and closures (in
+ * parallel too) against the naive Boolean product and Warshall's
+ * algorithm, for dimensions straddling words, groups of 64 rows and
+ * panels of words. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         BitMatrix
+ * @see         MatrixChecks
+ */
+final class BitMatrixChecks
+{
+  static void run (Random random)
+  {
+    checkConversions(random);
+    checkOperations(random);
+    checkProducts(random);
+    checkClosures(random);
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> array of random
+   * booleans, each <tt>true</tt> with the given probability.
+   */
+  static private boolean[][] randomBits (Random random, int rows, int cols, double density)
+  {
+    boolean[][] bits = new boolean[rows][cols];
+
+    for (int i = 0; i < rows; i++)
+      for (int j = 0; j < cols; j++)
+	bits[i][j] = random.nextDouble() < density;
+
+    return bits;
+  }
+
+  /**
+   * Return a new <tt>BitMatrix</tt> with the given entries, set one by
+   * one.
+   */
+  static private BitMatrix bitMatrix (boolean[][] bits, int cols)
+  {
+    BitMatrix B = new BitMatrix(bits.length,cols);
+
+    for (int i = 0; i < bits.length; i++)
+      for (int j = 0; j < cols; j++)
+	if (bits[i][j])
+	  B.set(i+1,j+1,true);
+
+    return B;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>B</tt> has exactly the given entries,
+   * by <tt>get</tt>, by <tt>nextSetBit</tt> and by population counts,
+   * and the unused bits of its words are <tt>0</tt>.
+   */
+  static private boolean holds (BitMatrix B, boolean[][] bits, int cols)
+  {
+    if (B.rows() != bits.length || B.cols() != cols || B.wordsPerRow() != (cols+63)/64)
+      return false;
+
+    long cardinality = 0;
+
+    for (int i = 0; i < bits.length; i++)
+      {
+	int count = 0, next = B.nextSetBit(i,0);
+
+	for (int j = 0; j < cols; j++)
+	  {
+	    if (B.get(i+1,j+1) != bits[i][j])
+	      return false;
+
+	    if (bits[i][j])
+	      {
+		if (next != j)
+		  return false;
+		next = B.nextSetBit(i,j+1);
+		count++;
+	      }
+	  }
+
+	if (next != -1 || B.rowCardinality(i) != count)
+	  return false;
+
+	cardinality += count;
+
+	if (cols % 64 != 0 && (B.words()[(i+1)*B.wordsPerRow()-1] & (-1L << cols)) != 0)
+	  return false;
+      }
+
+    return B.cardinality() == cardinality;
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> array of the results of
+   * the given operation (<tt>BitMatrix.AND</tt>, <tt>OR</tt> or
+   * <tt>XOR</tt>) on the entries of <tt>a</tt> and <tt>b</tt>.
+   */
+  static private boolean[][] combine (int op, boolean[][] a, boolean[][] b, int cols)
+  {
+    boolean[][] c = new boolean[a.length][cols];
+
+    for (int i = 0; i < a.length; i++)
+      for (int j = 0; j < cols; j++)
+	c[i][j] = op == BitMatrix.AND ? a[i][j] & b[i][j]
+		: op == BitMatrix.OR ? a[i][j] | b[i][j]
+		: a[i][j] ^ b[i][j];
+
+    return c;
+  }
+
+  /**
+   * Return the Boolean product of <tt>a</tt> by <tt>b</tt>, whose
+   * columns number <tt>cols</tt>.
+   */
+  static private boolean[][] product (boolean[][] a, boolean[][] b, int cols)
+  {
+    boolean[][] c = new boolean[a.length][cols];
+
+    for (int i = 0; i < a.length; i++)
+      for (int k = 0; k < b.length; k++)
+	if (a[i][k])
+	  for (int j = 0; j < cols; j++)
+	    c[i][j] |= b[k][j];
+
+    return c;
+  }
+
+  /**
+   * Return the transitive closure of <tt>a</tt> by Warshall's algorithm.
+   */
+  static private boolean[][] warshall (boolean[][] a)
+  {
+    int n = a.length;
+    boolean[][] c = new boolean[n][];
+
+    for (int i = 0; i < n; i++)
+      c[i] = a[i].clone();
+
+    for (int k = 0; k < n; k++)
+      for (int i = 0; i < n; i++)
+	if (c[i][k])
+	  for (int j = 0; j < n; j++)
+	    c[i][j] |= c[k][j];
+
+    return c;
+  }
+
+  static private void checkConversions (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int trial = 0; trial < 20; trial++)
+	      {
+		int m = 1+random.nextInt(150), n = 1+random.nextInt(150);
+		Matrix M = SparseChecks.randomSparse(random,m,n,random.nextDouble());
+		Matrix V = new Matrix(n+1,m+2).fill(Double.NaN).submatrix(2,n+1,3,m+2).update(M.transpose());
+		boolean[][] bits = new boolean[m][n];
+		String what = algebra+" "+m+"x"+n+" bit matrix";
+
+		for (int i = 0; i < m; i++)
+		  for (int j = 0; j < n; j++)
+		    bits[i][j] = M.get(i+1,j+1) != algebra.zero();
+
+		BitMatrix B = new BitMatrix(M);
+		MatrixChecks.check(holds(B,bits,n),what);
+		MatrixChecks.check(new BitMatrix(V.transposed()).equals(B),what+" of a transposed view");
+		MatrixChecks.check(new BitMatrix(M,algebra.zero()).equals(B),what+" with the zero given");
+		MatrixChecks.check(new BitMatrix(B.toMatrix()).equals(B),what+": toMatrix");
+
+		// with another zero: one of the entries of M
+		double zero = M.get(1+random.nextInt(m),1+random.nextInt(n));
+		boolean[][] others = new boolean[m][n];
+		for (int i = 0; i < m; i++)
+		  for (int j = 0; j < n; j++)
+		    others[i][j] = M.get(i+1,j+1) != zero;
+		MatrixChecks.check(holds(new BitMatrix(M,zero),others,n),what+" with another zero");
+
+		Matrix expected = new Matrix(m,n).fill(algebra.zero());
+		for (int i = 0; i < m; i++)
+		  for (int j = 0; j < n; j++)
+		    if (bits[i][j])
+		      expected.set(i+1,j+1,algebra.one());
+		MatrixChecks.check(B.toMatrix().equals(expected),what+": toMatrix entries");
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+
+    for (int n : new int[] { 1, 63, 64, 65, 200 })
+      {
+	boolean[][] bits = new boolean[n][n];
+	for (int i = 0; i < n; i++)
+	  bits[i][i] = true;
+	MatrixChecks.check(holds(BitMatrix.identity(n),bits,n) && BitMatrix.identity(n).equals(bitMatrix(bits,n))
+			   && BitMatrix.identity(n).hashCode() == bitMatrix(bits,n).hashCode(),
+			   "bit identity of order "+n);
+      }
+  }
+
+  static private void checkOperations (Random random)
+  {
+    for (int trial = 0; trial < 100; trial++)
+      {
+	int m = 1+random.nextInt(100), n = 1+random.nextInt(200);
+	boolean[][] a = randomBits(random,m,n,random.nextDouble());
+	boolean[][] b = randomBits(random,m,n,random.nextDouble());
+	BitMatrix A = bitMatrix(a,n), B = bitMatrix(b,n);
+	String what = m+"x"+n+" bit matrices";
+
+	MatrixChecks.check(holds(A,a,n) && holds(new BitMatrix(A),a,n),what);
+	MatrixChecks.check(holds(A.and(B),combine(BitMatrix.AND,a,b,n),n),what+": and");
+	MatrixChecks.check(holds(A.or(B),combine(BitMatrix.OR,a,b,n),n),what+": or");
+	MatrixChecks.check(holds(A.xor(B),combine(BitMatrix.XOR,a,b,n),n),what+": xor");
+
+	// in place, on a copy which must not share the words of A
+	BitMatrix C = new BitMatrix(A);
+	MatrixChecks.check(C.i_or(B) == C && holds(C,combine(BitMatrix.OR,a,b,n),n),what+": i_or");
+	MatrixChecks.check(C.i_xor(B) == C && holds(C,combine(BitMatrix.XOR,combine(BitMatrix.OR,a,b,n),b,n),n),
+			   what+": i_xor");
+	MatrixChecks.check(C.i_and(A) == C && holds(A,a,n),what+": i_and");
+
+	int i = 1+random.nextInt(m), j = 1+random.nextInt(n);
+	a[i-1][j-1] = !a[i-1][j-1];
+	MatrixChecks.check(holds(A.set(i,j,a[i-1][j-1]),a,n) && !A.equals(new BitMatrix(A).set(i,j,!a[i-1][j-1])),
+			   what+": set");
+      }
+
+    BitMatrix A = new BitMatrix(3,70);
+    MatrixChecks.check(MatrixChecks.fails(() -> A.and(new BitMatrix(3,71)))
+		       && MatrixChecks.fails(() -> A.i_or(new BitMatrix(4,70)))
+		       && MatrixChecks.fails(() -> A.get(4,1))
+		       && MatrixChecks.fails(() -> A.set(1,71,true)),"bit matrices of incompatible dimensions");
+  }
+
+  static private void checkProducts (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	for (int trial = 0; trial < 60; trial++)
+	  {
+	    // some products wider than a panel of words
+	    int m = 1+random.nextInt(150), k = 1+random.nextInt(150);
+	    int n = trial % 20 == 0 ? 64*BitMatrix.PANEL+1+random.nextInt(200) : 1+random.nextInt(150);
+	    boolean[][] a = randomBits(random,m,k,random.nextDouble()/4);
+	    boolean[][] b = randomBits(random,k,n,random.nextDouble()/4);
+	    BitMatrix A = bitMatrix(a,k), B = bitMatrix(b,n);
+	    String what = "product of "+m+"x"+k+" by "+k+"x"+n+" bit matrices";
+
+	    Matrix.setParallel(false);
+	    BitMatrix C = A.times(B);
+	    MatrixChecks.check(holds(C,product(a,b,n),n),what);
+
+	    Matrix.setParallel(true);
+	    Matrix.setParallelThreshold(1);
+	    Matrix.setForkJoinPool(pool);
+	    MatrixChecks.check(A.times(B).equals(C),what+" in parallel");
+	  }
+
+	MatrixChecks.check(MatrixChecks.fails(() -> new BitMatrix(3,4).times(new BitMatrix(3,4))),
+			   "product of bit matrices of incompatible dimensions");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+
+  static private void checkClosures (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	for (int trial = 0; trial < 60; trial++)
+	  {
+	    // sparse enough for long paths, and some orders of several
+	    // groups of 64 nodes
+	    int n = trial % 10 == 0 ? 200+random.nextInt(100) : 1+random.nextInt(100);
+	    boolean[][] a = randomBits(random,n,n,random.nextDouble()*2/n);
+	    BitMatrix A = bitMatrix(a,n);
+	    boolean[][] expected = warshall(a);
+	    String what = "closure of an order "+n+" bit matrix";
+
+	    Matrix.setParallel(false);
+	    BitMatrix C = A.closure();
+	    MatrixChecks.check(holds(C,expected,n) && holds(A,a,n),what);
+
+	    for (int i = 0; i < n; i++)
+	      expected[i][i] = true;
+	    MatrixChecks.check(holds(A.reflexiveClosure(),expected,n),"reflexive "+what);
+
+	    Matrix.setParallel(true);
+	    Matrix.setParallelThreshold(1);
+	    Matrix.setForkJoinPool(pool);
+	    MatrixChecks.check(A.closure().equals(C),what+" in parallel");
+	  }
+
+	MatrixChecks.check(MatrixChecks.fails(() -> new BitMatrix(3,4).closure()),
+			   "closure of a non-square bit matrix");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+}
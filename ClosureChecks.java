@@ -0,0 +1,436 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ClosureChecks.java
+// STARTED ON. . Tue Apr 21 10:12:36 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking the powers and closures of
+ * <tt>Matrix</tt>: powers under several algebras against repeated
+ * products; closures under the <tt>MaxMinAlgebra</tt>, the
+ * <tt>MinPlusAlgebra</tt> and the <tt>MaxPlusAlgebra</tt>, by squaring
+ * and by elimination (including orders above the <tt>BLOCK</tt> of the
+ * blocked elimination), against the Floyd-Warshall algorithm, and their
+ * failure on a cycle of negative (resp., positive) length; closures
+ * under the <tt>StandardAlgebra</tt> against their series, and their
+ * failure when it diverges; and <tt>ShortestPaths</tt>, by each method
+ * from dense and sparse arc lengths, against the Floyd-Warshall
+ * algorithm, with paths that are shortest. It is run by
+ * <tt>MatrixChecks</tt>.
+ *
+ * @see         MatrixClosure
+ * @see         ShortestPaths
+ * @see         MatrixChecks
+ */
+final class ClosureChecks
+{
+  static void run (Random random)
+  {
+    checkPowers(random);
+    checkMaxMinClosures(random);
+    checkMinPlusClosures(random);
+    checkMaxPlusClosures(random);
+    checkStandardClosures(random);
+    checkShortestPaths(random);
+  }
+
+  /**
+   * Return the closure of the given arc weights under the current
+   * idempotent algebra (<i>e.g.</i>, under the <tt>MinPlusAlgebra</tt>,
+   * the lengths of the shortest non-empty paths) computed by the
+   * Floyd-Warshall algorithm, assuming that no cycle improves a path.
+   */
+  static double[][] floydWarshall (double[][] weights)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int n = weights.length;
+    double[][] d = new double[n][];
+
+    for (int i = 0; i < n; i++)
+      d[i] = weights[i].clone();
+
+    for (int k = 0; k < n; k++)
+      for (int i = 0; i < n; i++)
+	for (int j = 0; j < n; j++)
+	  d[i][j] = algebra.sum(d[i][j],algebra.product(d[i][k],d[k][j]));
+
+    return d;
+  }
+
+  /**
+   * Return a new matrix equal to <tt>C</tt> with the algebra's
+   * <tt>one()</tt> added to its diagonal.
+   */
+  static Matrix reflexive (Matrix C)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    Matrix R = C.copy();
+
+    for (int i = 1; i <= R.rows(); i++)
+      R.set(i,i,algebra.sum(algebra.one(),R.get(i,i)));
+
+    return R;
+  }
+
+  /**
+   * Return <tt>true</tt> iff the closure of <tt>weights</tt> by the
+   * given <tt>method</tt> throws a <tt>RuntimeException</tt>.
+   */
+  static boolean closureFails (double[][] weights, int method)
+  {
+    return MatrixChecks.fails(() -> new Matrix(weights).closure(method));
+  }
+
+  static private void checkPowers (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int trial = 0; trial < 20; trial++)
+	      {
+		int n = 1+random.nextInt(40);
+		Matrix A = new Matrix(n,n);
+
+		// multiples of 1/8, which add up exactly, so that the
+		// powers in the other algebras do not depend on the
+		// order of the products
+		for (int i = 1; i <= n; i++)
+		  for (int j = 1; j <= n; j++)
+		    A.set(i,j,random.nextInt(16)/8.0);
+		if (standard)
+		  A.i_scale(1.0/n);
+		Matrix P = MatrixClosure.unit(algebra,n);
+
+		for (int k = 0; k <= 12; k++)
+		  {
+		    MatrixChecks.check(MatrixChecks.distance(A.power(k),P) <= ProductChecks.tolerance(n*k),
+				       algebra+" power "+k+" of order "+n);
+		    P = ProductChecks.naiveProduct(P,A);
+		  }
+	      }
+	  }
+
+	MatrixChecks.check(MatrixChecks.fails(() -> new Matrix(3,4).power(2))
+			   && MatrixChecks.fails(() -> new Matrix(3,3).power(-1)),"illegal matrix power");
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkMaxMinClosures (Random random)
+  {
+    int[] methods = { Matrix.CLOSURE_BY_SQUARING, Matrix.CLOSURE_BY_ELIMINATION };
+
+    try
+      {
+	NumberAlgebra.setCurrentAlgebra(NumberAlgebra.maxMinAlgebra());
+
+	for (int trial = 0; trial < 50; trial++)
+	  {
+	    // a large one above the block of the elimination, and some
+	    // sparse ones closed by squaring by default
+	    int n = trial == 0 ? MatrixClosure.BLOCK+44 : 1+random.nextInt(40);
+	    double density = trial % 4 == 1 ? 0.05 : random.nextDouble();
+	    Matrix A = SparseChecks.randomSparse(random,n,n,density);
+	    Matrix expected = new Matrix(floydWarshall(A.data()));
+	    String what = "max-min closure of order "+n;
+
+	    for (int method : methods)
+	      MatrixChecks.check(A.closure(method).equals(expected),what+" by method "+method);
+	    MatrixChecks.check(A.closure().equals(expected),what);
+	    MatrixChecks.check(A.reflexiveClosure().equals(reflexive(expected)),"reflexive "+what);
+	  }
+
+	MatrixChecks.check(MatrixChecks.fails(() -> new Matrix(3,4).closure())
+			   && MatrixChecks.fails(() -> new Matrix(3,3).closure(2)),"illegal closure");
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkMinPlusClosures (Random random)
+  {
+    double infinity = Double.POSITIVE_INFINITY;
+    int[] methods = { Matrix.CLOSURE_BY_SQUARING, Matrix.CLOSURE_BY_ELIMINATION };
+
+    try
+      {
+	NumberAlgebra.setCurrentAlgebra(NumberAlgebra.minPlusAlgebra());
+
+	for (int trial = 0; trial < 50; trial++)
+	  {
+	    // arcs going up are in [-10,10] and those going down (or
+	    // loops) are at least 10n, so that no cycle is negative as
+	    // it has at least one arc going down and at most n-1 up; the
+	    // first one is larger than the block of the elimination
+	    int n = trial == 0 ? MatrixClosure.BLOCK+44 : 1+random.nextInt(30);
+	    double[][] lengths = new double[n][n];
+
+	    for (int i = 0; i < n; i++)
+	      for (int j = 0; j < n; j++)
+		lengths[i][j] = random.nextDouble() < 0.3
+			      ? (j > i ? random.nextInt(21)-10 : 10*n+random.nextInt(11))
+			      : infinity;
+
+	    Matrix expected = new Matrix(floydWarshall(lengths));
+
+	    for (int method : methods)
+	      MatrixChecks.check(new Matrix(lengths).closure(method).equals(expected),
+				 "min-plus closure by method "+method+" of order "+n);
+	    MatrixChecks.check(new Matrix(lengths).reflexiveClosure().equals(reflexive(expected)),
+			       "reflexive min-plus closure of order "+n);
+
+	    // close a cycle 0 -> 1 -> ... -> n-1 -> 0 of negative length
+	    if (n > 1)
+	      {
+		for (int i = 0; i < n-1; i++)
+		  lengths[i][i+1] = -10;
+		lengths[n-1][0] = 5;
+	      }
+	    else
+	      lengths[0][0] = -1;
+
+	    for (int method : methods)
+	      MatrixChecks.check(closureFails(lengths,method),
+				 "min-plus closure by method "+method+" of order "+n+" with a negative cycle");
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkMaxPlusClosures (Random random)
+  {
+    int[] methods = { Matrix.CLOSURE_BY_SQUARING, Matrix.CLOSURE_BY_ELIMINATION };
+
+    try
+      {
+	NumberAlgebra.setCurrentAlgebra(NumberAlgebra.maxPlusAlgebra());
+
+	for (int trial = 0; trial < 50; trial++)
+	  {
+	    // the opposite of the min-plus lengths above, so that no
+	    // cycle is positive
+	    int n = trial == 0 ? MatrixClosure.BLOCK+44 : 1+random.nextInt(30);
+	    double[][] lengths = new double[n][n];
+
+	    for (int i = 0; i < n; i++)
+	      for (int j = 0; j < n; j++)
+		lengths[i][j] = random.nextDouble() < 0.3
+			      ? (j > i ? 10-random.nextInt(21) : -10*n-random.nextInt(11))
+			      : Double.NEGATIVE_INFINITY;
+
+	    Matrix expected = new Matrix(floydWarshall(lengths));
+
+	    for (int method : methods)
+	      MatrixChecks.check(new Matrix(lengths).closure(method).equals(expected),
+				 "max-plus closure by method "+method+" of order "+n);
+	    MatrixChecks.check(new Matrix(lengths).reflexiveClosure().equals(reflexive(expected)),
+			       "reflexive max-plus closure of order "+n);
+
+	    // close a cycle 0 -> 1 -> ... -> n-1 -> 0 of positive length
+	    if (n > 1)
+	      {
+		for (int i = 0; i < n-1; i++)
+		  lengths[i][i+1] = 10;
+		lengths[n-1][0] = -5;
+	      }
+	    else
+	      lengths[0][0] = 1;
+
+	    for (int method : methods)
+	      MatrixChecks.check(closureFails(lengths,method),
+				 "max-plus closure by method "+method+" of order "+n+" with a positive cycle");
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkStandardClosures (Random random)
+  {
+    for (int trial = 0; trial < 20; trial++)
+      {
+	// rows summing to less than 1/2, so that the series converges
+	int n = 1+random.nextInt(30);
+	Matrix A = MatrixChecks.randomMatrix(random,n,n).scale(1.0/(2*n));
+	Matrix expected = A.copy(), P = A.copy();
+
+	for (int k = 2; k <= 60; k++)
+	  expected.i_plus(P = ProductChecks.naiveProduct(P,A));
+
+	MatrixChecks.check(MatrixChecks.distance(A.closure(),expected) <= 1e-12,"closure of order "+n);
+	MatrixChecks.check(MatrixChecks.distance(A.reflexiveClosure(),reflexive(expected)) <= 1e-12,
+			   "reflexive closure of order "+n);
+      }
+
+    MatrixChecks.check(MatrixChecks.fails(() -> new Matrix(3,3).fill(1.0).closure()),"closure of a divergent series");
+  }
+
+  /**
+   * Return a new <tt>n</tt>-by-<tt>n</tt> matrix of random integer arc
+   * lengths with the given <tt>density</tt> (other entries being
+   * <tt>POSITIVE_INFINITY</tt>): in <tt>[0,20]</tt> if
+   * <tt>nonNegative</tt>, and otherwise as those of the min-plus
+   * closures above, so that there is no cycle of negative length.
+   */
+  static private Matrix randomLengths (Random random, int n, double density, boolean nonNegative)
+  {
+    Matrix M = new Matrix(n,n).fill(Double.POSITIVE_INFINITY);
+
+    for (int i = 1; i <= n; i++)
+      for (int j = 1; j <= n; j++)
+	if (random.nextDouble() < density)
+	  M.set(i,j,nonNegative ? random.nextInt(21) : j > i ? random.nextInt(21)-10 : 10*n+random.nextInt(11));
+
+    return M;
+  }
+
+  /**
+   * Check the given shortest <tt>paths</tt> of the graph of the given arc
+   * <tt>lengths</tt> against its <tt>expected</tt> distances.
+   */
+  static private void checkPaths (ShortestPaths paths, Matrix lengths, Matrix expected, String what)
+  {
+    int n = lengths.rows();
+
+    MatrixChecks.check(paths.order() == n && paths.distances().equals(expected),what+": distances");
+
+    if (!paths.hasPredecessors())
+      {
+	MatrixChecks.check(MatrixChecks.fails(() -> paths.predecessor(1,n)),what+": path without predecessors");
+	return;
+      }
+
+    for (int i = 1; i <= n; i++)
+      for (int j = 1; j <= n; j++)
+	{
+	  int[] path = paths.path(i,j);
+
+	  if (expected.get(i,j) == Double.POSITIVE_INFINITY)
+	    {
+	      MatrixChecks.check(path == null && paths.predecessor(i,j) == 0,
+				 what+": path from "+i+" to unreachable "+j);
+	      continue;
+	    }
+
+	  MatrixChecks.check(path != null && path[0] == i && path[path.length-1] == j,
+			     what+": path from "+i+" to "+j);
+	  MatrixChecks.check(i == j ? path.length == 1 && paths.predecessor(i,j) == 0
+				    : paths.predecessor(i,j) == path[path.length-2],
+			     what+": predecessor of "+j+" from "+i);
+
+	  double length = 0.0;
+	  for (int k = 1; k < path.length; k++)
+	    length += lengths.get(path[k-1],path[k]);
+	  MatrixChecks.check(length == expected.get(i,j),
+			     what+": path from "+i+" to "+j+" of length "+length+" instead of "+expected.get(i,j));
+	}
+  }
+
+  static private void checkShortestPaths (Random random)
+  {
+    MatrixContext minPlus = MatrixContext.current().withAlgebra(NumberAlgebra.minPlusAlgebra());
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	for (int trial = 0; trial < 60; trial++)
+	  {
+	    // a few graphs spanning several blocks of the Floyd-Warshall
+	    // method, some of them in parallel execution mode
+	    int n = trial % 10 == 0 ? 2*ShortestPaths.BLOCK+random.nextInt(ShortestPaths.BLOCK) : 1+random.nextInt(40);
+	    double density = trial % 2 == 0 ? 0.05 : 0.1+random.nextDouble()/2;
+	    boolean nonNegative = trial % 3 != 0;
+	    Matrix lengths = randomLengths(random,n,density,nonNegative);
+	    SparseMatrix arcs = minPlus.call(() -> new SparseMatrix(lengths,false));
+	    Matrix expected = minPlus.call(() -> reflexive(new Matrix(floydWarshall(lengths.data()))));
+	    boolean negative = false;
+
+	    for (int k = 0; k < arcs.nonZeros(); k++)
+	      negative |= arcs.values()[k] < 0.0;
+
+	    Matrix.setParallel(trial % 20 == 0);
+	    Matrix.setParallelThreshold(1);
+	    Matrix.setForkJoinPool(pool);
+
+	    for (boolean withPredecessors : new boolean[] { false, true })
+	      {
+		String graph = n+"-vertex graph of density "+(float)density
+			     +(negative ? " with negative lengths" : "")
+			     +(withPredecessors ? " with predecessors" : "");
+
+		// the method chosen by default, as documented
+		ShortestPaths paths = new ShortestPaths(lengths,withPredecessors);
+		int chosen = arcs.nonZeros() >= MatrixClosure.DENSE_FRACTION*n*n ? ShortestPaths.FLOYD_WARSHALL
+			   : !negative ? ShortestPaths.DIJKSTRA
+			   : withPredecessors ? ShortestPaths.FLOYD_WARSHALL : ShortestPaths.SQUARING;
+		MatrixChecks.check(paths.method() == chosen && paths.hasPredecessors() == withPredecessors,
+				   "method chosen for a "+graph);
+		checkPaths(paths,lengths,expected,"shortest paths of a "+graph);
+		checkPaths(new ShortestPaths(arcs,withPredecessors),lengths,expected,
+			   "sparse shortest paths of a "+graph);
+
+		for (int method : new int[] { ShortestPaths.FLOYD_WARSHALL, ShortestPaths.SQUARING,
+					      ShortestPaths.DIJKSTRA })
+		  {
+		    String what = "shortest paths by method "+method+" of a "+graph;
+
+		    if (method == ShortestPaths.SQUARING && withPredecessors
+			|| method == ShortestPaths.DIJKSTRA && negative)
+		      {
+			int m = method;
+			MatrixChecks.check(MatrixChecks.fails(() -> new ShortestPaths(lengths,withPredecessors,m)),
+					   what+" computed");
+			continue;
+		      }
+
+		    checkPaths(new ShortestPaths(lengths,withPredecessors,method),lengths,expected,what);
+		    checkPaths(new ShortestPaths(arcs,withPredecessors,method),lengths,expected,"sparse "+what);
+		  }
+	      }
+	  }
+
+	// a cycle 1 -> 2 -> 3 -> 1 of negative length
+	Matrix lengths = randomLengths(random,5,0.3,true);
+	lengths.set(1,2,-3.0);
+	lengths.set(2,3,1.0);
+	lengths.set(3,1,1.0);
+	for (int method : new int[] { ShortestPaths.FLOYD_WARSHALL, ShortestPaths.SQUARING })
+	  MatrixChecks.check(MatrixChecks.fails(() -> new ShortestPaths(lengths,false,method))
+			     && MatrixChecks.fails(() -> new ShortestPaths(lengths,
+									   method == ShortestPaths.FLOYD_WARSHALL,
+									   method)),
+			     "shortest paths by method "+method+" with a negative cycle");
+	MatrixChecks.check(MatrixChecks.fails(() -> new ShortestPaths(new Matrix(3,4))),
+			   "shortest paths of a non-square matrix");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+}
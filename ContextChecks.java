@@ -0,0 +1,141 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ContextChecks.java
+// STARTED ON. . Thu Apr 16 15:26:44 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking the bindings of
+ * <tt>MatrixContext</tt>: that the parameters of a bound context are in
+ * effect exactly within its extent (nested or not, and however it is
+ * left), and that computations bound to contexts with different
+ * algebras, in concurrent platform and virtual threads and on the
+ * fork/join pool, compute the same products as when each algebra is
+ * the process-wide one. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         MatrixContext
+ * @see         MatrixChecks
+ */
+final class ContextChecks
+{
+  static void run (Random random)
+  {
+    checkBindings();
+    checkConcurrentContexts(random);
+  }
+
+  static private void checkBindings ()
+  {
+    NumberAlgebra global = NumberAlgebra.getCurrentAlgebra();
+    int digits = Matrix.currentSignificantDigits();
+    MatrixContext outer = MatrixContext.current().withAlgebra(NumberAlgebra.maxMinAlgebra())
+						 .withSignificantDigits(digits+1);
+    MatrixContext inner = outer.withAlgebra(NumberAlgebra.minPlusAlgebra());
+
+    MatrixChecks.check(MatrixContext.bound() == null,"a context is bound at the start");
+
+    outer.run(() ->
+      {
+	MatrixChecks.check(MatrixContext.bound() == outer && MatrixContext.current() == outer,
+			   "outer context not bound");
+	MatrixChecks.check(NumberAlgebra.getCurrentAlgebra() == NumberAlgebra.maxMinAlgebra(),
+			   "algebra of the outer context");
+	MatrixChecks.check(Matrix.currentSignificantDigits() == digits+1,
+			   "significant digits of the outer context");
+
+	NumberAlgebra algebra = inner.call(() -> NumberAlgebra.getCurrentAlgebra());
+	MatrixChecks.check(algebra == NumberAlgebra.minPlusAlgebra(),"algebra of the inner context");
+	MatrixChecks.check(MatrixContext.bound() == outer,"outer context not restored");
+
+	MatrixChecks.check(MatrixChecks.fails(() -> inner.run(() ->
+	  {
+	    throw new RuntimeException("leaving the inner context");
+	  })),"exception lost");
+	MatrixChecks.check(MatrixContext.bound() == outer,"outer context not restored after an exception");
+      });
+
+    MatrixChecks.check(MatrixContext.bound() == null,"a context is still bound");
+    MatrixChecks.check(NumberAlgebra.getCurrentAlgebra() == global,"process-wide algebra changed");
+    MatrixChecks.check(Matrix.currentSignificantDigits() == digits,"process-wide significant digits changed");
+  }
+
+  static private void checkConcurrentContexts (Random random)
+  {
+    NumberAlgebra[] algebras = ProductChecks.ALGEBRAS;
+    Matrix[] A = new Matrix[2*algebras.length], B = new Matrix[A.length], C = new Matrix[A.length];
+    Matrix[] results = new Matrix[A.length];
+
+    try
+      {
+	for (int t = 0; t < A.length; t++)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebras[t%algebras.length]);
+	    A[t] = MatrixChecks.randomMatrix(random,150+t,120);
+	    B[t] = MatrixChecks.randomMatrix(random,120,130);
+	    C[t] = A[t].times(B[t]);
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Thread[] threads = new Thread[A.length];
+
+    try
+      {
+	// half the threads are virtual; all the products run in
+	// parallel on the same pool, whose workers are shared by
+	// computations under different algebras
+	Matrix.setParallel(true);
+	Matrix.setParallelThreshold(1);
+	Matrix.setForkJoinPool(pool);
+
+	for (int t = 0; t < A.length; t++)
+	  {
+	    int index = t;
+	    MatrixContext context = MatrixContext.current().withAlgebra(algebras[t%algebras.length]);
+	    Runnable product = () -> results[index] = context.call(() ->
+	      {
+		Matrix P = null;
+		for (int round = 0; round < 5; round++)
+		  P = A[index].times(B[index]);
+		return P;
+	      });
+
+	    threads[t] = t < algebras.length ? Thread.ofPlatform().start(product)
+					     : Thread.ofVirtual().start(product);
+	  }
+
+	for (Thread thread : threads)
+	  thread.join();
+      }
+    catch (InterruptedException e)
+      {
+	throw new RuntimeException(e);
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+
+    for (int t = 0; t < A.length; t++)
+      MatrixChecks.check(results[t] != null && MatrixChecks.distance(results[t],C[t]) == 0.0,
+			 "product in a context with the "+algebras[t%algebras.length]);
+
+    MatrixChecks.check(NumberAlgebra.getCurrentAlgebra() == NumberAlgebra.standardAlgebra(),
+		       "process-wide algebra changed by bound contexts");
+  }
+}
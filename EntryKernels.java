@@ -0,0 +1,179 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/EntryKernels.java
+// STARTED ON. . Fri Jan 17 11:40:26 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class gathering the kernels used by
+ * <tt>Matrix</tt> for its entry-wise operations on one row (or any run
+ * of consecutive entries) of a flat entries array.<p/>
+ *
+ * The <tt>NumberAlgebra</tt> of an operation is resolved once by the
+ * caller and its <a href="NumberAlgebra.html#kindOf(hlt.math.matrix.NumberAlgebra)">kind</a>
+ * selects a loop specialized for it: the loops for the
+ * <tt>StandardAlgebra</tt>, the <tt>MaxMinAlgebra</tt>, and the
+ * tropical algebras use native arithmetic and
+ * <tt>Math.max</tt>/<tt>Math.min</tt> (or the SIMD
+ * kernels of <tt>VectorKernels</tt> when <a
+ * href="Vectorization.html">vectorization</a> is enabled) and so
+ * contain no call that the JIT cannot inline; only the loop for other
+ * algebras calls the algebra's methods, from a single call site per
+ * operation.
+ *
+ * @see         Matrix
+ * @see         NumberAlgebra
+ */
+final class EntryKernels
+{
+  /**
+   * Codes for the binary entry-wise operations performed by
+   * <tt>combine</tt>.
+   */
+  static final int SUM = 0, DIFFERENCE = 1;
+
+  /**
+   * Codes for the unary entry-wise operations performed by
+   * <tt>map</tt>.
+   */
+  static final int NEGATION = 0, SCALE = 1;
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the <tt>SUM</tt> or
+   * <tt>DIFFERENCE</tt> (according to <tt>op</tt>) of
+   * <tt>a[aOffset+i]</tt> and <tt>b[bOffset+i]</tt> in the given
+   * <tt>algebra</tt> of the given <tt>kind</tt>, for <tt>i</tt> in
+   * <tt>[0,length)</tt>.
+   */
+  static void combine (int op, int kind, NumberAlgebra algebra,
+		       double[] a, int aOffset, double[] b, int bOffset,
+		       double[] c, int cOffset, int length)
+  {
+    if (kind == NumberAlgebra.STANDARD)
+      {
+	if (Vectorization.ENABLED)
+	  {
+	    if (op == SUM)
+	      VectorKernels.add(a,aOffset,b,bOffset,c,cOffset,length);
+	    else
+	      VectorKernels.subtract(a,aOffset,b,bOffset,c,cOffset,length);
+	  }
+	else if (op == SUM)
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = a[aOffset+i] + b[bOffset+i];
+	else
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = a[aOffset+i] - b[bOffset+i];
+	return;
+      }
+
+    if ((kind == NumberAlgebra.MAX_MIN || kind == NumberAlgebra.MAX_PLUS) && op == SUM)
+      {
+	if (Vectorization.ENABLED)
+	  VectorKernels.max(a,aOffset,b,bOffset,c,cOffset,length);
+	else
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = Math.max(a[aOffset+i],b[bOffset+i]);
+	return;
+      }
+
+    if (kind == NumberAlgebra.MIN_PLUS && op == SUM)
+      {
+	if (Vectorization.ENABLED)
+	  VectorKernels.min(a,aOffset,b,bOffset,c,cOffset,length);
+	else
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = Math.min(a[aOffset+i],b[bOffset+i]);
+	return;
+      }
+
+    if (op == SUM)
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = algebra.sum(a[aOffset+i],b[bOffset+i]);
+    else
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = algebra.difference(a[aOffset+i],b[bOffset+i]);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the <tt>NEGATION</tt> in the given
+   * <tt>algebra</tt> of the given <tt>kind</tt> of, or to the
+   * <tt>SCALE</tt> by <tt>factor</tt> of (according to <tt>op</tt>),
+   * <tt>a[aOffset+i]</tt>, for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void map (int op, int kind, NumberAlgebra algebra, double factor,
+		   double[] a, int aOffset, double[] c, int cOffset, int length)
+  {
+    if (op == SCALE)
+      { // N.B.: scaling does not depend on the algebra
+	if (Vectorization.ENABLED)
+	  VectorKernels.scale(factor,a,aOffset,c,cOffset,length);
+	else
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = factor*a[aOffset+i];
+	return;
+      }
+
+    if (kind == NumberAlgebra.STANDARD)
+      {
+	if (Vectorization.ENABLED)
+	  VectorKernels.negate(a,aOffset,c,cOffset,length);
+	else
+	  for (int i = 0; i < length; i++)
+	    c[cOffset+i] = -a[aOffset+i];
+	return;
+      }
+
+    for (int i = 0; i < length; i++)
+      c[cOffset+i] = algebra.negation(a[aOffset+i]);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>c[cOffset+i] &oplus; (a &otimes;
+   * b[bOffset+i])</tt> in the given <tt>algebra</tt> of the given
+   * <tt>kind</tt>, for <tt>i</tt> in <tt>[0,length)</tt>. This is the
+   * row update of sparse products, where <tt>a</tt> is a stored entry of
+   * a sparse operand and <tt>b</tt> a row of the other operand.
+   */
+  static void accumulate (int kind, NumberAlgebra algebra, double a,
+			  double[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    if (kind == NumberAlgebra.STANDARD)
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] += a*b[bOffset+i];
+    else if (kind == NumberAlgebra.MAX_MIN)
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = Math.max(c[cOffset+i],Math.min(a,b[bOffset+i]));
+    else if (kind == NumberAlgebra.MIN_PLUS)
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = Math.min(c[cOffset+i],a+b[bOffset+i]);
+    else if (kind == NumberAlgebra.MAX_PLUS)
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = Math.max(c[cOffset+i],a+b[bOffset+i]);
+    else
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = algebra.sum(c[cOffset+i],algebra.product(a,b[bOffset+i]));
+  }
+
+  /**
+   * Return <tt>x &otimes; y</tt> in the given <tt>algebra</tt> of the
+   * given <tt>kind</tt>: the scalar counterpart of these kernels, used
+   * by the sparse products and the closure by elimination.
+   */
+  static double product (int kind, NumberAlgebra algebra, double x, double y)
+  {
+    if (kind == NumberAlgebra.STANDARD)
+      return x*y;
+
+    if (kind == NumberAlgebra.MIN_PLUS || kind == NumberAlgebra.MAX_PLUS)
+      return x+y;
+
+    if (kind == NumberAlgebra.MAX_MIN)
+      return Math.min(x,y);
+
+    return algebra.product(x,y);
+  }
+}
@@ -0,0 +1,272 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ExpressionChecks.java
+// STARTED ON. . Mon Apr 20 14:05:52 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This is a non-public class checking <tt>MatrixExpression</tt>: that
+ * random expressions (with shared and repeated subexpressions, maps,
+ * and products with entry-wise epilogues), evaluated at once under
+ * several algebras, compute the same matrices as the eager
+ * <tt>Matrix</tt> operations they stand for, whether into a new matrix
+ * or into a given one (a view, or an operand of the expression itself),
+ * for rows longer than the chunks they are fused by, and in parallel.
+ * It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         MatrixExpression
+ * @see         MatrixChecks
+ */
+final class ExpressionChecks
+{
+  static void run (Random random)
+  {
+    checkExpressions(random);
+    checkTargets(random);
+    checkParallelExpressions(random);
+  }
+
+  /**
+   * The functions applied by <tt>map</tt>.
+   */
+  static private final DoubleUnaryOperator[] FUNCTIONS =
+    { x -> x/3, x -> Math.min(x,0.5), x -> x*x+1e-13 };
+
+  /**
+   * A lazy expression together with the value computed eagerly by the
+   * operations it is built with.
+   */
+  static private final class Expression
+  {
+    final MatrixExpression lazy;
+    final Matrix eager;
+
+    Expression (MatrixExpression lazy, Matrix eager)
+    {
+      this.lazy = lazy;
+      this.eager = eager;
+    }
+  }
+
+  /**
+   * Return a new matrix applying <tt>function</tt> to each entry of
+   * <tt>M</tt>, truncated.
+   */
+  static private Matrix map (Matrix M, DoubleUnaryOperator function)
+  {
+    Matrix result = new Matrix(M.rows(),M.cols());
+
+    for (int i = 1; i <= M.rows(); i++)
+      for (int j = 1; j <= M.cols(); j++)
+	result.set(i,j,Matrix.truncate(function.applyAsDouble(M.get(i,j))));
+
+    return result;
+  }
+
+  /**
+   * Return a random expression of the given <tt>depth</tt> whose value
+   * is an <tt>m</tt>-by-<tt>n</tt> matrix, over the given
+   * <tt>leaves</tt> of that size and <tt>factors</tt> of size
+   * <tt>n</tt>-by-<tt>n</tt>, using differences and negations iff
+   * <tt>standard</tt>.
+   */
+  static private Expression randomExpression (Random random, int depth, Matrix[] leaves, Matrix[] factors,
+					      boolean standard)
+  {
+    if (depth == 0)
+      {
+	Matrix M = leaves[random.nextInt(leaves.length)];
+	return new Expression(M.lazy(),M);
+      }
+
+    Expression E = randomExpression(random,depth-1,leaves,factors,standard);
+
+    switch (random.nextInt(8))
+      {
+      case 0:
+	{
+	  // a repeated subexpression
+	  return new Expression(E.lazy.plus(E.lazy),E.eager.plus(E.eager));
+	}
+      case 1:
+	{
+	  double factor = 2*random.nextDouble()-1;
+	  return new Expression(E.lazy.scale(factor),E.eager.scale(factor));
+	}
+      case 2:
+	{
+	  DoubleUnaryOperator function = FUNCTIONS[random.nextInt(FUNCTIONS.length)];
+	  return new Expression(E.lazy.map(function),map(E.eager,function));
+	}
+      case 3:
+	{
+	  Matrix K = factors[random.nextInt(factors.length)];
+	  if (random.nextBoolean())
+	    return new Expression(E.lazy.times(K),E.eager.times(K));
+	  // a product whose second factor is itself an expression
+	  Matrix L = factors[random.nextInt(factors.length)];
+	  return new Expression(E.lazy.times(K.lazy().plus(L)),E.eager.times(K.plus(L)));
+	}
+      case 4:
+	if (standard)
+	  return new Expression(E.lazy.minus(),E.eager.minus());
+	// otherwise, a sum
+      case 5:
+	if (standard)
+	  {
+	    Expression F = randomExpression(random,depth-1,leaves,factors,standard);
+	    return new Expression(E.lazy.minus(F.lazy),E.eager.minus(F.eager));
+	  }
+	// otherwise, a sum
+      default:
+	{
+	  Expression F = randomExpression(random,depth-1,leaves,factors,standard);
+	  return new Expression(E.lazy.plus(F.lazy),E.eager.plus(F.eager));
+	}
+      }
+  }
+
+  /**
+   * Return the largest absolute value of the finite entries of
+   * <tt>M</tt>, or <tt>1</tt> if it is smaller.
+   */
+  static private double magnitude (Matrix M)
+  {
+    double max = 1.0;
+
+    for (int i = 1; i <= M.rows(); i++)
+      for (int j = 1; j <= M.cols(); j++)
+	if (!Double.isInfinite(M.get(i,j)))
+	  max = Math.max(max,Math.abs(M.get(i,j)));
+
+    return max;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>M</tt> is the value <tt>expected</tt>
+   * of an expression: up to rounding errors relative to its magnitude
+   * under the standard algebra, and exactly otherwise.
+   */
+  static private boolean computes (Matrix M, Matrix expected)
+  {
+    return MatrixChecks.distance(M,expected)
+      <= ProductChecks.tolerance(1000)*magnitude(expected);
+  }
+
+  static private void checkExpressions (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int trial = 0; trial < 100; trial++)
+	      {
+		// a few rows longer than the fused chunks
+		int m = 1+random.nextInt(30);
+		int n = trial % 10 == 0 ? MatrixExpression.CHUNK+1+random.nextInt(100) : 1+random.nextInt(30);
+		Matrix[] leaves = new Matrix[3], factors = new Matrix[2];
+
+		for (int k = 0; k < leaves.length; k++)
+		  leaves[k] = MatrixChecks.randomMatrix(random,m,n);
+		// a view among the leaves
+		leaves[2] = new Matrix(m+1,n+1).fill(Double.NaN).submatrix(2,m+1,2,n+1).update(leaves[2]);
+		for (int k = 0; k < factors.length; k++)
+		  factors[k] = MatrixChecks.randomMatrix(random,n,n).scale(1.0/n);
+
+		Expression E = randomExpression(random,1+random.nextInt(n > 100 ? 3 : 5),leaves,factors,standard);
+		String what = algebra+" "+m+"x"+n+" expression "+E.lazy;
+
+		MatrixChecks.check(E.lazy.rows() == m && E.lazy.cols() == n,what+": dimensions");
+		MatrixChecks.check(computes(E.lazy.evaluate(),E.eager),what);
+		MatrixChecks.check(computes(E.lazy.evaluateInto(new Matrix(m,n)),E.eager),what+" into a matrix");
+		// the same expression again, whose leaves must be read anew
+		MatrixChecks.check(computes(E.lazy.evaluate(),E.eager),what+" evaluated twice");
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkTargets (Random random)
+  {
+    for (int trial = 0; trial < 50; trial++)
+      {
+	int n = 1+random.nextInt(40);
+	Matrix A = MatrixChecks.randomMatrix(random,n,n), B = MatrixChecks.randomMatrix(random,n,n);
+	Matrix sum = A.plus(B).scale(0.5), product = A.times(B).scale(0.5).plus(B);
+	Matrix L = new Matrix(n+2,n+2).fill(Double.NaN), V = L.submatrix(2,n+1,2,n+1), T = V.transposed();
+	String what = n+"x"+n+" expression";
+
+	MatrixChecks.check(A.lazy().plus(B).scale(0.5).evaluateInto(V) == V && V.equals(sum)
+			   && Double.isNaN(L.get(1,1)) && Double.isNaN(L.get(n+2,n+2)),what+" into a view");
+	MatrixChecks.check(A.lazy().times(B).scale(0.5).plus(B).evaluateInto(T) == T
+			   && computes(T,product),what+" into a transposed view");
+
+	// into an operand, laid out like it or not
+	Matrix C = A.copy();
+	MatrixChecks.check(C.lazy().plus(B).scale(0.5).evaluateInto(C) == C && C.equals(sum),
+			   what+" into an operand");
+	C = A.copy();
+	T = C.transposed();
+	MatrixChecks.check(C.lazy().plus(B.transposed()).evaluateInto(T) == T
+			   && T.equals(A.plus(B.transposed())),what+" into a transposed operand");
+	C = A.copy();
+	MatrixChecks.check(C.lazy().times(B).scale(0.5).plus(B).evaluateInto(C) == C && computes(C,product),
+			   what+" into an operand of an epilogue");
+
+	Matrix D = A.copy();
+	MatrixChecks.check(MatrixChecks.fails(() -> D.lazy().times(B).evaluateInto(D)),
+			   what+" into a factor of its product");
+      }
+
+    Matrix A = new Matrix(3,4), B = new Matrix(4,3);
+    MatrixChecks.check(MatrixChecks.fails(() -> A.lazy().plus(B))
+		       && MatrixChecks.fails(() -> A.lazy().minus(B.lazy()))
+		       && MatrixChecks.fails(() -> A.lazy().times(A))
+		       && MatrixChecks.fails(() -> A.lazy().times(B).evaluateInto(B)),
+		       "expression of incompatible dimensions");
+  }
+
+  static private void checkParallelExpressions (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	Matrix A = MatrixChecks.randomMatrix(random,300,1500), B = MatrixChecks.randomMatrix(random,300,1500);
+	Matrix K = MatrixChecks.randomMatrix(random,1500,200);
+	MatrixExpression S = A.lazy().plus(B).scale(0.25).map(FUNCTIONS[1]);
+	MatrixExpression E = S.minus(A).times(K).scale(2.0).plus(S.times(K));
+
+	Matrix.setParallel(false);
+	Matrix sequential = E.evaluate();
+
+	Matrix.setParallel(true);
+	Matrix.setParallelThreshold(1);
+	Matrix.setForkJoinPool(pool);
+	MatrixChecks.check(MatrixChecks.distance(E.evaluate(),sequential) == 0.0,"expression in parallel");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+}
@@ -0,0 +1,683 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/FloatMatrix.java
+// STARTED ON. . Tue Mar 17 09:52:31 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import hlt.math.matrix.OffHeapMatrix.Operand;
+
+/**
+ * This is a class of dense matrices whose entries are stored as
+ * <tt>float</tt>s in a flat row-major array: it takes half the memory
+ * (and memory bandwidth) of a <tt>Matrix</tt> of the same dimensions,
+ * for about 7 significant decimal digits per entry instead of 16. It is
+ * meant for matrices of bounded entries (<i>e.g.</i>, stochastic or
+ * fuzzy-membership matrices in <tt>[0,1]</tt>) where this precision is
+ * more than enough.<p/>
+ *
+ * Computations are in <i>mixed precision</i>: entries are widened to
+ * <tt>double</tt> as they are loaded, all arithmetic (and, in particular,
+ * the accumulation of the sums of products) is done in <tt>double</tt>,
+ * and results are rounded to <tt>float</tt> only once, as they are
+ * stored. Hence, a <tt>FloatMatrix</tt> result is the nearest
+ * <tt>float</tt> to the result computed on the <tt>double</tt> values of
+ * the operands. Products with vectors (see <tt>leftTimes</tt> and
+ * <tt>times(double[])</tt>), such as the steps of a Markov chain, take
+ * and return <tt>double[]</tt> vectors and do not round at all.<p/>
+ *
+ * A <tt>FloatMatrix</tt> supports the arithmetic of <tt>Matrix</tt>
+ * (<tt>plus</tt>, <tt>minus</tt>, <tt>scale</tt>, <tt>times</tt>,
+ * <tt>transpose</tt> and their in-place variants where meaningful)
+ * under the current number algebra, with either a <tt>FloatMatrix</tt>
+ * or a <tt>Matrix</tt> as the other operand; results are new
+ * <tt>FloatMatrix</tt>es. Explicit conversions between both storage
+ * modes are provided by <tt>FloatMatrix(Matrix)</tt> and
+ * <tt>toMatrix()</tt>. Like <tt>OffHeapMatrix</tt>, operations stage
+ * widened rows or square blocks through small <tt>double</tt> buffers so
+ * as to run the very kernels used for <tt>Matrix</tt>, by blocks of rows
+ * or tiles in parallel in <a href="Matrix.html#parallel">parallel
+ * execution mode</a>.<p/>
+ *
+ * When <a href="Vectorization.html">vectorization</a> is enabled,
+ * widening and rounding use SIMD conversions, vector products load
+ * <tt>float</tt> lanes directly, and sums and differences under the
+ * <tt>StandardAlgebra</tt> run on <tt>float</tt> lanes, twice as many
+ * per vector as <tt>double</tt> lanes (the sum of two <tt>float</tt>s
+ * rounded to <tt>float</tt> is the same whether computed in
+ * <tt>float</tt> or in <tt>double</tt>). Like those of <tt>Matrix</tt>,
+ * the <tt>get</tt> and <tt>set</tt> methods count rows and columns from
+ * <tt>1</tt>.
+ *
+ * @see         Matrix
+ * @see         OffHeapMatrix
+ */
+public class FloatMatrix
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * The number of rows of this matrix.
+   */
+  private final int rows;
+
+  /**
+   * The number of columns of this matrix, which is also the number of
+   * entries between the starts of two consecutive rows.
+   */
+  private final int cols;
+
+  /**
+   * The row-major entries of this matrix.
+   */
+  private final float[] entries;
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>FloatMatrix</tt> of
+   * <tt>0.0</tt>'s.
+   */
+  public FloatMatrix (int rows, int cols)
+  {
+    checkDimensions(rows,cols);
+
+    this.rows = rows;
+    this.cols = cols;
+    entries = new float[Math.multiplyExact(rows,cols)];
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>FloatMatrix</tt>
+   * whose entries are the first <tt>rows*cols</tt> ones of the given
+   * array in row-major order, either shared (if <tt>inPlace</tt> is
+   * <tt>true</tt>) or copied.
+   */
+  public FloatMatrix (int rows, int cols, float[] entries, boolean inPlace)
+  {
+    checkDimensions(rows,cols);
+
+    if (entries.length < (long)rows*cols)
+      throw new RuntimeException("Entries array too small for a "+rows+"x"+cols+" matrix");
+
+    this.rows = rows;
+    this.cols = cols;
+    this.entries = inPlace ? entries : java.util.Arrays.copyOf(entries,rows*cols);
+  }
+
+  /**
+   * Construct a new <tt>FloatMatrix</tt> whose entries are those of the
+   * given <tt>Matrix</tt> rounded to the nearest <tt>float</tt>.
+   */
+  public FloatMatrix (Matrix M)
+  {
+    this(M.rows(),M.cols());
+
+    Operand source = operand(M);
+    int cols = this.cols;
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       double[] a = RowStaging.rowBuffers(1,cols)[0];
+
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   source.readRow(row,0,a,0,cols);
+				   narrow(a,0,entries,row*cols,cols);
+				 }
+			     });
+  }
+
+  static private void checkDimensions (int rows, int cols)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Component Access and Conversions
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of rows of this matrix.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return the (shared) row-major entries of this matrix.
+   */
+  public final float[] entries ()
+  {
+    return entries;
+  }
+
+  /**
+   * Return the entry at row <tt>i</tt> and column <tt>j</tt> (counted
+   * from <tt>1</tt>).
+   */
+  public final double get (int i, int j)
+  {
+    checkLegalEntry(i,j);
+    return entries[(i-1)*cols+(j-1)];
+  }
+
+  /**
+   * Set the entry at row <tt>i</tt> and column <tt>j</tt> (counted from
+   * <tt>1</tt>) to the nearest <tt>float</tt> to <tt>value</tt>, and
+   * return the value stored.
+   */
+  public final double set (int i, int j, double value)
+  {
+    checkLegalEntry(i,j);
+    return entries[(i-1)*cols+(j-1)] = (float)value;
+  }
+
+  private void checkLegalEntry (int i, int j)
+  {
+    if (i < 1 || i > rows || j < 1 || j > cols)
+      throw new RuntimeException("Matrix entry ("+i+","+j+") out of bounds [1,"+rows+"]x[1,"+cols+"]");
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of row <tt>row</tt> starting at column
+   * <tt>col</tt> (both counted from <tt>0</tt>), widened to
+   * <tt>double</tt>, into <tt>target</tt> from <tt>offset</tt> on.
+   */
+  final void readRow (int row, int col, double[] target, int offset, int length)
+  {
+    widen(entries,row*cols+col,target,offset,length);
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of <tt>source</tt> from <tt>offset</tt>
+   * on, rounded to <tt>float</tt>, into row <tt>row</tt> starting at
+   * column <tt>col</tt> (both counted from <tt>0</tt>).
+   */
+  final void writeRow (int row, int col, double[] source, int offset, int length)
+  {
+    narrow(source,offset,entries,row*cols+col,length);
+  }
+
+  /**
+   * Set all the entries of this matrix to the nearest <tt>float</tt> to
+   * <tt>value</tt> and return it.
+   */
+  public FloatMatrix fill (double value)
+  {
+    java.util.Arrays.fill(entries,0,rows*cols,(float)value);
+    return this;
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> whose entries are those of this one
+   * (exactly, since every <tt>float</tt> is a <tt>double</tt>).
+   */
+  public Matrix toMatrix ()
+  {
+    Matrix M = new Matrix(rows,cols);
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       for (int row = fromRow; row < toRow; row++)
+				 readRow(row,0,M.entries(),row*M.stride(),cols);
+			     });
+    return M;
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> with a copy of the entries of this
+   * one.
+   */
+  public FloatMatrix copy ()
+  {
+    return new FloatMatrix(rows,cols,entries,false);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the <tt>double</tt> value of
+   * <tt>a[aOffset+i]</tt> for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void widen (float[] a, int aOffset, double[] c, int cOffset, int length)
+  {
+    if (Vectorization.ENABLED)
+      VectorKernels.widen(a,aOffset,c,cOffset,length);
+    else
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = a[aOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the nearest <tt>float</tt> to
+   * <tt>a[aOffset+i]</tt> for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void narrow (double[] a, int aOffset, float[] c, int cOffset, int length)
+  {
+    if (Vectorization.ENABLED)
+      VectorKernels.narrow(a,aOffset,c,cOffset,length);
+    else
+      for (int i = 0; i < length; i++)
+	c[cOffset+i] = (float)a[aOffset+i];
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Operations
+   * </span></h3>
+   *
+   * The operand of an operation may be another <tt>FloatMatrix</tt> or
+   * a <tt>Matrix</tt>: either is seen through an <tt>Operand</tt> (see
+   * <tt>OffHeapMatrix</tt>) reading its rows as <tt>double</tt>s.
+   */
+
+  /**
+   * Return an <tt>Operand</tt> reading the rows of this matrix.
+   */
+  final Operand operand ()
+  {
+    return new Operand()
+      {
+	public int rows () { return rows; }
+	public int cols () { return cols; }
+	public void readRow (int row, int col, double[] target, int offset, int length)
+	{
+	  FloatMatrix.this.readRow(row,col,target,offset,length);
+	}
+      };
+  }
+
+  /**
+   * Return an <tt>Operand</tt> reading the rows of the given
+   * <tt>Matrix</tt>.
+   */
+  static private Operand operand (Matrix M)
+  {
+    return OffHeapMatrix.operand(M);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public FloatMatrix plus (FloatMatrix M)
+  {
+    return combine(EntryKernels.SUM,this,M,null);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public FloatMatrix plus (Matrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),operand(M),null);
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public FloatMatrix i_plus (FloatMatrix M)
+  {
+    return combine(EntryKernels.SUM,this,M,this);
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public FloatMatrix i_plus (Matrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),operand(M),this);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public FloatMatrix minus (FloatMatrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,this,M,null);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public FloatMatrix minus (Matrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),operand(M),null);
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public FloatMatrix i_minus (FloatMatrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,this,M,this);
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public FloatMatrix i_minus (Matrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),operand(M),this);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>-this</tt>.
+   */
+  public FloatMatrix minus ()
+  {
+    return map(EntryKernels.NEGATION,0.0,null);
+  }
+
+  /**
+   * Modify this matrix to <tt>-this</tt> and return it.
+   */
+  public FloatMatrix i_minus ()
+  {
+    return map(EntryKernels.NEGATION,0.0,this);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>factor*this</tt>.
+   */
+  public FloatMatrix scale (double factor)
+  {
+    return map(EntryKernels.SCALE,factor,null);
+  }
+
+  /**
+   * Modify this matrix to <tt>factor*this</tt> and return it.
+   */
+  public FloatMatrix i_scale (double factor)
+  {
+    return map(EntryKernels.SCALE,factor,this);
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> (or of a new matrix if <tt>C</tt> is
+   * <tt>null</tt>) to the <tt>SUM</tt> or <tt>DIFFERENCE</tt> of the
+   * corresponding entries of the <tt>FloatMatrix</tt>es <tt>A</tt> and
+   * <tt>B</tt>, and return it. Under the <tt>StandardAlgebra</tt>, this
+   * runs directly on <tt>float</tt> lanes when vectorization is enabled
+   * (with the same results as in <tt>double</tt>).
+   */
+  static private FloatMatrix combine (int op, FloatMatrix A, FloatMatrix B, FloatMatrix C)
+  {
+    if (!Vectorization.ENABLED
+	|| NumberAlgebra.kindOf(NumberAlgebra.getCurrentAlgebra()) != NumberAlgebra.STANDARD)
+      return combine(op,A.operand(),B.operand(),C);
+
+    int rows = A.rows, cols = A.cols;
+
+    if (B.rows != rows || B.cols != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,B.rows,B.cols);
+
+    FloatMatrix result = C == null ? new FloatMatrix(rows,cols) : C;
+    float[] a = A.entries, b = B.entries, c = result.entries;
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       int from = fromRow*cols, length = (toRow-fromRow)*cols;
+
+			       if (op == EntryKernels.SUM)
+				 VectorKernels.add(a,from,b,from,c,from,length);
+			       else
+				 VectorKernels.subtract(a,from,b,from,c,from,length);
+			     });
+    return result;
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> (or of a new matrix if <tt>C</tt> is
+   * <tt>null</tt>) to the <tt>SUM</tt> or <tt>DIFFERENCE</tt> of the
+   * corresponding entries of <tt>A</tt> and <tt>B</tt>, and return it.
+   * Rows are widened into per-thread <tt>double</tt> buffers (see
+   * <tt>RowStaging</tt>).
+   */
+  static private FloatMatrix combine (int op, Operand A, Operand B, FloatMatrix C)
+  {
+    RowStaging.checkSum(A,B);
+
+    FloatMatrix result = C == null ? new FloatMatrix(A.rows(),A.cols()) : C;
+    RowStaging.combine(op,A,B,result::writeRow);
+    return result;
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> (or of a new matrix if <tt>C</tt> is
+   * <tt>null</tt>) to the <tt>NEGATION</tt> or <tt>SCALE</tt> by
+   * <tt>factor</tt> of the corresponding entry of this matrix, and
+   * return it.
+   */
+  private FloatMatrix map (int op, double factor, FloatMatrix C)
+  {
+    FloatMatrix result = C == null ? new FloatMatrix(rows,cols) : C;
+    RowStaging.map(op,factor,operand(),result::writeRow);
+    return result;
+  }
+
+  /**
+   * The order of the square blocks widened into <tt>double</tt> buffers
+   * by products.
+   */
+  static final int BLOCK = 512;
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public FloatMatrix times (FloatMatrix M)
+  {
+    return multiply(operand(),M.operand());
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public FloatMatrix times (Matrix M)
+  {
+    return multiply(operand(),operand(M));
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to the <tt>Matrix</tt>
+   * <tt>M</tt> times the <tt>FloatMatrix</tt> <tt>N</tt> under the
+   * current number algebra.
+   */
+  static public FloatMatrix times (Matrix M, FloatMatrix N)
+  {
+    return multiply(operand(M),N.operand());
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>A</tt> times
+   * <tt>B</tt> under the current number algebra. The result is computed
+   * by <tt>BLOCK</tt>-by-<tt>BLOCK</tt> blocks widened into <tt>double</tt>
+   * buffers (see <tt>RowStaging</tt>), each rounded to <tt>float</tt> once.
+   */
+  static private FloatMatrix multiply (Operand A, Operand B)
+  {
+    RowStaging.checkProduct(A,B);
+
+    FloatMatrix C = new FloatMatrix(A.rows(),B.cols());
+    RowStaging.multiply(NumberAlgebra.getCurrentAlgebra(),A,B,C::writeRow,BLOCK);
+    return C;
+  }
+
+  /**
+   * Return a new <tt>double[]</tt> row vector equal to the row vector
+   * <tt>x</tt> times this matrix under the current number algebra:
+   * <i>e.g.</i>, if this is the transition matrix of a Markov chain and
+   * <tt>x</tt> a distribution of its states, the distribution after one
+   * more step. The rows of this matrix scaled by the entries of
+   * <tt>x</tt> are accumulated in <tt>double</tt> in the order of the
+   * rows, by blocks of columns in parallel in parallel execution mode.
+   */
+  public double[] leftTimes (double[] x)
+  {
+    if (x.length != rows)
+      throw new RuntimeException("Cannot multiply a vector of size "+x.length+
+				 " by a "+rows+"x"+cols+" matrix");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    double[] y = new double[cols];
+
+    java.util.Arrays.fill(y,algebra.zero());
+
+    MatrixTasks.forRowBlocks(cols,rows,
+			     (fromCol,toCol) ->
+			     {
+			       int length = toCol-fromCol;
+			       double[] b = kind == NumberAlgebra.STANDARD ? null : RowStaging.rowBuffers(1,length)[0];
+
+			       for (int row = 0; row < rows; row++)
+				 if (kind != NumberAlgebra.STANDARD)
+				   {
+				     readRow(row,fromCol,b,0,length);
+				     EntryKernels.accumulate(kind,algebra,x[row],b,0,y,fromCol,length);
+				   }
+				 else if (Vectorization.ENABLED)
+				   VectorKernels.accumulate(x[row],entries,row*cols+fromCol,y,fromCol,length);
+				 else
+				   for (int i = 0, base = row*cols+fromCol; i < length; i++)
+				     y[fromCol+i] += x[row]*entries[base+i];
+			     });
+    return y;
+  }
+
+  /**
+   * Return a new <tt>double[]</tt> column vector equal to this matrix
+   * times the column vector <tt>x</tt> under the current number algebra,
+   * each of its entries being accumulated in <tt>double</tt> in the
+   * order of the columns, by blocks of rows in parallel in parallel
+   * execution mode.
+   */
+  public double[] times (double[] x)
+  {
+    if (x.length != cols)
+      throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
+				 " matrix by a vector of size "+x.length);
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    double zero = algebra.zero();
+    double[] y = new double[rows];
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   int base = row*cols;
+				   double sum = zero;
+
+				   if (kind == NumberAlgebra.STANDARD)
+				     for (int col = 0; col < cols; col++)
+				       sum += entries[base+col]*x[col];
+				   else
+				     for (int col = 0; col < cols; col++)
+				       sum = algebra.sum(sum,algebra.product(entries[base+col],x[col]));
+
+				   y[row] = sum;
+				 }
+			     });
+    return y;
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> that is the transpose of this
+   * one, computed by square tiles.
+   */
+  public FloatMatrix transpose ()
+  {
+    FloatMatrix T = new FloatMatrix(cols,rows);
+    float[] t = T.entries;
+    int tile = 64;
+
+    for (int i0 = 0; i0 < rows; i0 += tile)
+      for (int j0 = 0; j0 < cols; j0 += tile)
+	for (int i = i0, iEnd = Math.min(rows,i0+tile); i < iEnd; i++)
+	  for (int j = j0, jEnd = Math.min(cols,j0+tile); j < jEnd; j++)
+	    t[j*rows+i] = entries[i*cols+j];
+
+    return T;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and <tt>M</tt> are entry-wise
+   * equal.
+   */
+  public boolean equals (FloatMatrix M)
+  {
+    if (M.rows != rows || M.cols != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,M.rows,M.cols);
+
+    return M == this || java.util.Arrays.equals(entries,0,rows*cols,M.entries,0,rows*cols);
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and the <tt>Matrix</tt>
+   * <tt>M</tt> are entry-wise equal.
+   */
+  public boolean equals (Matrix M)
+  {
+    if (M.rows() != rows || M.cols() != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,M.rows(),M.cols());
+
+    Operand B = operand(M);
+    double[][] buffers = RowStaging.rowBuffers(2,cols);
+    double[] a = buffers[0], b = buffers[1];
+
+    for (int row = 0; row < rows; row++)
+      {
+	readRow(row,0,a,0,cols);
+	B.readRow(row,0,b,0,cols);
+
+	for (int col = 0; col < cols; col++)
+	  if (a[col] != b[col])
+	    return false;
+      }
+
+    return true;
+  }
+
+  /**
+   * Print this matrix like <tt>Matrix.show()</tt> does.
+   */
+  public void show ()
+  {
+    System.out.println();
+    for (int row = 0; row < rows; row++)
+      {
+	for (int col = 0; col < cols; col++)
+	  System.out.printf(Matrix.floatFormatString(),(double)entries[row*cols+col]);
+	System.out.println();
+      }
+    System.out.println();
+  }
+
+  public String toString ()
+  {
+    return rows+"x"+cols+" float matrix";
+  }
+}
@@ -0,0 +1,257 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/FloatMatrixChecks.java
+// STARTED ON. . Wed Apr 22 15:37:08 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>FloatMatrix</tt> against
+ * <tt>Matrix</tt> under several algebras: that conversions round each
+ * entry to the nearest <tt>float</tt> and back exactly, that entry-wise
+ * operations (with float or heap operands, including views, in place
+ * or not) are the rounding of what they compute on <tt>double</tt>s,
+ * that products (for dimensions straddling the blocks they are staged
+ * by) are so up to one rounding, that products with vectors are not
+ * rounded at all, and that all these are the same in parallel. It is
+ * run by <tt>MatrixChecks</tt>.
+ *
+ * @see         FloatMatrix
+ * @see         MatrixChecks
+ */
+final class FloatMatrixChecks
+{
+  static void run (Random random)
+  {
+    checkConversions(random);
+    checkOperations(random);
+    checkParallelOperations(random);
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> whose entries are those of <tt>M</tt>
+   * rounded to the nearest <tt>float</tt>.
+   */
+  static private Matrix rounded (Matrix M)
+  {
+    Matrix R = new Matrix(M.rows(),M.cols());
+
+    for (int i = 1; i <= M.rows(); i++)
+      for (int j = 1; j <= M.cols(); j++)
+	R.set(i,j,(float)M.get(i,j));
+
+    return R;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>F</tt> has the entries of <tt>M</tt>
+   * within the given <tt>tolerance</tt>.
+   */
+  static private boolean holds (FloatMatrix F, Matrix M, double tolerance)
+  {
+    return F.rows() == M.rows() && F.cols() == M.cols()
+      && MatrixChecks.distance(F.toMatrix(),M) <= tolerance;
+  }
+
+  /**
+   * Return the row vector <tt>x</tt> times <tt>M</tt>, computed on a
+   * <tt>1</tt>-by-<tt>M.rows()</tt> matrix.
+   */
+  static double[] leftProduct (double[] x, Matrix M)
+  {
+    Matrix X = new Matrix(1,x.length);
+    double[] y = new double[M.cols()];
+
+    for (int i = 0; i < x.length; i++)
+      X.set(1,i+1,x[i]);
+
+    Matrix Y = X.times(M);
+    for (int j = 0; j < y.length; j++)
+      y[j] = Y.get(1,j+1);
+
+    return y;
+  }
+
+  /**
+   * Return the distance between the vectors <tt>x</tt> and <tt>y</tt>
+   * (<tt>0</tt> for equal infinite entries).
+   */
+  static double distance (double[] x, double[] y)
+  {
+    double max = 0.0;
+
+    for (int i = 0; i < x.length; i++)
+      if (x[i] != y[i])
+	max = Math.max(max,Math.abs(x[i]-y[i]));
+
+    return max;
+  }
+
+  static private void checkConversions (Random random)
+  {
+    for (int trial = 0; trial < 50; trial++)
+      {
+	int m = 1+random.nextInt(40), n = 1+random.nextInt(40);
+	Matrix M = MatrixChecks.randomMatrix(random,m,n);
+	Matrix V = new Matrix(m+2,n+1).fill(Double.NaN).submatrix(2,m+1,1,n).update(M);
+	FloatMatrix F = new FloatMatrix(M), G = new FloatMatrix(V);
+	Matrix R = rounded(M);
+	String what = m+"x"+n+" float matrix";
+
+	MatrixChecks.check(F.rows() == m && F.cols() == n && F.equals(R) && G.equals(F)
+			   && F.toMatrix().equals(R) && F.toMatrix().equals(G.toMatrix()),what);
+	MatrixChecks.check(F.transpose().equals(R.transpose()),what+": transpose");
+
+	int i = 1+random.nextInt(m), j = 1+random.nextInt(n);
+	double value = random.nextDouble();
+	FloatMatrix C = F.copy();
+	MatrixChecks.check(C.set(i,j,value) == (float)value && C.get(i,j) == (float)value
+			   && F.get(i,j) == R.get(i,j),what+": set");
+	MatrixChecks.check(C.fill(value).equals(new Matrix(m,n).fill((float)value)),what+": fill");
+
+	// sharing or copying an array of entries
+	float[] entries = new float[m*n+1];
+	FloatMatrix S = new FloatMatrix(m,n,entries,true), T = new FloatMatrix(m,n,entries,false);
+	S.set(m,n,1.0);
+	MatrixChecks.check(S.entries() == entries && entries[m*n-1] == 1.0f && T.get(m,n) == 0.0,
+			   what+": shared entries");
+      }
+
+    FloatMatrix F = new FloatMatrix(3,4);
+    MatrixChecks.check(MatrixChecks.fails(() -> new FloatMatrix(0,4))
+		       && MatrixChecks.fails(() -> new FloatMatrix(3,4,new float[11],true))
+		       && MatrixChecks.fails(() -> F.get(4,1))
+		       && MatrixChecks.fails(() -> F.set(1,0,1.0))
+		       && MatrixChecks.fails(() -> F.plus(new FloatMatrix(4,3)))
+		       && MatrixChecks.fails(() -> F.times(new Matrix(3,4)))
+		       && MatrixChecks.fails(() -> F.leftTimes(new double[4]))
+		       && MatrixChecks.fails(() -> F.times(new double[3]))
+		       && MatrixChecks.fails(() -> F.equals(new Matrix(4,3))),
+		       "float matrix of incompatible dimensions");
+  }
+
+  static private void checkOperations (Random random)
+  {
+    // the products of the last shape span several blocks
+    int[][] shapes = java.util.Arrays.copyOf(ProductChecks.SHAPES,ProductChecks.SHAPES.length+1);
+    shapes[shapes.length-1] = new int[] { 70, FloatMatrix.BLOCK+88, FloatMatrix.BLOCK+3 };
+
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int[] shape : shapes)
+	      {
+		int m = shape[0], k = shape[1], n = shape[2];
+		FloatMatrix A = new FloatMatrix(MatrixChecks.randomMatrix(random,m,k));
+		FloatMatrix B = new FloatMatrix(MatrixChecks.randomMatrix(random,m,k));
+		FloatMatrix K = new FloatMatrix(MatrixChecks.randomMatrix(random,k,n));
+		Matrix a = A.toMatrix(), b = B.toMatrix(), c = K.toMatrix();
+		Matrix v = new Matrix(m+1,k+2).fill(Double.NaN).submatrix(2,m+1,2,k+1).update(b);
+		String what = algebra+" float "+m+"x"+k+" matrix";
+
+		// entry-wise operations round once what they compute on doubles
+		Matrix sum = rounded(a.plus(b));
+		MatrixChecks.check(holds(A.plus(B),sum,0.0),what+": plus");
+		MatrixChecks.check(holds(A.plus(v),sum,0.0),what+": plus a view");
+		MatrixChecks.check(holds(A.scale(1.0/3),rounded(a.scale(1.0/3)),0.0),what+": scale");
+
+		if (standard)
+		  {
+		    Matrix difference = rounded(a.minus(b));
+		    MatrixChecks.check(holds(A.minus(B),difference,0.0),what+": minus");
+		    MatrixChecks.check(holds(A.minus(v),difference,0.0),what+": minus a view");
+		    MatrixChecks.check(holds(A.minus(),a.minus(),0.0),what+": negation");
+		  }
+
+		// in place, on a copy which must not share the entries of A
+		FloatMatrix C = A.copy();
+		MatrixChecks.check(C.i_plus(B) == C && holds(C,sum,0.0),what+": i_plus");
+		MatrixChecks.check(C.i_plus(v) == C && holds(C,rounded(sum.plus(b)),0.0),what+": i_plus a view");
+		MatrixChecks.check(C.i_scale(0.5) == C && holds(C,rounded(rounded(sum.plus(b)).scale(0.5)),0.0),
+				   what+": i_scale");
+		MatrixChecks.check(A.equals(a),what+": copy shares entries");
+		if (standard)
+		  {
+		    Matrix expected = rounded(rounded(a.minus(b)).minus(b)).minus();
+		    C = A.copy();
+		    MatrixChecks.check(C.i_minus(B) == C && C.i_minus(v) == C && C.i_minus() == C
+				       && holds(C,expected,0.0),what+": i_minus");
+		  }
+
+		// products accumulate in double and round once, up to one
+		// float rounding of the double product
+		Matrix product = a.times(c);
+		double tolerance = standard ? Math.ulp((float)k) : 0.0;
+		Matrix expected = rounded(product);
+		MatrixChecks.check(holds(A.times(K),expected,tolerance),what+": times");
+		MatrixChecks.check(holds(A.times(c),expected,tolerance),what+": times a Matrix");
+		MatrixChecks.check(holds(FloatMatrix.times(a,K),expected,tolerance),what+": times from the left");
+		MatrixChecks.check(holds(a.times(K),expected,tolerance),what+": Matrix.times");
+
+		// vector products are not rounded
+		double[] x = new double[m], y = new double[k];
+		for (int i = 0; i < m; i++)
+		  x[i] = random.nextDouble();
+		for (int j = 0; j < k; j++)
+		  y[j] = random.nextDouble();
+		MatrixChecks.check(distance(A.leftTimes(x),leftProduct(x,a)) <= ProductChecks.tolerance(m),
+				   what+": leftTimes");
+		MatrixChecks.check(distance(A.times(y),leftProduct(y,a.transpose())) <= ProductChecks.tolerance(k),
+				   what+": times a vector");
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkParallelOperations (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	FloatMatrix A = new FloatMatrix(MatrixChecks.randomMatrix(random,700,600));
+	FloatMatrix B = new FloatMatrix(MatrixChecks.randomMatrix(random,700,600));
+	FloatMatrix K = new FloatMatrix(MatrixChecks.randomMatrix(random,600,550));
+	double[] x = new double[700], y = new double[600];
+	for (int i = 0; i < x.length; i++)
+	  x[i] = random.nextDouble();
+	for (int j = 0; j < y.length; j++)
+	  y[j] = random.nextDouble();
+
+	Matrix.setParallel(false);
+	FloatMatrix product = A.times(K), sum = A.plus(B);
+	double[] left = A.leftTimes(x), right = A.times(y);
+
+	Matrix.setParallel(true);
+	Matrix.setParallelThreshold(1);
+	Matrix.setForkJoinPool(pool);
+	MatrixChecks.check(A.times(K).equals(product),"float product in parallel");
+	MatrixChecks.check(A.plus(B).equals(sum),"float sum in parallel");
+	MatrixChecks.check(java.util.Arrays.equals(A.leftTimes(x),left)
+			   && java.util.Arrays.equals(A.times(y),right),"float vector products in parallel");
+	MatrixChecks.check(new FloatMatrix(A.toMatrix()).equals(A),"float conversions in parallel");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+}
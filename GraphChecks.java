@@ -0,0 +1,201 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/GraphChecks.java
+// STARTED ON. . Wed Apr 15 10:04:12 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+
+import hlt.language.util.IntIterator;
+
+/**
+ * This is a non-public class checking <tt>BipartiteGraph</tt> on random
+ * graphs: that its compressed adjacency structures, edge lookups and
+ * numbering, edge mask, and iterators list exactly the non-zero
+ * weights it was created with, whatever weights are set afterwards;
+ * and the size of its maximum matchings against an enumeration of all
+ * the matchings of small ones. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         BipartiteGraph
+ * @see         MatrixChecks
+ */
+final class GraphChecks
+{
+  static void run (Random random)
+  {
+    checkAdjacency(random);
+    checkMatchings(random);
+  }
+
+  /**
+   * Return the <tt>order</tt>-by-<tt>order</tt> weights of a random
+   * bipartite graph, whose entries are non-zero integers in
+   * <tt>[1,20]</tt> with the given probability and <tt>0</tt> (no edge)
+   * otherwise.
+   */
+  static double[][] randomWeights (Random random, int order, double density)
+  {
+    double[][] weights = new double[order][order];
+
+    for (int left = 0; left < order; left++)
+      for (int right = 0; right < order; right++)
+	if (random.nextDouble() < density)
+	  weights[left][right] = 1+random.nextInt(20);
+
+    return weights;
+  }
+
+  /**
+   * Return the size of a maximum matching of the left nodes from
+   * <tt>left</tt> on to the right nodes not in <tt>used</tt> (a bit
+   * set), by trying all of them.
+   */
+  static int bruteMatchingSize (double[][] weights, int left, int used)
+  {
+    if (left == weights.length)
+      return 0;
+
+    int best = bruteMatchingSize(weights,left+1,used);
+
+    for (int right = 0; right < weights.length; right++)
+      if (weights[left][right] != 0.0 && (used & (1 << right)) == 0)
+	best = Math.max(best,1+bruteMatchingSize(weights,left+1,used | (1 << right)));
+
+    return best;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>iterator</tt> enumerates the entries of
+   * <tt>targets</tt> from <tt>from</tt> (inclusive) to <tt>to</tt>
+   * (exclusive), and then fails.
+   */
+  static private boolean enumerates (IntIterator iterator, int[] targets, int from, int to)
+  {
+    for (int k = from; k < to; k++)
+      if (!iterator.hasNext() || iterator.next() != targets[k])
+	return false;
+
+    return !iterator.hasNext() && MatrixChecks.fails(() -> iterator.next());
+  }
+
+  /**
+   * Check the adjacency structures of <tt>graph</tt> against the given
+   * <tt>edges</tt>.
+   */
+  static private void checkEdges (BipartiteGraph graph, boolean[][] edges, String what)
+  {
+    int order = edges.length;
+    int[] succOffsets = graph.succOffsets(), succTargets = graph.succTargets();
+    int[] predOffsets = graph.predOffsets(), predTargets = graph.predTargets();
+    BitMatrix mask = graph.edgeMask();
+    int count = 0;
+
+    MatrixChecks.check(succOffsets.length == order+1 && predOffsets.length == order+1
+		       && succOffsets[0] == 0 && predOffsets[0] == 0,what+": offsets");
+
+    // edges are numbered by left node then by right node
+    for (int left = 0; left < order; left++)
+      {
+	MatrixChecks.check(succOffsets[left] == count,what+": successors of "+left);
+	for (int right = 0; right < order; right++)
+	  {
+	    MatrixChecks.check(graph.isEdge(left,right) == edges[left][right]
+			       && graph.isDualEdge(right,left) == edges[left][right]
+			       && mask.get(left+1,right+1) == edges[left][right],
+			       what+": edge ("+left+","+right+")");
+	    MatrixChecks.check(graph.edgeIndex(left,right) == (edges[left][right] ? count : -1),
+			       what+": index of edge ("+left+","+right+")");
+	    if (edges[left][right])
+	      MatrixChecks.check(succTargets[count++] == right,what+": successor "+right+" of "+left);
+	  }
+
+	int n = succOffsets[left+1]-succOffsets[left];
+	MatrixChecks.check(graph.numOfSuccessors(left) == n
+			   && graph.firstSuccessor(left) == (n == 0 ? -1 : succTargets[succOffsets[left]])
+			   && graph.lastSuccessor(left) == (n == 0 ? -1 : succTargets[succOffsets[left+1]-1])
+			   && (n == 0 || graph.successor(left,n-1) == graph.lastSuccessor(left))
+			   && enumerates(graph.succsIterator(left),succTargets,succOffsets[left],succOffsets[left+1]),
+			   what+": successors of "+left);
+      }
+    MatrixChecks.check(succOffsets[order] == count && succTargets.length == count && graph.numOfEdges() == count
+		       && mask.cardinality() == count,what+": number of edges");
+
+    count = 0;
+    for (int right = 0; right < order; right++)
+      {
+	MatrixChecks.check(predOffsets[right] == count,what+": predecessors of "+right);
+	for (int left = 0; left < order; left++)
+	  if (edges[left][right])
+	    MatrixChecks.check(predTargets[count++] == left,what+": predecessor "+left+" of "+right);
+
+	int n = predOffsets[right+1]-predOffsets[right];
+	MatrixChecks.check(graph.numOfPredecessors(right) == n
+			   && graph.firstPredecessor(right) == (n == 0 ? -1 : predTargets[predOffsets[right]])
+			   && graph.lastPredecessor(right) == (n == 0 ? -1 : predTargets[predOffsets[right+1]-1])
+			   && (n == 0 || graph.predecessor(right,0) == graph.firstPredecessor(right))
+			   && enumerates(graph.predsIterator(right),predTargets,predOffsets[right],predOffsets[right+1]),
+			   what+": predecessors of "+right);
+      }
+    MatrixChecks.check(predOffsets[order] == count && predTargets.length == count,what+": number of edges");
+  }
+
+  static private void checkAdjacency (Random random)
+  {
+    for (int trial = 0; trial < 300; trial++)
+      {
+	int order = 1+random.nextInt(trial % 10 == 0 ? 300 : 40);
+	double density = trial % 50 == 0 ? 0.0 : trial % 50 == 1 ? 1.0 : random.nextDouble();
+	double[][] weights = randomWeights(random,order,density);
+	boolean[][] edges = new boolean[order][order];
+	String what = order+"x"+order+" graph of density "+density;
+
+	for (int left = 0; left < order; left++)
+	  for (int right = 0; right < order; right++)
+	    edges[left][right] = weights[left][right] != 0.0;
+
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	checkEdges(graph,edges,what);
+
+	// setting weights changes neither the edges nor the weights given
+	int left = random.nextInt(order), right = random.nextInt(order);
+	double weight = weights[left][right];
+	graph.set(left+1,right+1,weights[left][right] == 0.0 ? 7.0 : 0.0);
+	MatrixChecks.check(graph.get(left+1,right+1) == (weight == 0.0 ? 7.0 : 0.0)
+			   && weights[left][right] == weight,what+": weight of ("+left+","+right+")");
+	checkEdges(graph,edges,what+" with a weight set");
+      }
+
+    MatrixChecks.check(MatrixChecks.fails(() -> new BipartiteGraph(new double[2][3])),"non-square graph");
+  }
+
+  static private void checkMatchings (Random random)
+  {
+    for (int trial = 0; trial < 300; trial++)
+      {
+	int order = 1+random.nextInt(8);
+	double[][] weights = randomWeights(random,order,random.nextDouble());
+	BipartiteGraph graph = new BipartiteGraph(weights);
+	int expected = bruteMatchingSize(weights,0,0);
+	int[] mates = graph.maximumMatching();
+
+	int size = 0;
+	boolean[] used = new boolean[order];
+	for (int left = 0; left < order; left++)
+	  if (mates[left] >= 0)
+	    {
+	      MatrixChecks.check(weights[left][mates[left]] != 0.0,
+				 "matched non-edge ("+left+","+mates[left]+")");
+	      MatrixChecks.check(!used[mates[left]],"right node "+mates[left]+" matched twice");
+	      used[mates[left]] = true;
+	      size++;
+	    }
+
+	MatrixChecks.check(size == expected,"matching of size "+size+" instead of "+expected);
+	MatrixChecks.check(graph.maximumMatchingSize() == expected,"maximum matching size");
+	MatrixChecks.check(graph.hasPerfectMatching() == (expected == order),"perfect matching test");
+      }
+  }
+}
@@ -0,0 +1,168 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/KernelChecks.java
+// STARTED ON. . Thu Apr 16 11:40:05 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+
+/**
+ * This is a non-public class checking the entry-wise kernels of
+ * <tt>EntryKernels</tt>, and the reductions of <tt>VectorKernels</tt>
+ * when <a href="Vectorization.html">vectorization</a> is enabled,
+ * against the operations of each algebra applied one entry at a time.
+ * The runs have all lengths up to several SIMD vectors, so that both
+ * the vector loops and their scalar tails are exercised, and start at
+ * various offsets; the entries outside a run must be left alone. It is
+ * run by <tt>MatrixChecks</tt>; running it again with the system
+ * property <tt>hlt.math.matrix.vectorize</tt> set to <tt>false</tt>
+ * checks the scalar loops.
+ *
+ * @see         EntryKernels
+ * @see         VectorKernels
+ * @see         MatrixChecks
+ */
+final class KernelChecks
+{
+  static void run (Random random)
+  {
+    checkEntryKernels(random);
+
+    if (Vectorization.ENABLED)
+      checkReductions(random);
+  }
+
+  /**
+   * Return a new array of the given <tt>length</tt> of random entries in
+   * <tt>[-1,2)</tt>, with a few infinities and (if <tt>withNaNs</tt>)
+   * <tt>NaN</tt>s.
+   */
+  static private double[] randomEntries (Random random, int length, boolean withNaNs)
+  {
+    double[] entries = new double[length];
+
+    for (int i = 0; i < length; i++)
+      switch (random.nextInt(20))
+	{
+	case 0:
+	  entries[i] = Double.POSITIVE_INFINITY;
+	  break;
+	case 1:
+	  entries[i] = Double.NEGATIVE_INFINITY;
+	  break;
+	case 2:
+	  entries[i] = withNaNs ? Double.NaN : 0.5;
+	  break;
+	default:
+	  entries[i] = 3*random.nextDouble()-1;
+	}
+
+    return entries;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>c</tt> has the same entries as
+   * <tt>expected</tt> (<tt>NaN</tt>s included), and only
+   * <tt>sentinel</tt> outside <tt>[offset,offset+length)</tt>.
+   */
+  static private boolean matches (double[] c, double[] expected, int offset, int length, double sentinel)
+  {
+    for (int i = 0; i < c.length; i++)
+      {
+	double entry = i >= offset && i < offset+length ? expected[i-offset] : sentinel;
+	if (Double.compare(c[i],entry) != 0)
+	  return false;
+      }
+
+    return true;
+  }
+
+  static private void checkEntryKernels (Random random)
+  {
+    for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+      {
+	int kind = NumberAlgebra.kindOf(algebra);
+	boolean standard = kind == NumberAlgebra.STANDARD;
+
+	for (int trial = 0; trial < 200; trial++)
+	  {
+	    int length = random.nextInt(8*Vectorization.LANES+4);
+	    int aOffset = random.nextInt(4), bOffset = random.nextInt(4), cOffset = random.nextInt(4);
+	    double[] a = randomEntries(random,aOffset+length,false);
+	    double[] b = randomEntries(random,bOffset+length,false);
+	    double[] c = new double[cOffset+length+3];
+	    double[] expected = new double[length];
+	    double factor = 3*random.nextDouble()-1;
+	    String what = algebra+" kernel on "+length+" entries";
+
+	    for (int op : standard ? new int[] { EntryKernels.SUM, EntryKernels.DIFFERENCE }
+				   : new int[] { EntryKernels.SUM })
+	      {
+		java.util.Arrays.fill(c,-7.0);
+		EntryKernels.combine(op,kind,algebra,a,aOffset,b,bOffset,c,cOffset,length);
+		for (int i = 0; i < length; i++)
+		  expected[i] = op == EntryKernels.SUM ? algebra.sum(a[aOffset+i],b[bOffset+i])
+						       : algebra.difference(a[aOffset+i],b[bOffset+i]);
+		MatrixChecks.check(matches(c,expected,cOffset,length,-7.0),what+": combine "+op);
+	      }
+
+	    java.util.Arrays.fill(c,-7.0);
+	    EntryKernels.map(EntryKernels.SCALE,kind,algebra,factor,a,aOffset,c,cOffset,length);
+	    for (int i = 0; i < length; i++)
+	      expected[i] = factor*a[aOffset+i];
+	    MatrixChecks.check(matches(c,expected,cOffset,length,-7.0),what+": scale");
+
+	    if (standard)
+	      {
+		java.util.Arrays.fill(c,-7.0);
+		EntryKernels.map(EntryKernels.NEGATION,kind,algebra,0.0,a,aOffset,c,cOffset,length);
+		for (int i = 0; i < length; i++)
+		  expected[i] = -a[aOffset+i];
+		MatrixChecks.check(matches(c,expected,cOffset,length,-7.0),what+": negation");
+	      }
+
+	    java.util.Arrays.fill(c,-7.0);
+	    for (int i = 0; i < length; i++)
+	      c[cOffset+i] = expected[i] = b[bOffset+i];
+	    EntryKernels.accumulate(kind,algebra,factor,a,aOffset,c,cOffset,length);
+	    for (int i = 0; i < length; i++)
+	      expected[i] = algebra.sum(expected[i],algebra.product(factor,a[aOffset+i]));
+	    MatrixChecks.check(matches(c,expected,cOffset,length,-7.0),what+": accumulate");
+	  }
+      }
+  }
+
+  static private void checkReductions (Random random)
+  {
+    for (int trial = 0; trial < 500; trial++)
+      {
+	int length = random.nextInt(8*Vectorization.LANES+4);
+	int offset = random.nextInt(4);
+	double[] a = randomEntries(random,offset+length,true);
+
+	// mostly runs within [0,1], with a NaN or an outlier at times
+	for (int i = offset; i < offset+length; i++)
+	  if (trial % 2 == 0 || random.nextInt(length) > 0)
+	    a[i] = Double.isNaN(a[i]) ? a[i] : random.nextDouble();
+
+	boolean inside = true;
+	double max = -1.0;
+	for (int i = offset; i < offset+length; i++)
+	  {
+	    inside &= !(a[i] < 0.0 || a[i] > 1.0);
+	    max = Math.max(max,a[i]);
+	  }
+
+	MatrixChecks.check(VectorKernels.inUnitInterval(a,offset,length) == inside,
+			   "inUnitInterval on "+length+" entries");
+
+	// N.B.: the maximum of a run with a NaN is unspecified
+	if (!Double.isNaN(max))
+	  MatrixChecks.check(VectorKernels.maxOf(-1.0,a,offset,length) == max,
+			     "maxOf on "+length+" entries");
+      }
+  }
+}
@@ -15,14 +15,17 @@ package hlt.math.matrix;
  * documentation listing</a>
  */
 
+import java.util.concurrent.ForkJoinPool;
+
 import hlt.language.tools.Misc;
 // import hlt.math.fuzzy.StandardFuzzyAlgebra;
 
 /**
  * This defines the class <tt>Matrix</tt> that implements basic
  * two-dimensional linear algebra in the form of a collection of
- * operations defined on a <tt>Matrix</tt> class represented as a 2D
- * array of <tt>double</tt>s.  <p/>
+ * operations defined on a <tt>Matrix</tt> class represented as a dense
+ * row-major array of <tt>double</tt>s (<i>i.e.</i>, all its rows laid
+ * out one after the other in a single flat array).  <p/>
  *
  * <span style="font-family:arial,helvetica;">
  * <a name="contents"><b>Contents</b></a> <small>(<a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
@@ -38,8 +41,11 @@ import hlt.language.tools.Misc;
  * <p/>
  * <li><a href="#objectmethods">Object Methods</a></li>
  *     <ul>
+ *     <li><a href="#into">Allocation-Free Operations</a></li>
+ *     <li><a href="#views">Views</a></li>
  *     <li><a href="#properties">Object Boolean Properties</a></li>
  *     <li><a href="#square">Square-Matrix Specific Methods</a></li>
+ *     <li><a href="#closure">Powers and Closures</a></li>
  *     <li><a href="#vectors">Vector-Specific Methods</a></li>
  *     <li><a href="#io">I/O Object Methods</a></li>
  *     </ul>
@@ -49,6 +55,8 @@ import hlt.language.tools.Misc;
  *     <li><a href="#useful">Useful Static Matrix Methods</a></li>
  *     <li><a href="#checks">Consistency Checking</a></li>
  *     <li><a href="#printing">Printing Control</a></li>
+ *     <li><a href="#parallel">Parallel Execution Control</a></li>
+ *     <li><a href="#strassen">Fast Product Control</a></li>
  *     <li><a href="#precision">Precision Control</a></li>
  *     <li><a href="#random">Random-Value Generation Control</a></li>
  *     <li><a href="#miscio">Miscellaneous static I/O tools</a></li>
@@ -95,7 +103,8 @@ public class Matrix
 				 rows+","+cols+")");
     this.rows = rows;
     this.cols = cols;
-    data = new double[rows][cols];
+    stride = cols;
+    entries = new double[checkedSize(rows,cols)];
   }
 
   /**
@@ -109,7 +118,8 @@ public class Matrix
 				 order+")");
     this.rows = order;
     this.cols = order;
-    data = new double[order][order];
+    stride = order;
+    entries = new double[checkedSize(order,order)];
   }
 
   /**
@@ -122,29 +132,37 @@ public class Matrix
   }
 
   /**
-   * Construct a new <tt>Matrix</tt> sharing the given <tt>data</tt>
-   * array if <tt>inPlace</tt> is <tt>true</tt>, and copying it
-   * otherwise.
+   * Construct a new <tt>Matrix</tt> with the entries of the given
+   * <tt>data</tt> array. <b>N.B.:</b> since a <tt>Matrix</tt> keeps its
+   * entries in a single flat array, a 2D array can never be shared and
+   * is always copied whatever the value of <tt>inPlace</tt>; use <a
+   * href="#Matrix(int,int,double[],boolean)"><tt>Matrix(rows,cols,entries,inPlace)</tt></a>
+   * to share a flat array.
    */
   public Matrix (double[][] data, boolean inPlace)
   {
-    if (inPlace)
-      setData(data);
-    else
-      {
-	rows = data.length;
-	cols = data[0].length;
-	this.data = copyData(data);
-      }
+    double[] entries = flatten(data);
+    initialize(data.length,data[0].length,entries);
   }
 
   /**
-   * Construct a new <tt>Matrix</tt> from the data array of the given
-   * <tt>Matrix</tt>.
+   * Construct a new <tt>rows</tt>-by-<tt>cols</tt> <tt>Matrix</tt>
+   * sharing the given row-major <tt>entries</tt> array if
+   * <tt>inPlace</tt> is <tt>true</tt>, and copying it otherwise.
+   */
+  public Matrix (int rows, int cols, double[] entries, boolean inPlace)
+  {
+    initialize(rows,cols,inPlace ? entries : entries.clone());
+  }
+
+  /**
+   * Construct a new <tt>Matrix</tt> from a copy of the entries of the
+   * given <tt>Matrix</tt>.
    */
   protected Matrix (Matrix M)
   {
-    this(M.data);
+    this(M.rows,M.cols);
+    M.copyEntriesTo(entries);
   }
 
   /**
@@ -164,10 +182,42 @@ public class Matrix
   protected int cols;
 
   /**
-   * This is the <tt>rows</tt>-by-<tt>cols</tt> array containing the
-   * entries of this <tt>Matrix</tt>.
+   * This is the flat array containing the <tt>rows</tt>-by-<tt>cols</tt>
+   * entries of this <tt>Matrix</tt>: the entry at
+   * (<tt>row</tt>,<tt>col</tt>) (counted from <tt>0</tt>) is stored at
+   * index <tt>offset+row*stride+col*colStride</tt>. For a matrix that is
+   * not a <a href="#views">view</a>, <tt>offset</tt> is <tt>0</tt> and
+   * <tt>colStride</tt> is <tt>1</tt> (<i>i.e.</i>, the entries are in
+   * row-major order).
+   */
+  protected double[] entries;
+
+  /**
+   * This is the distance in the <tt>entries</tt> array between the
+   * starts of two consecutive rows of this <tt>Matrix</tt>. It is never
+   * less than <tt>cols</tt> for a matrix that is not a view.
    */
-  protected double[][] data;
+  protected int stride;
+
+  /**
+   * This is the index in the <tt>entries</tt> array of the first entry
+   * of this <tt>Matrix</tt>.
+   */
+  protected int offset;
+
+  /**
+   * This is the distance in the <tt>entries</tt> array between two
+   * consecutive entries of a row of this <tt>Matrix</tt>. It is
+   * <tt>1</tt> but for a view (<i>e.g.</i>, a transposed view, whose
+   * rows are the columns of the matrix it views).
+   */
+  protected int colStride = 1;
+
+  /**
+   * This is <tt>true</tt> iff this <tt>Matrix</tt> is a view sharing the
+   * entries of another one.
+   */
+  private boolean isView;
 
   /**
    * <h4 align="center"><span style="font-family:arial,helvetica;">
@@ -210,12 +260,108 @@ public class Matrix
   }
 
   /**
-   * Return the <tt>data</tt> array of this <tt>Matrix</tt>.
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> <tt>double[][]</tt> array
+   * containing a copy of the entries of this <tt>Matrix</tt>. This is
+   * meant for legacy code expecting a 2D array: modifying the returned
+   * array does not modify this <tt>Matrix</tt>.
    */
   public final double[][] data ()
   {
+    double[][] data = new double[rows][cols];
+
+    for (int row = 0; row < rows; row++)
+      for (int col = 0; col < cols; col++)
+	data[row][col] = entries[index(row,col)];
+
     return data;
   }
+
+  /**
+   * Return the flat <tt>entries</tt> array of this <tt>Matrix</tt> (not
+   * a copy). Its layout is given by <a
+   * href="#offset()"><tt>offset()</tt></a>, <a
+   * href="#stride()"><tt>stride()</tt></a>, and <a
+   * href="#colStride()"><tt>colStride()</tt></a>; code that expects a
+   * row-major array from index <tt>0</tt> should use that of <a
+   * href="#contiguous()"><tt>contiguous()</tt></a>.
+   */
+  public final double[] entries ()
+  {
+    return entries;
+  }
+
+  /**
+   * Return the distance in the <tt>entries</tt> array between the
+   * starts of two consecutive rows of this <tt>Matrix</tt>.
+   */
+  public final int stride ()
+  {
+    return stride;
+  }
+
+  /**
+   * Return the index in the <tt>entries</tt> array of the first entry
+   * of this <tt>Matrix</tt>.
+   */
+  public final int offset ()
+  {
+    return offset;
+  }
+
+  /**
+   * Return the distance in the <tt>entries</tt> array between two
+   * consecutive entries of a row of this <tt>Matrix</tt>.
+   */
+  public final int colStride ()
+  {
+    return colStride;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this <tt>Matrix</tt> is a <a
+   * href="#views">view</a> sharing the entries of another one.
+   */
+  public final boolean isView ()
+  {
+    return isView;
+  }
+
+  /**
+   * Return the index in the <tt>entries</tt> array of the entry at
+   * (<tt>row</tt>,<tt>col</tt>). <b>N.B.</b> This counts <tt>row</tt>
+   * and <tt>col</tt> from <tt>0</tt> and does not check bounds.
+   */
+  protected final int index (int row, int col)
+  {
+    return offset+row*stride+col*colStride;
+  }
+
+  /**
+   * Return the entry at (<tt>row</tt>,<tt>col</tt>) of this
+   * <tt>Matrix</tt>. <b>N.B.</b> This counts <tt>row</tt> and
+   * <tt>col</tt> from <tt>0</tt> and assumes indexing is safe.
+   */
+  protected double entry (int row, int col)
+  {
+    return entries[offset+row*stride+col*colStride];
+  }
+
+  /**
+   * Copy the entries of this <tt>Matrix</tt> into the given array in
+   * dense row-major order (<i>i.e.</i>, with stride <tt>cols</tt>).
+   */
+  protected final void copyEntriesTo (double[] target)
+  {
+    if (colStride != 1)
+      for (int row = 0; row < rows; row++)
+	for (int col = 0; col < cols; col++)
+	  target[row*cols+col] = entries[index(row,col)];
+    else if (stride == cols)
+      System.arraycopy(entries,offset,target,0,rows*cols);
+    else
+      for (int row = 0; row < rows; row++)
+	System.arraycopy(entries,offset+row*stride,target,row*cols,cols);
+  }
   
   /**
    * <h4 align="center"><span style="font-family:arial,helvetica;">
@@ -240,22 +386,25 @@ public class Matrix
 
   /**
    * Set the (<tt>row</tt>,<tt>col</tt>) entry of this <tt>Matrix</tt>
-   * <tt>data</tt> array to the given <tt>value</tt> and return the
+   * <tt>entries</tt> array to the given <tt>value</tt> and return the
    * previous value that was there. <b>N.B.</b> This counts <tt>row</tt>
    * and <tt>col</tt> from <tt>0</tt> and assumes indexing is safe
    * (<i>e.g.</i>, after <tt>checkLegalEntry</tt>).
    */
   protected final double safeDataUpdate (int row, int col, double value)
   {
-    double old = data[row][col];
-    data[row][col] = value;
+    int index = index(row,col);
+    double old = entries[index];
+    entries[index] = value;
     return old;
   }
 
   /**
    * This is an in-place pointwise update that modifies each entry of
    * this matrix to the value of the corresponding entry in the given
-   * matrix.
+   * matrix. If this is a view, this modifies the entries of the matrix
+   * it views; <tt>M</tt> must not overlap it, unless it is the very
+   * same view.
    */
   public Matrix update (Matrix M)
   {
@@ -263,9 +412,17 @@ public class Matrix
       throw new RuntimeException("Incompatible matrix dimensions: <"
 				 +rows+","+cols+"> =/= <"+M.rows+","+M.cols+">");
 
-    for (int i = 0; i < rows; i++)
-      for (int j = 0; j < cols; j++)
-	data[i][j] = M.data[i][j];
+    if (colStride == 1 && M.colStride == 1)
+      for (int row = 0; row < rows; row++)
+	System.arraycopy(M.entries,M.offset+row*M.stride,entries,offset+row*stride,cols);
+    else if (stride == 1 && M.stride == 1)
+      // both are laid out by columns
+      for (int col = 0; col < cols; col++)
+	System.arraycopy(M.entries,M.offset+col*M.colStride,entries,offset+col*colStride,rows);
+    else
+      for (int row = 0; row < rows; row++)
+	for (int col = 0; col < cols; col++)
+	  entries[index(row,col)] = M.entries[M.index(row,col)];
 
     return this;
   }
@@ -281,24 +438,80 @@ public class Matrix
     // check for legal entry and adjust i and j to start from 0 in data in
     // the code following this
     checkLegalEntry(i--,j--);
-    return data[i][j];
+    return entries[index(i,j)];
   }
 
   /**
-   * Modifies this matrix to have the given two-dimensional data array
-   * of <tt>double</tt>s and corresponding numbers of rows and columns.
-   * If the array <tt>null</tt> a runtime exception is thrown.
+   * Modifies this matrix to have the entries of the given
+   * two-dimensional data array of <tt>double</tt>s and corresponding
+   * numbers of rows and columns. The entries are copied into this
+   * matrix's flat storage. If the array <tt>null</tt> a runtime
+   * exception is thrown.
    */
   public Matrix setData (double[][] data)
+  {
+    double[] entries = flatten(data);
+    return setEntries(data.length,data[0].length,entries);
+  }
+
+  /**
+   * Modifies this matrix to have the given <tt>rows</tt>-by-<tt>cols</tt>
+   * row-major flat array of <tt>double</tt>s as entries (shared, not
+   * copied). If the array is <tt>null</tt> or too short, a runtime
+   * exception is thrown.
+   */
+  public Matrix setEntries (int rows, int cols, double[] entries)
+  {
+    initialize(rows,cols,entries);
+    return this;
+  }
+
+  /**
+   * Return a new row-major flat array with the entries of the given
+   * two-dimensional <tt>data</tt> array. If the array is <tt>null</tt>
+   * a runtime exception is thrown.
+   */
+  static private double[] flatten (double[][] data)
   {
     if (data == null)
       throw new RuntimeException
 	("Attempt to initialize a matrix with a null data array");
 
-    rows = data.length;
-    cols = data[0].length;
-    this.data = data;
-    return this;
+    int rows = data.length;
+    int cols = data[0].length;
+    double[] entries = new double[checkedSize(rows,cols)];
+
+    for (int row = 0; row < rows; row++)
+      System.arraycopy(data[row],0,entries,row*cols,cols);
+
+    return entries;
+  }
+
+  /**
+   * Set the components of this matrix for the given
+   * <tt>rows</tt>-by-<tt>cols</tt> row-major <tt>entries</tt> (shared,
+   * not copied). This is private, rather than <tt>setEntries</tt>
+   * itself, so that constructors call no method a subclass may
+   * override.
+   */
+  private void initialize (int rows, int cols, double[] entries)
+  {
+    if (entries == null)
+      throw new RuntimeException
+	("Attempt to initialize a matrix with a null entries array");
+
+    if (rows <= 0 || cols <= 0 || entries.length < checkedSize(rows,cols))
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+") for "+
+				 entries.length+" entries");
+
+    this.rows = rows;
+    this.cols = cols;
+    this.stride = cols;
+    this.offset = 0;
+    this.colStride = 1;
+    this.isView = false;
+    this.entries = entries;
   }
 
   /**
@@ -350,9 +563,15 @@ public class Matrix
    */
   public Matrix plus (Matrix M)
   {
-    return new Matrix().setData(dataPlus(data,M.data));
+    verifyCompatibleDimension(M.rows,M.cols,rows,cols);
+
+    return combine(EntryKernels.SUM,this,M,new Matrix(rows,cols));
   }
 
+  /**
+   * Return a new <tt>double[][]</tt> array equal to the entry-wise sum of
+   * the given arrays.
+   */
   protected final double[][] dataPlus (double[][] A, double[][] B)
   {
     int rows = A.length;
@@ -369,6 +588,24 @@ public class Matrix
     return newData;
   }
 
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this</tt> plus the
+   * <tt>OffHeapMatrix</tt> <tt>M</tt>.
+   */
+  public OffHeapMatrix plus (OffHeapMatrix M)
+  {
+    return OffHeapMatrix.plus(this,M);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this</tt> minus the
+   * <tt>OffHeapMatrix</tt> <tt>M</tt>.
+   */
+  public OffHeapMatrix minus (OffHeapMatrix M)
+  {
+    return OffHeapMatrix.minus(this,M);
+  }
+
   /**
    * Modify in place the entries of <tt>this</tt> to those of
    * <tt>this</tt> plus <tt>M</tt> and return <tt>this</tt>.
@@ -377,17 +614,19 @@ public class Matrix
   {
     verifyCompatibleDimension(M.rows,M.cols,rows,cols);
 
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	data[row][col] = sum(data[row][col],
-			     M.data[row][col]);
-
-    return this;
+    return combine(EntryKernels.SUM,this,M,this);
   }
 
   /**
    * Return a new <tt>Matrix</tt> equal to <tt>this</tt> times
-   * <tt>M</tt> (does not modify <tt>this</tt>).
+   * <tt>M</tt> (does not modify <tt>this</tt>) under the current number
+   * algebra. Each entry of the result is the algebra <tt>sum</tt>,
+   * starting from its <tt>zero()</tt>, of the <tt>product</tt>s of the
+   * corresponding row and column entries. It is computed by the
+   * cache-blocked kernel of <tt>MatrixProduct</tt>, by tiles in parallel
+   * in <a href="#parallel">parallel execution mode</a>, except for
+   * large square matrices under the <tt>StandardAlgebra</tt> (see the <a
+   * href="#strassen">Strassen cutoff</a>).
    */
   public Matrix times (Matrix M)
   {
@@ -395,32 +634,62 @@ public class Matrix
       throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
 				 " matrix by a "+M.rows+"x"+M.cols+" matrix");
 
-    Matrix result = new Matrix(rows,M.cols);
+    return multiplyInto(this,M,new Matrix(rows,M.cols));
+  }
 
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < M.cols; col++)
-	{
-	  double entry = 0.0;
-	  for (int k = 0; k < cols; k++)
-	    entry = sum(entry,
-			product(data[row][k],
-				M.data[k][col]));
-
-	  // N.B: since multiplying two truncated entries may exceed the
-	  // truncation limit, the resulting matrix entry must be truncated
-	  result.data[row][col] = truncate(entry);
-	}
+  /**
+   * Return a new <tt>Matrix</tt> equal to <tt>this</tt> times the
+   * <tt>SparseMatrix</tt> <tt>S</tt> under the current number algebra
+   * (see <a href="SparseMatrix.html#times(hlt.math.matrix.Matrix,hlt.math.matrix.SparseMatrix)"><tt>SparseMatrix.times(M,S)</tt></a>).
+   */
+  public Matrix times (SparseMatrix S)
+  {
+    return SparseMatrix.times(this,S);
+  }
 
-    return result;
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this</tt> times the
+   * <tt>OffHeapMatrix</tt> <tt>M</tt> under the current number algebra.
+   */
+  public OffHeapMatrix times (OffHeapMatrix M)
+  {
+    return OffHeapMatrix.times(this,M);
+  }
+
+  /**
+   * Return a new <tt>FloatMatrix</tt> equal to <tt>this</tt> times the
+   * <tt>FloatMatrix</tt> <tt>M</tt> under the current number algebra,
+   * accumulated in <tt>double</tt>.
+   */
+  public FloatMatrix times (FloatMatrix M)
+  {
+    return FloatMatrix.times(this,M);
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to <tt>this</tt> times the
+   * <tt>QuantizedMatrix</tt> <tt>M</tt> under the current number
+   * algebra, decoding the entries of <tt>M</tt> on the fly.
+   */
+  public Matrix times (QuantizedMatrix M)
+  {
+    return QuantizedMatrix.times(this,M);
   }
 
   /**
    * Modify in place the entries of <tt>this</tt> to those of
-   * <tt>this</tt> times <tt>M</tt> and return <tt>this</tt>.
+   * <tt>this</tt> times <tt>M</tt> and return <tt>this</tt>. If this is
+   * a view, the product is written into the entries it views, so
+   * <tt>M</tt> must then be square.
    */
   public Matrix i_times (Matrix M)
   {
-    return setData(this.times(M).data);
+    Matrix result = this.times(M);
+
+    if (isView)
+      return update(result);
+
+    return setEntries(result.rows,result.cols,result.entries);
   }
 
   /**
@@ -430,13 +699,7 @@ public class Matrix
   {
     verifyCompatibleDimension(M.rows,M.cols,rows,cols);
 
-    Matrix result = new Matrix(rows,cols);
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	result.data[row][col] = difference(data[row][col],
-					   M.data[row][col]);
-
-    return result;
+    return combine(EntryKernels.DIFFERENCE,this,M,new Matrix(rows,cols));
   }
 
   /**
@@ -447,12 +710,7 @@ public class Matrix
   {
     verifyCompatibleDimension(M.rows,M.cols,rows,cols);
 
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	data[row][col] = difference(data[row][col],
-				    M.data[row][col]);
-
-    return this;
+    return combine(EntryKernels.DIFFERENCE,this,M,this);
   }
 
   /**
@@ -460,13 +718,7 @@ public class Matrix
    */
   public Matrix minus ()
   {
-    Matrix result = new Matrix(rows,cols);
-
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	result.data[row][col] = negation(data[row][col]);
-
-    return result;
+    return map(EntryKernels.NEGATION,0.0,this,new Matrix(rows,cols));
   }
 
   /**
@@ -475,11 +727,7 @@ public class Matrix
    */
   public Matrix i_minus ()
   {
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	data[row][col] = negation(data[row][col]);
-
-    return this;
+    return map(EntryKernels.NEGATION,0.0,this,this);
   }
 
   /**
@@ -488,16 +736,7 @@ public class Matrix
    */
   public Matrix scale (double factor)
   {
-    Matrix result = new Matrix(rows,cols);
-
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
-	  // N.B: since multiplying a truncated entry by a double may
-	  // exceed the truncation limit, the resulting matrix entry must
-	  // be truncated
-	result.data[row][col] = truncate(factor*data[row][col]);
-
-    return result;
+    return map(EntryKernels.SCALE,factor,this,new Matrix(rows,cols));
   }
 
   /**
@@ -506,14 +745,535 @@ public class Matrix
    */
   public Matrix i_scale (double factor)
   {
-    for (int row = 0; row < rows; row++)
-      for (int col = 0; col < cols; col++)
+    return map(EntryKernels.SCALE,factor,this,this);
+  }
+
+  /**
+   * Return the lazy expression made of this <tt>Matrix</tt> alone, from
+   * which to build an expression evaluated at once with its entry-wise
+   * operations fused (see <a href="MatrixExpression.html"><tt>MatrixExpression</tt></a>).
+   */
+  public MatrixExpression lazy ()
+  {
+    return MatrixExpression.of(this);
+  }
+
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="into" href="#contents">Allocation-Free Operations</a>
+   * </span></h4>
+   * <p/>
+   *
+   * The following static methods write their result into a target
+   * <tt>Matrix</tt> supplied by the caller (and return it) instead of
+   * allocating a new one. Together with the per-thread packing buffers
+   * of the product, this lets iterative algorithms (<i>e.g.</i>, power
+   * iteration alternating between two preallocated matrices) run at
+   * steady state without allocating anything. The target must have the
+   * dimensions of the result, or a <tt>RuntimeException</tt> is thrown.
+   */
+
+  /**
+   * Set <tt>C</tt> to <tt>A</tt> times <tt>B</tt> under the current
+   * number algebra and return <tt>C</tt>, which must not share its
+   * entries with <tt>A</tt> or <tt>B</tt>.
+   */
+  static public Matrix multiplyInto (Matrix A, Matrix B, Matrix C)
+  {
+    return gemm(1.0,A,B,0.0,C);
+  }
+
+  /**
+   * Set <tt>C</tt> to <tt>alpha*A*B + beta*C</tt> under the current
+   * number algebra (<i>i.e.</i>, with the algebra's <tt>sum</tt> and
+   * <tt>product</tt>) and return <tt>C</tt>, which must not share its
+   * entries with <tt>A</tt> or <tt>B</tt>. When <tt>beta</tt> is
+   * <tt>0.0</tt>, the former entries of <tt>C</tt> are ignored (they
+   * are reset to the algebra's <tt>zero()</tt>, so that they may be
+   * anything, even <tt>NaN</tt>); otherwise, they are scaled by
+   * <tt>beta</tt> like <tt>i_scale</tt> does. Since <tt>alpha</tt>
+   * scales the products, it must be <tt>1.0</tt> under algebras other
+   * than the <tt>StandardAlgebra</tt>. Under the
+   * <tt>StandardAlgebra</tt>, a plain product of square matrices of
+   * order greater than the <a href="#strassen">Strassen cutoff</a> is
+   * computed with Strassen-Winograd's algorithm.
+   */
+  static public Matrix gemm (double alpha, Matrix A, Matrix B, double beta, Matrix C)
+  {
+    if (A.cols != B.rows)
+      throw new RuntimeException("Cannot multiply a "+A.rows+"x"+A.cols+
+				 " matrix by a "+B.rows+"x"+B.cols+" matrix");
+
+    verifyCompatibleDimension(C.rows,C.cols,A.rows,B.cols);
+
+    if (C.overlaps(A) || C.overlaps(B))
+      throw new RuntimeException("The target of a matrix product cannot share the entries of a factor");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+
+    if (alpha != 1.0 && kind != NumberAlgebra.STANDARD)
+      throw new RuntimeException("Cannot scale a matrix product by "+alpha+" in the "+algebra);
+
+    if (C.colStride != 1)
+      {
+	// the kernel writes rows of C: a target laid out by columns is
+	// computed as the transposed product of the transposed factors
+	// when the algebra's product commutes, and into a temporary
+	// otherwise
+	if (C.stride == 1 && kind != NumberAlgebra.GENERIC)
+	  gemm(alpha,B.transposed(),A.transposed(),beta,C.transposed());
+	else
+	  {
+	    Matrix T = new Matrix(C.rows,C.cols);
+	    if (beta != 0.0)
+	      T.update(C);
+	    C.update(gemm(alpha,A,B,beta,T));
+	  }
+	return C;
+      }
+
+    if (alpha == 1.0 && beta == 0.0 && A.colStride == 1 && B.colStride == 1
+	&& StrassenProduct.applies(algebra,A.rows,B.cols,A.cols))
+      StrassenProduct.multiply(algebra,A.rows,
+			       A.entries,A.offset,A.stride,
+			       B.entries,B.offset,B.stride,
+			       C.entries,C.offset,C.stride);
+    else
+      {
+	// each result entry starts as the algebra's zero (or beta times
+	// its former value) and accumulates the products of its row and
+	// column (see MatrixProduct); views of the factors are read in
+	// place with their strides (e.g., a transposed view of B is
+	// packed by columns)
+	if (beta == 0.0)
+	  C.fill(algebra.zero());
+	else if (beta != 1.0)
+	  map(EntryKernels.SCALE,beta,C,C);
+
+	MatrixTasks.multiply(algebra,alpha,A.rows,B.cols,A.cols,
+			     A.entries,A.offset,A.stride,A.colStride,
+			     B.entries,B.offset,B.stride,B.colStride,
+			     C.entries,C.offset,C.stride);
+      }
+
+    // either way, the entries of a product must be truncated
+    for (int row = 0; row < C.rows; row++)
+      truncate(C.entries,C.offset+row*C.stride,C.cols);
+
+    return C;
+  }
+
+  /**
+   * Set <tt>C</tt> to <tt>A+B</tt> and return <tt>C</tt>, which may be
+   * <tt>A</tt> or <tt>B</tt>.
+   */
+  static public Matrix plusInto (Matrix A, Matrix B, Matrix C)
+  {
+    verifyCompatibleDimension(B.rows,B.cols,A.rows,A.cols);
+    verifyCompatibleDimension(C.rows,C.cols,A.rows,A.cols);
+
+    return combine(EntryKernels.SUM,A,B,C);
+  }
+
+  /**
+   * Set <tt>C</tt> to <tt>A-B</tt> and return <tt>C</tt>, which may be
+   * <tt>A</tt> or <tt>B</tt>.
+   */
+  static public Matrix minusInto (Matrix A, Matrix B, Matrix C)
+  {
+    verifyCompatibleDimension(B.rows,B.cols,A.rows,A.cols);
+    verifyCompatibleDimension(C.rows,C.cols,A.rows,A.cols);
+
+    return combine(EntryKernels.DIFFERENCE,A,B,C);
+  }
+
+  /**
+   * Set <tt>C</tt> to <tt>factor*A</tt> and return <tt>C</tt>, which
+   * may be <tt>A</tt>.
+   */
+  static public Matrix scaleInto (double factor, Matrix A, Matrix C)
+  {
+    verifyCompatibleDimension(C.rows,C.cols,A.rows,A.cols);
+
+    return map(EntryKernels.SCALE,factor,A,C);
+  }
+
+  /**
+   * Set <tt>C</tt> to the transpose of <tt>A</tt> and return
+   * <tt>C</tt>, which must not share its entries with <tt>A</tt> (use
+   * <tt>i_transpose()</tt> to transpose a square matrix in place).
+   */
+  static public Matrix transposeInto (Matrix A, Matrix C)
+  {
+    verifyCompatibleDimension(C.rows,C.cols,A.cols,A.rows);
+
+    if (C.overlaps(A))
+      throw new RuntimeException("The target of a transposition cannot share the entries of its source");
+
+    if (A.colStride != 1 || C.colStride != 1)
+      return C.update(A.transposed());
+
+    if (!MatrixTasks.runsInParallel((long)A.rows*A.cols))
+      transposeEntries(A.entries,A.offset,A.stride,A.rows,A.cols,C.entries,C.offset,C.stride);
+    else
+      MatrixTasks.forRowBlocks(A.rows,A.cols,
+			       (fromRow,toRow) ->
+			       transposeEntries(A.entries,A.offset+fromRow*A.stride,A.stride,
+						toRow-fromRow,A.cols,
+						C.entries,C.offset+fromRow,C.stride));
+    return C;
+  }
+
+  /**
+   * Set all the entries of <tt>this</tt> to <tt>value</tt> and return
+   * <tt>this</tt>.
+   */
+  public Matrix fill (double value)
+  {
+    if (colStride != 1)
+      for (int row = 0; row < rows; row++)
+	for (int col = 0; col < cols; col++)
+	  entries[index(row,col)] = value;
+    else if (stride == cols)
+      java.util.Arrays.fill(entries,offset,offset+rows*cols,value);
+    else
+      for (int row = 0; row < rows; row++)
+	java.util.Arrays.fill(entries,offset+row*stride,offset+row*stride+cols,value);
+
+    return this;
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> to the <tt>SUM</tt> or
+   * <tt>DIFFERENCE</tt> (according to <tt>op</tt>, see
+   * <tt>EntryKernels</tt>) of the corresponding entries of <tt>A</tt>
+   * and <tt>B</tt>, and return <tt>C</tt>. The three matrices must have
+   * the same dimensions, but <tt>C</tt> may be <tt>A</tt> or
+   * <tt>B</tt>. The current number algebra is resolved once for the
+   * whole operation, which runs by blocks of rows in parallel in <a
+   * href="#parallel">parallel execution mode</a>.
+   */
+  static final Matrix combine (int op, Matrix A, Matrix B, Matrix C)
+  {
+    if (A.stride == 1 && B.stride == 1 && C.stride == 1
+	&& (A.colStride != 1 || B.colStride != 1 || C.colStride != 1))
+      {
+	// all three are laid out by columns: proceed by their columns
+	combine(op,A.transposed(),B.transposed(),C.transposed());
+	return C;
+      }
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    if (!MatrixTasks.runsInParallel((long)A.rows*A.cols))
+      combineRows(op,algebra,A,B,C,0,A.rows);
+    else
+      MatrixTasks.forRowBlocks(A.rows,A.cols,
+			       (fromRow,toRow) -> combineRows(op,algebra,A,B,C,fromRow,toRow));
+    return C;
+  }
+
+  /**
+   * Perform <tt>combine</tt> in the given <tt>algebra</tt> on rows
+   * <tt>fromRow</tt> (inclusive) to <tt>toRow</tt> (exclusive).
+   */
+  static private void combineRows (int op, NumberAlgebra algebra,
+				   Matrix A, Matrix B, Matrix C, int fromRow, int toRow)
+  {
+    int kind = NumberAlgebra.kindOf(algebra);
+
+    if (A.colStride == 1 && B.colStride == 1 && C.colStride == 1)
+      {
+	for (int row = fromRow; row < toRow; row++)
+	  EntryKernels.combine(op,kind,algebra,
+			       A.entries,A.offset+row*A.stride,
+			       B.entries,B.offset+row*B.stride,
+			       C.entries,C.offset+row*C.stride,A.cols);
+	return;
+      }
+
+    // rows of views with scattered entries are staged in buffers
+    double[][] buffers = rowBuffers(A.cols);
+    double[] a = buffers[0], b = buffers[1];
+
+    for (int row = fromRow; row < toRow; row++)
+      {
+	A.readRow(row,a);
+	B.readRow(row,b);
+	EntryKernels.combine(op,kind,algebra,a,0,b,0,a,0,A.cols);
+	C.writeRow(row,a);
+      }
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> to the <tt>NEGATION</tt> of, or to the
+   * <tt>SCALE</tt> by <tt>factor</tt> of (according to <tt>op</tt>, see
+   * <tt>EntryKernels</tt>), the corresponding entry of <tt>A</tt>, and
+   * return <tt>C</tt>. The two matrices must have the same dimensions,
+   * but <tt>C</tt> may be <tt>A</tt>. The current number algebra is
+   * resolved once for the whole operation, which runs by blocks of rows
+   * in parallel in <a href="#parallel">parallel execution mode</a>.
+   */
+  static final Matrix map (int op, double factor, Matrix A, Matrix C)
+  {
+    if (A.stride == 1 && C.stride == 1 && (A.colStride != 1 || C.colStride != 1))
+      {
+	// both are laid out by columns: proceed by their columns
+	map(op,factor,A.transposed(),C.transposed());
+	return C;
+      }
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    if (!MatrixTasks.runsInParallel((long)A.rows*A.cols))
+      mapRows(op,algebra,factor,A,C,0,A.rows);
+    else
+      MatrixTasks.forRowBlocks(A.rows,A.cols,
+			       (fromRow,toRow) -> mapRows(op,algebra,factor,A,C,fromRow,toRow));
+    return C;
+  }
+
+  /**
+   * Perform <tt>map</tt> in the given <tt>algebra</tt> on rows
+   * <tt>fromRow</tt> (inclusive) to <tt>toRow</tt> (exclusive).
+   */
+  static private void mapRows (int op, NumberAlgebra algebra, double factor,
+			       Matrix A, Matrix C, int fromRow, int toRow)
+  {
+    int kind = NumberAlgebra.kindOf(algebra);
+    int cols = A.cols;
+    boolean staged = A.colStride != 1 || C.colStride != 1;
+    double[] c = staged ? rowBuffers(cols)[0] : C.entries;
+
+    for (int row = fromRow; row < toRow; row++)
+      {
+	int cBase = staged ? 0 : C.offset+row*C.stride;
+
+	// rows of views with scattered entries are staged in a buffer
+	if (staged)
+	  {
+	    A.readRow(row,c);
+	    EntryKernels.map(op,kind,algebra,factor,c,0,c,0,cols);
+	  }
+	else
+	  EntryKernels.map(op,kind,algebra,factor,A.entries,A.offset+row*A.stride,c,cBase,cols);
+
+	if (op == EntryKernels.SCALE)
 	  // N.B: since multiplying a truncated entry by a double may
 	  // exceed the truncation limit, the resulting matrix entry must
 	  // be truncated
-	data[row][col] = truncate(factor*data[row][col]);
+	  for (int col = 0; col < cols; col++)
+	    c[cBase+col] = truncate(c[cBase+col]);
 
-    return this;
+	if (staged)
+	  C.writeRow(row,c);
+      }
+  }
+
+  /**
+   * Copy the entries of the given <tt>row</tt> (counted from <tt>0</tt>)
+   * of this <tt>Matrix</tt> into <tt>target</tt> from index <tt>0</tt>.
+   */
+  final void readRow (int row, double[] target)
+  {
+    int base = offset+row*stride;
+
+    for (int col = 0; col < cols; col++)
+      target[col] = entries[base+col*colStride];
+  }
+
+  /**
+   * Copy the first <tt>cols</tt> entries of <tt>source</tt> into the
+   * given <tt>row</tt> (counted from <tt>0</tt>) of this <tt>Matrix</tt>.
+   */
+  final void writeRow (int row, double[] source)
+  {
+    int base = offset+row*stride;
+
+    for (int col = 0; col < cols; col++)
+      entries[base+col*colStride] = source[col];
+  }
+
+  static private final ThreadLocal<double[][]> rowBuffers =
+    ThreadLocal.withInitial(() -> new double[][] { new double[0], new double[0] });
+
+  /**
+   * Return this thread's two row buffers, grown to at least
+   * <tt>length</tt> entries.
+   */
+  static private double[][] rowBuffers (int length)
+  {
+    double[][] buffers = rowBuffers.get();
+
+    if (buffers[0].length < length)
+      {
+	buffers[0] = new double[length];
+	buffers[1] = new double[length];
+      }
+
+    return buffers;
+  }
+
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="views" href="#contents">Views</a>
+   * </span></h4>
+   * <p/>
+   *
+   * A <i>view</i> is a <tt>Matrix</tt> sharing the <tt>entries</tt>
+   * array of another one, whose entries it lays out differently: a
+   * block of it, its transpose, a strided selection of its rows and
+   * columns, or any view of a view. Taking a view copies nothing and
+   * takes constant time; reading or modifying a view reads or modifies
+   * the matrix it views. A view is a <tt>Matrix</tt> like any other, and
+   * all operations accept views as arguments and as targets of the <a
+   * href="#into">allocation-free operations</a>. Kernels read views in
+   * place with their strides; in particular, the product of <tt>A</tt>
+   * by the <tt>transposed()</tt> view of <tt>B</tt> packs the rows of
+   * <tt>B</tt> as the columns of the second factor, and never transposes
+   * <tt>B</tt> physically. Entry-wise operations on views laid out by
+   * columns proceed by columns.<p/>
+   *
+   * <b>N.B.:</b> As for <tt>get</tt> and <tt>set</tt>, the bounds of
+   * views are counted from <tt>1</tt> (and are inclusive).
+   */
+
+  /**
+   * Construct a view of the entries of <tt>M</tt> with the given layout.
+   */
+  private Matrix (Matrix M, int offset, int rows, int cols, int stride, int colStride)
+  {
+    this.entries = M.entries;
+    this.offset = offset;
+    this.rows = rows;
+    this.cols = cols;
+    this.stride = stride;
+    this.colStride = colStride;
+    this.isView = true;
+  }
+
+  /**
+   * Return a view of the block of this <tt>Matrix</tt> made of its rows
+   * <tt>firstRow</tt> to <tt>lastRow</tt> and its columns
+   * <tt>firstCol</tt> to <tt>lastCol</tt>.
+   */
+  public Matrix submatrix (int firstRow, int lastRow, int firstCol, int lastCol)
+  {
+    return slice(firstRow,lastRow,1,firstCol,lastCol,1);
+  }
+
+  /**
+   * Return a view of this <tt>Matrix</tt> made of every
+   * <tt>rowStep</tt>-th row from <tt>firstRow</tt> up to
+   * <tt>lastRow</tt>, and every <tt>colStep</tt>-th column from
+   * <tt>firstCol</tt> up to <tt>lastCol</tt>.
+   */
+  public Matrix slice (int firstRow, int lastRow, int rowStep,
+		       int firstCol, int lastCol, int colStep)
+  {
+    checkLegalEntry(firstRow,firstCol);
+    checkLegalEntry(lastRow,lastCol);
+
+    if (firstRow > lastRow || firstCol > lastCol || rowStep <= 0 || colStep <= 0)
+      throw new RuntimeException("Illegal matrix slice: rows "+firstRow+" to "+lastRow+
+				 " by "+rowStep+", columns "+firstCol+" to "+lastCol+
+				 " by "+colStep);
+
+    return new Matrix(this,index(firstRow-1,firstCol-1),
+		      (lastRow-firstRow)/rowStep+1,(lastCol-firstCol)/colStep+1,
+		      stride*rowStep,colStride*colStep);
+  }
+
+  /**
+   * Return a view of the <tt>i</tt>-th row of this <tt>Matrix</tt> as a
+   * row vector.
+   */
+  public Matrix row (int i)
+  {
+    return slice(i,i,1,1,cols,1);
+  }
+
+  /**
+   * Return a view of the <tt>j</tt>-th column of this <tt>Matrix</tt> as
+   * a column vector.
+   */
+  public Matrix column (int j)
+  {
+    return slice(1,rows,1,j,j,1);
+  }
+
+  /**
+   * Return a view of the transpose of this <tt>Matrix</tt>, whose rows
+   * are its columns (unlike <tt>transpose()</tt>, which returns a new
+   * matrix, and <tt>i_transpose()</tt>, which only applies to square
+   * matrices).
+   */
+  public Matrix transposed ()
+  {
+    return new Matrix(this,offset,cols,rows,colStride,stride);
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> (not a view) with a copy of the entries
+   * of this one.
+   */
+  public Matrix copy ()
+  {
+    return new Matrix(this);
+  }
+
+  /**
+   * Return this <tt>Matrix</tt> if its <tt>entries</tt> array holds its
+   * rows contiguously from index <tt>0</tt> (as for any matrix that is
+   * not a view), and a new copy of it otherwise. This is meant for code
+   * that accesses the <tt>entries</tt> array directly with the
+   * <tt>stride()</tt> as only layout parameter.
+   */
+  public final Matrix contiguous ()
+  {
+    return offset == 0 && colStride == 1 ? this : copy();
+  }
+
+  /**
+   * Return <tt>true</tt> if this <tt>Matrix</tt> and <tt>M</tt> may
+   * share some entries. This is exact for two blocks of the same matrix
+   * (or of its transpose), and conservative otherwise.
+   */
+  final boolean overlaps (Matrix M)
+  {
+    if (entries != M.entries)
+      return false;
+
+    if (stride == M.stride && colStride == M.colStride && Math.min(stride,colStride) == 1)
+      {
+	// both are blocks of a matrix laid out with the same major
+	// stride: compare their ranges of major and minor indices
+	int major = Math.max(stride,colStride);
+	boolean byRows = stride == major;
+	int extent = byRows ? cols : rows, mExtent = byRows ? M.cols : M.rows;
+	int start = offset%major, mStart = M.offset%major;
+
+	if (major > 1 && start+extent <= major && mStart+mExtent <= major)
+	  {
+	    int first = offset/major, mFirst = M.offset/major;
+	    int length = byRows ? rows : cols, mLength = byRows ? M.rows : M.cols;
+
+	    return first < mFirst+mLength && mFirst < first+length
+		&& start < mStart+mExtent && mStart < start+extent;
+	  }
+      }
+
+    return offset <= M.lastIndex() && M.offset <= lastIndex();
+  }
+
+  /**
+   * Return the index in the <tt>entries</tt> array of the last entry of
+   * this <tt>Matrix</tt>.
+   */
+  private int lastIndex ()
+  {
+    return offset+(rows-1)*stride+(cols-1)*colStride;
   }
 
   /**
@@ -524,7 +1284,7 @@ public class Matrix
   {
     verifyCompatibleDimension(M.rows,M.cols,rows,cols);
 
-    return equalData(data,M.data);
+    return equalEntries(M);
   }
 
   /**
@@ -533,9 +1293,17 @@ public class Matrix
    */
   public void swapRows (int row, int col)
   {
-    double[] tmp = data[row];
-    data[row] = data[col];
-    data[col] = tmp;
+    if (row == col)
+      return;
+
+    double tmp;
+
+    for (int k = 0; k < cols; k++)
+      {
+	tmp = entries[index(row,k)];
+	entries[index(row,k)] = entries[index(col,k)];
+	entries[index(col,k)] = tmp;
+      }
   }
 
   /**
@@ -546,20 +1314,22 @@ public class Matrix
   {
     double tmp;
 
-    for (int k = 0; k < data.length; k++)
+    for (int k = 0; k < rows; k++)
       {
-	tmp = data[k][row];
-	data[k][row] = data[k][col];
-	data[k][col] = tmp;
+	tmp = entries[index(k,row)];
+	entries[index(k,row)] = entries[index(k,col)];
+	entries[index(k,col)] = tmp;
       }
   }
 
   /**
-   * Return a new <tt>Matrix</tt> that is the transpose of this one.
+   * Return a new <tt>Matrix</tt> that is the transpose of this one (see
+   * <a href="#transposed()"><tt>transposed()</tt></a> for a view of it
+   * that copies nothing).
    */
   public Matrix transpose ()
   {
-    return new Matrix().setData(dataTranspose(data));
+    return transposeInto(this,new Matrix(cols,rows));
   }
 
   /**
@@ -580,28 +1350,42 @@ public class Matrix
     if (A == B)
       return true;
 
-    if (A.data == B.data)
-      return true;
-
     if (B.rows != A.rows || B.cols != A.cols)
       throw new RuntimeException("Incompatible matrix dimensions: <"
 				 +A.rows+","+A.cols+"> =/= <"+B.rows+","+B.cols+">");
 
+    return A.equalEntries(B);
+  }
+
+  /**
+   * Return <tt>true</tt> iff the entries of <tt>this</tt> and of the
+   * given same-sized <tt>Matrix</tt> are entry-wise equal.
+   */
+  protected final boolean equalEntries (Matrix M)
+  {
+    if (entries == M.entries && offset == M.offset
+	&& stride == M.stride && colStride == M.colStride)
+      return true;
+
+    for (int row = 0; row < rows; row++)
+      {
+	int base = offset+row*stride;
+	int mBase = M.offset+row*M.stride;
 
-    for (int i = 0; i < rows; i++)
-      for (int j = 0; j < cols; j++)
-	if (A.data[i][j] != B.data[i][j])
-	  return false;
+	for (int col = 0; col < cols; col++)
+	  if (entries[base+col*colStride] != M.entries[mBase+col*M.colStride])
+	    return false;
+      }
 
     return true;
   }
 
   /**
-   * Return <tt>true</tt> iff this matrix has no data array.
+   * Return <tt>true</tt> iff this matrix has no entries array.
    */
   public final boolean isVacuous ()
   {
-    return data == null;
+    return entries == null;
   }
 
   /**
@@ -627,7 +1411,7 @@ public class Matrix
 	
 	while (rowIsAllZero && col < cols)
 	  {
-	    rowIsAllZero = (data[row][col] == 0.0);
+	    rowIsAllZero = (entries[index(row,col)] == 0.0);
 	    col++;
 	  }
 
@@ -651,7 +1435,7 @@ public class Matrix
 	
 	while (colIsAllZero && row < rows)
 	  {
-	    colIsAllZero = (data[row][col] == 0.0);
+	    colIsAllZero = (entries[index(row,col)] == 0.0);
 	    row++;
 	  }
 
@@ -669,7 +1453,7 @@ public class Matrix
   {
     for (int row = 0; row < rows; row++)
       for (int col = 0; col < cols; col++)
-	if (data[row][col] != 0.0)
+	if (entries[index(row,col)] != 0.0)
 	  return false;
 
     return true;
@@ -684,7 +1468,8 @@ public class Matrix
    */
   public final boolean isRowStochastic ()
   {
-    return isRowStochastic(data);
+    Matrix M = contiguous();
+    return isRowStochastic(M.entries,rows,cols,M.stride);
   }
 
   /**
@@ -706,7 +1491,8 @@ public class Matrix
    */
   public final boolean isColumnStochastic ()
   {
-    return isColumnStochastic(data);
+    Matrix M = contiguous();
+    return isColumnStochastic(M.entries,rows,cols,M.stride);
   }
 
   /**
@@ -717,31 +1503,24 @@ public class Matrix
    */
   public final boolean isDoublyStochastic ()
   {
-    return isDoublyStochastic(data);
+    Matrix M = contiguous();
+    return isDoublyStochastic(M.entries,rows,cols,M.stride);
   }
 
   /**
-   * Return <tt>true</tt> iff the given <tt>data</tt> array this is a
-   * row-stochastic matrix; <i>i.e.</i>, all the rows are in
+   * Return <tt>true</tt> iff the given row-major <tt>entries</tt> array
+   * of a <tt>rows</tt>-by-<tt>cols</tt> matrix with the given
+   * <tt>stride</tt> is row-stochastic; <i>i.e.</i>, all the rows are in
    * <tt>[0.0,1.0]</tt> and their components add up to <tt>1.0</tt>.
    */
-  protected final boolean isRowStochastic (double[][] data)
+  protected final boolean isRowStochastic (double[] entries, int rows, int cols, int stride)
   {
-    int rows = data.length;
-    int cols = data[0].length;
-
     for (int row = 0; row < rows; row++)
       {
-	double rowSum = 0;
-	
-	for (int col = 0; col < cols; col++)
-	  {
-	    if (data[row][col] < 0.0 || data[row][col] > 1.0)
-	      return false; // not within [0.0,1.0]
+	double rowSum = stochasticSum(entries,row*stride,cols);
 
-	    rowSum = sum(rowSum,
-			 data[row][col]);
-	  }
+	if (Double.isNaN(rowSum))
+	  return false; // not within [0.0,1.0]
 
 	if (truncate(rowSum) != 1.0)
 	  return false;
@@ -752,26 +1531,27 @@ public class Matrix
   }
 
   /**
-   * Return <tt>true</tt> iff the given <tt>data</tt> array is
-   * column-stochastic; <i>i.e.</i>, all the columns are in
-   * <tt>[0.0,1.0]</tt> and their components add up to <tt>1.0</tt>.
+   * Return <tt>true</tt> iff the given row-major <tt>entries</tt> array
+   * of a <tt>rows</tt>-by-<tt>cols</tt> matrix with the given
+   * <tt>stride</tt> is column-stochastic; <i>i.e.</i>, all the columns
+   * are in <tt>[0.0,1.0]</tt> and their components add up to
+   * <tt>1.0</tt>.
    */
-  protected final boolean isColumnStochastic (double[][] data)
+  protected final boolean isColumnStochastic (double[] entries, int rows, int cols, int stride)
   {
-    int rows = data.length;
-    int cols = data[0].length;
-
     for (int col = 0; col < cols; col++)
       {
 	double colSum = 0;
 	
 	for (int row = 0; row < rows; row++)
 	  {
-	    if (data[row][col] < 0.0 || data[row][col] > 1.0)
+	    double entry = entries[row*stride+col];
+
+	    if (entry < 0.0 || entry > 1.0)
 	      return false; // not within [0.0,1.0]
 
 	    colSum = sum(colSum,
-			 data[row][col]);
+			 entry);
 	  }
 
 	if (truncate(colSum) != 1.0)
@@ -783,50 +1563,124 @@ public class Matrix
   }
 
   /**
-   * Return <tt>true</tt> iff this is a doubly-stochastic data array;
-   * <i>i.e.</i>, that it all the rows and all the columns have only
-   * entries in <tt>[0.0,1.0]</tt> that add up to <tt>1.0</tt> in each
-   * dimension.
+   * Return <tt>true</tt> iff the given row-major <tt>entries</tt> array
+   * of a <tt>rows</tt>-by-<tt>cols</tt> matrix with the given
+   * <tt>stride</tt> is doubly-stochastic; <i>i.e.</i>, that it all the
+   * rows and all the columns have only entries in <tt>[0.0,1.0]</tt>
+   * that add up to <tt>1.0</tt> in each dimension.
    */
-  protected final boolean isDoublyStochastic (double[][] data)
+  protected final boolean isDoublyStochastic (double[] entries, int rows, int cols, int stride)
   {
-    int rows = data.length;
-    int cols = data[0].length;
 
     // as we compute for each row the sum of its entries we also
     // accumulate the sum on entries for each column and store it in
     // this array until we reach the last row
-    double[] colSums = new double[rows];
+    double[] colSums = new double[cols];
     
     for (int row = 0; row < rows; row++)
       {
-	double rowSum = 0;
-	
-	for (int col = 0; col < cols; col++)
-	  {
-	    if (data[row][col] < 0.0 || data[row][col] > 1.0)
-	      return false; // not within [0.0,1.0]
-
-	    rowSum = sum(rowSum,
-			 data[row][col]);
+	double rowSum = stochasticSum(entries,row*stride,cols);
 
-	    colSums[row] = sum(colSums[row],
-			       data[row][col]);
-	  }
+	if (Double.isNaN(rowSum))
+	  return false; // not within [0.0,1.0]
 
 	if (rowSum != 1.0)
 	  return false;
+
+	for (int col = 0; col < cols; col++)
+	  colSums[col] = sum(colSums[col],
+			     entries[row*stride+col]);
       }
 
     // if we're here, we need to check each column sums
-    for (int row = 0; row < rows; row++)
-      if (truncate(colSums[row]) != 1.0)
+    for (int col = 0; col < cols; col++)
+      if (truncate(colSums[col]) != 1.0)
 	return false;
 
     // ok - we're good
     return true;	  
   }
 
+  /**
+   * Return <tt>true</tt> iff the given <tt>data</tt> array is
+   * row-stochastic (see <tt>isRowStochastic(double[],int,int,int)</tt>,
+   * to which this delegates on a flat copy of it).
+   */
+  protected final boolean isRowStochastic (double[][] data)
+  {
+    double[] entries = flatten(data);
+    return isRowStochastic(entries,data.length,data[0].length,data[0].length);
+  }
+
+  /**
+   * Return <tt>true</tt> iff the given <tt>data</tt> array is
+   * column-stochastic (see
+   * <tt>isColumnStochastic(double[],int,int,int)</tt>, to which this
+   * delegates on a flat copy of it).
+   */
+  protected final boolean isColumnStochastic (double[][] data)
+  {
+    double[] entries = flatten(data);
+    return isColumnStochastic(entries,data.length,data[0].length,data[0].length);
+  }
+
+  /**
+   * Return <tt>true</tt> iff the given <tt>data</tt> array is
+   * doubly-stochastic (see
+   * <tt>isDoublyStochastic(double[],int,int,int)</tt>, to which this
+   * delegates on a flat copy of it).
+   */
+  protected final boolean isDoublyStochastic (double[][] data)
+  {
+    double[] entries = flatten(data);
+    return isDoublyStochastic(entries,data.length,data[0].length,data[0].length);
+  }
+
+  /**
+   * Return the sum, according to the current number algebra and
+   * starting from <tt>0.0</tt>, of the <tt>length</tt> entries of the
+   * given array starting at <tt>base</tt>, or <tt>NaN</tt> if any of
+   * them is not in <tt>[0.0,1.0]</tt>. The range check (and the sum
+   * under the <tt>MaxMinAlgebra</tt>) use SIMD kernels when <a
+   * href="Vectorization.html">vectorization</a> is enabled; a standard
+   * sum is always performed in order since stochasticity is checked
+   * exactly.
+   */
+  static private final double stochasticSum (double[] entries, int base, int length)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    int kind = NumberAlgebra.kindOf(algebra);
+
+    if (Vectorization.ENABLED)
+      {
+	if (!VectorKernels.inUnitInterval(entries,base,length))
+	  return Double.NaN;
+
+	if (kind == NumberAlgebra.MAX_MIN)
+	  return VectorKernels.maxOf(0.0,entries,base,length);
+      }
+
+    double sum = 0.0;
+
+    for (int i = base; i < base+length; i++)
+      {
+	double entry = entries[i];
+
+	if (entry < 0.0 || entry > 1.0)
+	  return Double.NaN;
+
+	if (kind == NumberAlgebra.STANDARD)
+	  sum += entry;
+	else if (kind == NumberAlgebra.MAX_MIN)
+	  sum = Math.max(sum,entry);
+	else
+	  sum = algebra.sum(sum,entry);
+      }
+
+    return sum;
+  }
+
   /**
    * Modifies the <tt>row</tt>-th row of this <tt>Matrix</tt> by
    * normalizing each of its entries by dividing it by the sum of all
@@ -836,6 +1690,7 @@ public class Matrix
   private final void normalizeRow (int row)
   {
     double rowSum = 0.0; // the sum of the entries on this row
+    int base = offset+row*stride;
 
     System.err.println();
     System.err.println("------------------------------------------------------------------------");
@@ -845,19 +1700,19 @@ public class Matrix
 
     for (int col = 0; col < cols; col++)
       {
-	data[row][col] = truncate(data[row][col]);
+	entries[base+col*colStride] = truncate(entries[base+col*colStride]);
 
-	if (data[row][col] < 0.0)
+	if (entries[base+col*colStride] < 0.0)
 	  throw new RuntimeException
-	    ("Negative data array entry "+data[row][col]+" at indices "+
+	    ("Negative data array entry "+entries[base+col*colStride]+" at indices "+
 	     row+","+col+": can only make non-negative matrix row-stochastic.");
 
 	System.err.print(" ");
-	System.err.printf(floatFormatString(),data[row][col]);
+	System.err.printf(floatFormatString(),entries[base+col*colStride]);
 	System.err.print(col<(cols-1)?"+":"");
 
 	rowSum = sum(rowSum,
-		     data[row][col]);
+		     entries[base+col*colStride]);
       }
 
     rowSum = truncate(rowSum);
@@ -872,16 +1727,16 @@ public class Matrix
 
     for (int col = 0; col < cols; col++)
       {
-	if (data[row][col] == rowSum)
+	if (entries[base+col*colStride] == rowSum)
 	  { // this means that the row has only one non-zero at col
 	    // so the normalized value at col is 1.00 (and all
 	    // others still 0.0)
-	    data[row][col] = normalizedRowSum = actualNormalizedRowSum = 1.0;
+	    entries[base+col*colStride] = normalizedRowSum = actualNormalizedRowSum = 1.0;
 	    return;
 	  }
 
 	// dividing by the sum is safe since != 0.0:
-	double normalizedEntry = truncate(data[row][col]/rowSum);
+	double normalizedEntry = truncate(entries[base+col*colStride]/rowSum);
 
 	System.err.print(" ");
 	System.err.printf(floatFormatString(),normalizedEntry);
@@ -891,7 +1746,7 @@ public class Matrix
 	  { // this is the last non-zero in this row: adjust to how
 	    // close to 1.0: i.e., 1.0 - sum of all the previous non-0
 	    // normalized entries!
-	    data[row][col] = difference(1.0,
+	    entries[base+col*colStride] = difference(1.0,
 					actualNormalizedRowSum);
 	    actualNormalizedRowSum = sum(actualNormalizedRowSum,
 					 normalizedEntry);
@@ -901,7 +1756,7 @@ public class Matrix
 	  {
 	    actualNormalizedRowSum = sum(actualNormalizedRowSum,
 					 normalizedEntry);
-	    data[row][col] = normalizedEntry;
+	    entries[base+col*colStride] = normalizedEntry;
 	  }
       }
 
@@ -928,7 +1783,7 @@ public class Matrix
   {
     int col = 0;
 
-    while (col < cols && data[row][col] == 0.0)
+    while (col < cols && entries[index(row,col)] == 0.0)
       col++;    
 
     return (col == cols) ? -1 : col;
@@ -943,7 +1798,7 @@ public class Matrix
   {
     int row = 0;
 
-    while (row < rows && data[row][row] == 0.0)
+    while (row < rows && entries[index(row,row)] == 0.0)
       row++;    
 
     return (row == rows) ? -1 : row;
@@ -958,7 +1813,7 @@ public class Matrix
   {
     int col = cols-1;
 
-    while (col > 0 && data[row][col] == 0.0)
+    while (col > 0 && entries[index(row,col)] == 0.0)
       col--;    
 
     return col;
@@ -973,7 +1828,7 @@ public class Matrix
   {
     int row = rows-1;
 
-    while (row > 0 && data[row][row] == 0.0)
+    while (row > 0 && entries[index(row,row)] == 0.0)
       row--;    
 
     return row;
@@ -1008,7 +1863,7 @@ public class Matrix
 
     double result = 0.0;
     for (int i = 0; i < rows; i++)
-      result += data[i][i];
+      result += entries[index(i,i)];
 
     return result;
   }
@@ -1025,7 +1880,7 @@ public class Matrix
     // whether either of each symmetric entries is non-zero
     for (int row = 0; row < rows-1; row++)
       for (int col = 1; col < cols; col++)
-	if (data[row][col] != 0.0 || data[col][row] != 0.0)
+	if (entries[index(row,col)] != 0.0 || entries[index(col,row)] != 0.0)
 	  return false;
 
     return true;
@@ -1033,8 +1888,10 @@ public class Matrix
 
   /**
    * If this is a square matrix, this returns <tt>this</tt> after
-   * modifying its <tt>data</tt> array in place to its transpose.  If it
-   * is not square, it throws a <tt>RuntimeException</tt>.
+   * modifying its <tt>entries</tt> array in place to its transpose.  If it
+   * is not square, it throws a <tt>RuntimeException</tt> (but its <a
+   * href="#transposed()"><tt>transposed()</tt></a> view may be used
+   * instead).
    */
   public Matrix i_transpose ()
   {
@@ -1044,13 +1901,115 @@ public class Matrix
     // need only sweep through the upper triangular part and swap
     // symmetric non-equal entries (this is necessarily safe)
     for (int row = 0; row < rows-1; row++)
-      for (int col = 1; col < cols; col++)
-	if (data[col][row] != data[row][col])
-	  data[col][row] = safeDataUpdate(row,col,data[col][row]);
+      for (int col = row+1; col < cols; col++)
+	if (entries[index(col,row)] != entries[index(row,col)])
+	  entries[index(col,row)] = safeDataUpdate(row,col,entries[index(col,row)]);
 
     return this;
   }
 
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="closure" href="#contents">Powers and Closures</a>
+   * </span></h4>
+   * <p/>
+   * Following are methods computing the powers and the closures of a
+   * square matrix in the current algebra. The closure of <tt>A</tt> is
+   * <tt>A<sup>+</sup> = A &oplus; A<sup>2</sup> &oplus; A<sup>3</sup>
+   * &oplus; ...</tt> (<i>e.g.</i>, in the <tt>MaxMinAlgebra</tt>, the
+   * matrix of the strengths of the strongest paths of the graph whose
+   * adjacency matrix is <tt>A</tt>) and its reflexive closure is
+   * <tt>A<sup>*</sup> = I &oplus; A<sup>+</sup></tt>. A closure may be
+   * computed either <tt>CLOSURE_BY_SQUARING</tt>, which suits sparse
+   * matrices under an <a
+   * href="NumberAlgebra.html#isIdempotent()">idempotent</a> algebra as
+   * only the rows that may still change are recomputed, or
+   * <tt>CLOSURE_BY_ELIMINATION</tt>, a blocked Floyd-Warshall-Kleene
+   * elimination, which suits dense matrices; see <tt>MatrixClosure</tt>
+   * for details.
+   */
+
+  /**
+   * Denotes closure by repeated squaring.
+   */
+  static final public int CLOSURE_BY_SQUARING = 0;
+
+  /**
+   * Denotes closure by blocked Floyd-Warshall-Kleene elimination.
+   */
+  static final public int CLOSURE_BY_ELIMINATION = 1;
+
+  /**
+   * Return a new matrix equal to <tt>this</tt> (square) matrix to the
+   * power <tt>k</tt> in the current algebra, computed by repeated
+   * squaring with <tt>O(log k)</tt> products; its power <tt>0</tt> is
+   * the algebra's identity matrix.
+   */
+  public Matrix power (int k)
+  {
+    if (!isSquare())
+      throw new RuntimeException("Cannot compute the power of a non-square matrix");
+
+    return MatrixClosure.power(this,k);
+  }
+
+  /**
+   * Return a new matrix equal to the closure of <tt>this</tt> (square)
+   * matrix in the current algebra: by elimination if the algebra is
+   * idempotent and the matrix is dense (at least a tenth of its entries
+   * are not the algebra's <tt>zero()</tt>), and by squaring otherwise.
+   */
+  public Matrix closure ()
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    return closure(algebra.isIdempotent() && MatrixClosure.isDense(this,algebra.zero())
+		   ? CLOSURE_BY_ELIMINATION
+		   : CLOSURE_BY_SQUARING);
+  }
+
+  /**
+   * Return a new matrix equal to the closure of <tt>this</tt> (square)
+   * matrix in the current algebra, computed with the specified
+   * <tt>method</tt> (<tt>CLOSURE_BY_SQUARING</tt> or
+   * <tt>CLOSURE_BY_ELIMINATION</tt>). This throws a
+   * <tt>RuntimeException</tt> if the closure does not exist (<i>e.g.</i>,
+   * in the <tt>StandardAlgebra</tt>, if the series does not converge, or
+   * in the <tt>MinPlusAlgebra</tt> (resp., <tt>MaxPlusAlgebra</tt>), if
+   * there is a cycle of negative (resp., positive) length).
+   */
+  public Matrix closure (int method)
+  {
+    if (!isSquare())
+      throw new RuntimeException("Cannot compute the closure of a non-square matrix");
+
+    switch (method)
+      {
+      case CLOSURE_BY_SQUARING:
+	return MatrixClosure.bySquaring(this);
+      case CLOSURE_BY_ELIMINATION:
+	return MatrixClosure.byElimination(this);
+      default:
+	throw new RuntimeException("Unknown closure method: "+method);
+      }
+  }
+
+  /**
+   * Return a new matrix equal to the reflexive closure <tt>I &oplus;
+   * A<sup>+</sup></tt> of <tt>this</tt> (square) matrix <tt>A</tt> in
+   * the current algebra.
+   */
+  public Matrix reflexiveClosure ()
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    Matrix C = closure();
+
+    for (int i = 0; i < rows; i++)
+      C.entries[C.index(i,i)] = truncate(algebra.sum(algebra.one(),C.entries[C.index(i,i)]));
+
+    return C;
+  }
+
   /**
    * <h4 align="center"><span style="font-family:arial,helvetica;">
    * <a name="vectors" href="#contents">Vector-Specific Methods</a></li></a>
@@ -1104,7 +2063,7 @@ public class Matrix
     for (int row = 0; row < rows; row++)
       {
 	for (int col = 0; col < cols; col++)
-	  System.out.printf(floatFormatString(),data[row][col]);
+	  System.out.printf(floatFormatString(),entries[index(row,col)]);
 	System.out.println();
       }
     System.out.println();
@@ -1112,7 +2071,12 @@ public class Matrix
 
   final protected void showData ()
   {
-    showDataArray(data);
+    for (int row = 0; row < rows; row++)
+      {
+	for (int col = 0; col < cols; col++)
+	  System.out.printf(floatFormatString(),entries[index(row,col)]);
+	System.out.println();
+      }
   }
 
   /**
@@ -1152,6 +2116,44 @@ public class Matrix
     return newData;
   }
 
+  /**
+   * The side of the square blocks in which <tt>transposeEntries</tt>
+   * proceeds so that both the rows read and the rows written stay in
+   * cache.
+   */
+  static private final int TRANSPOSE_BLOCK = 32;
+
+  /**
+   * Write the transpose of the <tt>rows</tt>-by-<tt>cols</tt> row-major
+   * matrix stored in <tt>source</tt> (from index <tt>sourceOffset</tt>
+   * with row stride <tt>sourceStride</tt>) into <tt>target</tt> (from
+   * index <tt>targetOffset</tt> with row stride <tt>targetStride</tt>).
+   * It proceeds by square blocks to avoid sweeping a full column of
+   * <tt>target</tt> per row of <tt>source</tt>.
+   */
+  static protected final void transposeEntries (double[] source, int sourceOffset, int sourceStride,
+						int rows, int cols,
+						double[] target, int targetOffset, int targetStride)
+  {
+    for (int row0 = 0; row0 < rows; row0 += TRANSPOSE_BLOCK)
+      {
+	int rowEnd = Math.min(row0+TRANSPOSE_BLOCK,rows);
+
+	for (int col0 = 0; col0 < cols; col0 += TRANSPOSE_BLOCK)
+	  {
+	    int colEnd = Math.min(col0+TRANSPOSE_BLOCK,cols);
+
+	    for (int row = row0; row < rowEnd; row++)
+	      {
+		int base = sourceOffset+row*sourceStride;
+
+		for (int col = col0; col < colEnd; col++)
+		  target[targetOffset+col*targetStride+row] = source[base+col];
+	      }
+	  }
+      }
+  }
+
   static final protected void showDataArray (double[][] data)
   {
     for (int row = 0; row < data.length; row++)
@@ -1211,12 +2213,12 @@ public class Matrix
    */
   static public Matrix identity (int order)
   {
-    double[][] id = new double[order][order];
+    Matrix id = new Matrix(order);
 
     for(int i = 0; i< order; i++)
-      id[i][i] = 1.0;
+      id.entries[i*id.stride+i] = 1.0;
     
-    return new Matrix(id);
+    return id;
   }
 
   /**
@@ -1247,8 +2249,8 @@ public class Matrix
    */
   final protected void checkLegalEntry (int i, int j)
   {
-    checkLegalIndex(i,data.length);
-    checkLegalIndex(j,data[0].length);
+    checkLegalIndex(i,rows);
+    checkLegalIndex(j,cols);
   }
   
   /**
@@ -1263,6 +2265,22 @@ public class Matrix
 	("Matrix index "+i+" out of bounds [1,"+size+"]");    
   }
 
+  /**
+   * Return the number of entries of a <tt>rows</tt>-by-<tt>cols</tt>
+   * matrix, throwing a <tt>RuntimeException</tt> if it does not fit in a
+   * single Java array.
+   */
+  static final protected int checkedSize (int rows, int cols)
+  {
+    long size = (long)rows*(long)cols;
+
+    if (size > Integer.MAX_VALUE - 8)
+      throw new RuntimeException("Matrix dimensions ("+rows+","+cols+
+				 ") exceed the capacity of a flat array");
+
+    return (int)size;
+  }
+
   /**
    * Throws a <tt>RuntimeException</tt> if any entry in the given
    * <tt>data</tt> array is not stochastic.
@@ -1270,10 +2288,11 @@ public class Matrix
   static final protected void checkForStochasticEntries (double[][] data)
   {
     for (int row = 0; row < data.length; row++)
-      for (int col = 0; col < data[0].length; col++)
-	if (data[row][col] < 0.0 || data[row][col] > 1.0)
-	  throw new RuntimeException
-	    ("Non-stochastic entry in data array at (row,col): ("+row+","+col+")");
+      if (!Vectorization.ENABLED || !VectorKernels.inUnitInterval(data[row],0,data[0].length))
+	for (int col = 0; col < data[0].length; col++)
+	  if (data[row][col] < 0.0 || data[row][col] > 1.0)
+	    throw new RuntimeException
+	      ("Non-stochastic entry in data array at (row,col): ("+row+","+col+")");
   }  
 
   /**
@@ -1294,13 +2313,25 @@ public class Matrix
    * by the <tt>show()</tt> method, redefine this string to the wished
    * format string.
    */
-  static private int printWidth = 9;
+  static private volatile int printWidth = 9;
 
   /**
    * Return the <tt>printf</tt> width used for printing floating-point
-   * numbers.  types.
+   * numbers.  types. This is that of the <a
+   * href="MatrixContext.html"><tt>MatrixContext</tt></a> bound to the
+   * current thread if any, or else the process-wide one.
    */
   static public final int printWidth ()
+  {
+    MatrixContext context = MatrixContext.bound();
+    return context == null ? printWidth : context.printWidth();
+  }
+
+  /**
+   * Return the process-wide <tt>printf</tt> width, ignoring any bound
+   * <tt>MatrixContext</tt>.
+   */
+  static final int globalPrintWidth ()
   {
     return printWidth;
   }
@@ -1335,12 +2366,146 @@ public class Matrix
   {
     return
       "%" +
-      Integer.toString(printWidth) +
+      Integer.toString(printWidth()) +
       "." +
       Integer.toString(currentSignificantDigits()) +
       "f";
   }
 
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="parallel" href="#contents">Parallel Execution Control</a>
+   * </span></h4>
+   * <p/>
+   *
+   * The following are various (static) paraphernalia for the control of
+   * the parallel execution of <tt>Matrix</tt> operations. When parallel
+   * execution is on, <tt>times</tt> is split into tiles of its result,
+   * and <tt>plus</tt>, <tt>minus</tt>, <tt>scale</tt>,
+   * <tt>transpose</tt> and their in-place variants are split into
+   * blocks of rows, all run on the current <tt>ForkJoinPool</tt>. This
+   * only happens for results of at least <tt>parallelThreshold()</tt>
+   * entries; smaller operations always run sequentially. In either
+   * mode, each entry is computed by the same sequence of arithmetic
+   * operations, so results are identical bit for bit.
+   */
+
+  /**
+   * Whether matrix operations may run in parallel; defaults to
+   * <tt>false</tt>.
+   */
+  static private boolean PARALLEL = false;
+
+  /**
+   * Return <tt>true</tt> iff matrix operations may run in parallel.
+   */
+  static public final boolean isParallel ()
+  {
+    return PARALLEL;
+  }
+
+  /**
+   * Turn parallel execution of matrix operations on or off according to
+   * <tt>parallel</tt> and return it.
+   */
+  static public final boolean setParallel (boolean parallel)
+  {
+    return PARALLEL = parallel;
+  }
+
+  /**
+   * The minimum number of result entries of an operation for it to run
+   * in parallel; defaults to <tt>65536</tt> (<i>e.g.</i>, a 256-by-256
+   * matrix).
+   */
+  static private int PARALLEL_THRESHOLD = 1 << 16;
+
+  /**
+   * Return the minimum number of result entries of an operation for it
+   * to run in parallel.
+   */
+  static public final int parallelThreshold ()
+  {
+    return PARALLEL_THRESHOLD;
+  }
+
+  /**
+   * Set the minimum number of result entries of an operation for it to
+   * run in parallel to the maximum of <tt>1</tt> and <tt>threshold</tt>,
+   * and return it.
+   */
+  static public final int setParallelThreshold (int threshold)
+  {
+    return PARALLEL_THRESHOLD = Math.max(1,threshold);
+  }
+
+  /**
+   * The <tt>ForkJoinPool</tt> on which parallel matrix operations run;
+   * when <tt>null</tt> (the default), the common pool is used.
+   */
+  static private ForkJoinPool POOL = null;
+
+  /**
+   * Return the <tt>ForkJoinPool</tt> on which parallel matrix operations
+   * run.
+   */
+  static public final ForkJoinPool forkJoinPool ()
+  {
+    return POOL == null ? ForkJoinPool.commonPool() : POOL;
+  }
+
+  /**
+   * Set the <tt>ForkJoinPool</tt> on which parallel matrix operations
+   * run to <tt>pool</tt> (or to the common pool if <tt>null</tt>).
+   */
+  static public final void setForkJoinPool (ForkJoinPool pool)
+  {
+    POOL = pool;
+  }
+
+  /**
+   * <h4 align="center"><span style="font-family:arial,helvetica;">
+   * <a name="strassen" href="#contents">Fast Product Control</a>
+   * </span></h4>
+   * <p/>
+   *
+   * Under the <tt>StandardAlgebra</tt>, which is a ring, the product of
+   * square matrices of order greater than <tt>strassenCutoff()</tt> is
+   * computed with the Winograd variant of Strassen's algorithm (see
+   * <tt>StrassenProduct</tt>): the operands are recursively split into
+   * quadrants until their order is at most the cutoff, trading one
+   * product of blocks in eight for additions. Its results differ from
+   * those of the blocked kernel by rounding only. Algebras without
+   * subtraction, such as the <tt>MaxMinAlgebra</tt>, always use the
+   * blocked kernel.
+   */
+
+  /**
+   * The order of square matrices above which products use Strassen's
+   * algorithm; defaults to <tt>1024</tt>.
+   */
+  static private int STRASSEN_CUTOFF = 1024;
+
+  /**
+   * Return the order of square matrices above which products use
+   * Strassen's algorithm.
+   */
+  static public final int strassenCutoff ()
+  {
+    return STRASSEN_CUTOFF;
+  }
+
+  /**
+   * Set the order of square matrices above which products use
+   * Strassen's algorithm to the maximum of <tt>16</tt> and
+   * <tt>cutoff</tt>, and return it. Setting it to
+   * <tt>Integer.MAX_VALUE</tt> turns Strassen's algorithm off.
+   */
+  static public final int setStrassenCutoff (int cutoff)
+  {
+    return STRASSEN_CUTOFF = Math.max(16,cutoff);
+  }
+
   /**
    * <h4 align="center"><span style="font-family:arial,helvetica;">
    * <a name="precision" href="#contents">Precision Control</a>
@@ -1393,7 +2558,7 @@ public class Matrix
    */
   static public final boolean headsOrTail ()
   {
-    if (Math.random() < COIN_TOSS_BIAS)
+    if (Math.random() < bias())
       return true;
     return false;
   }
@@ -1401,13 +2566,24 @@ public class Matrix
   /**
    * The default <tt>COIN_TOSS_BIAS</tt>.
    */
-  static private double COIN_TOSS_BIAS = 0.5;
+  static private volatile double COIN_TOSS_BIAS = 0.5;
 
   /**
    * Return the current toss-coin bias (a <tt>double</tt> in
-   * <tt>[0.0,1.0]</tt>).
+   * <tt>[0.0,1.0]</tt>): that of the <tt>MatrixContext</tt> bound to the
+   * current thread if any, or else the process-wide one.
    */
   static public final double bias ()
+  {
+    MatrixContext context = MatrixContext.bound();
+    return context == null ? COIN_TOSS_BIAS : context.bias();
+  }
+
+  /**
+   * Return the process-wide toss-coin bias, ignoring any bound
+   * <tt>MatrixContext</tt>.
+   */
+  static final double globalBias ()
   {
     return COIN_TOSS_BIAS;
   }
@@ -1466,6 +2642,19 @@ public class Matrix
     return value;
   }
 
+  /**
+   * Truncate the <tt>length</tt> entries of the given array from index
+   * <tt>from</tt> on (see <tt>truncate(double)</tt>). <b>N.B.:</b> since
+   * multiplying two truncated entries may exceed the truncation limit,
+   * this must be applied to the entries resulting from a product (and
+   * likewise from a scaling).
+   */
+  static final void truncate (double[] entries, int from, int length)
+  {
+    for (int i = from; i < from+length; i++)
+      entries[i] = truncate(entries[i]);
+  }
+
   /**
    * Return the given array <tt>data</tt> after of truncating all its
    * entries by setting to <tt>0</tt> all its digits past the position
@@ -1487,7 +2676,7 @@ public class Matrix
    * The greatest number of significant decimal digits accepted for a
    * matrix entries. It is set by default to <tt>5</tt> decimal places.
    */
-  static private int MAX_SIGNIFICANT_DIGITS = 5;
+  static private volatile int MAX_SIGNIFICANT_DIGITS = 5;
 
   /**
    * The method <tt>maxSignificantDigits()</tt> return the currently
@@ -1531,13 +2720,24 @@ public class Matrix
    * for matrix entries (all digits after this one are <tt>0</tt>). This
    * defaults to <tt>1</tt>.
    */
-  static private int CURRENT_SIGNIFICANT_DIGITS = 1;
+  static private volatile int CURRENT_SIGNIFICANT_DIGITS = 1;
 
   /**
    * Return the current number of significant of decimal digits after the
-   * dot that are taken into account.
+   * dot that are taken into account: that of the <tt>MatrixContext</tt>
+   * bound to the current thread if any, or else the process-wide one.
    */
   public static int currentSignificantDigits ()
+  {
+    MatrixContext context = MatrixContext.bound();
+    return context == null ? CURRENT_SIGNIFICANT_DIGITS : context.significantDigits();
+  }
+
+  /**
+   * Return the process-wide number of significant digits, ignoring any
+   * bound <tt>MatrixContext</tt>.
+   */
+  static final int globalSignificantDigits ()
   {
     return CURRENT_SIGNIFICANT_DIGITS;
   }
@@ -1567,7 +2767,7 @@ public class Matrix
    */
   static public final double currentPrecision ()
   {
-    return Math.pow(10.0,-CURRENT_SIGNIFICANT_DIGITS);
+    return Math.pow(10.0,-currentSignificantDigits());
   }
 
   /**
@@ -1588,13 +2788,24 @@ public class Matrix
    * This is a value in <tt>[0.0,1.0]</tt> used as approximation threshold
    * to <tt>0.0</tt> if too close; defaults to <tt>0.0</tt>.
    */
-  static private double THRESHOLD0 = 0.0;
+  static private volatile double THRESHOLD0 = 0.0;
 
   /**
    * Return the threshold for random rounding approximation to
-   * <tt>0.0</tt> currently in effect.
+   * <tt>0.0</tt> currently in effect: that of the <tt>MatrixContext</tt>
+   * bound to the current thread if any, or else the process-wide one.
    */
   static public final double threshold0 ()
+  {
+    MatrixContext context = MatrixContext.bound();
+    return context == null ? THRESHOLD0 : context.threshold0();
+  }
+
+  /**
+   * Return the process-wide threshold to <tt>0.0</tt>, ignoring any
+   * bound <tt>MatrixContext</tt>.
+   */
+  static final double globalThreshold0 ()
   {
     return THRESHOLD0;
   }
@@ -1603,13 +2814,24 @@ public class Matrix
    * This is a value in <tt>[0.0,1.0]</tt> used as approximation threshold
    * to <tt>1.0</tt> if too close; defaults to <tt>0.0</tt>.
    */
-  static private double THRESHOLD1 = 0.0;
+  static private volatile double THRESHOLD1 = 0.0;
 
   /**
    * Return the threshold for random rounding approximation to
-   * <tt>1.0</tt> currently in effect.
+   * <tt>1.0</tt> currently in effect: that of the <tt>MatrixContext</tt>
+   * bound to the current thread if any, or else the process-wide one.
    */
   static public final double threshold1 ()
+  {
+    MatrixContext context = MatrixContext.bound();
+    return context == null ? THRESHOLD1 : context.threshold1();
+  }
+
+  /**
+   * Return the process-wide threshold to <tt>1.0</tt>, ignoring any
+   * bound <tt>MatrixContext</tt>.
+   */
+  static final double globalThreshold1 ()
   {
     return THRESHOLD1;
   }
@@ -1714,6 +2936,9 @@ public class Matrix
     say("    \tthreshold to 0.0 = "+threshold0());
     say("    \tthreshold to 1.0 = "+threshold1());
     say("    \tcoin-toss bias   = "+bias());
+    say("    parallel execution = "+isParallel()+
+	" (threshold = "+parallelThreshold()+" entries)");
+    say("    Strassen cutoff = "+strassenCutoff());
     say("--------------------------------------------------------------------");
   }
 
@@ -1753,7 +2978,12 @@ public class Matrix
    */
   public static Matrix random (int rows, int cols)
   {
-    return new Matrix().setData(randomDataArray(rows,cols));
+    Matrix result = new Matrix(rows,cols);
+
+    for (int i = 0; i < result.entries.length; i++)
+      result.entries[i] = randomValue();
+
+    return result;
   }
 
   /**
@@ -1762,7 +2992,12 @@ public class Matrix
    */
   public static Matrix random (int rows, int cols, double scale)
   {
-    return new Matrix().setData(randomDataArray(rows,cols,scale));
+    Matrix result = new Matrix(rows,cols);
+
+    for (int i = 0; i < result.entries.length; i++)
+      result.entries[i] = randomValue(scale);
+
+    return result;
   }
 
   /**
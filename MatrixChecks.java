@@ -0,0 +1,129 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixChecks.java
+// STARTED ON. . Tue Apr 14 09:21:47 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+
+/**
+ * This is a non-public class running the checks of the algorithms of
+ * this package against brute-force or reference computations on random
+ * inputs. Each area has its own class of checks (<i>e.g.</i>,
+ * <tt>GraphChecks</tt> for <tt>BipartiteGraph</tt>), with a static
+ * <tt>run</tt> method drawing its inputs from a given
+ * <tt>Random</tt>, and sharing the helpers of this class.<p/>
+ *
+ * Running its <tt>main</tt> method (<i>e.g.</i>, <tt>java
+ * hlt.math.matrix.MatrixChecks</tt>) performs all the checks, each
+ * failure throwing a <tt>RuntimeException</tt>. The inputs are drawn
+ * from a fixed seed, unless another one is given as argument.
+ *
+ * @see         StorageChecks
+ * @see         ProductChecks
+ * @see         ViewChecks
+ * @see         ExpressionChecks
+ * @see         ClosureChecks
+ * @see         BitMatrixChecks
+ * @see         FloatMatrixChecks
+ * @see         QuantizedChecks
+ * @see         KernelChecks
+ * @see         ContextChecks
+ * @see         SparseChecks
+ * @see         OffHeapChecks
+ * @see         MatrixFileChecks
+ * @see         GraphChecks
+ * @see         AssignmentChecks
+ */
+final class MatrixChecks
+{
+  static public void main (String[] args)
+  {
+    Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 20200414L);
+
+    NumberAlgebra.setStandardAlgebra();
+
+    StorageChecks.run(random);
+    ProductChecks.run(random);
+    ViewChecks.run(random);
+    ExpressionChecks.run(random);
+    ClosureChecks.run(random);
+    BitMatrixChecks.run(random);
+    FloatMatrixChecks.run(random);
+    QuantizedChecks.run(random);
+    KernelChecks.run(random);
+    ContextChecks.run(random);
+    SparseChecks.run(random);
+    OffHeapChecks.run(random);
+    MatrixFileChecks.run(random);
+    GraphChecks.run(random);
+    AssignmentChecks.run(random);
+
+    System.out.println("All checks passed");
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> with the given message unless
+   * <tt>condition</tt> holds.
+   */
+  static void check (boolean condition, String message)
+  {
+    if (!condition)
+      throw new RuntimeException("Check failed: "+message);
+  }
+
+  /**
+   * Return <tt>true</tt> iff running <tt>action</tt> throws a
+   * <tt>RuntimeException</tt>.
+   */
+  static boolean fails (Runnable action)
+  {
+    try
+      {
+	action.run();
+	return false;
+      }
+    catch (RuntimeException e)
+      {
+	return true;
+      }
+  }
+
+  /**
+   * Return the greatest absolute difference between the entries of
+   * <tt>A</tt> and <tt>B</tt>, which must have the same dimensions; it
+   * is <tt>0.0</tt> where both are the same infinity.
+   */
+  static double distance (Matrix A, Matrix B)
+  {
+    check(A.rows() == B.rows() && A.cols() == B.cols(),
+	  A.rows()+"x"+A.cols()+" matrix compared to a "+B.rows()+"x"+B.cols()+" one");
+
+    double distance = 0.0;
+
+    for (int i = 1; i <= A.rows(); i++)
+      for (int j = 1; j <= A.cols(); j++)
+	if (A.get(i,j) != B.get(i,j))
+	  distance = Math.max(distance,Math.abs(A.get(i,j)-B.get(i,j)));
+
+    return distance;
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> matrix whose entries are
+   * random in <tt>[0,1)</tt>.
+   */
+  static Matrix randomMatrix (Random random, int rows, int cols)
+  {
+    Matrix M = new Matrix(rows,cols);
+
+    for (int i = 1; i <= rows; i++)
+      for (int j = 1; j <= cols; j++)
+	M.set(i,j,random.nextDouble());
+
+    return M;
+  }
+}
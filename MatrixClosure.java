@@ -0,0 +1,393 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixClosure.java
+// STARTED ON. . Thu Feb 20 16:08:52 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class computing powers and closures of square
+ * matrices under any <tt>NumberAlgebra</tt>. The (transitive) closure
+ * of <tt>A</tt> is <tt>A<sup>+</sup> = A &oplus; A<sup>2</sup> &oplus;
+ * A<sup>3</sup> &oplus; ...</tt>, and its reflexive closure is
+ * <tt>A<sup>*</sup> = I &oplus; A<sup>+</sup></tt>, where <tt>I</tt>
+ * is the algebra's identity matrix (its <tt>one()</tt> on the diagonal
+ * and its <tt>zero()</tt> elsewhere). Closures are computed either:
+ *
+ * <ul>
+ * <li><i>by squaring</i>: under an <a
+ * href="NumberAlgebra.html#isIdempotent()">idempotent</a> algebra,
+ * <tt>S := S &oplus; S&otimes;S</tt> from <tt>S = A</tt> doubles the
+ * length of the paths accounted for, so that <tt>A<sup>+</sup></tt> is
+ * reached after at most <tt>log<sub>2</sub>(n)</tt> squarings. Only
+ * the <i>dirty</i> rows of <tt>S</tt> are recomputed at each step: a
+ * row can only change if it has changed at the previous step, or if it
+ * has a non-zero entry in a column whose row has changed; the
+ * iteration stops as soon as no row is dirty. Under other algebras,
+ * the series is summed by doubling (<tt>S<sub>2m</sub> = S<sub>m</sub>
+ * &oplus; A<sup>m</sup>&otimes;S<sub>m</sub></tt>) until it stops
+ * changing (which it does, owing to <a
+ * href="Matrix.html#truncate(double)">truncation</a>, when it
+ * converges);</li>
+ *
+ * <li><i>by elimination</i>: the Floyd-Warshall-Kleene (or
+ * Gauss-Jordan) algorithm eliminates one index <tt>k</tt> at a time by
+ * <tt>a<sub>ij</sub> := a<sub>ij</sub> &oplus; a<sub>ik</sub> &otimes;
+ * a<sub>kk</sub><sup>*</sup> &otimes; a<sub>kj</sub></tt>, where
+ * <tt>a<sup>*</sup></tt> is the algebra's <a
+ * href="NumberAlgebra.html#star(double)"><tt>star</tt></a>. It is
+ * blocked: the indices are eliminated by blocks of <tt>BLOCK</tt>; the
+ * diagonal block is closed by the scalar algorithm, and the
+ * <tt>O(n<sup>3</sup>)</tt> bulk of the work, which updates all the
+ * other blocks, is done by <tt>Matrix.gemm</tt> on <a
+ * href="Matrix.html#views">views</a> (hence by the blocked kernel, in
+ * parallel in <a href="Matrix.html#parallel">parallel execution
+ * mode</a>).</li>
+ * </ul>
+ *
+ * @see         Matrix
+ */
+final class MatrixClosure
+{
+  /**
+   * The order of the diagonal blocks of the blocked elimination.
+   */
+  static final int BLOCK = 256;
+
+  /**
+   * The greatest number of doublings of the closure series of a
+   * non-idempotent algebra before giving up.
+   */
+  static final int MAX_DOUBLINGS = 64;
+
+  /**
+   * The least fraction of non-zero entries for which a matrix is
+   * considered dense (and closed by elimination by default).
+   */
+  static final double DENSE_FRACTION = 0.1;
+
+  /**
+   * Return a new identity matrix of the given <tt>order</tt> in the
+   * given <tt>algebra</tt>.
+   */
+  static Matrix unit (NumberAlgebra algebra, int order)
+  {
+    Matrix I = new Matrix(order).fill(algebra.zero());
+
+    for (int i = 0; i < order; i++)
+      I.entries[I.index(i,i)] = algebra.one();
+
+    return I;
+  }
+
+  /**
+   * Return a new matrix equal to the square matrix <tt>A</tt> to the
+   * power <tt>k</tt> in the current algebra, computed by repeated
+   * squaring with <tt>O(log k)</tt> products.
+   */
+  static Matrix power (Matrix A, int k)
+  {
+    if (k < 0)
+      throw new RuntimeException("Illegal matrix power: "+k);
+
+    int n = A.rows();
+
+    if (k == 0)
+      return unit(NumberAlgebra.getCurrentAlgebra(),n);
+
+    Matrix base = A.copy(), baseTemp = null;
+    Matrix result = null, resultTemp = null, swap;
+
+    for (;;)
+      {
+	if ((k & 1) == 1)
+	  if (result == null)
+	    result = base.copy();
+	  else
+	    {
+	      if (resultTemp == null)
+		resultTemp = new Matrix(n);
+	      Matrix.multiplyInto(result,base,resultTemp);
+	      swap = result; result = resultTemp; resultTemp = swap;
+	    }
+
+	if ((k >>>= 1) == 0)
+	  return result;
+
+	if (baseTemp == null)
+	  baseTemp = new Matrix(n);
+	Matrix.multiplyInto(base,base,baseTemp);
+	swap = base; base = baseTemp; baseTemp = swap;
+      }
+  }
+
+  /**
+   * Return <tt>true</tt> iff at least <tt>DENSE_FRACTION</tt> of the
+   * entries of <tt>A</tt> are not the given <tt>zero</tt>.
+   */
+  static boolean isDense (Matrix A, double zero)
+  {
+    long count = 0;
+
+    for (int i = 0; i < A.rows(); i++)
+      for (int j = 0; j < A.cols(); j++)
+	if (A.entries[A.index(i,j)] != zero)
+	  count++;
+
+    return count >= DENSE_FRACTION*A.rows()*A.cols();
+  }
+
+  /**
+   * Return a new matrix equal to the closure of the square matrix
+   * <tt>A</tt> in the current algebra, computed by squaring.
+   */
+  static Matrix bySquaring (Matrix A)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    return algebra.isIdempotent() ? bySquaringDirtyRows(algebra,A) : byDoubling(A);
+  }
+
+  /**
+   * Return the closure of <tt>A</tt> in the given idempotent
+   * <tt>algebra</tt> by squaring its dirty rows.
+   */
+  static private Matrix bySquaringDirtyRows (NumberAlgebra algebra, Matrix A)
+  {
+    int n = A.rows();
+    double zero = algebra.zero();
+    Matrix S = A.copy();
+
+    // the dirty rows are gathered into the leading rows of G, and their
+    // new values computed into the leading rows of P
+    Matrix G = new Matrix(n), P = new Matrix(n);
+    int[] dirty = new int[n];
+    boolean[] changed = new boolean[n];
+    int dirtyCount = n;
+
+    for (int i = 0; i < n; i++)
+      dirty[i] = i;
+
+    int squarings = 32-Integer.numberOfLeadingZeros(n-1);
+
+    for (int step = 0; step < squarings && dirtyCount > 0; step++)
+      {
+	Matrix D = G.submatrix(1,dirtyCount,1,n);
+	Matrix R = P.submatrix(1,dirtyCount,1,n);
+
+	for (int r = 0; r < dirtyCount; r++)
+	  D.row(r+1).update(S.row(dirty[r]+1));
+
+	Matrix.multiplyInto(D,S,R);
+	Matrix.plusInto(R,D,R);
+
+	java.util.Arrays.fill(changed,false);
+	int changedCount = 0;
+
+	for (int r = 0; r < dirtyCount; r++)
+	  {
+	    Matrix newRow = R.row(r+1), oldRow = S.row(dirty[r]+1);
+
+	    if (!newRow.equalEntries(oldRow))
+	      {
+		oldRow.update(newRow);
+		changed[dirty[r]] = true;
+		changedCount++;
+	      }
+	  }
+
+	// a row is dirty if it has changed, or if it has a non-zero
+	// entry in a column whose row has changed
+	dirtyCount = 0;
+
+	if (changedCount > 0)
+	  for (int i = 0; i < n; i++)
+	    {
+	      boolean isDirty = changed[i];
+
+	      for (int k = 0; !isDirty && k < n; k++)
+		isDirty = changed[k] && S.entries[S.index(i,k)] != zero;
+
+	      if (isDirty)
+		dirty[dirtyCount++] = i;
+	    }
+      }
+
+    checkCycles(NumberAlgebra.kindOf(algebra),S);
+    return S;
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> if the closure <tt>S</tt> computed
+   * by squaring does not exist: in the <tt>MinPlusAlgebra</tt> (resp.,
+   * the <tt>MaxPlusAlgebra</tt>), if some vertex lies on a cycle of
+   * negative (resp., positive) length, <i>i.e.</i>, if its entry on the
+   * diagonal of <tt>S</tt> is negative (resp., positive). Squaring then
+   * stops after <tt>log<sub>2</sub>(n)</tt> steps with meaningless
+   * entries (whereas elimination fails on the <tt>star</tt> of such an
+   * entry).
+   */
+  static private void checkCycles (int kind, Matrix S)
+  {
+    if (kind == NumberAlgebra.MIN_PLUS)
+      for (int i = 0; i < S.rows(); i++)
+	if (S.entries[S.index(i,i)] < 0.0)
+	  throw new RuntimeException("Vertex "+(i+1)+" lies on a negative cycle: there is no shortest path");
+
+    if (kind == NumberAlgebra.MAX_PLUS)
+      for (int i = 0; i < S.rows(); i++)
+	if (S.entries[S.index(i,i)] > 0.0)
+	  throw new RuntimeException("Vertex "+(i+1)+" lies on a positive cycle: there is no longest path");
+  }
+
+  /**
+   * Return the closure of <tt>A</tt> in the current (non-idempotent)
+   * algebra by summing its series by doubling until it stops changing.
+   */
+  static private Matrix byDoubling (Matrix A)
+  {
+    int n = A.rows();
+    Matrix S = A.copy(), P = A.copy();
+    Matrix T = new Matrix(n), U = new Matrix(n), swap;
+
+    for (int step = 0; step < MAX_DOUBLINGS; step++)
+      {
+	// S := S + P.S and P := P.P, where P = A^m and S = A+...+A^m
+	Matrix.multiplyInto(P,S,T);
+	Matrix.plusInto(S,T,U);
+
+	if (U.equalEntries(S))
+	  return S;
+
+	if (diverges(S,U))
+	  break;
+
+	swap = S; S = U; U = swap;
+
+	Matrix.multiplyInto(P,P,T);
+	swap = P; P = T; T = swap;
+      }
+
+    throw new RuntimeException("The closure of this matrix does not converge in the "+
+			       NumberAlgebra.getCurrentAlgebra());
+  }
+
+  /**
+   * Return <tt>true</tt> iff some finite entry of <tt>S</tt> is not
+   * finite in <tt>U</tt>.
+   */
+  static private boolean diverges (Matrix S, Matrix U)
+  {
+    for (int i = 0; i < S.rows(); i++)
+      for (int j = 0; j < S.cols(); j++)
+	if (Double.isFinite(S.entries[S.index(i,j)]) && !Double.isFinite(U.entries[U.index(i,j)]))
+	  return true;
+
+    return false;
+  }
+
+  /**
+   * Return a new matrix equal to the closure of the square matrix
+   * <tt>A</tt> in the current algebra, computed by blocked elimination.
+   */
+  static Matrix byElimination (Matrix A)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int n = A.rows();
+    Matrix D = A.copy();
+
+    for (int k0 = 0; k0 < n; k0 += BLOCK)
+      {
+	int k1 = Math.min(n,k0+BLOCK), b = k1-k0;
+
+	// close the diagonal block in place, and set S to its
+	// reflexive closure
+	Matrix Dkk = D.submatrix(k0+1,k1,k0+1,k1);
+	eliminate(algebra,Dkk);
+
+	if (b == n)
+	  break;
+
+	Matrix S = Dkk.copy();
+	for (int i = 0; i < b; i++)
+	  S.entries[S.index(i,i)] = Matrix.truncate(algebra.sum(algebra.one(),S.entries[S.index(i,i)]));
+
+	// the ranges of the other indices: before and after the block
+	int[][] others = { { 0, k0 }, { k1, n } };
+
+	// row panels: Dkj := S.Dkj
+	for (int[] J : others)
+	  if (J[0] < J[1])
+	    {
+	      Matrix Dkj = D.submatrix(k0+1,k1,J[0]+1,J[1]);
+	      Dkj.update(Matrix.multiplyInto(S,Dkj,new Matrix(b,J[1]-J[0])));
+	    }
+
+	// all other blocks: Dij := Dij + Dik.Dkj
+	for (int[] I : others)
+	  for (int[] J : others)
+	    if (I[0] < I[1] && J[0] < J[1])
+	      Matrix.gemm(1.0,
+			  D.submatrix(I[0]+1,I[1],k0+1,k1),
+			  D.submatrix(k0+1,k1,J[0]+1,J[1]),
+			  1.0,
+			  D.submatrix(I[0]+1,I[1],J[0]+1,J[1]));
+
+	// column panels: Dik := Dik.S
+	for (int[] I : others)
+	  if (I[0] < I[1])
+	    {
+	      Matrix Dik = D.submatrix(I[0]+1,I[1],k0+1,k1);
+	      Dik.update(Matrix.multiplyInto(Dik,S,new Matrix(I[1]-I[0],b)));
+	    }
+      }
+
+    return D;
+  }
+
+  /**
+   * Replace the square matrix <tt>M</tt> by its closure in the given
+   * <tt>algebra</tt> with the scalar elimination algorithm.
+   */
+  static private void eliminate (NumberAlgebra algebra, Matrix M)
+  {
+    int n = M.rows();
+    int kind = NumberAlgebra.kindOf(algebra);
+    double zero = algebra.zero();
+    double[] m = M.entries;
+    double[] column = new double[n];
+
+    for (int k = 0; k < n; k++)
+      {
+	int kk = M.index(k,k);
+	double star = algebra.star(m[kk]);
+
+	for (int i = 0; i < n; i++)
+	  column[i] = i == k ? zero : Matrix.truncate(EntryKernels.product(kind,algebra,m[M.index(i,k)],star));
+
+	for (int i = 0; i < n; i++)
+	  {
+	    if (i == k || column[i] == zero)
+	      continue;
+
+	    for (int j = 0; j < n; j++)
+	      if (j != k)
+		{
+		  int ij = M.index(i,j);
+		  m[ij] = Matrix.truncate(SparseMatrix.sumOfProduct(kind,algebra,m[ij],
+								    column[i],m[M.index(k,j)]));
+		}
+
+	    m[M.index(i,k)] = column[i];
+	  }
+
+	for (int j = 0; j < n; j++)
+	  if (j != k)
+	    m[M.index(k,j)] = Matrix.truncate(EntryKernels.product(kind,algebra,star,m[M.index(k,j)]));
+
+	m[kk] = Matrix.truncate(EntryKernels.product(kind,algebra,m[kk],star));
+      }
+  }
+}
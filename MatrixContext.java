@@ -0,0 +1,301 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixContext.java
+// STARTED ON. . Mon Jan 20 16:02:39 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.concurrent.Callable;
+
+/**
+ * This is an immutable bundle of all the parameters that control
+ * <tt>Matrix</tt> operations: the <tt>NumberAlgebra</tt>, the number of
+ * significant digits, the print width, the random-rounding thresholds
+ * to <tt>0.0</tt> and <tt>1.0</tt>, and the coin-toss bias.<p/>
+ *
+ * Without a <tt>MatrixContext</tt>, these parameters are the
+ * process-wide ones set by the static setters of <tt>Matrix</tt> and
+ * <tt>NumberAlgebra</tt>. A <tt>MatrixContext</tt> can instead be
+ * <i>bound</i> to the current thread (platform or virtual) for the
+ * extent of a computation using <tt>run</tt> or <tt>call</tt>: all
+ * <tt>Matrix</tt> operations performed in that extent then use this
+ * context's parameters, whatever the process-wide ones are and
+ * whatever other threads do. Bindings nest, and parallel matrix
+ * operations propagate their caller's binding to their fork/join tasks.
+ * Hence, many computations using different algebras can safely run
+ * concurrently in one JVM. For example:
+ *
+ * <pre>
+ * MatrixContext fuzzy = MatrixContext.current().withAlgebra(NumberAlgebra.maxMinAlgebra());
+ * Matrix closure = fuzzy.call(() -&gt; R.times(R));</pre>
+ *
+ * @see         Matrix
+ * @see         NumberAlgebra
+ */
+public final class MatrixContext
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  private final NumberAlgebra algebra;
+  private final int significantDigits;
+  private final int printWidth;
+  private final double threshold0;
+  private final double threshold1;
+  private final double bias;
+
+  /**
+   * Construct a <tt>MatrixContext</tt> with the given parameters,
+   * normalized as the corresponding <tt>Matrix</tt> setters do.
+   */
+  public MatrixContext (NumberAlgebra algebra, int significantDigits, int printWidth,
+			double threshold0, double threshold1, double bias)
+  {
+    if (algebra == null)
+      throw new RuntimeException("A matrix context needs a NumberAlgebra");
+
+    this.algebra = NumberAlgebra.registeredAlgebra(algebra);
+    this.significantDigits = Math.min(Math.max(1,significantDigits),Matrix.maxSignificantDigits());
+    this.printWidth = Math.max(3,printWidth);
+    this.threshold0 = Math.min(Math.max(0.0,threshold0),1.0);
+    this.threshold1 = Math.min(Math.max(0.0,threshold1),1.0);
+    this.bias = Math.max(0,Math.min(1,bias));
+  }
+
+  /**
+   * Return the <tt>NumberAlgebra</tt> of this context.
+   */
+  public NumberAlgebra algebra ()
+  {
+    return algebra;
+  }
+
+  /**
+   * Return the number of significant digits of this context.
+   */
+  public int significantDigits ()
+  {
+    return significantDigits;
+  }
+
+  /**
+   * Return the precision of this context (<i>i.e.</i>,
+   * <tt>10<sup>-significantDigits()</sup></tt>).
+   */
+  public double precision ()
+  {
+    return Math.pow(10.0,-significantDigits);
+  }
+
+  /**
+   * Return the floating-point print width of this context.
+   */
+  public int printWidth ()
+  {
+    return printWidth;
+  }
+
+  /**
+   * Return the random-rounding threshold to <tt>0.0</tt> of this context.
+   */
+  public double threshold0 ()
+  {
+    return threshold0;
+  }
+
+  /**
+   * Return the random-rounding threshold to <tt>1.0</tt> of this context.
+   */
+  public double threshold1 ()
+  {
+    return threshold1;
+  }
+
+  /**
+   * Return the coin-toss bias of this context.
+   */
+  public double bias ()
+  {
+    return bias;
+  }
+
+  /**
+   * Return a copy of this context with the given <tt>algebra</tt>.
+   */
+  public MatrixContext withAlgebra (NumberAlgebra algebra)
+  {
+    return new MatrixContext(algebra,significantDigits,printWidth,threshold0,threshold1,bias);
+  }
+
+  /**
+   * Return a copy of this context with the given number of significant
+   * <tt>digits</tt>.
+   */
+  public MatrixContext withSignificantDigits (int digits)
+  {
+    return new MatrixContext(algebra,digits,printWidth,threshold0,threshold1,bias);
+  }
+
+  /**
+   * Return a copy of this context with the given print <tt>width</tt>.
+   */
+  public MatrixContext withPrintWidth (int width)
+  {
+    return new MatrixContext(algebra,significantDigits,width,threshold0,threshold1,bias);
+  }
+
+  /**
+   * Return a copy of this context with the given random-rounding
+   * thresholds to <tt>0.0</tt> and to <tt>1.0</tt>.
+   */
+  public MatrixContext withThresholds (double threshold0, double threshold1)
+  {
+    return new MatrixContext(algebra,significantDigits,printWidth,threshold0,threshold1,bias);
+  }
+
+  /**
+   * Return a copy of this context with the given coin-toss <tt>bias</tt>.
+   */
+  public MatrixContext withBias (double bias)
+  {
+    return new MatrixContext(algebra,significantDigits,printWidth,threshold0,threshold1,bias);
+  }
+
+  public String toString ()
+  {
+    return "MatrixContext["+algebra+
+      ", digits = "+significantDigits+
+      ", width = "+printWidth+
+      ", thresholds = "+threshold0+"/"+threshold1+
+      ", bias = "+bias+"]";
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Binding
+   * </span></h3>
+   */
+
+  /**
+   * This holds the context bound to each thread, if any. Being a plain
+   * <tt>ThreadLocal</tt> (not an inheritable one), it also works
+   * per-thread for virtual threads.
+   */
+  static private final ThreadLocal<MatrixContext> binding = new ThreadLocal<MatrixContext>();
+
+  /**
+   * Return the context bound to the current thread, or <tt>null</tt> if
+   * there is none.
+   */
+  static public MatrixContext bound ()
+  {
+    return binding.get();
+  }
+
+  /**
+   * Return the context in effect in the current thread: the bound one if
+   * any, or else a snapshot of the process-wide parameters.
+   */
+  static public MatrixContext current ()
+  {
+    MatrixContext context = binding.get();
+
+    if (context != null)
+      return context;
+
+    return new MatrixContext(NumberAlgebra.globalAlgebra(),
+			     Matrix.globalSignificantDigits(),
+			     Matrix.globalPrintWidth(),
+			     Matrix.globalThreshold0(),
+			     Matrix.globalThreshold1(),
+			     Matrix.globalBias());
+  }
+
+  /**
+   * Run the given <tt>action</tt> with this context bound to the current
+   * thread, restoring the previous binding afterwards.
+   */
+  public void run (Runnable action)
+  {
+    MatrixContext previous = binding.get();
+    binding.set(this);
+
+    try
+      {
+	action.run();
+      }
+    finally
+      {
+	restore(previous);
+      }
+  }
+
+  /**
+   * Call the given <tt>computation</tt> with this context bound to the
+   * current thread, restoring the previous binding afterwards, and
+   * return its result. Checked exceptions thrown by the computation are
+   * wrapped in a <tt>RuntimeException</tt>.
+   */
+  public <T> T call (Callable<T> computation)
+  {
+    MatrixContext previous = binding.get();
+    binding.set(this);
+
+    try
+      {
+	return computation.call();
+      }
+    catch (RuntimeException e)
+      {
+	throw e;
+      }
+    catch (Exception e)
+      {
+	throw new RuntimeException(e);
+      }
+    finally
+      {
+	restore(previous);
+      }
+  }
+
+  /**
+   * Run the given <tt>action</tt> with the given <tt>context</tt> (which
+   * may be <tt>null</tt>, meaning none) bound to the current thread,
+   * restoring the previous binding afterwards. This is used to propagate
+   * a caller's binding to the tasks it forks.
+   */
+  static void runWithin (MatrixContext context, Runnable action)
+  {
+    if (context == binding.get())
+      {
+	action.run();
+	return;
+      }
+
+    MatrixContext previous = binding.get();
+    binding.set(context);
+
+    try
+      {
+	action.run();
+      }
+    finally
+      {
+	restore(previous);
+      }
+  }
+
+  static private void restore (MatrixContext previous)
+  {
+    if (previous == null)
+      binding.remove();
+    else
+      binding.set(previous);
+  }
+}
@@ -0,0 +1,674 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixExpression.java
+// STARTED ON. . Mon Feb 17 10:26:41 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This is a class of lazy matrix expressions. Building an expression
+ * with <tt>plus</tt>, <tt>minus</tt>, <tt>scale</tt>, <tt>map</tt>, and
+ * <tt>times</tt> computes nothing: it only records a graph of
+ * operations over <tt>Matrix</tt> operands, whose dimensions are
+ * checked as it is built. The expression is computed when it is
+ * evaluated, all at once, under the current number algebra:
+ *
+ * <pre>
+ * Matrix R = A.lazy().plus(B).scale(k).minus(C).evaluate();
+ * </pre>
+ *
+ * computes <tt>R</tt> in a single pass over the entries of
+ * <tt>A</tt>, <tt>B</tt>, and <tt>C</tt>, without allocating any
+ * temporary matrix, where the eager <tt>A.plus(B).scale(k).minus(C)</tt>
+ * allocates and traverses three matrices.<p/>
+ *
+ * Evaluation proceeds as follows:
+ *
+ * <ol>
+ * <li>Common subexpressions are identified: two subexpressions
+ * applying the same operation to the same operands (the same
+ * <tt>Matrix</tt> objects for leaves) are computed once, so that an
+ * expression is a directed acyclic graph rather than a tree.</li>
+ *
+ * <li>Products are <i>materialization barriers</i>: each is computed
+ * into a matrix of its own by <tt>Matrix.gemm</tt> (hence by the
+ * blocked or Strassen kernels, in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>) from its
+ * (materialized) factors.</li>
+ *
+ * <li>The entry-wise operations are grouped into <i>fused regions</i>:
+ * a region consists of an entry-wise operation whose result must be
+ * materialized (the whole expression, a factor of a product, or a
+ * subexpression used by several regions) and all the entry-wise
+ * operations it alone uses, transitively. A region is computed in one
+ * pass, by chunks of rows staged in small per-thread buffers that
+ * stay in cache, and by blocks of rows in parallel in parallel
+ * execution mode; only its result is written to memory. Thus, the
+ * entry-wise operations applied to a product (<i>e.g.</i>, <tt>A.times(B).scale(k).plus(C)</tt>)
+ * form a fused <i>epilogue</i> that is computed in place in the
+ * product's own matrix.</li>
+ * </ol>
+ *
+ * Entry-wise results are the same as those of the eager
+ * <tt>Matrix</tt> operations (in particular, scaled entries are <a
+ * href="Matrix.html#truncate(double)">truncated</a> likewise, as are
+ * those computed by <tt>map</tt>). Operands are read when the
+ * expression is evaluated, not when it is built; they may be <a
+ * href="Matrix.html#views">views</a>.
+ *
+ * @see         Matrix
+ */
+public class MatrixExpression
+{
+  /**
+   * Codes of the operations of expression nodes.
+   */
+  static final int LEAF = 0, SUM = 1, DIFFERENCE = 2, NEGATION = 3, SCALE = 4, MAP = 5, PRODUCT = 6;
+
+  /**
+   * The number of entries of a row processed at once by a fused region.
+   */
+  static final int CHUNK = 1024;
+
+  private final int op;
+  private final int rows;
+  private final int cols;
+  private final Matrix matrix;
+  private final MatrixExpression left;
+  private final MatrixExpression right;
+  private final double factor;
+  private final DoubleUnaryOperator function;
+
+  private MatrixExpression (int op, int rows, int cols, Matrix matrix,
+			    MatrixExpression left, MatrixExpression right,
+			    double factor, DoubleUnaryOperator function)
+  {
+    this.op = op;
+    this.rows = rows;
+    this.cols = cols;
+    this.matrix = matrix;
+    this.left = left;
+    this.right = right;
+    this.factor = factor;
+    this.function = function;
+  }
+
+  /**
+   * Return the expression made of the given <tt>Matrix</tt> alone.
+   */
+  static public MatrixExpression of (Matrix M)
+  {
+    return new MatrixExpression(LEAF,M.rows(),M.cols(),M,null,null,0.0,null);
+  }
+
+  /**
+   * Return the number of rows of the value of this expression.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of the value of this expression.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Building Expressions
+   * </span></h3>
+   */
+
+  /**
+   * Return the expression <tt>this+E</tt>.
+   */
+  public MatrixExpression plus (MatrixExpression E)
+  {
+    Matrix.verifyCompatibleDimension(E.rows,E.cols,rows,cols);
+    return new MatrixExpression(SUM,rows,cols,null,this,E,0.0,null);
+  }
+
+  /**
+   * Return the expression <tt>this+M</tt>.
+   */
+  public MatrixExpression plus (Matrix M)
+  {
+    return plus(of(M));
+  }
+
+  /**
+   * Return the expression <tt>this-E</tt>.
+   */
+  public MatrixExpression minus (MatrixExpression E)
+  {
+    Matrix.verifyCompatibleDimension(E.rows,E.cols,rows,cols);
+    return new MatrixExpression(DIFFERENCE,rows,cols,null,this,E,0.0,null);
+  }
+
+  /**
+   * Return the expression <tt>this-M</tt>.
+   */
+  public MatrixExpression minus (Matrix M)
+  {
+    return minus(of(M));
+  }
+
+  /**
+   * Return the expression <tt>-this</tt>.
+   */
+  public MatrixExpression minus ()
+  {
+    return new MatrixExpression(NEGATION,rows,cols,null,this,null,0.0,null);
+  }
+
+  /**
+   * Return the expression each entry of which is the corresponding
+   * entry of <tt>this</tt> multiplied by <tt>factor</tt>.
+   */
+  public MatrixExpression scale (double factor)
+  {
+    return new MatrixExpression(SCALE,rows,cols,null,this,null,factor,null);
+  }
+
+  /**
+   * Return the expression each entry of which is the given
+   * <tt>function</tt> of the corresponding entry of <tt>this</tt>. Two
+   * maps are common subexpressions only if they apply the very same
+   * <tt>function</tt> object.
+   */
+  public MatrixExpression map (DoubleUnaryOperator function)
+  {
+    return new MatrixExpression(MAP,rows,cols,null,this,null,0.0,function);
+  }
+
+  /**
+   * Return the expression <tt>this</tt> times <tt>E</tt>.
+   */
+  public MatrixExpression times (MatrixExpression E)
+  {
+    if (cols != E.rows)
+      throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
+				 " matrix by a "+E.rows+"x"+E.cols+" matrix");
+
+    return new MatrixExpression(PRODUCT,rows,E.cols,null,this,E,0.0,null);
+  }
+
+  /**
+   * Return the expression <tt>this</tt> times <tt>M</tt>.
+   */
+  public MatrixExpression times (Matrix M)
+  {
+    return times(of(M));
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Evaluating Expressions
+   * </span></h3>
+   */
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to the value of this expression
+   * under the current number algebra.
+   */
+  public Matrix evaluate ()
+  {
+    if (op == LEAF)
+      return matrix.copy();
+
+    return new Evaluation(this).run(null);
+  }
+
+  /**
+   * Set <tt>C</tt> to the value of this expression under the current
+   * number algebra and return <tt>C</tt>. <tt>C</tt> may be an operand
+   * of an entry-wise expression (<i>e.g.</i>, as in
+   * <tt>A.lazy().plus(B).scale(k).evaluateInto(A)</tt>), in which case
+   * it is updated in place, but not a factor of a product.
+   */
+  public Matrix evaluateInto (Matrix C)
+  {
+    Matrix.verifyCompatibleDimension(C.rows(),C.cols(),rows,cols);
+
+    if (op == LEAF)
+      return C.update(matrix);
+
+    return new Evaluation(this).run(C);
+  }
+
+  public String toString ()
+  {
+    switch (op)
+      {
+      case LEAF:
+	return "["+rows+"x"+cols+"]";
+      case SUM:
+	return "("+left+" + "+right+")";
+      case DIFFERENCE:
+	return "("+left+" - "+right+")";
+      case NEGATION:
+	return "-"+left;
+      case SCALE:
+	return factor+"*"+left;
+      case MAP:
+	return "map("+left+")";
+      default:
+	return "("+left+" . "+right+")";
+      }
+  }
+
+  /**
+   * Return <tt>true</tt> iff this expression is an entry-wise operation.
+   */
+  private boolean isEntryWise ()
+  {
+    return op != LEAF && op != PRODUCT;
+  }
+
+  /**
+   * This is the state of the evaluation of an expression: its
+   * canonical nodes (one per distinct subexpression) in topological
+   * order, their parents, the fused region of each entry-wise node, and
+   * the values of the materialized nodes.
+   */
+  static private final class Evaluation
+  {
+    final NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    final int kind = NumberAlgebra.kindOf(algebra);
+    final MatrixExpression root;
+
+    final IdentityHashMap<MatrixExpression,MatrixExpression> canonical = new IdentityHashMap<>();
+    final HashMap<List<Object>,MatrixExpression> unique = new HashMap<>();
+    final List<MatrixExpression> order = new ArrayList<>();
+    final IdentityHashMap<MatrixExpression,List<MatrixExpression>> parents = new IdentityHashMap<>();
+    final IdentityHashMap<MatrixExpression,MatrixExpression> region = new IdentityHashMap<>();
+    final IdentityHashMap<MatrixExpression,Matrix> values = new IdentityHashMap<>();
+
+    Evaluation (MatrixExpression expression)
+    {
+      root = canonicalize(expression);
+
+      for (MatrixExpression node : order)
+	{
+	  parents.putIfAbsent(node,new ArrayList<>());
+	  if (node.left != null)
+	    parents.get(node.left).add(node);
+	  if (node.right != null)
+	    parents.get(node.right).add(node);
+	}
+
+      // assign each entry-wise node to a region, parents first: a node
+      // joins the region of its parents if they are all in the same
+      // one, and starts a region of its own otherwise
+      for (int i = order.size()-1; i >= 0; i--)
+	{
+	  MatrixExpression node = order.get(i);
+
+	  if (!node.isEntryWise())
+	    continue;
+
+	  MatrixExpression common = node == root ? node : null;
+
+	  for (MatrixExpression parent : parents.get(node))
+	    {
+	      MatrixExpression parentRegion = region.get(parent);
+
+	      if (parentRegion == null || (common != null && common != parentRegion))
+		{
+		  common = node;
+		  break;
+		}
+
+	      common = parentRegion;
+	    }
+
+	  region.put(node,common);
+	}
+    }
+
+    /**
+     * Return the canonical node of the given expression, creating it
+     * (and those of its subexpressions) if needed.
+     */
+    MatrixExpression canonicalize (MatrixExpression node)
+    {
+      MatrixExpression result = canonical.get(node);
+
+      if (result != null)
+	return result;
+
+      MatrixExpression left = node.left == null ? null : canonicalize(node.left);
+      MatrixExpression right = node.right == null ? null : canonicalize(node.right);
+      List<Object> key = Arrays.asList(node.op,node.matrix,left,right,
+				       Double.doubleToLongBits(node.factor),node.function);
+
+      result = unique.get(key);
+
+      if (result == null)
+	{
+	  result = left == node.left && right == node.right
+		 ? node
+		 : new MatrixExpression(node.op,node.rows,node.cols,node.matrix,
+					left,right,node.factor,node.function);
+	  unique.put(key,result);
+	  order.add(result);
+	}
+
+      canonical.put(node,result);
+      return result;
+    }
+
+    /**
+     * Evaluate the expression into <tt>target</tt> if it is not
+     * <tt>null</tt>, and into a new matrix otherwise; return the
+     * result.
+     */
+    Matrix run (Matrix target)
+    {
+      if (target != null && root.isEntryWise() && overlapsDifferently(target))
+	// the target shares entries with an operand laid out otherwise
+	return target.update(run(null));
+
+      for (MatrixExpression node : order)
+	switch (node.op)
+	  {
+	  case LEAF:
+	    values.put(node,node.matrix);
+	    break;
+	  case PRODUCT:
+	    Matrix result = node == root && target != null
+			    ? target
+			    : new Matrix(node.rows,node.cols);
+	    Matrix.gemm(1.0,values.get(node.left),values.get(node.right),0.0,result);
+	    values.put(node,result);
+	    break;
+	  default:
+	    if (region.get(node) == node)
+	      values.put(node,fuse(node,node == root ? target : null));
+	  }
+
+      return values.get(root);
+    }
+
+    /**
+     * Return <tt>true</tt> iff <tt>target</tt> shares entries with a
+     * leaf of the expression without being laid out exactly like it.
+     */
+    boolean overlapsDifferently (Matrix target)
+    {
+      for (MatrixExpression node : order)
+	if (node.op == LEAF && target.overlaps(node.matrix)
+	    && !(target.entries() == node.matrix.entries()
+		 && target.offset() == node.matrix.offset()
+		 && target.stride() == node.matrix.stride()
+		 && target.colStride() == node.matrix.colStride()))
+	  return true;
+
+      return false;
+    }
+
+    /**
+     * Compute the fused region of the given entry-wise node into
+     * <tt>target</tt> if it is not <tt>null</tt>, and otherwise into the
+     * matrix of a product used by this region alone if there is one, or
+     * else into a new matrix; return the result.
+     */
+    Matrix fuse (MatrixExpression regionRoot, Matrix target)
+    {
+      List<MatrixExpression> members = new ArrayList<>();
+      List<MatrixExpression> inputs = new ArrayList<>();
+
+      for (MatrixExpression node : order)
+	if (region.get(node) == regionRoot)
+	  {
+	    members.add(node);
+
+	    for (MatrixExpression child : new MatrixExpression[] { node.left, node.right })
+	      if (child != null && region.get(child) != regionRoot && !inputs.contains(child))
+		inputs.add(child);
+	  }
+
+      Matrix[] operands = new Matrix[inputs.size()];
+      for (int i = 0; i < operands.length; i++)
+	operands[i] = values.get(inputs.get(i));
+
+      Matrix result = target;
+
+      if (result == null)
+	for (MatrixExpression input : inputs)
+	  if (input.op == PRODUCT && input != root && parents.get(input).size() == 1)
+	    {
+	      // the epilogue of a product is computed in place
+	      result = values.get(input);
+	      break;
+	    }
+
+      if (result == null)
+	result = new Matrix(regionRoot.rows,regionRoot.cols);
+
+      new Program(this,members,inputs,operands,result).run();
+      return result;
+    }
+  }
+
+  /**
+   * This is the compiled form of a fused region: a sequence of
+   * entry-wise instructions, one per member of the region in
+   * topological order, whose operands are slots numbered from
+   * <tt>0</tt> for the region's inputs, followed by one slot per
+   * instruction for its result. The last instruction computes the
+   * region's result.
+   */
+  static private final class Program
+  {
+    final NumberAlgebra algebra;
+    final int kind;
+    final int[] op;
+    final int[] a;
+    final int[] b;
+    final double[] factor;
+    final DoubleUnaryOperator[] function;
+    final Matrix[] inputs;
+    final Matrix result;
+
+    Program (Evaluation evaluation, List<MatrixExpression> members, List<MatrixExpression> inputNodes,
+	     Matrix[] inputs, Matrix result)
+    {
+      int size = members.size();
+
+      algebra = evaluation.algebra;
+      kind = evaluation.kind;
+      op = new int[size];
+      a = new int[size];
+      b = new int[size];
+      factor = new double[size];
+      function = new DoubleUnaryOperator[size];
+      this.inputs = inputs;
+      this.result = result;
+
+      for (int i = 0; i < size; i++)
+	{
+	  MatrixExpression node = members.get(i);
+
+	  op[i] = node.op;
+	  a[i] = slot(node.left,members,inputNodes);
+	  b[i] = node.right == null ? -1 : slot(node.right,members,inputNodes);
+	  factor[i] = node.factor;
+	  function[i] = node.function;
+	}
+    }
+
+    /**
+     * Return the slot of the given operand node.
+     */
+    static int slot (MatrixExpression node, List<MatrixExpression> members, List<MatrixExpression> inputs)
+    {
+      int index = inputs.indexOf(node);
+      return index >= 0 ? index : inputs.size()+members.indexOf(node);
+    }
+
+    /**
+     * Run this program on all the rows of the result, by blocks of rows
+     * in parallel in parallel execution mode.
+     */
+    void run ()
+    {
+      MatrixTasks.forRowBlocks(result.rows(),result.cols()*op.length,this::run);
+    }
+
+    /**
+     * Run this program on rows <tt>fromRow</tt> (inclusive) to
+     * <tt>toRow</tt> (exclusive), by chunks of at most <tt>CHUNK</tt>
+     * entries.
+     */
+    void run (int fromRow, int toRow)
+    {
+      int slots = inputs.length+op.length;
+      double[][] buffers = buffers(slots);
+      double[][] array = new double[slots][];
+      int[] offset = new int[slots];
+      int last = op.length-1;
+      int cols = result.cols();
+
+      for (int row = fromRow; row < toRow; row++)
+	for (int col = 0; col < cols; col += CHUNK)
+	  {
+	    int length = Math.min(CHUNK,cols-col);
+
+	    for (int i = 0; i < inputs.length; i++)
+	      locate(inputs[i],row,col,length,buffers[i],i,array,offset,true);
+
+	    for (int i = 0; i <= last; i++)
+	      {
+		int slot = inputs.length+i;
+
+		if (i == last)
+		  locate(result,row,col,length,buffers[slot],slot,array,offset,false);
+		else
+		  {
+		    array[slot] = buffers[slot];
+		    offset[slot] = 0;
+		  }
+
+		execute(i,array,offset,slot,length);
+	      }
+
+	    if (result.colStride() != 1)
+	      scatter(result,row,col,length,buffers[inputs.length+last]);
+	  }
+    }
+
+    /**
+     * Perform instruction <tt>i</tt> on <tt>length</tt> entries into
+     * the given slot.
+     */
+    void execute (int i, double[][] array, int[] offset, int slot, int length)
+    {
+      double[] x = array[a[i]], c = array[slot];
+      int xOffset = offset[a[i]], cOffset = offset[slot];
+
+      switch (op[i])
+	{
+	case SUM:
+	case DIFFERENCE:
+	  EntryKernels.combine(op[i] == SUM ? EntryKernels.SUM : EntryKernels.DIFFERENCE,
+			       kind,algebra,x,xOffset,array[b[i]],offset[b[i]],c,cOffset,length);
+	  break;
+	case NEGATION:
+	  EntryKernels.map(EntryKernels.NEGATION,kind,algebra,0.0,x,xOffset,c,cOffset,length);
+	  break;
+	case SCALE:
+	  EntryKernels.map(EntryKernels.SCALE,kind,algebra,factor[i],x,xOffset,c,cOffset,length);
+	  // N.B: since multiplying a truncated entry by a double may
+	  // exceed the truncation limit, the resulting matrix entry must
+	  // be truncated
+	  for (int k = cOffset; k < cOffset+length; k++)
+	    c[k] = Matrix.truncate(c[k]);
+	  break;
+	case MAP:
+	  for (int k = 0; k < length; k++)
+	    c[cOffset+k] = Matrix.truncate(function[i].applyAsDouble(x[xOffset+k]));
+	  break;
+	}
+    }
+
+    /**
+     * Set the array and offset of the given slot to the <tt>length</tt>
+     * entries of <tt>M</tt> at <tt>row</tt> from <tt>col</tt> (counted
+     * from <tt>0</tt>) if they are contiguous, and to the given
+     * <tt>buffer</tt> otherwise, gathering them into it if
+     * <tt>read</tt> is <tt>true</tt>.
+     */
+    static void locate (Matrix M, int row, int col, int length, double[] buffer,
+			int slot, double[][] array, int[] offset, boolean read)
+    {
+      double[] entries = M.entries();
+      int base = M.offset()+row*M.stride()+col*M.colStride();
+      int colStride = M.colStride();
+
+      if (colStride == 1)
+	{
+	  array[slot] = entries;
+	  offset[slot] = base;
+	  return;
+	}
+
+      if (read)
+	for (int k = 0; k < length; k++)
+	  buffer[k] = entries[base+k*colStride];
+
+      array[slot] = buffer;
+      offset[slot] = 0;
+    }
+
+    /**
+     * Copy the first <tt>length</tt> entries of <tt>buffer</tt> into
+     * <tt>M</tt> at <tt>row</tt> from <tt>col</tt> (counted from
+     * <tt>0</tt>).
+     */
+    static void scatter (Matrix M, int row, int col, int length, double[] buffer)
+    {
+      double[] entries = M.entries();
+      int base = M.offset()+row*M.stride()+col*M.colStride();
+
+      for (int k = 0; k < length; k++)
+	entries[base+k*M.colStride()] = buffer[k];
+    }
+
+    static private final ThreadLocal<double[][]> buffers =
+      ThreadLocal.withInitial(() -> new double[0][]);
+
+    /**
+     * Return this thread's chunk buffers, grown to at least
+     * <tt>count</tt> buffers.
+     */
+    static double[][] buffers (int count)
+    {
+      double[][] result = buffers.get();
+
+      if (result.length < count)
+	{
+	  result = Arrays.copyOf(result,count);
+	  for (int i = 0; i < count; i++)
+	    if (result[i] == null)
+	      result[i] = new double[CHUNK];
+	  buffers.set(result);
+	}
+
+      return result;
+    }
+  }
+}
@@ -0,0 +1,505 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixFile.java
+// STARTED ON. . Thu Feb 06 15:41:09 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This is a class of binary matrix files, and of such files opened as
+ * memory-mapped <tt>OffHeapMatrix</tt>es. Opening a matrix file copies
+ * nothing: its payload is mapped as is into the entries of the matrix,
+ * and pages are read lazily by the operating system. Hence, several
+ * processes (<i>e.g.</i>, worker JVMs) mapping the same file share one
+ * physical copy of it through the page cache.<p/>
+ *
+ * A matrix file consists of a header of <tt>PAGE_SIZE</tt> bytes,
+ * followed by a page-aligned payload of entries. All header fields are
+ * little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic number: the ASCII bytes "HLTMATRX"
+ *      8     4  format version (1)
+ *     12     1  byte order of the payload (0 = little-endian, 1 = big-endian)
+ *     13     1  layout of the payload (0 = row-major)
+ *     14     1  element type of the payload (0 = 64-bit IEEE double)
+ *     15     1  reserved (0)
+ *     16     8  number of rows
+ *     24     8  number of columns
+ *     32     8  payload offset (a multiple of PAGE_SIZE)
+ *     40     2  length n of the algebra name in bytes
+ *     42     n  name of the algebra of the entries (UTF-8)</pre>
+ *
+ * The algebra name is that under which the algebra is <a
+ * href="NumberAlgebra.html#registeredAlgebra(hlt.math.matrix.NumberAlgebra)">registered</a>
+ * (<i>e.g.</i>, for interpreting the zero entries of a
+ * <tt>MaxMinAlgebra</tt> matrix); it is that of the current algebra
+ * when the file is written. The payload is written in the native byte
+ * order so that it can be mapped without conversion; a file of the other
+ * byte order cannot be opened.<p/>
+ *
+ * A file is opened in one of three modes: <tt>READ_ONLY</tt> (the
+ * matrix cannot be modified), <tt>COPY_ON_WRITE</tt> (the matrix can be
+ * modified, but modified pages are private copies and the file never
+ * changes), or <tt>READ_WRITE</tt> (modifications are written through
+ * to the file); the last two need write permission on the file. The
+ * mapping is released when the <tt>MatrixFile</tt> (or its matrix) is
+ * closed.
+ *
+ * @see         OffHeapMatrix
+ */
+public class MatrixFile implements AutoCloseable
+{
+  /**
+   * The size of the header, and the alignment of the payload.
+   */
+  static final public int PAGE_SIZE = 4096;
+
+  /**
+   * Modes of opening a matrix file.
+   */
+  static final public int READ_ONLY = 0, COPY_ON_WRITE = 1, READ_WRITE = 2;
+
+  /**
+   * Codes of the layout field.
+   */
+  static final public int ROW_MAJOR = 0;
+
+  /**
+   * Codes of the element type field.
+   */
+  static final public int FLOAT64 = 0;
+
+  static private final byte[] MAGIC = "HLTMATRX".getBytes(StandardCharsets.US_ASCII);
+  static private final int VERSION = 1;
+  static private final int MAX_NAME_LENGTH = PAGE_SIZE-42;
+
+  static private final ValueLayout.OfInt INT =
+    ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+  static private final ValueLayout.OfLong LONG =
+    ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+  static private final ValueLayout.OfShort SHORT =
+    ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components
+   * </span></h3>
+   */
+
+  private final Path path;
+  private final int rows;
+  private final int cols;
+  private final int layout;
+  private final int elementType;
+  private final String algebraName;
+  private final int mode;
+  private final OffHeapMatrix matrix;
+
+  private MatrixFile (Path path, int rows, int cols, int layout, int elementType,
+		      String algebraName, int mode, OffHeapMatrix matrix)
+  {
+    this.path = path;
+    this.rows = rows;
+    this.cols = cols;
+    this.layout = layout;
+    this.elementType = elementType;
+    this.algebraName = algebraName;
+    this.mode = mode;
+    this.matrix = matrix;
+  }
+
+  /**
+   * Return the path of this file.
+   */
+  public final Path path ()
+  {
+    return path;
+  }
+
+  /**
+   * Return the number of rows of the matrix of this file.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of the matrix of this file.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return the layout code of the payload of this file.
+   */
+  public final int layout ()
+  {
+    return layout;
+  }
+
+  /**
+   * Return the element type code of the payload of this file.
+   */
+  public final int elementType ()
+  {
+    return elementType;
+  }
+
+  /**
+   * Return the mode in which this file is open.
+   */
+  public final int mode ()
+  {
+    return mode;
+  }
+
+  /**
+   * Return the name of the algebra recorded in this file.
+   */
+  public final String algebraName ()
+  {
+    return algebraName;
+  }
+
+  /**
+   * Return the registered algebra of the name recorded in this file, or
+   * <tt>null</tt> if there is none (<i>e.g.</i>, if it is a user algebra
+   * not registered yet in this JVM).
+   */
+  public final NumberAlgebra algebra ()
+  {
+    return NumberAlgebra.registeredAlgebra(algebraName);
+  }
+
+  /**
+   * Return the memory-mapped matrix of this file.
+   */
+  public final OffHeapMatrix matrix ()
+  {
+    return matrix;
+  }
+
+  /**
+   * Release the mapping of this file.
+   */
+  public void close ()
+  {
+    matrix.close();
+  }
+
+  public String toString ()
+  {
+    return path+": "+rows+"x"+cols+" matrix ("+algebraName+")";
+  }
+
+  /**
+   * <a name="outofcore"></a>
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Out-of-Core Operations
+   * </span></h3>
+   */
+
+  /**
+   * The following operations combine the matrices of matrix files into
+   * a new matrix file without ever holding their entries in memory: the
+   * matrices may be much larger than the machine's memory (<i>e.g.</i>,
+   * <tt>100000</tt>-by-<tt>100000</tt> matrices, which take 80GB each).
+   * They use the current number algebra, whose name is recorded in the
+   * result file, and about <tt>memoryBudget</tt> bytes of heap memory
+   * (by default, half the maximum heap size); the larger the budget, the
+   * fewer times the entries of the files are read. The result file is
+   * written sequentially, and the entries of the operands are read by a
+   * background thread ahead of their use. The result file replaces any
+   * existing file at the given <tt>path</tt>; it must not be one of the
+   * operands.
+   */
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the product of
+   * the matrix of this file by that of the matrix file <tt>M</tt>. Each
+   * entry of this file is read once, and each entry of <tt>M</tt> once
+   * per panel of rows of the result that fits in the memory budget.
+   */
+  public void times (MatrixFile M, Path path)
+  {
+    times(M,path,OutOfCore.defaultBudget());
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the product of
+   * the matrix of this file by that of the matrix file <tt>M</tt>, using
+   * about <tt>memoryBudget</tt> bytes of heap memory.
+   */
+  public void times (MatrixFile M, Path path, long memoryBudget)
+  {
+    checkResultPath(M,path);
+    OutOfCore.multiply(NumberAlgebra.getCurrentAlgebra(),
+		       matrix.operand(),M.matrix.operand(),path,memoryBudget);
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the sum of the
+   * matrix of this file and that of the matrix file <tt>M</tt>. Each
+   * entry of either file is read once.
+   */
+  public void plus (MatrixFile M, Path path)
+  {
+    plus(M,path,OutOfCore.defaultBudget());
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the sum of the
+   * matrix of this file and that of the matrix file <tt>M</tt>, using
+   * about <tt>memoryBudget</tt> bytes of heap memory.
+   */
+  public void plus (MatrixFile M, Path path, long memoryBudget)
+  {
+    checkResultPath(M,path);
+    OutOfCore.combine(EntryKernels.SUM,NumberAlgebra.getCurrentAlgebra(),
+		      matrix.operand(),M.matrix.operand(),path,memoryBudget);
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the difference
+   * of the matrix of this file and that of the matrix file <tt>M</tt>.
+   * Each entry of either file is read once.
+   */
+  public void minus (MatrixFile M, Path path)
+  {
+    minus(M,path,OutOfCore.defaultBudget());
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the difference
+   * of the matrix of this file and that of the matrix file <tt>M</tt>,
+   * using about <tt>memoryBudget</tt> bytes of heap memory.
+   */
+  public void minus (MatrixFile M, Path path, long memoryBudget)
+  {
+    checkResultPath(M,path);
+    OutOfCore.combine(EntryKernels.DIFFERENCE,NumberAlgebra.getCurrentAlgebra(),
+		      matrix.operand(),M.matrix.operand(),path,memoryBudget);
+  }
+
+  /**
+   * Throw an exception if the given result <tt>path</tt> is that of this
+   * file or of <tt>M</tt>: truncating a mapped file would pull its pages
+   * from under the mapping.
+   */
+  private void checkResultPath (MatrixFile M, Path path)
+  {
+    Path result = path.toAbsolutePath().normalize();
+
+    if (result.equals(this.path.toAbsolutePath().normalize())
+	|| result.equals(M.path.toAbsolutePath().normalize()))
+      throw new RuntimeException("Out-of-core result cannot overwrite an operand: "+path);
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Writing and Opening
+   * </span></h3>
+   */
+
+  /**
+   * Write the given heap <tt>Matrix</tt> into a matrix file at the given
+   * <tt>path</tt>, replacing any existing file, with the name of the
+   * current algebra.
+   */
+  static public void write (Path path, Matrix M)
+  {
+    // views are read through a contiguous copy
+    Matrix C = M.contiguous();
+    MemorySegment entries = MemorySegment.ofArray(C.entries());
+    long rowBytes = (long)C.cols()*OffHeapMatrix.DOUBLE.byteSize();
+    long strideBytes = (long)C.stride()*OffHeapMatrix.DOUBLE.byteSize();
+
+    write(path,C.rows(),C.cols(),
+	  (payload) ->
+	  {
+	    for (int row = 0; row < C.rows(); row++)
+	      MemorySegment.copy(entries,row*strideBytes,payload,row*rowBytes,rowBytes);
+	  });
+  }
+
+  /**
+   * Write the given <tt>OffHeapMatrix</tt> into a matrix file at the
+   * given <tt>path</tt>, replacing any existing file, with the name of
+   * the current algebra.
+   */
+  static public void write (Path path, OffHeapMatrix M)
+  {
+    write(path,M.rows(),M.cols(),
+	  (payload) -> MemorySegment.copy(M.segment(),0,payload,0,M.segment().byteSize()));
+  }
+
+  /**
+   * The type of a procedure filling in the payload of a matrix file.
+   */
+  interface PayloadWriter
+  {
+    void write (MemorySegment payload);
+  }
+
+  /**
+   * Write a matrix file of the given dimensions at the given
+   * <tt>path</tt>, whose payload is filled in by the given
+   * <tt>writer</tt> through a writable mapping of the file.
+   */
+  static private void write (Path path, int rows, int cols, PayloadWriter writer)
+  {
+    long payloadSize = (long)rows*cols*OffHeapMatrix.DOUBLE.byteSize();
+
+    try (FileChannel channel = FileChannel.open(path,
+						StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING,
+						StandardOpenOption.READ,
+						StandardOpenOption.WRITE);
+	 Arena arena = Arena.ofConfined())
+      {
+	MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE,0,PAGE_SIZE+payloadSize,arena);
+
+	writeHeader(file,rows,cols,NumberAlgebra.currentAlgebra().toString());
+	writer.write(file.asSlice(PAGE_SIZE,payloadSize));
+	file.force();
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException("Cannot write matrix file "+path,e);
+      }
+  }
+
+  static void writeHeader (MemorySegment header, int rows, int cols, String algebraName)
+  {
+    byte[] name = algebraName.getBytes(StandardCharsets.UTF_8);
+
+    if (name.length > MAX_NAME_LENGTH)
+      throw new RuntimeException("Algebra name too long for a matrix file: "+algebraName);
+
+    MemorySegment.copy(MemorySegment.ofArray(MAGIC),0,header,0,MAGIC.length);
+    header.set(INT,8,VERSION);
+    header.set(ValueLayout.JAVA_BYTE,12,(byte)(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1));
+    header.set(ValueLayout.JAVA_BYTE,13,(byte)ROW_MAJOR);
+    header.set(ValueLayout.JAVA_BYTE,14,(byte)FLOAT64);
+    header.set(ValueLayout.JAVA_BYTE,15,(byte)0);
+    header.set(LONG,16,rows);
+    header.set(LONG,24,cols);
+    header.set(LONG,32,PAGE_SIZE);
+    header.set(SHORT,40,(short)name.length);
+    MemorySegment.copy(MemorySegment.ofArray(name),0,header,42,name.length);
+  }
+
+  /**
+   * Open the matrix file at the given <tt>path</tt> in the given
+   * <tt>mode</tt> (<tt>READ_ONLY</tt>, <tt>COPY_ON_WRITE</tt>, or
+   * <tt>READ_WRITE</tt>), mapping its payload into an
+   * <tt>OffHeapMatrix</tt> without copying it.
+   */
+  static public MatrixFile open (Path path, int mode)
+  {
+    FileChannel.MapMode mapMode;
+
+    switch (mode)
+      {
+      case READ_ONLY:
+	mapMode = FileChannel.MapMode.READ_ONLY;
+	break;
+      case COPY_ON_WRITE:
+	mapMode = FileChannel.MapMode.PRIVATE;
+	break;
+      case READ_WRITE:
+	mapMode = FileChannel.MapMode.READ_WRITE;
+	break;
+      default:
+	throw new RuntimeException("Unknown matrix file mode: "+mode);
+      }
+
+    Arena arena = Arena.ofShared();
+
+    // N.B.: the JDK only maps PRIVATE (copy-on-write) a channel open
+    // for writing, although the file is then never written
+    try (FileChannel channel = mode != READ_ONLY
+			       ? FileChannel.open(path,StandardOpenOption.READ,StandardOpenOption.WRITE)
+			       : FileChannel.open(path,StandardOpenOption.READ))
+      {
+	long size = channel.size();
+
+	if (size < PAGE_SIZE)
+	  throw new RuntimeException("Not a matrix file (too short): "+path);
+
+	MemorySegment header = channel.map(FileChannel.MapMode.READ_ONLY,0,PAGE_SIZE,arena);
+
+	for (int i = 0; i < MAGIC.length; i++)
+	  if (header.get(ValueLayout.JAVA_BYTE,i) != MAGIC[i])
+	    throw new RuntimeException("Not a matrix file (bad magic number): "+path);
+
+	int version = header.get(INT,8);
+	if (version != VERSION)
+	  throw new RuntimeException("Unsupported matrix file version "+version+": "+path);
+
+	int byteOrder = header.get(ValueLayout.JAVA_BYTE,12);
+	int layout = header.get(ValueLayout.JAVA_BYTE,13);
+	int elementType = header.get(ValueLayout.JAVA_BYTE,14);
+	long rows = header.get(LONG,16);
+	long cols = header.get(LONG,24);
+	long payloadOffset = header.get(LONG,32);
+	int nameLength = header.get(SHORT,40) & 0xFFFF;
+
+	if ((byteOrder == 0) != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN))
+	  throw new RuntimeException("Matrix file of foreign byte order cannot be mapped: "+path);
+
+	if (layout != ROW_MAJOR)
+	  throw new RuntimeException("Unsupported matrix file layout "+layout+": "+path);
+
+	if (elementType != FLOAT64)
+	  throw new RuntimeException("Unsupported matrix file element type "+elementType+": "+path);
+
+	if (rows <= 0 || rows > Integer.MAX_VALUE || cols <= 0 || cols > Integer.MAX_VALUE
+	    || nameLength > MAX_NAME_LENGTH
+	    || payloadOffset < PAGE_SIZE || payloadOffset % PAGE_SIZE != 0)
+	  throw new RuntimeException("Corrupted matrix file header: "+path);
+
+	long payloadSize = rows*cols*OffHeapMatrix.DOUBLE.byteSize();
+
+	if (size < payloadOffset+payloadSize)
+	  throw new RuntimeException("Truncated matrix file: "+path);
+
+	byte[] name = new byte[nameLength];
+	MemorySegment.copy(header,ValueLayout.JAVA_BYTE,42,name,0,nameLength);
+
+	MemorySegment payload = channel.map(mapMode,payloadOffset,payloadSize,arena);
+
+	return new MatrixFile(path,(int)rows,(int)cols,layout,elementType,
+			      new String(name,StandardCharsets.UTF_8),mode,
+			      new OffHeapMatrix((int)rows,(int)cols,payload,arena));
+      }
+    catch (IOException e)
+      {
+	arena.close();
+	throw new UncheckedIOException("Cannot open matrix file "+path,e);
+      }
+    catch (RuntimeException e)
+      {
+	arena.close();
+	throw e;
+      }
+  }
+}
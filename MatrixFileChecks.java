@@ -0,0 +1,291 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixFileChecks.java
+// STARTED ON. . Fri Apr 17 16:52:40 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * This is a non-public class checking <tt>MatrixFile</tt>: that heap
+ * and off-heap matrices (and views) written into matrix files are
+ * mapped back with the same entries and the name of the algebra they
+ * were written under, that each mode of opening a file lets the
+ * matrix be modified, and the file changed, exactly as it should, and
+ * that files that are not matrix files are refused; and that the
+ * out-of-core operations on matrix files compute the same results as
+ * on heap matrices whatever their memory budget, down to panels of one
+ * row and slices thinner than a page. The files are
+ * written in a temporary directory, which is deleted afterwards. It is
+ * run by <tt>MatrixChecks</tt>.
+ *
+ * @see         MatrixFile
+ * @see         OutOfCore
+ * @see         MatrixChecks
+ */
+final class MatrixFileChecks
+{
+  static void run (Random random)
+  {
+    Path directory = temporaryDirectory();
+
+    try
+      {
+	checkFiles(random,directory);
+	checkModes(random,directory);
+	checkOutOfCore(random,directory);
+      }
+    finally
+      {
+	delete(directory);
+      }
+  }
+
+  /**
+   * Return a new temporary directory for matrix files.
+   */
+  static Path temporaryDirectory ()
+  {
+    try
+      {
+	return Files.createTempDirectory("hlt-matrix-checks");
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException(e);
+      }
+  }
+
+  /**
+   * Delete the given temporary <tt>directory</tt> and the files in it.
+   */
+  static void delete (Path directory)
+  {
+    try (var files = Files.list(directory))
+      {
+	for (Path file : (Iterable<Path>)files::iterator)
+	  Files.delete(file);
+	Files.delete(directory);
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException(e);
+      }
+  }
+
+  static private void checkFiles (Random random, Path directory)
+  {
+    Path path = directory.resolve("M.hltm");
+
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int[] shape : ProductChecks.SHAPES)
+	      {
+		int m = shape[0], n = shape[1];
+		Matrix M = MatrixChecks.randomMatrix(random,m,n);
+		Matrix V = new Matrix(m+2,n+1).fill(Double.NaN).submatrix(2,m+1,1,n).update(M);
+		String what = algebra+" "+m+"x"+n+" matrix file";
+
+		MatrixFile.write(path,M);
+		try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+		  {
+		    MatrixChecks.check(file.rows() == m && file.cols() == n
+				       && file.layout() == MatrixFile.ROW_MAJOR
+				       && file.elementType() == MatrixFile.FLOAT64
+				       && file.mode() == MatrixFile.READ_ONLY,what+": header");
+		    MatrixChecks.check(file.algebraName().equals(algebra.toString())
+				       && file.algebra() == algebra,what+": algebra");
+		    MatrixChecks.check(file.matrix().isReadOnly() && file.matrix().equals(M),what);
+		  }
+
+		MatrixFile.write(path,V);
+		try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+		  {
+		    MatrixChecks.check(file.matrix().equals(M),what+" of a view");
+		  }
+
+		try (OffHeapMatrix O = new OffHeapMatrix(M.transpose()))
+		  {
+		    MatrixFile.write(path,O);
+		  }
+		try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+		  {
+		    MatrixChecks.check(file.rows() == n && file.cols() == m
+				       && file.matrix().equals(M.transpose()),what+" of an off-heap matrix");
+		  }
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkModes (Random random, Path directory)
+  {
+    Path path = directory.resolve("M.hltm");
+    Matrix M = MatrixChecks.randomMatrix(random,70,600);
+    Matrix N = M.copy();
+
+    N.set(70,600,-1.0);
+    MatrixFile.write(path,M);
+
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+      {
+	MatrixChecks.check(MatrixChecks.fails(() -> file.matrix().set(70,600,-1.0)),
+			   "read-only matrix file modified");
+      }
+
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.COPY_ON_WRITE))
+      {
+	file.matrix().set(70,600,-1.0);
+	MatrixChecks.check(!file.matrix().isReadOnly() && file.matrix().equals(N),
+			   "copy-on-write matrix file not modified");
+      }
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+      {
+	MatrixChecks.check(file.matrix().equals(M),"copy-on-write matrix file changed");
+      }
+
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_WRITE))
+      {
+	file.matrix().set(70,600,-1.0);
+      }
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+      {
+	MatrixChecks.check(file.matrix().equals(N),"read-write matrix file not changed");
+      }
+
+    MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY);
+    file.close();
+    MatrixChecks.check(MatrixChecks.fails(() -> file.matrix().get(1,1)),"closed matrix file still mapped");
+
+    // files that are not (whole) matrix files are refused
+    try
+      {
+	byte[] bytes = Files.readAllBytes(path);
+
+	Files.write(path,java.util.Arrays.copyOf(bytes,MatrixFile.PAGE_SIZE-1));
+	MatrixChecks.check(MatrixChecks.fails(() -> MatrixFile.open(path,MatrixFile.READ_ONLY)),
+			   "too short matrix file opened");
+
+	Files.write(path,java.util.Arrays.copyOf(bytes,bytes.length-8));
+	MatrixChecks.check(MatrixChecks.fails(() -> MatrixFile.open(path,MatrixFile.READ_ONLY)),
+			   "truncated matrix file opened");
+
+	bytes[0] = 'h';
+	Files.write(path,bytes);
+	MatrixChecks.check(MatrixChecks.fails(() -> MatrixFile.open(path,MatrixFile.READ_ONLY)),
+			   "matrix file with a bad magic number opened");
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException(e);
+      }
+
+    MatrixChecks.check(MatrixChecks.fails(() -> MatrixFile.open(path,3)),"unknown matrix file mode");
+    MatrixChecks.check(MatrixChecks.fails(() -> MatrixFile.open(directory.resolve("none"),MatrixFile.READ_ONLY)),
+		       "missing matrix file opened");
+  }
+
+  /**
+   * Return a new heap copy of the matrix of the matrix file at the given
+   * <tt>path</tt>, after checking that it records the current algebra.
+   */
+  static private Matrix read (Path path)
+  {
+    try (MatrixFile file = MatrixFile.open(path,MatrixFile.READ_ONLY))
+      {
+	MatrixChecks.check(file.algebra() == NumberAlgebra.getCurrentAlgebra(),
+			   "algebra of out-of-core result "+file);
+	return file.matrix().toMatrix();
+      }
+  }
+
+  static private void checkOutOfCore (Random random, Path directory)
+  {
+    Path a = directory.resolve("A.hltm"), b = directory.resolve("B.hltm");
+    Path k = directory.resolve("K.hltm"), c = directory.resolve("C.hltm");
+
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int[] shape : new int[][] { {1,1,1}, {37,700,29}, {130,1100,90}, {300,64,513} })
+	      {
+		int m = shape[0], p = shape[1], n = shape[2];
+		Matrix A = MatrixChecks.randomMatrix(random,m,p);
+		Matrix B = MatrixChecks.randomMatrix(random,m,p);
+		Matrix K = MatrixChecks.randomMatrix(random,p,n);
+		Matrix sum = A.plus(B), product = A.times(K);
+		Matrix difference = standard ? A.minus(B) : null;
+
+		MatrixFile.write(a,A);
+		MatrixFile.write(b,B);
+		MatrixFile.write(k,K);
+
+		try (MatrixFile fa = MatrixFile.open(a,MatrixFile.READ_ONLY);
+		     MatrixFile fb = MatrixFile.open(b,MatrixFile.READ_ONLY);
+		     MatrixFile fk = MatrixFile.open(k,MatrixFile.READ_ONLY))
+		  {
+		    // from the default budget down to panels of a row and
+		    // (for products) slices of a few columns
+		    for (long budget : new long[] { -1L, 64L*(m+4)*Math.max(n,p), 8L*(p+4*n)+64, 40L*n })
+		      {
+			String what = algebra+" out-of-core "+m+"x"+p+" by "+p+"x"+n
+				    +(budget < 0 ? "" : " within "+budget+" bytes");
+
+			if (budget < 0)
+			  fa.times(fk,c);
+			else
+			  fa.times(fk,c,budget);
+			MatrixChecks.check(MatrixChecks.distance(read(c),product) <= ProductChecks.tolerance(p),
+					   what+": times");
+
+			long sumBudget = Math.max(budget,32L*p);
+			if (budget < 0)
+			  fa.plus(fb,c);
+			else
+			  fa.plus(fb,c,sumBudget);
+			MatrixChecks.check(MatrixChecks.distance(read(c),sum) == 0.0,what+": plus");
+
+			if (standard)
+			  {
+			    if (budget < 0)
+			      fa.minus(fb,c);
+			    else
+			      fa.minus(fb,c,sumBudget);
+			    MatrixChecks.check(MatrixChecks.distance(read(c),difference) == 0.0,what+": minus");
+			  }
+		      }
+
+		    MatrixChecks.check(MatrixChecks.fails(() -> fa.plus(fb,a)),"out-of-core result over an operand");
+		    MatrixChecks.check(MatrixChecks.fails(() -> fa.plus(fk,c)) || m == p && p == n,
+				       "out-of-core sum of matrices of different dimensions");
+		    MatrixChecks.check(MatrixChecks.fails(() -> fa.plus(fb,c,8L)),
+				       "out-of-core sum within too small a budget");
+		  }
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+}
@@ -0,0 +1,487 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixProduct.java
+// STARTED ON. . Mon Jan 13 10:12:44 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class gathering the kernels used by
+ * <tt>Matrix.times</tt> to compute matrix products on the flat
+ * row-major entry arrays of <tt>Matrix</tt> objects.<p/>
+ *
+ * All kernels compute <tt>C := C &oplus; A&otimes;B</tt> where
+ * <tt>A</tt> is <tt>m</tt>-by-<tt>k</tt>, <tt>B</tt> is
+ * <tt>k</tt>-by-<tt>n</tt> and <tt>C</tt> is <tt>m</tt>-by-<tt>n</tt>,
+ * each given as an array, the index of its first entry, and the
+ * distances between two consecutive rows and two consecutive columns
+ * (so that a transposed operand is simply one whose strides are
+ * swapped). <tt>C</tt> must be initialized by the caller (<i>e.g.</i>,
+ * to the algebra's <tt>zero()</tt>).<p/>
+ *
+ * The product is computed by blocks as done by tuned BLAS libraries:
+ * the <tt>k</tt> dimension is cut into slices of <tt>KC</tt>, and for
+ * each slice a <tt>KC</tt>-by-<tt>NC</tt> panel of <tt>B</tt> is
+ * packed once into a contiguous buffer meant to stay in the L2/L3
+ * cache, then <tt>MC</tt>-by-<tt>KC</tt> blocks of <tt>A</tt> are
+ * packed into a buffer meant to stay in the L2 cache. A register-blocked
+ * micro-kernel finally computes <tt>MR</tt>-by-<tt>NR</tt> tiles of
+ * <tt>C</tt> reading both packed buffers sequentially (the
+ * <tt>KC</tt>-by-<tt>NR</tt> sliver of <tt>B</tt> it uses stays in the
+ * L1 cache).<p/>
+ *
+ * The algebra is resolved once per product and its <a
+ * href="NumberAlgebra.html#kindOf(hlt.math.matrix.NumberAlgebra)">kind</a>
+ * selects the micro-kernel: for the <tt>StandardAlgebra</tt>, it uses
+ * native <tt>double</tt> arithmetic; for the <tt>MaxMinAlgebra</tt>,
+ * <tt>Math.max</tt> and <tt>Math.min</tt>; for the tropical
+ * <tt>MinPlusAlgebra</tt> and <tt>MaxPlusAlgebra</tt>, <tt>+</tt> and
+ * <tt>Math.min</tt> or <tt>Math.max</tt>; for any other
+ * <tt>NumberAlgebra</tt>, the same blocking is used but entries are
+ * combined with the algebra's <tt>sum</tt> and <tt>product</tt>. When <a
+ * href="Vectorization.html">vectorization</a> is enabled, the
+ * micro-kernels for all but generic algebras are the SIMD ones of
+ * <tt>VectorKernels</tt>,
+ * computing tiles <tt>2*LANES</tt> columns wide.
+ *
+ * @see         Matrix
+ * @see         NumberAlgebra
+ */
+final class MatrixProduct
+{
+  /**
+   * Number of rows of a <tt>C</tt> tile computed by the micro-kernel.
+   */
+  static final int MR = 4;
+
+  /**
+   * Number of columns of a <tt>C</tt> tile computed by the micro-kernel:
+   * two SIMD vectors when vectorized, 4 otherwise.
+   */
+  static final int NR = Vectorization.ENABLED ? 2*Vectorization.LANES : 4;
+
+  /**
+   * Depth of a slice of the <tt>k</tt> dimension. A <tt>KC</tt>-by-<tt>NR</tt>
+   * sliver of packed <tt>B</tt> (8KB) fits in the L1 cache with room to
+   * spare for the <tt>MR</tt>-by-<tt>KC</tt> sliver of packed <tt>A</tt>.
+   */
+  static final int KC = 256;
+
+  /**
+   * Number of rows of a packed block of <tt>A</tt>. A packed
+   * <tt>MC</tt>-by-<tt>KC</tt> block (192KB) fits in a typical L2 cache.
+   */
+  static final int MC = 96;
+
+  /**
+   * Number of columns of a packed panel of <tt>B</tt>. A packed
+   * <tt>KC</tt>-by-<tt>NC</tt> panel (4MB) is meant for the L3 cache.
+   */
+  static final int NC = 2048;
+
+  /**
+   * This is a per-thread workspace holding the packing buffers so that
+   * repeated products do not allocate them anew.
+   */
+  static private final ThreadLocal<Workspace> workspace =
+    ThreadLocal.withInitial(Workspace::new);
+
+  /**
+   * The packing buffers of a thread; they only ever grow.
+   */
+  static final class Workspace
+  {
+    double[] packedA = new double[0];
+    double[] packedB = new double[0];
+    double[] tile = new double[MR*NR];
+
+    double[] packedA (int size)
+    {
+      if (packedA.length < size)
+	packedA = new double[size];
+      return packedA;
+    }
+
+    double[] packedB (int size)
+    {
+      if (packedB.length < size)
+	packedB = new double[size];
+      return packedB;
+    }
+  }
+
+  /**
+   * Compute <tt>C := C &oplus; A&otimes;B</tt> under the given
+   * <tt>algebra</tt> (see the class documentation for the meaning of the
+   * parameters), the entries of <tt>A</tt> being multiplied by
+   * <tt>alpha</tt> as they are packed. Since this folds <tt>alpha</tt>
+   * into the products, it must be <tt>1.0</tt> for algebras other than
+   * the <tt>StandardAlgebra</tt>.
+   */
+  static void multiply (NumberAlgebra algebra, double alpha, int m, int n, int k,
+			double[] a, int aOffset, int aRowStride, int aColStride,
+			double[] b, int bOffset, int bRowStride, int bColStride,
+			double[] c, int cOffset, int cRowStride)
+  {
+    if (m == 0 || n == 0 || k == 0)
+      return;
+
+    Workspace ws = workspace.get();
+    int kind = NumberAlgebra.kindOf(algebra);
+    int kernel = kind == NumberAlgebra.STANDARD ? STANDARD
+	       : kind == NumberAlgebra.MAX_MIN ? (Vectorization.ENABLED ? MAX_MIN : SCALAR_MAX_MIN)
+	       : kind == NumberAlgebra.MIN_PLUS ? (Vectorization.ENABLED ? MIN_PLUS : SCALAR_MIN_PLUS)
+	       : kind == NumberAlgebra.MAX_PLUS ? (Vectorization.ENABLED ? MAX_PLUS : SCALAR_MAX_PLUS)
+	       : GENERIC;
+
+    for (int jc = 0; jc < n; jc += NC)
+      {
+	int nc = Math.min(NC,n-jc);
+
+	for (int pc = 0; pc < k; pc += KC)
+	  {
+	    int kc = Math.min(KC,k-pc);
+	    double[] pb = ws.packedB(roundUp(nc,NR)*kc);
+
+	    packB(kc,nc,b,bOffset+pc*bRowStride+jc*bColStride,bRowStride,bColStride,pb);
+
+	    for (int ic = 0; ic < m; ic += MC)
+	      {
+		int mc = Math.min(MC,m-ic);
+		double[] pa = ws.packedA(roundUp(mc,MR)*kc);
+
+		packA(mc,kc,alpha,a,aOffset+ic*aRowStride+pc*aColStride,aRowStride,aColStride,pa);
+
+		int cBlock = cOffset+ic*cRowStride+jc;
+
+		if (kernel == GENERIC)
+		  algebraBlock(algebra,mc,nc,kc,pa,pb,c,cBlock,cRowStride);
+		else if (kernel == SCALAR_MAX_MIN)
+		  maxMinBlock(mc,nc,kc,pa,pb,c,cBlock,cRowStride);
+		else if (kernel == SCALAR_MIN_PLUS || kernel == SCALAR_MAX_PLUS)
+		  tropicalBlock(kernel,mc,nc,kc,pa,pb,c,cBlock,cRowStride);
+		else
+		  kernelBlock(kernel,mc,nc,kc,pa,pb,c,cBlock,cRowStride,ws.tile);
+	      }
+	  }
+      }
+  }
+
+  /**
+   * Return the smallest multiple of <tt>unit</tt> not less than <tt>n</tt>.
+   */
+  static int roundUp (int n, int unit)
+  {
+    return ((n+unit-1)/unit)*unit;
+  }
+
+  /**
+   * Pack the <tt>mc</tt>-by-<tt>kc</tt> block of <tt>A</tt> starting at
+   * <tt>offset</tt>, multiplied by <tt>alpha</tt> unless it is
+   * <tt>1.0</tt>, into <tt>pa</tt> as consecutive slivers of
+   * <tt>MR</tt> rows, each stored column by column. The last sliver is
+   * padded with <tt>0.0</tt>'s; these only ever contribute to rows of
+   * the micro-kernel's tile that are discarded. Each sliver is read
+   * along the smaller of the two strides of <tt>A</tt>.
+   */
+  static void packA (int mc, int kc, double alpha, double[] a, int offset, int rowStride, int colStride, double[] pa)
+  {
+    int dst = 0;
+
+    for (int i = 0; i < mc; i += MR)
+      {
+	int mr = Math.min(MR,mc-i);
+
+	if (colStride < rowStride && mr == MR)
+	  {
+	    // read each row of the sliver along its contiguous entries
+	    for (int r = 0; r < MR; r++)
+	      {
+		int src = offset+(i+r)*rowStride;
+
+		if (alpha == 1.0)
+		  for (int p = 0; p < kc; p++)
+		    pa[dst+p*MR+r] = a[src+p*colStride];
+		else
+		  for (int p = 0; p < kc; p++)
+		    pa[dst+p*MR+r] = alpha*a[src+p*colStride];
+	      }
+
+	    dst += kc*MR;
+	    continue;
+	  }
+
+	for (int p = 0; p < kc; p++)
+	  {
+	    int src = offset+i*rowStride+p*colStride;
+	    int r = 0;
+
+	    if (alpha == 1.0)
+	      for (; r < mr; r++)
+		pa[dst++] = a[src+r*rowStride];
+	    else
+	      for (; r < mr; r++)
+		pa[dst++] = alpha*a[src+r*rowStride];
+	    for (; r < MR; r++)
+	      pa[dst++] = 0.0;
+	  }
+      }
+  }
+
+  /**
+   * Pack the <tt>kc</tt>-by-<tt>nc</tt> panel of <tt>B</tt> starting at
+   * <tt>offset</tt> into <tt>pb</tt> as consecutive slivers of
+   * <tt>NR</tt> columns, each stored row by row. The last sliver is
+   * padded with <tt>0.0</tt>'s; these only ever contribute to columns of
+   * the micro-kernel's tile that are discarded. Each sliver is read
+   * along the smaller of the two strides of <tt>B</tt>: a transposed
+   * view of a matrix is thus read along its rows.
+   */
+  static void packB (int kc, int nc, double[] b, int offset, int rowStride, int colStride, double[] pb)
+  {
+    int dst = 0;
+
+    for (int j = 0; j < nc; j += NR)
+      {
+	int nr = Math.min(NR,nc-j);
+
+	if (rowStride < colStride && nr == NR)
+	  {
+	    // read each column of the sliver along its contiguous entries
+	    for (int s = 0; s < NR; s++)
+	      {
+		int src = offset+(j+s)*colStride;
+
+		for (int p = 0; p < kc; p++)
+		  pb[dst+p*NR+s] = b[src+p*rowStride];
+	      }
+
+	    dst += kc*NR;
+	    continue;
+	  }
+
+	for (int p = 0; p < kc; p++)
+	  {
+	    int src = offset+p*rowStride+j*colStride;
+	    int s = 0;
+
+	    for (; s < nr; s++)
+	      pb[dst++] = b[src+s*colStride];
+	    for (; s < NR; s++)
+	      pb[dst++] = 0.0;
+	  }
+      }
+  }
+
+  /**
+   * Codes for the micro-kernels: native arithmetic, SIMD max/min, scalar
+   * max/min, calls to the algebra's operations, SIMD min/plus and
+   * max/plus, and scalar min/plus and max/plus.
+   */
+  static final int STANDARD = 0, MAX_MIN = 1, SCALAR_MAX_MIN = 2, GENERIC = 3,
+		   MIN_PLUS = 4, MAX_PLUS = 5, SCALAR_MIN_PLUS = 6, SCALAR_MAX_PLUS = 7;
+
+  /**
+   * Compute <tt>C := C &oplus; A&otimes;B</tt> with the given
+   * <tt>STANDARD</tt>, <tt>MAX_MIN</tt>, <tt>MIN_PLUS</tt>, or
+   * <tt>MAX_PLUS</tt> micro-kernel for an
+   * <tt>mc</tt>-by-<tt>nc</tt> block of <tt>C</tt> from packed blocks of
+   * <tt>A</tt> and <tt>B</tt> of depth <tt>kc</tt>.
+   */
+  static void kernelBlock (int kernel, int mc, int nc, int kc, double[] pa, double[] pb,
+			   double[] c, int cOffset, int cRowStride, double[] tile)
+  {
+    for (int j = 0; j < nc; j += NR)
+      {
+	int nr = Math.min(NR,nc-j);
+	int pbStart = j*kc;
+
+	for (int i = 0; i < mc; i += MR)
+	  {
+	    int mr = Math.min(MR,mc-i);
+	    int cTile = cOffset+i*cRowStride+j;
+
+	    if (mr == MR && nr == NR)
+	      microKernel(kernel,kc,pa,i*kc,pb,pbStart,c,cTile,cRowStride);
+	    else
+	      { // edge tile: compute the full tile aside and add its useful part
+		java.util.Arrays.fill(tile,kernel == STANDARD ? 0.0
+				      : kernel == MIN_PLUS ? Double.POSITIVE_INFINITY
+				      : Double.NEGATIVE_INFINITY);
+		microKernel(kernel,kc,pa,i*kc,pb,pbStart,tile,0,NR);
+		for (int r = 0; r < mr; r++)
+		  for (int s = 0; s < nr; s++)
+		    if (kernel == STANDARD)
+		      c[cTile+r*cRowStride+s] += tile[r*NR+s];
+		    else if (kernel == MIN_PLUS)
+		      c[cTile+r*cRowStride+s] = Math.min(c[cTile+r*cRowStride+s],tile[r*NR+s]);
+		    else
+		      c[cTile+r*cRowStride+s] = Math.max(c[cTile+r*cRowStride+s],tile[r*NR+s]);
+	      }
+	  }
+      }
+  }
+
+  /**
+   * Run the given micro-kernel on an <tt>MR</tt>-by-<tt>NR</tt> tile.
+   */
+  static private void microKernel (int kernel, int kc, double[] pa, int a, double[] pb, int b,
+				   double[] c, int cTile, int cRowStride)
+  {
+    if (kernel == MAX_MIN)
+      VectorKernels.maxMinKernel(kc,pa,a,pb,b,c,cTile,cRowStride);
+    else if (kernel == MIN_PLUS)
+      VectorKernels.minPlusKernel(kc,pa,a,pb,b,c,cTile,cRowStride);
+    else if (kernel == MAX_PLUS)
+      VectorKernels.maxPlusKernel(kc,pa,a,pb,b,c,cTile,cRowStride);
+    else if (Vectorization.ENABLED)
+      VectorKernels.standardKernel(kc,pa,a,pb,b,c,cTile,cRowStride);
+    else
+      standardKernel(kc,pa,a,pb,b,c,cTile,cRowStride);
+  }
+
+  /**
+   * This is the scalar 4-by-4 register-blocked micro-kernel: it accumulates in 16 local variables
+   * the products of a sliver of packed <tt>A</tt> by a sliver of packed
+   * <tt>B</tt> and adds them to the corresponding tile of <tt>C</tt>.
+   */
+  static void standardKernel (int kc, double[] pa, int a, double[] pb, int b,
+			      double[] c, int cTile, int cRowStride)
+  {
+    double c00 = 0.0, c01 = 0.0, c02 = 0.0, c03 = 0.0;
+    double c10 = 0.0, c11 = 0.0, c12 = 0.0, c13 = 0.0;
+    double c20 = 0.0, c21 = 0.0, c22 = 0.0, c23 = 0.0;
+    double c30 = 0.0, c31 = 0.0, c32 = 0.0, c33 = 0.0;
+
+    for (int p = 0; p < kc; p++, a += MR, b += NR)
+      {
+	double a0 = pa[a], a1 = pa[a+1], a2 = pa[a+2], a3 = pa[a+3];
+	double b0 = pb[b], b1 = pb[b+1], b2 = pb[b+2], b3 = pb[b+3];
+
+	c00 += a0*b0; c01 += a0*b1; c02 += a0*b2; c03 += a0*b3;
+	c10 += a1*b0; c11 += a1*b1; c12 += a1*b2; c13 += a1*b3;
+	c20 += a2*b0; c21 += a2*b1; c22 += a2*b2; c23 += a2*b3;
+	c30 += a3*b0; c31 += a3*b1; c32 += a3*b2; c33 += a3*b3;
+      }
+
+    int r0 = cTile, r1 = r0+cRowStride, r2 = r1+cRowStride, r3 = r2+cRowStride;
+
+    c[r0] += c00; c[r0+1] += c01; c[r0+2] += c02; c[r0+3] += c03;
+    c[r1] += c10; c[r1+1] += c11; c[r1+2] += c12; c[r1+3] += c13;
+    c[r2] += c20; c[r2+1] += c21; c[r2+2] += c22; c[r2+3] += c23;
+    c[r3] += c30; c[r3+1] += c31; c[r3+2] += c32; c[r3+3] += c33;
+  }
+
+  /**
+   * Compute <tt>C := max(C,max-min(A,B))</tt>, <i>i.e.</i>, the product
+   * under the <tt>MaxMinAlgebra</tt>, with scalar <tt>Math.max</tt> and
+   * <tt>Math.min</tt> for an <tt>mc</tt>-by-<tt>nc</tt> block of
+   * <tt>C</tt> from packed blocks of <tt>A</tt> and <tt>B</tt> of depth
+   * <tt>kc</tt>.
+   */
+  static void maxMinBlock (int mc, int nc, int kc, double[] pa, double[] pb,
+			   double[] c, int cOffset, int cRowStride)
+  {
+    for (int j = 0; j < nc; j += NR)
+      {
+	int nr = Math.min(NR,nc-j);
+	int pbStart = j*kc;
+
+	for (int i = 0; i < mc; i += MR)
+	  {
+	    int mr = Math.min(MR,mc-i);
+	    int paStart = i*kc;
+
+	    for (int r = 0; r < mr; r++)
+	      for (int s = 0; s < nr; s++)
+		{
+		  int index = cOffset+(i+r)*cRowStride+j+s;
+		  double entry = c[index];
+
+		  for (int p = 0, a = paStart+r, b = pbStart+s; p < kc; p++, a += MR, b += NR)
+		    entry = Math.max(entry,Math.min(pa[a],pb[b]));
+
+		  c[index] = entry;
+		}
+	  }
+      }
+  }
+
+  /**
+   * Compute <tt>C := min(C,min-plus(A,B))</tt> or <tt>C :=
+   * max(C,max-plus(A,B))</tt> (according to the given
+   * <tt>SCALAR_MIN_PLUS</tt> or <tt>SCALAR_MAX_PLUS</tt>
+   * <tt>kernel</tt>), <i>i.e.</i>, the product under a tropical algebra,
+   * with scalar <tt>+</tt> and <tt>Math.min</tt> or <tt>Math.max</tt>
+   * for an <tt>mc</tt>-by-<tt>nc</tt> block of <tt>C</tt> from packed
+   * blocks of <tt>A</tt> and <tt>B</tt> of depth <tt>kc</tt>.
+   */
+  static void tropicalBlock (int kernel, int mc, int nc, int kc, double[] pa, double[] pb,
+			     double[] c, int cOffset, int cRowStride)
+  {
+    for (int j = 0; j < nc; j += NR)
+      {
+	int nr = Math.min(NR,nc-j);
+	int pbStart = j*kc;
+
+	for (int i = 0; i < mc; i += MR)
+	  {
+	    int mr = Math.min(MR,mc-i);
+	    int paStart = i*kc;
+
+	    for (int r = 0; r < mr; r++)
+	      for (int s = 0; s < nr; s++)
+		{
+		  int index = cOffset+(i+r)*cRowStride+j+s;
+		  double entry = c[index];
+
+		  if (kernel == SCALAR_MIN_PLUS)
+		    for (int p = 0, a = paStart+r, b = pbStart+s; p < kc; p++, a += MR, b += NR)
+		      entry = Math.min(entry,pa[a]+pb[b]);
+		  else
+		    for (int p = 0, a = paStart+r, b = pbStart+s; p < kc; p++, a += MR, b += NR)
+		      entry = Math.max(entry,pa[a]+pb[b]);
+
+		  c[index] = entry;
+		}
+	  }
+      }
+  }
+
+  /**
+   * Compute <tt>C := C &oplus; A&otimes;B</tt> under the given
+   * <tt>algebra</tt> for an <tt>mc</tt>-by-<tt>nc</tt> block of
+   * <tt>C</tt> from packed blocks of <tt>A</tt> and <tt>B</tt> of depth
+   * <tt>kc</tt>. Each entry of <tt>C</tt> is combined with its products
+   * in increasing <tt>k</tt> order.
+   */
+  static void algebraBlock (NumberAlgebra algebra, int mc, int nc, int kc, double[] pa, double[] pb,
+			    double[] c, int cOffset, int cRowStride)
+  {
+    for (int j = 0; j < nc; j += NR)
+      {
+	int nr = Math.min(NR,nc-j);
+	int pbStart = j*kc;
+
+	for (int i = 0; i < mc; i += MR)
+	  {
+	    int mr = Math.min(MR,mc-i);
+	    int paStart = i*kc;
+
+	    for (int r = 0; r < mr; r++)
+	      for (int s = 0; s < nr; s++)
+		{
+		  int index = cOffset+(i+r)*cRowStride+j+s;
+		  double entry = c[index];
+
+		  for (int p = 0, a = paStart+r, b = pbStart+s; p < kc; p++, a += MR, b += NR)
+		    entry = algebra.sum(entry,algebra.product(pa[a],pb[b]));
+
+		  c[index] = entry;
+		}
+	  }
+      }
+  }
+}
@@ -0,0 +1,241 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MatrixTasks.java
+// STARTED ON. . Tue Jan 14 09:31:05 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This is a non-public class gathering the fork/join tasks used to
+ * run <tt>Matrix</tt> operations in parallel when the <a
+ * href="Matrix.html#parallel">parallel execution mode</a> is on.<p/>
+ *
+ * Entry-wise operations are split into blocks of consecutive rows, and
+ * products into two-dimensional tiles of the result. In both cases,
+ * each result entry is computed by exactly the same sequence of
+ * arithmetic operations as it is sequentially, so that the parallel
+ * and sequential results are identical bit for bit.
+ *
+ * @see         Matrix
+ * @see         MatrixProduct
+ */
+final class MatrixTasks
+{
+  /**
+   * The type of an operation that can be performed independently on
+   * any block of consecutive rows.
+   */
+  interface RowBlockAction
+  {
+    /**
+     * Perform this action on rows <tt>fromRow</tt> (inclusive) to
+     * <tt>toRow</tt> (exclusive), counted from <tt>0</tt>.
+     */
+    void compute (int fromRow, int toRow);
+  }
+
+  /**
+   * Return <tt>true</tt> iff an operation touching <tt>size</tt> entries
+   * should be run in parallel.
+   */
+  static boolean runsInParallel (long size)
+  {
+    return Matrix.isParallel() && size >= Matrix.parallelThreshold();
+  }
+
+  /**
+   * Perform the given <tt>action</tt> on all the rows of a
+   * <tt>rows</tt>-by-<tt>cols</tt> matrix, either at once or split into
+   * blocks of rows computed in parallel on <tt>Matrix.forkJoinPool()</tt>.
+   */
+  static void forRowBlocks (int rows, int cols, RowBlockAction action)
+  {
+    if (rows < 2 || !runsInParallel((long)rows*cols))
+      {
+	action.compute(0,rows);
+	return;
+      }
+
+    ForkJoinPool pool = Matrix.forkJoinPool();
+
+    // leaves hold at least a threshold's worth of entries, but there
+    // are enough of them to keep all the pool's workers busy
+    int grain = (int)Math.min(rows,
+			      Math.max(1,Math.min((Matrix.parallelThreshold()+cols-1)/cols,
+						  rows/(4L*pool.getParallelism()))));
+
+    pool.invoke(new RowBlockTask(action,MatrixContext.bound(),0,rows,grain));
+  }
+
+  /**
+   * A fork/join task performing a <tt>RowBlockAction</tt> on a range
+   * of rows by recursive halving down to a given grain. Its leaves run
+   * with the <tt>MatrixContext</tt> of the thread that submitted the
+   * task bound, since pool workers do not inherit it.
+   */
+  static final class RowBlockTask extends RecursiveAction
+  {
+    static private final long serialVersionUID = 1L;
+
+    // tasks are never serialized
+    final transient RowBlockAction action;
+    final transient MatrixContext context;
+    final int from;
+    final int to;
+    final int grain;
+
+    RowBlockTask (RowBlockAction action, MatrixContext context, int from, int to, int grain)
+    {
+      this.action = action;
+      this.context = context;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+    }
+
+    protected void compute ()
+    {
+      if (to - from <= grain)
+	{
+	  MatrixContext.runWithin(context,() -> action.compute(from,to));
+	  return;
+	}
+
+      int middle = (from+to) >>> 1;
+      invokeAll(new RowBlockTask(action,context,from,middle,grain),
+		new RowBlockTask(action,context,middle,to,grain));
+    }
+  }
+
+  /**
+   * Compute <tt>C := C &oplus; (&alpha;A)&otimes;B</tt> under the given
+   * <tt>algebra</tt> like <tt>MatrixProduct.multiply</tt>, splitting the
+   * result into tiles computed in parallel if it is large enough. Since
+   * the depth dimension is never split, each tile is computed by the
+   * very same sequence of operations as when all <tt>C</tt> is
+   * computed at once.
+   */
+  static void multiply (NumberAlgebra algebra, double alpha, int m, int n, int k,
+			double[] a, int aOffset, int aRowStride, int aColStride,
+			double[] b, int bOffset, int bRowStride, int bColStride,
+			double[] c, int cOffset, int cRowStride)
+  {
+    if (!runsInParallel((long)m*n) || (m <= MatrixProduct.MC && n <= MatrixProduct.NR))
+      {
+	MatrixProduct.multiply(algebra,alpha,m,n,k,
+			       a,aOffset,aRowStride,aColStride,
+			       b,bOffset,bRowStride,bColStride,
+			       c,cOffset,cRowStride);
+	return;
+      }
+
+    ForkJoinPool pool = Matrix.forkJoinPool();
+
+    // aim at several tiles per worker but no tile smaller than a
+    // micro-kernel block of MC rows by a few NR columns
+    long tileSize = Math.max((long)MatrixProduct.MC*MatrixProduct.NR*4,
+			     (long)m*n/(8L*pool.getParallelism()));
+
+    pool.invoke(new ProductTask(algebra,alpha,0,m,0,n,k,tileSize,
+				a,aOffset,aRowStride,aColStride,
+				b,bOffset,bRowStride,bColStride,
+				c,cOffset,cRowStride));
+  }
+
+  /**
+   * A fork/join task computing a rectangular tile of a product by
+   * recursively halving its larger dimension (at a multiple of the
+   * micro-kernel's tile size) until it is no larger than
+   * <tt>tileSize</tt> entries.
+   */
+  static final class ProductTask extends RecursiveAction
+  {
+    static private final long serialVersionUID = 1L;
+
+    // tasks are never serialized
+    final transient NumberAlgebra algebra;
+    final double alpha;
+    final int row0, row1, col0, col1, k;
+    final long tileSize;
+    final double[] a, b, c;
+    final int aOffset, aRowStride, aColStride;
+    final int bOffset, bRowStride, bColStride;
+    final int cOffset, cRowStride;
+
+    ProductTask (NumberAlgebra algebra, double alpha, int row0, int row1, int col0, int col1, int k, long tileSize,
+		 double[] a, int aOffset, int aRowStride, int aColStride,
+		 double[] b, int bOffset, int bRowStride, int bColStride,
+		 double[] c, int cOffset, int cRowStride)
+    {
+      this.algebra = algebra;
+      this.alpha = alpha;
+      this.row0 = row0;
+      this.row1 = row1;
+      this.col0 = col0;
+      this.col1 = col1;
+      this.k = k;
+      this.tileSize = tileSize;
+      this.a = a;
+      this.aOffset = aOffset;
+      this.aRowStride = aRowStride;
+      this.aColStride = aColStride;
+      this.b = b;
+      this.bOffset = bOffset;
+      this.bRowStride = bRowStride;
+      this.bColStride = bColStride;
+      this.c = c;
+      this.cOffset = cOffset;
+      this.cRowStride = cRowStride;
+    }
+
+    protected void compute ()
+    {
+      int m = row1 - row0;
+      int n = col1 - col0;
+
+      if ((long)m*n > tileSize)
+	{
+	  if (m >= n && m > MatrixProduct.MR)
+	    {
+	      int middle = row0 + splitPoint(m,MatrixProduct.MR);
+	      invokeAll(subtask(row0,middle,col0,col1),subtask(middle,row1,col0,col1));
+	      return;
+	    }
+
+	  if (n > MatrixProduct.NR)
+	    {
+	      int middle = col0 + splitPoint(n,MatrixProduct.NR);
+	      invokeAll(subtask(row0,row1,col0,middle),subtask(row0,row1,middle,col1));
+	      return;
+	    }
+	}
+
+      MatrixProduct.multiply(algebra,alpha,m,n,k,
+			     a,aOffset+row0*aRowStride,aRowStride,aColStride,
+			     b,bOffset+col0*bColStride,bRowStride,bColStride,
+			     c,cOffset+row0*cRowStride+col0,cRowStride);
+    }
+
+    ProductTask subtask (int row0, int row1, int col0, int col1)
+    {
+      return new ProductTask(algebra,alpha,row0,row1,col0,col1,k,tileSize,
+			     a,aOffset,aRowStride,aColStride,
+			     b,bOffset,bRowStride,bColStride,
+			     c,cOffset,cRowStride);
+    }
+
+    /**
+     * Return the half of <tt>size</tt> rounded to a multiple of
+     * <tt>unit</tt> (and at least <tt>unit</tt>).
+     */
+    static int splitPoint (int size, int unit)
+    {
+      return Math.max(unit,(size/2/unit)*unit);
+    }
+  }
+}
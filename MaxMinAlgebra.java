@@ -96,6 +96,26 @@ public class MaxMinAlgebra extends NumberAlgebra
       ("The difference operation is undefined for a "+this);
   }
 
+  /**
+   * Return <tt>true</tt> since <tt>max(x,x)</tt> = <tt>x</tt> and
+   * <tt>max(POSITIVE_INFINITY,x)</tt> = <tt>POSITIVE_INFINITY</tt> for
+   * any <tt>double</tt> <tt>x</tt>.
+   */
+  public boolean isIdempotent ()
+  {
+    return true;
+  }
+
+  /**
+   * Return the <tt>star</tt> of <tt>x</tt> as <tt>POSITIVE_INFINITY</tt>
+   * (<i>i.e.</i>, <tt>one()</tt>, which absorbs all the other terms of
+   * the series).
+   */
+  public double star (double x)
+  {
+    return Double.POSITIVE_INFINITY;
+  }
+
   /**
    * Define a <tt>String</tt> form for this <tt>MaxMinAlgebra</tt>. It
    * must be redefined in any subclass.
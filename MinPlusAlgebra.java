@@ -0,0 +1,128 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/MinPlusAlgebra.java
+// STARTED ON. . Mon Mar  2 09:14:37 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a concrete subclass of <tt>NumberAlgebra</tt> defining the
+ * (tropical) <i>min-plus</i> algebra, whose final operations are:<p/>
+ * <ul>
+ * <li/><tt>zero()          </tt>&#8797;<tt>  POSITIVE_INFINITY</tt>
+ * <li/><tt>one()           </tt>&#8797;<tt>  0.0</tt>
+ * <li/><tt>sum(x,y)        </tt>&#8797;<tt>  Math.min(x,y)</tt>
+ * <li/><tt>product(x,y)    </tt>&#8797;<tt>  x+y</tt>
+ * </ul>
+ *
+ * The <tt>negation</tt> and <tt>difference</tt> operations are
+ * undefined. If the entry <tt>(i,j)</tt> of a matrix is the length of
+ * an arc from <tt>i</tt> to <tt>j</tt> (or <tt>POSITIVE_INFINITY</tt>
+ * if there is none), the entry <tt>(i,j)</tt> of its <tt>k</tt>-th
+ * power in this algebra is the length of a shortest path of
+ * <tt>k</tt> arcs from <tt>i</tt> to <tt>j</tt>, and that of its <a
+ * href="Matrix.html#closure">closure</a> the length of a shortest path
+ * from <tt>i</tt> to <tt>j</tt>; see also <a
+ * href="ShortestPaths.html"><tt>ShortestPaths</tt></a>.
+ *
+ * @see         NumberAlgebra
+ * @see         MaxPlusAlgebra
+ * @see         Matrix
+ */
+public class MinPlusAlgebra extends NumberAlgebra
+{
+  /**
+   * Return the <tt>zero</tt> of this algebra as
+   * <tt>POSITIVE_INFINITY</tt> (<i>i.e.</i>, no path). It verifies
+   * <tt>sum(x,zero())</tt> = <tt>sum(zero(),x)</tt> = <tt>x</tt>, for
+   * any <tt>double</tt> <tt>x</tt>.
+   */
+  public final double zero ()
+  {
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Return the <tt>one</tt> of this algebra as <tt>0.0</tt>
+   * (<i>i.e.</i>, the empty path). It verifies <tt>product(x,one())</tt>
+   * = <tt>product(one(),x)</tt> = <tt>x</tt>, for any <tt>double</tt>
+   * <tt>x</tt>.
+   */
+  public final double one ()
+  {
+    return 0.0;
+  }
+
+  /**
+   * Return the <tt>sum</tt> of the arguments as <tt>Math.min</tt>.
+   */
+  public final double sum (double x, double y)
+  {
+    return Math.min(x,y);
+  }
+
+  /**
+   * Return the <tt>product</tt> of the arguments as <tt>+</tt>.
+   */
+  public final double product (double x, double y)
+  {
+    return x + y;
+  }
+
+  /**
+   * Throws a runtime exception to indicate that the <tt>negation</tt>
+   * operation is undefined for a <tt>MinPlusAlgebra</tt>.
+   */
+  public double negation (double x)
+  {
+    throw new RuntimeException
+      ("The negation operation is undefined for a "+this);
+  }
+
+  /**
+   * Throws a runtime exception to indicate that the <tt>difference</tt>
+   * operation is undefined for a <tt>MinPlusAlgebra</tt>.
+   */
+  public double difference (double x, double y)
+  {
+    throw new RuntimeException
+      ("The difference operation is undefined for a "+this);
+  }
+
+  /**
+   * Return <tt>true</tt> since <tt>min(x,x)</tt> = <tt>x</tt>. Its
+   * <tt>one()</tt> absorbs its <tt>sum</tt> only for non-negative
+   * values; but the closure of a matrix with no cycle of negative
+   * length (the only one that exists) is likewise the sum of its first
+   * <tt>n</tt> powers.
+   */
+  public boolean isIdempotent ()
+  {
+    return true;
+  }
+
+  /**
+   * Return the <tt>star</tt> of <tt>x</tt> as <tt>0.0</tt> if <tt>x</tt>
+   * is not negative; otherwise, <tt>x</tt> is the length of a negative
+   * cycle and a <tt>RuntimeException</tt> is thrown.
+   */
+  public double star (double x)
+  {
+    if (x < 0.0)
+      throw new RuntimeException("Negative cycle of length "+x+": there is no shortest path");
+
+    return 0.0;
+  }
+
+  /**
+   * Define a <tt>String</tt> form for this <tt>MinPlusAlgebra</tt>. It
+   * must be redefined in any subclass.
+   */
+  public String toString ()
+  {
+    return "Min/Plus Algebra";
+  }
+
+}
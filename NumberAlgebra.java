@@ -39,6 +39,8 @@ import java.util.Iterator;
  * @see         MatrixPackageDescription
  * @see         StandardAlgebra
  * @see         MaxMinAlgebra
+ * @see         MinPlusAlgebra
+ * @see         MaxPlusAlgebra
  * @see         Matrix
  *
  * @version     Last modified on Wed Dec 18 07:39:41 2019 by hak
@@ -128,6 +130,39 @@ abstract public class NumberAlgebra
     return -x;
   }
 
+  /**
+   * Return <tt>true</tt> iff the <tt>sum</tt> of this
+   * <tt>NumberAlgebra</tt> is idempotent (<i>i.e.</i>, <tt>sum(x,x)</tt>
+   * = <tt>x</tt> for any <tt>double</tt> <tt>x</tt>) and its
+   * <tt>one()</tt> absorbs its <tt>sum</tt> (<i>i.e.</i>,
+   * <tt>sum(one(),x)</tt> = <tt>one()</tt>). Then, the <a
+   * href="Matrix.html#closure">closure</a> of an <tt>n</tt>-by-<tt>n</tt>
+   * matrix is the sum of its first <tt>n</tt> powers, which is reached
+   * after at most <tt>log<sub>2</sub>(n)</tt> squarings. The default is
+   * <tt>false</tt>. It can be redefined in a subclass.
+   */
+  public boolean isIdempotent ()
+  {
+    return false;
+  }
+
+  /**
+   * This defines the default <tt>star</tt> (or closure) of this
+   * <tt>NumberAlgebra</tt>; <i>i.e.</i>, the sum of the series
+   * <tt>one()</tt>, <tt>x</tt>, <tt>product(x,x)</tt>, ..., as
+   * <tt>1/(1-x)</tt>, which converges only for <tt>|x| &lt; 1</tt>
+   * (a <tt>RuntimeException</tt> is thrown otherwise). It can be
+   * redefined in a subclass. It should always verify <tt>star(x)</tt> =
+   * <tt>sum(one(),product(x,star(x)))</tt>.
+   */
+  public double star (double x)
+  {
+    if (Math.abs(x) >= 1.0)
+      throw new RuntimeException("The star of "+x+" is undefined in the "+this);
+
+    return 1.0/(1.0-x);
+  }
+
   /**
    * Return the default <tt>String</tt> form for this
    * <tt>NumberAlgebra</tt>. It must redefined in any subclass.
@@ -157,7 +192,7 @@ abstract public class NumberAlgebra
   /**
    * Return the canonical <tt>StandardAlgebra</tt>.
    */
-  static final public StandardAlgebra standardAlgebra ()
+  static synchronized final public StandardAlgebra standardAlgebra ()
   {
     if (standardAlgebra == null)
       standardAlgebra = (StandardAlgebra)registeredAlgebra(new StandardAlgebra());
@@ -173,7 +208,7 @@ abstract public class NumberAlgebra
   /**
    * Return the canonical <tt>MaxMinAlgebra</tt>.
    */
-  static final public MaxMinAlgebra maxMinAlgebra ()
+  static synchronized final public MaxMinAlgebra maxMinAlgebra ()
   {
     if (maxMinAlgebra == null)
       maxMinAlgebra = (MaxMinAlgebra)registeredAlgebra(new MaxMinAlgebra());
@@ -181,23 +216,77 @@ abstract public class NumberAlgebra
     return maxMinAlgebra;
   }
 
+  /**
+   * A private holder for the canonical <tt>MinPlusAlgebra</tt> object.
+   */
+  static private MinPlusAlgebra minPlusAlgebra;
+
+  /**
+   * Return the canonical <tt>MinPlusAlgebra</tt>.
+   */
+  static synchronized final public MinPlusAlgebra minPlusAlgebra ()
+  {
+    if (minPlusAlgebra == null)
+      minPlusAlgebra = (MinPlusAlgebra)registeredAlgebra(new MinPlusAlgebra());
+
+    return minPlusAlgebra;
+  }
+
+  /**
+   * A private holder for the canonical <tt>MaxPlusAlgebra</tt> object.
+   */
+  static private MaxPlusAlgebra maxPlusAlgebra;
+
+  /**
+   * Return the canonical <tt>MaxPlusAlgebra</tt>.
+   */
+  static synchronized final public MaxPlusAlgebra maxPlusAlgebra ()
+  {
+    if (maxPlusAlgebra == null)
+      maxPlusAlgebra = (MaxPlusAlgebra)registeredAlgebra(new MaxPlusAlgebra());
+
+    return maxPlusAlgebra;
+  }
+
   /* ************************************************************************ */
 
   /**
-   * This is the current <tt>NumberAlgebra</tt> in effect for all matrix
-   * operations. It is set by default to the canonical <tt>StandardAlgebra</tt>.
+   * This is the process-wide <tt>NumberAlgebra</tt> in effect for all
+   * matrix operations performed in threads with no bound <a
+   * href="MatrixContext.html"><tt>MatrixContext</tt></a>. It is set by
+   * default to the canonical <tt>StandardAlgebra</tt>.
    */
-  static private NumberAlgebra currentAlgebra;
+  static private volatile NumberAlgebra currentAlgebra;
 
   /**
-   * Return 
+   * Return the algebra of the <tt>MatrixContext</tt> bound to the
+   * current thread if any, or else the process-wide current algebra
+   * (setting it to the canonical <tt>StandardAlgebra</tt> if there is
+   * none yet).
    */
   static final public NumberAlgebra currentAlgebra ()
   {
-    if (currentAlgebra == null)
-      currentAlgebra = standardAlgebra();
+    MatrixContext context = MatrixContext.bound();
+
+    if (context != null)
+      return context.algebra();
 
-    return currentAlgebra;
+    return globalAlgebra();
+  }
+
+  /**
+   * Return the process-wide current algebra, ignoring any bound
+   * <tt>MatrixContext</tt> (setting it to the canonical
+   * <tt>StandardAlgebra</tt> if there is none yet).
+   */
+  static final NumberAlgebra globalAlgebra ()
+  {
+    NumberAlgebra algebra = currentAlgebra;
+
+    if (algebra == null)
+      currentAlgebra = algebra = standardAlgebra();
+
+    return algebra;
   }
 
   /**
@@ -212,15 +301,23 @@ abstract public class NumberAlgebra
 
   /**
    * Return the current number algebra on <tt>double</tt> matrix entries in
-   * effect for all matrix operations.
+   * effect for all matrix operations: that of the <tt>MatrixContext</tt>
+   * bound to the current thread if any, or else the process-wide one.
    */
   static final public NumberAlgebra getCurrentAlgebra ()
   {
-    if (currentAlgebra == null)
+    MatrixContext context = MatrixContext.bound();
+
+    if (context != null)
+      return context.algebra();
+
+    NumberAlgebra algebra = currentAlgebra;
+
+    if (algebra == null)
       throw new RuntimeException
 	("There is no NumberAlgebra currently set.");
 
-    return currentAlgebra;
+    return algebra;
   }
 
   /**
@@ -241,6 +338,59 @@ abstract public class NumberAlgebra
     currentAlgebra = maxMinAlgebra();
   }
 
+  /**
+   * Set the current number algebra in effect for all matrix operations to the
+   * canonical <tt>MinPlusAlgebra</tt>.
+   */
+  static final public void setMinPlusAlgebra ()
+  {
+    currentAlgebra = minPlusAlgebra();
+  }
+
+  /**
+   * Set the current number algebra in effect for all matrix operations to the
+   * canonical <tt>MaxPlusAlgebra</tt>.
+   */
+  static final public void setMaxPlusAlgebra ()
+  {
+    currentAlgebra = maxPlusAlgebra();
+  }
+
+  /* ************************************************************************ */
+  /**
+   * Codes for the kinds of algebras for which <tt>Matrix</tt> operations
+   * have specialized kernels: the <tt>StandardAlgebra</tt>, the
+   * <tt>MaxMinAlgebra</tt>, the (tropical) <tt>MinPlusAlgebra</tt> and
+   * <tt>MaxPlusAlgebra</tt>, and any other (generic) algebra.
+   */
+  static final int STANDARD = 0, MAX_MIN = 1, GENERIC = 2, MIN_PLUS = 3, MAX_PLUS = 4;
+
+  /**
+   * Return the kind of the given <tt>algebra</tt> for kernel
+   * dispatch. This is safe for subclasses since the operations of
+   * <tt>StandardAlgebra</tt>, and the <tt>sum</tt> and <tt>product</tt>
+   * of <tt>MaxMinAlgebra</tt>, are final (the kernels only specialize
+   * those of <tt>MaxMinAlgebra</tt>, and call its other operations), as
+   * are the <tt>zero()</tt>, <tt>one()</tt>, <tt>sum</tt>, and
+   * <tt>product</tt> of the tropical algebras.
+   */
+  static final int kindOf (NumberAlgebra algebra)
+  {
+    if (algebra instanceof StandardAlgebra)
+      return STANDARD;
+
+    if (algebra instanceof MaxMinAlgebra)
+      return MAX_MIN;
+
+    if (algebra instanceof MinPlusAlgebra)
+      return MIN_PLUS;
+
+    if (algebra instanceof MaxPlusAlgebra)
+      return MAX_PLUS;
+
+    return GENERIC;
+  }
+
   /* ************************************************************************ */
   /**
    * This is the repository of all registered concrete
@@ -256,7 +406,7 @@ abstract public class NumberAlgebra
    * this algebra under its name (its <tt>toString()</tt> form), and return
    * it.
    */
-  static final public NumberAlgebra registeredAlgebra (NumberAlgebra algebra)
+  static synchronized final public NumberAlgebra registeredAlgebra (NumberAlgebra algebra)
   {
     String name = algebra.toString().intern();
 
@@ -271,7 +421,24 @@ abstract public class NumberAlgebra
     return algebra;
   }
 
-  static final public void showRegisteredAlgebras ()
+  /**
+   * Return the registered canonical <tt>NumberAlgebra</tt> of the given
+   * name (<i>i.e.</i>, <tt>toString()</tt> form), or <tt>null</tt> if
+   * there is none. The canonical <tt>StandardAlgebra</tt>,
+   * <tt>MaxMinAlgebra</tt>, <tt>MinPlusAlgebra</tt>, and
+   * <tt>MaxPlusAlgebra</tt> are always registered.
+   */
+  static synchronized final public NumberAlgebra registeredAlgebra (String name)
+  {
+    standardAlgebra();
+    maxMinAlgebra();
+    minPlusAlgebra();
+    maxPlusAlgebra();
+
+    return (NumberAlgebra)algebras.get(name);
+  }
+
+  static synchronized final public void showRegisteredAlgebras ()
   {
     System.out.println("\tCurrently registered number algebras:\n");    
 
@@ -0,0 +1,193 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/OffHeapChecks.java
+// STARTED ON. . Fri Apr 17 14:18:09 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>OffHeapMatrix</tt> against
+ * heap <tt>Matrix</tt>es under several algebras: its operations with
+ * off-heap and heap operands on either side (including views), in place
+ * or not, for dimensions straddling the tiles they are staged by, with
+ * the same results in parallel; and the lifetime of its memory, owned
+ * or not, and read-only segments. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         OffHeapMatrix
+ * @see         MatrixChecks
+ */
+final class OffHeapChecks
+{
+  static void run (Random random)
+  {
+    checkOperations(random);
+    checkParallelOperations(random);
+    checkMemory(random);
+  }
+
+  /**
+   * Return <tt>O</tt> after adding it to the given list of matrices to
+   * close.
+   */
+  static private OffHeapMatrix keep (OffHeapMatrix O, List<OffHeapMatrix> open)
+  {
+    open.add(O);
+    return O;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>O</tt> has the entries of <tt>M</tt>
+   * within the given <tt>tolerance</tt>.
+   */
+  static private boolean holds (OffHeapMatrix O, Matrix M, double tolerance)
+  {
+    return O.rows() == M.rows() && O.cols() == M.cols()
+      && MatrixChecks.distance(O.toMatrix(),M) <= tolerance;
+  }
+
+  static private void checkOperations (Random random)
+  {
+    List<OffHeapMatrix> open = new ArrayList<OffHeapMatrix>();
+
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int[] shape : ProductChecks.SHAPES)
+	      {
+		int m = shape[0], k = shape[1], n = shape[2];
+		Matrix A = MatrixChecks.randomMatrix(random,m,k);
+		Matrix B = MatrixChecks.randomMatrix(random,m,k);
+		Matrix K = MatrixChecks.randomMatrix(random,k,n);
+		Matrix V = new Matrix(m+1,k+2).fill(Double.NaN).submatrix(2,m+1,2,k+1).update(B);
+		OffHeapMatrix O = keep(new OffHeapMatrix(A),open);
+		OffHeapMatrix P = keep(new OffHeapMatrix(B.transpose().transposed()),open);
+		OffHeapMatrix Q = keep(new OffHeapMatrix(K),open);
+		String what = algebra+" off-heap "+m+"x"+k+" matrix";
+		double tolerance = ProductChecks.tolerance(k);
+
+		MatrixChecks.check(O.equals(A) && P.equals(B) && O.get(m,k) == A.get(m,k),what);
+
+		Matrix sum = A.plus(B), product = A.times(K);
+		MatrixChecks.check(holds(keep(O.plus(P),open),sum,0.0),what+": plus");
+		MatrixChecks.check(holds(keep(O.plus(V),open),sum,0.0),what+": plus a view");
+		MatrixChecks.check(holds(keep(OffHeapMatrix.plus(A,P),open),sum,0.0),what+": plus from the left");
+		MatrixChecks.check(holds(keep(A.plus(P),open),sum,0.0),what+": Matrix.plus");
+		MatrixChecks.check(holds(keep(O.scale(0.5),open),A.scale(0.5),0.0),what+": scale");
+		MatrixChecks.check(holds(keep(O.transpose(),open),A.transpose(),0.0),what+": transpose");
+		MatrixChecks.check(holds(keep(O.times(Q),open),product,tolerance),what+": times");
+		MatrixChecks.check(holds(keep(O.times(K),open),product,tolerance),what+": times a Matrix");
+		MatrixChecks.check(holds(keep(OffHeapMatrix.times(A,Q),open),product,tolerance),
+				   what+": times from the left");
+		MatrixChecks.check(holds(keep(A.times(Q),open),product,tolerance),what+": Matrix.times");
+
+		if (standard)
+		  {
+		    Matrix difference = A.minus(B);
+		    MatrixChecks.check(holds(keep(O.minus(P),open),difference,0.0),what+": minus");
+		    MatrixChecks.check(holds(keep(OffHeapMatrix.minus(A,P),open),difference,0.0),
+				       what+": minus from the left");
+		    MatrixChecks.check(holds(keep(A.minus(P),open),difference,0.0),what+": Matrix.minus");
+		    MatrixChecks.check(holds(keep(O.minus(),open),A.minus(),0.0),what+": negation");
+		  }
+
+		// in place, on a copy which must not share the entries of O
+		OffHeapMatrix C = keep(O.copy(),open);
+		MatrixChecks.check(C.i_plus(V) == C && holds(C,sum,0.0),what+": i_plus");
+		MatrixChecks.check(C.i_scale(2.0) == C && holds(C,sum.scale(2.0),0.0),what+": i_scale");
+		MatrixChecks.check(O.equals(A),what+": copy shares entries");
+		if (standard)
+		  MatrixChecks.check(C.i_minus(P) == C && C.i_minus() == C
+				     && holds(C,sum.scale(2.0).minus(B).minus(),0.0),what+": i_minus");
+
+		OffHeapMatrix S = keep(new OffHeapMatrix(MatrixChecks.randomMatrix(random,k,k)),open);
+		MatrixChecks.check(keep(S.copy(),open).i_transpose().equals(S.toMatrix().transpose()),
+				   algebra+" off-heap "+k+"x"+k+" matrix: i_transpose");
+	      }
+	  }
+      }
+    finally
+      {
+	for (OffHeapMatrix O : open)
+	  O.close();
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkParallelOperations (Random random)
+  {
+    List<OffHeapMatrix> open = new ArrayList<OffHeapMatrix>();
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	OffHeapMatrix A = keep(new OffHeapMatrix(MatrixChecks.randomMatrix(random,300,200)),open);
+	OffHeapMatrix B = keep(new OffHeapMatrix(MatrixChecks.randomMatrix(random,300,200)),open);
+	OffHeapMatrix K = keep(new OffHeapMatrix(MatrixChecks.randomMatrix(random,200,150)),open);
+
+	Matrix.setParallel(false);
+	OffHeapMatrix product = keep(A.times(K),open);
+	OffHeapMatrix sum = keep(A.plus(B),open);
+	OffHeapMatrix transpose = keep(A.transpose(),open);
+
+	Matrix.setParallel(true);
+	Matrix.setParallelThreshold(1);
+	Matrix.setForkJoinPool(pool);
+	MatrixChecks.check(keep(A.times(K),open).equals(product),"off-heap product in parallel");
+	MatrixChecks.check(keep(A.plus(B),open).equals(sum),"off-heap sum in parallel");
+	MatrixChecks.check(keep(A.transpose(),open).equals(transpose),"off-heap transpose in parallel");
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+	for (OffHeapMatrix O : open)
+	  O.close();
+      }
+  }
+
+  static private void checkMemory (Random random)
+  {
+    Matrix A = MatrixChecks.randomMatrix(random,70,130);
+
+    // a matrix owning its arena is freed when closed
+    OffHeapMatrix O = new OffHeapMatrix(A);
+    O.close();
+    MatrixChecks.check(MatrixChecks.fails(() -> O.get(1,1)),"closed off-heap matrix still readable");
+
+    // a matrix in a given arena is freed with the arena only
+    Arena arena = Arena.ofConfined();
+    OffHeapMatrix M = new OffHeapMatrix(A.rows(),A.cols(),arena);
+    for (int i = 1; i <= A.rows(); i++)
+      for (int j = 1; j <= A.cols(); j++)
+	M.set(i,j,A.get(i,j));
+    M.close();
+    MatrixChecks.check(M.equals(A) && M.fill(0.5).equals(new Matrix(70,130).fill(0.5)),
+		       "off-heap matrix in a given arena");
+    arena.close();
+    MatrixChecks.check(MatrixChecks.fails(() -> M.get(1,1)),"off-heap matrix readable after its arena");
+
+    // a matrix over a read-only segment reads it but cannot modify it
+    OffHeapMatrix R = new OffHeapMatrix(A.rows(),A.cols(),MemorySegment.ofArray(A.entries()).asReadOnly());
+    MatrixChecks.check(R.isReadOnly() && R.equals(A),"read-only off-heap matrix");
+    MatrixChecks.check(MatrixChecks.fails(() -> R.set(1,1,0.0)),"read-only off-heap matrix modified");
+    MatrixChecks.check(MatrixChecks.fails(() -> new OffHeapMatrix(71,130,MemorySegment.ofArray(A.entries()))),
+		       "off-heap matrix over a segment too small");
+  }
+}
@@ -0,0 +1,721 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/OffHeapMatrix.java
+// STARTED ON. . Mon Feb 03 10:26:57 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * This is a class of dense matrices whose entries are stored outside the
+ * Java heap, in a <tt>MemorySegment</tt> of the Foreign Function &amp;
+ * Memory API, as <tt>double</tt>s in row-major order. Such a matrix is
+ * not limited by the heap size nor by the 2<sup>31</sup> entries of a
+ * Java array, and its entries are never scanned nor moved by the
+ * garbage collector.<p/>
+ *
+ * The memory of an <tt>OffHeapMatrix</tt> belongs to an <tt>Arena</tt>:
+ * either its own shared arena, freed deterministically when the matrix
+ * is <tt>close</tt>d (<i>e.g.</i>, at the end of a
+ * <tt>try</tt>-with-resources statement), or one supplied by the
+ * caller, who then manages its lifetime. An <tt>OffHeapMatrix</tt> may
+ * also wrap any suitable segment (<i>e.g.</i>, a memory-mapped file;
+ * see <tt>MatrixFile</tt>). Accessing a matrix whose memory has been
+ * freed throws an <tt>IllegalStateException</tt>.<p/>
+ *
+ * An <tt>OffHeapMatrix</tt> supports a subset of the operations of
+ * <tt>Matrix</tt>: <tt>plus</tt>, <tt>minus</tt> (binary and unary),
+ * <tt>scale</tt> and <tt>transpose</tt>, with their in-place variants
+ * (<tt>i_transpose</tt> only for square matrices), <tt>times</tt>
+ * (without an in-place variant), and <tt>fill</tt>, <tt>copy</tt>,
+ * <tt>equals</tt> and <tt>show</tt>; any other operation needs a
+ * conversion <tt>toMatrix</tt>. They run under the current number
+ * algebra, with either an <tt>OffHeapMatrix</tt> or a heap
+ * <tt>Matrix</tt> as the other operand; results are new
+ * <tt>OffHeapMatrix</tt>es in their own arenas, which the caller must
+ * close. Operations stage rows (for entry-wise
+ * operations) or square blocks (for products) through small heap
+ * buffers so as to run the very kernels used for heap matrices, by
+ * blocks of rows or tiles in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>.<p/>
+ *
+ * <b>N.B.:</b> This class needs the <tt>java.lang.foreign</tt> API
+ * (final as of JDK&nbsp;22, preview in JDK&nbsp;21); the rest of the
+ * package does not depend on it.
+ *
+ * @see         Matrix
+ */
+public class OffHeapMatrix implements AutoCloseable
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * The layout of entries.
+   */
+  static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+
+  /**
+   * The number of rows of this matrix.
+   */
+  private final int rows;
+
+  /**
+   * The number of columns of this matrix, which is also the number of
+   * entries between the starts of two consecutive rows.
+   */
+  private final int cols;
+
+  /**
+   * The segment holding the entries of this matrix.
+   */
+  private final MemorySegment segment;
+
+  /**
+   * The arena owned by this matrix, or <tt>null</tt> if its memory is
+   * managed elsewhere.
+   */
+  private final Arena arena;
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>OffHeapMatrix</tt>
+   * of <tt>0.0</tt>'s in its own shared arena, freed when it is closed.
+   */
+  public OffHeapMatrix (int rows, int cols)
+  {
+    this(rows,cols,Arena.ofShared(),true);
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>OffHeapMatrix</tt>
+   * of <tt>0.0</tt>'s allocated in the given <tt>arena</tt>, which must
+   * be accessible from all the threads using the matrix and which frees
+   * it when it is closed.
+   */
+  public OffHeapMatrix (int rows, int cols, Arena arena)
+  {
+    this(rows,cols,arena,false);
+  }
+
+  private OffHeapMatrix (int rows, int cols, Arena arena, boolean owned)
+  {
+    checkDimensions(rows,cols);
+
+    this.rows = rows;
+    this.cols = cols;
+    this.segment = arena.allocate((long)rows*cols*DOUBLE.byteSize(),64);
+    this.arena = owned ? arena : null;
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>OffHeapMatrix</tt>
+   * whose entries are the first <tt>rows*cols</tt> <tt>double</tt>s of
+   * the given <tt>segment</tt> in row-major order; its memory is managed
+   * by whoever provided the segment. If the segment is read-only, so is
+   * the matrix.
+   */
+  public OffHeapMatrix (int rows, int cols, MemorySegment segment)
+  {
+    checkDimensions(rows,cols);
+
+    if (segment.byteSize() < (long)rows*cols*DOUBLE.byteSize())
+      throw new RuntimeException("Memory segment too small for a "+rows+"x"+cols+" matrix");
+
+    this.rows = rows;
+    this.cols = cols;
+    this.segment = segment.asSlice(0,(long)rows*cols*DOUBLE.byteSize());
+    this.arena = null;
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>OffHeapMatrix</tt>
+   * over the given <tt>segment</tt> of the given <tt>arena</tt>, which
+   * it owns and frees when it is closed.
+   */
+  OffHeapMatrix (int rows, int cols, MemorySegment segment, Arena arena)
+  {
+    checkDimensions(rows,cols);
+
+    this.rows = rows;
+    this.cols = cols;
+    this.segment = segment.asSlice(0,(long)rows*cols*DOUBLE.byteSize());
+    this.arena = arena;
+  }
+
+  /**
+   * Construct a new <tt>OffHeapMatrix</tt> in its own shared arena with a
+   * copy of the entries of the given heap <tt>Matrix</tt>.
+   */
+  public OffHeapMatrix (Matrix M)
+  {
+    this(M.rows(),M.cols());
+
+    // views are read through a contiguous copy
+    M = M.contiguous();
+    MemorySegment source = MemorySegment.ofArray(M.entries());
+
+    for (int row = 0; row < rows; row++)
+      MemorySegment.copy(source,(long)row*M.stride()*DOUBLE.byteSize(),
+			 segment,rowOffset(row),
+			 (long)cols*DOUBLE.byteSize());
+  }
+
+  static private void checkDimensions (int rows, int cols)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+  }
+
+  /**
+   * Free the memory of this matrix if it owns its arena; otherwise, do
+   * nothing (its memory is freed with its arena or segment).
+   */
+  public void close ()
+  {
+    if (arena != null)
+      arena.close();
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Component Access
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of rows of this matrix.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return the segment holding the entries of this matrix.
+   */
+  public final MemorySegment segment ()
+  {
+    return segment;
+  }
+
+  /**
+   * Return <tt>true</tt> iff the entries of this matrix cannot be
+   * modified.
+   */
+  public final boolean isReadOnly ()
+  {
+    return segment.isReadOnly();
+  }
+
+  /**
+   * Return the byte offset in <tt>segment</tt> of the given row
+   * (counted from <tt>0</tt>).
+   */
+  final long rowOffset (int row)
+  {
+    return (long)row*cols*DOUBLE.byteSize();
+  }
+
+  /**
+   * Return the entry at row <tt>i</tt> and column <tt>j</tt> (counted
+   * from <tt>1</tt>).
+   */
+  public final double get (int i, int j)
+  {
+    checkLegalEntry(i,j);
+    return segment.getAtIndex(DOUBLE,(long)(i-1)*cols+(j-1));
+  }
+
+  /**
+   * Set the entry at row <tt>i</tt> and column <tt>j</tt> (counted from
+   * <tt>1</tt>) to <tt>value</tt>, and return it.
+   */
+  public final double set (int i, int j, double value)
+  {
+    checkLegalEntry(i,j);
+    segment.setAtIndex(DOUBLE,(long)(i-1)*cols+(j-1),value);
+    return value;
+  }
+
+  private void checkLegalEntry (int i, int j)
+  {
+    if (i < 1 || i > rows || j < 1 || j > cols)
+      throw new RuntimeException("Matrix entry ("+i+","+j+") out of bounds [1,"+rows+"]x[1,"+cols+"]");
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of row <tt>row</tt> starting at column
+   * <tt>col</tt> (both counted from <tt>0</tt>) into <tt>target</tt>
+   * from <tt>offset</tt> on.
+   */
+  final void readRow (int row, int col, double[] target, int offset, int length)
+  {
+    MemorySegment.copy(segment,DOUBLE,rowOffset(row)+col*DOUBLE.byteSize(),target,offset,length);
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of <tt>source</tt> from <tt>offset</tt>
+   * on into row <tt>row</tt> starting at column <tt>col</tt> (both
+   * counted from <tt>0</tt>).
+   */
+  final void writeRow (int row, int col, double[] source, int offset, int length)
+  {
+    MemorySegment.copy(source,offset,segment,DOUBLE,rowOffset(row)+col*DOUBLE.byteSize(),length);
+  }
+
+  /**
+   * Set all the entries of this matrix to <tt>value</tt> and return
+   * it.
+   */
+  public OffHeapMatrix fill (double value)
+  {
+    if (value == 0.0 && Double.doubleToRawLongBits(value) == 0L)
+      segment.fill((byte)0);
+    else
+      for (long i = 0, size = (long)rows*cols; i < size; i++)
+	segment.setAtIndex(DOUBLE,i,value);
+
+    return this;
+  }
+
+  /**
+   * Return a new heap <tt>Matrix</tt> with a copy of the entries of this
+   * one, which must then have fewer than 2<sup>31</sup> entries.
+   */
+  public Matrix toMatrix ()
+  {
+    Matrix M = new Matrix(rows,cols);
+
+    for (int row = 0; row < rows; row++)
+      readRow(row,0,M.entries(),row*M.stride(),cols);
+
+    return M;
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> in its own arena with a copy of
+   * the entries of this one.
+   */
+  public OffHeapMatrix copy ()
+  {
+    OffHeapMatrix M = new OffHeapMatrix(rows,cols);
+    MemorySegment.copy(segment,0,M.segment,0,segment.byteSize());
+    return M;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Operations
+   * </span></h3>
+   *
+   * The operand of an operation may be another <tt>OffHeapMatrix</tt>
+   * or a heap <tt>Matrix</tt>: either is seen through an <tt>Operand</tt>
+   * reading its rows.
+   */
+
+  /**
+   * The type of a matrix operand whose rows can be read into a heap
+   * buffer.
+   */
+  interface Operand
+  {
+    int rows ();
+    int cols ();
+
+    /**
+     * Copy <tt>length</tt> entries of row <tt>row</tt> starting at column
+     * <tt>col</tt> (both counted from <tt>0</tt>) into <tt>target</tt>
+     * from <tt>offset</tt> on.
+     */
+    void readRow (int row, int col, double[] target, int offset, int length);
+  }
+
+  /**
+   * Return an <tt>Operand</tt> reading the rows of this matrix.
+   */
+  final Operand operand ()
+  {
+    return new Operand()
+      {
+	public int rows () { return rows; }
+	public int cols () { return cols; }
+	public void readRow (int row, int col, double[] target, int offset, int length)
+	{
+	  OffHeapMatrix.this.readRow(row,col,target,offset,length);
+	}
+      };
+  }
+
+  /**
+   * Return an <tt>Operand</tt> reading the rows of the given heap
+   * <tt>Matrix</tt>.
+   */
+  static final Operand operand (Matrix M)
+  {
+    double[] entries = M.entries();
+    int base = M.offset(), stride = M.stride(), colStride = M.colStride();
+
+    return new Operand()
+      {
+	public int rows () { return M.rows(); }
+	public int cols () { return M.cols(); }
+	public void readRow (int row, int col, double[] target, int offset, int length)
+	{
+	  int start = base+row*stride+col*colStride;
+
+	  if (colStride == 1)
+	    System.arraycopy(entries,start,target,offset,length);
+	  else
+	    for (int i = 0; i < length; i++)
+	      target[offset+i] = entries[start+i*colStride];
+	}
+      };
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public OffHeapMatrix plus (OffHeapMatrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),M.operand(),null);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public OffHeapMatrix plus (Matrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),operand(M),null);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to the heap
+   * <tt>Matrix</tt> <tt>M</tt> plus the <tt>OffHeapMatrix</tt>
+   * <tt>N</tt>.
+   */
+  static public OffHeapMatrix plus (Matrix M, OffHeapMatrix N)
+  {
+    return combine(EntryKernels.SUM,operand(M),N.operand(),null);
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public OffHeapMatrix i_plus (OffHeapMatrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),M.operand(),this);
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public OffHeapMatrix i_plus (Matrix M)
+  {
+    return combine(EntryKernels.SUM,operand(),operand(M),this);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public OffHeapMatrix minus (OffHeapMatrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),M.operand(),null);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public OffHeapMatrix minus (Matrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),operand(M),null);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to the heap
+   * <tt>Matrix</tt> <tt>M</tt> minus the <tt>OffHeapMatrix</tt>
+   * <tt>N</tt>.
+   */
+  static public OffHeapMatrix minus (Matrix M, OffHeapMatrix N)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(M),N.operand(),null);
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public OffHeapMatrix i_minus (OffHeapMatrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),M.operand(),this);
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public OffHeapMatrix i_minus (Matrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,operand(),operand(M),this);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>-this</tt>.
+   */
+  public OffHeapMatrix minus ()
+  {
+    return map(EntryKernels.NEGATION,0.0,null);
+  }
+
+  /**
+   * Modify this matrix to <tt>-this</tt> and return it.
+   */
+  public OffHeapMatrix i_minus ()
+  {
+    return map(EntryKernels.NEGATION,0.0,this);
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>factor*this</tt>.
+   */
+  public OffHeapMatrix scale (double factor)
+  {
+    return map(EntryKernels.SCALE,factor,null);
+  }
+
+  /**
+   * Modify this matrix to <tt>factor*this</tt> and return it.
+   */
+  public OffHeapMatrix i_scale (double factor)
+  {
+    return map(EntryKernels.SCALE,factor,this);
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> (or of a new matrix if <tt>C</tt> is
+   * <tt>null</tt>) to the <tt>SUM</tt> or <tt>DIFFERENCE</tt> of the
+   * corresponding entries of <tt>A</tt> and <tt>B</tt>, and return it.
+   * Rows are staged through per-thread heap buffers (see
+   * <tt>RowStaging</tt>).
+   */
+  static private OffHeapMatrix combine (int op, Operand A, Operand B, OffHeapMatrix C)
+  {
+    RowStaging.checkSum(A,B);
+
+    OffHeapMatrix result = C == null ? new OffHeapMatrix(A.rows(),A.cols()) : C;
+    RowStaging.combine(op,A,B,result::writeRow);
+    return result;
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> (or of a new matrix if <tt>C</tt> is
+   * <tt>null</tt>) to the <tt>NEGATION</tt> or <tt>SCALE</tt> by
+   * <tt>factor</tt> of the corresponding entry of this matrix, and
+   * return it.
+   */
+  private OffHeapMatrix map (int op, double factor, OffHeapMatrix C)
+  {
+    OffHeapMatrix result = C == null ? new OffHeapMatrix(rows,cols) : C;
+    RowStaging.map(op,factor,operand(),result::writeRow);
+    return result;
+  }
+
+  /**
+   * The order of the square blocks staged in heap buffers by products.
+   */
+  static final int BLOCK = 1024;
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public OffHeapMatrix times (OffHeapMatrix M)
+  {
+    return multiply(operand(),M.operand());
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public OffHeapMatrix times (Matrix M)
+  {
+    return multiply(operand(),operand(M));
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to the heap <tt>Matrix</tt>
+   * <tt>M</tt> times the <tt>OffHeapMatrix</tt> <tt>N</tt> under the
+   * current number algebra.
+   */
+  static public OffHeapMatrix times (Matrix M, OffHeapMatrix N)
+  {
+    return multiply(operand(M),N.operand());
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> equal to <tt>A</tt> times
+   * <tt>B</tt> under the current number algebra, computed by
+   * <tt>BLOCK</tt>-by-<tt>BLOCK</tt> blocks staged in heap buffers (see
+   * <tt>RowStaging</tt>), each written once.
+   */
+  static OffHeapMatrix multiply (Operand A, Operand B)
+  {
+    RowStaging.checkProduct(A,B);
+
+    OffHeapMatrix C = new OffHeapMatrix(A.rows(),B.cols());
+    RowStaging.multiply(NumberAlgebra.getCurrentAlgebra(),A,B,C::writeRow,BLOCK);
+    return C;
+  }
+
+  /**
+   * Return a new <tt>OffHeapMatrix</tt> that is the transpose of this
+   * one, computed by square tiles staged in heap buffers.
+   */
+  public OffHeapMatrix transpose ()
+  {
+    OffHeapMatrix T = new OffHeapMatrix(cols,rows);
+    int tile = 64;
+    double[] in = new double[tile*tile];
+    double[] out = new double[tile*tile];
+
+    for (int i0 = 0; i0 < rows; i0 += tile)
+      for (int j0 = 0; j0 < cols; j0 += tile)
+	{
+	  int mt = Math.min(tile,rows-i0), nt = Math.min(tile,cols-j0);
+
+	  for (int i = 0; i < mt; i++)
+	    readRow(i0+i,j0,in,i*nt,nt);
+
+	  for (int i = 0; i < mt; i++)
+	    for (int j = 0; j < nt; j++)
+	      out[j*mt+i] = in[i*nt+j];
+
+	  for (int j = 0; j < nt; j++)
+	    T.writeRow(j0+j,i0,out,j*mt,mt);
+	}
+
+    return T;
+  }
+
+  /**
+   * If this is a square matrix, this returns <tt>this</tt> after
+   * modifying it in place to its transpose, by swapping the transposes
+   * of symmetric square tiles staged in heap buffers. If it is not
+   * square, it throws a <tt>RuntimeException</tt>.
+   */
+  public OffHeapMatrix i_transpose ()
+  {
+    if (rows != cols)
+      throw new RuntimeException("Cannot transpose a non-square matrix in place!");
+
+    int tile = 64;
+    double[] upper = new double[tile*tile];
+    double[] lower = new double[tile*tile];
+
+    for (int i0 = 0; i0 < rows; i0 += tile)
+      for (int j0 = i0; j0 < cols; j0 += tile)
+	{
+	  int mt = Math.min(tile,rows-i0), nt = Math.min(tile,cols-j0);
+
+	  // stage the (i0,j0) tile and its symmetric (j0,i0) tile (the
+	  // same one on the diagonal), then swap their transposed entries
+	  for (int i = 0; i < mt; i++)
+	    readRow(i0+i,j0,upper,i*nt,nt);
+	  for (int j = 0; j < nt; j++)
+	    readRow(j0+j,i0,lower,j*mt,mt);
+
+	  for (int i = 0; i < mt; i++)
+	    for (int j = 0; j < nt; j++)
+	      {
+		double entry = upper[i*nt+j];
+		upper[i*nt+j] = lower[j*mt+i];
+		lower[j*mt+i] = entry;
+	      }
+
+	  for (int i = 0; i < mt; i++)
+	    writeRow(i0+i,j0,upper,i*nt,nt);
+	  if (j0 != i0)
+	    for (int j = 0; j < nt; j++)
+	      writeRow(j0+j,i0,lower,j*mt,mt);
+	}
+
+    return this;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and <tt>M</tt> are entry-wise
+   * equal.
+   */
+  public boolean equals (OffHeapMatrix M)
+  {
+    return M == this || equalEntries(M.operand());
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and the heap <tt>Matrix</tt>
+   * <tt>M</tt> are entry-wise equal.
+   */
+  public boolean equals (Matrix M)
+  {
+    return equalEntries(operand(M));
+  }
+
+  private boolean equalEntries (Operand M)
+  {
+    if (M.rows() != rows || M.cols() != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,M.rows(),M.cols());
+
+    double[] a = new double[cols];
+    double[] b = new double[cols];
+
+    for (int row = 0; row < rows; row++)
+      {
+	readRow(row,0,a,0,cols);
+	M.readRow(row,0,b,0,cols);
+
+	for (int col = 0; col < cols; col++)
+	  if (a[col] != b[col])
+	    return false;
+      }
+
+    return true;
+  }
+
+  /**
+   * Print this matrix like <tt>Matrix.show()</tt> does.
+   */
+  public void show ()
+  {
+    double[] row = new double[cols];
+
+    System.out.println();
+    for (int i = 0; i < rows; i++)
+      {
+	readRow(i,0,row,0,cols);
+	for (int col = 0; col < cols; col++)
+	  System.out.printf(Matrix.floatFormatString(),row[col]);
+	System.out.println();
+      }
+    System.out.println();
+  }
+
+  public String toString ()
+  {
+    return rows+"x"+cols+" off-heap matrix";
+  }
+}
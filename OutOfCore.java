@@ -0,0 +1,380 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/OutOfCore.java
+// STARTED ON. . Tue Feb 11 09:52:27 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This is a non-public class computing products and sums of matrices
+ * that may be larger than the memory of the machine, reading their
+ * entries from (typically memory-mapped) <tt>OffHeapMatrix</tt>es and
+ * writing the result into a matrix file. Only a bounded amount of heap
+ * memory is used, given by a <i>memory budget</i> in bytes.<p/>
+ *
+ * The result is computed by <i>panels</i> of consecutive full rows, as
+ * many as fit in the budget, and each panel is written once, in order,
+ * right after the header of the result file; hence, the result file is
+ * written sequentially from beginning to end. A panel of
+ * <tt>C = A&otimes;B</tt> is accumulated over <i>slices</i> of the
+ * depth dimension: for each slice, the corresponding block of the rows
+ * of <tt>A</tt> and the corresponding rows of <tt>B</tt> are staged
+ * into heap buffers and multiplied by the blocked kernel of
+ * <tt>MatrixProduct</tt> (by tiles in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>). Thus, each
+ * entry of <tt>A</tt> is read exactly once, and each entry of
+ * <tt>B</tt> once per panel, which is a handful of times for a budget
+ * of a few gigabytes (<i>e.g.</i>, 5 times for <tt>100000</tt>-by-<tt>100000</tt>
+ * matrices), whereas the product performs <tt>O(n<sup>3</sup>)</tt>
+ * operations on <tt>O(n<sup>2</sup>)</tt> entries.<p/>
+ *
+ * Staging buffers come in pairs: while the current slice is being
+ * multiplied (or the current panel written), the next slice is loaded
+ * by a background <i>prefetching</i> thread into the other buffers, so
+ * that the page faults of reading from a mapped file overlap with
+ * computation.
+ *
+ * @see         MatrixFile
+ * @see         OffHeapMatrix
+ */
+final class OutOfCore
+{
+  /**
+   * The depth of the slices of a product; a slice of a row of a file
+   * matrix is then one page of <tt>MatrixFile.PAGE_SIZE</tt> bytes.
+   */
+  static final int DEPTH = MatrixFile.PAGE_SIZE/8;
+
+  /**
+   * The size in bytes of the direct buffer through which panels are
+   * written into the result file.
+   */
+  static private final int WRITE_CHUNK = 1 << 23;
+
+  /**
+   * Return the default memory budget: half of the maximum heap size.
+   */
+  static long defaultBudget ()
+  {
+    return Runtime.getRuntime().maxMemory()/2;
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the product of
+   * <tt>A</tt> by <tt>B</tt> in the given <tt>algebra</tt>, using about
+   * <tt>budget</tt> bytes of heap memory.
+   */
+  static void multiply (NumberAlgebra algebra, OffHeapMatrix.Operand A, OffHeapMatrix.Operand B,
+			Path path, long budget)
+  {
+    int m = A.rows(), k = A.cols(), n = B.cols();
+
+    if (k != B.rows())
+      throw new RuntimeException("Cannot multiply a "+m+"x"+k+
+				 " matrix by a "+B.rows()+"x"+n+" matrix");
+
+    // the budget holds one panel of C and two slices of A and B; the
+    // slices of B take at most half of it, even if they must be thinner
+    int depth = (int)Math.max(1,Math.min(Math.min(DEPTH,k),budget/8/(4L*n)));
+    int height = panelHeight(m,n,budget/8-2L*depth*n,n+2L*depth);
+
+    double[] c = new double[height*n];
+    Slice[] slices = { new Slice(height*depth,depth*n), new Slice(height*depth,depth*n) };
+    double zero = algebra.zero();
+    ExecutorService prefetcher = prefetcher();
+
+    try (FileChannel channel = create(path,m,n,algebra))
+      {
+	int current = 0;
+	Future<Slice> next = prefetcher.submit(() -> slices[0].load(A,B,0,Math.min(height,m),0,depth));
+
+	for (int i0 = 0; i0 < m; i0 += height)
+	  {
+	    int mb = Math.min(height,m-i0);
+
+	    java.util.Arrays.fill(c,0,mb*n,zero);
+
+	    for (int p0 = 0; p0 < k; p0 += depth)
+	      {
+		Slice slice = await(next);
+
+		// prefetch the next slice of this panel, or the first
+		// slice of the next panel, into the other buffers
+		int ni0 = i0, np0 = p0+depth;
+		if (np0 >= k)
+		  {
+		    ni0 = i0+height;
+		    np0 = 0;
+		  }
+
+		current = 1-current;
+		if (ni0 < m)
+		  {
+		    Slice other = slices[current];
+		    int fi0 = ni0, fp0 = np0;
+		    next = prefetcher.submit(() -> other.load(A,B,fi0,Math.min(height,m-fi0),
+							      fp0,Math.min(depth,k-fp0)));
+		  }
+
+		MatrixTasks.multiply(algebra,1.0,mb,n,slice.depth,
+				     slice.a,0,slice.depth,1,
+				     slice.b,0,n,1,
+				     c,0,n);
+	      }
+
+	    Matrix.truncate(c,0,mb*n);
+
+	    write(channel,c,mb*n);
+	  }
+
+	channel.force(false);
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException("Cannot write matrix file "+path,e);
+      }
+    finally
+      {
+	prefetcher.shutdownNow();
+      }
+  }
+
+  /**
+   * Write into a matrix file at the given <tt>path</tt> the entry-wise
+   * <tt>SUM</tt> or <tt>DIFFERENCE</tt> (according to <tt>op</tt>) of
+   * <tt>A</tt> and <tt>B</tt> in the given <tt>algebra</tt>, using about
+   * <tt>budget</tt> bytes of heap memory.
+   */
+  static void combine (int op, NumberAlgebra algebra, OffHeapMatrix.Operand A, OffHeapMatrix.Operand B,
+		       Path path, long budget)
+  {
+    int rows = A.rows(), cols = A.cols();
+
+    if (rows != B.rows() || cols != B.cols())
+      throw new IncompatibleMatrixDimensionException(rows,cols,B.rows(),B.cols());
+
+    // the budget holds two panels of A and B
+    int height = panelHeight(rows,cols,budget/8,4L*cols);
+
+    Slice[] slices = { new Slice(height*cols,height*cols), new Slice(height*cols,height*cols) };
+    int kind = NumberAlgebra.kindOf(algebra);
+    ExecutorService prefetcher = prefetcher();
+
+    try (FileChannel channel = create(path,rows,cols,algebra))
+      {
+	int current = 0;
+	Future<Slice> next = prefetcher.submit(() -> slices[0].load(A,B,0,Math.min(height,rows)));
+
+	for (int i0 = 0; i0 < rows; i0 += height)
+	  {
+	    int mb = Math.min(height,rows-i0);
+	    Slice panel = await(next);
+
+	    current = 1-current;
+	    if (i0+height < rows)
+	      {
+		Slice other = slices[current];
+		int fi0 = i0+height;
+		next = prefetcher.submit(() -> other.load(A,B,fi0,Math.min(height,rows-fi0)));
+	      }
+
+	    MatrixTasks.forRowBlocks(mb,cols,
+				     (fromRow,toRow) ->
+				     EntryKernels.combine(op,kind,algebra,
+							  panel.a,fromRow*cols,
+							  panel.b,fromRow*cols,
+							  panel.a,fromRow*cols,
+							  (toRow-fromRow)*cols));
+
+	    write(channel,panel.a,mb*cols);
+	  }
+
+	channel.force(false);
+      }
+    catch (IOException e)
+      {
+	throw new UncheckedIOException("Cannot write matrix file "+path,e);
+      }
+    finally
+      {
+	prefetcher.shutdownNow();
+      }
+  }
+
+  /**
+   * A pair of staging buffers for blocks of <tt>A</tt> and <tt>B</tt>,
+   * and the depth of the slice they hold.
+   */
+  static private final class Slice
+  {
+    final double[] a;
+    final double[] b;
+    int depth;
+
+    Slice (int aSize, int bSize)
+    {
+      a = new double[aSize];
+      b = new double[bSize];
+    }
+
+    /**
+     * Load the block of <tt>A</tt> of the given rows and depth slice,
+     * and the rows of <tt>B</tt> of the same depth slice.
+     */
+    Slice load (OffHeapMatrix.Operand A, OffHeapMatrix.Operand B,
+		int i0, int mb, int p0, int kb)
+    {
+      int n = B.cols();
+
+      for (int i = 0; i < mb; i++)
+	A.readRow(i0+i,p0,a,i*kb,kb);
+      for (int p = 0; p < kb; p++)
+	B.readRow(p0+p,0,b,p*n,n);
+
+      depth = kb;
+      return this;
+    }
+
+    /**
+     * Load the given rows of both <tt>A</tt> and <tt>B</tt>.
+     */
+    Slice load (OffHeapMatrix.Operand A, OffHeapMatrix.Operand B, int i0, int mb)
+    {
+      int n = A.cols();
+
+      for (int i = 0; i < mb; i++)
+	{
+	  A.readRow(i0+i,0,a,i*n,n);
+	  B.readRow(i0+i,0,b,i*n,n);
+	}
+
+      depth = n;
+      return this;
+    }
+  }
+
+  /**
+   * Return the number of rows of the panels of a result with the given
+   * number of <tt>rows</tt> and <tt>cols</tt>, given the number of
+   * entries <tt>available</tt> in the budget and the number of entries
+   * needed <tt>perRow</tt> of a panel. A panel must also fit in a Java
+   * array.
+   */
+  static private int panelHeight (int rows, int cols, long available, long perRow)
+  {
+    long height = Math.min(rows,Math.min(available/perRow,(Integer.MAX_VALUE-8)/cols));
+
+    if (height < 1)
+      throw new RuntimeException("Memory budget too small for out-of-core operations on "+
+				 cols+"-column matrices");
+
+    return (int)height;
+  }
+
+  /**
+   * Return a new executor of a single daemon thread, for prefetching.
+   */
+  static private ExecutorService prefetcher ()
+  {
+    return Executors.newSingleThreadExecutor(task ->
+					     {
+					       Thread thread = new Thread(task,"hlt-matrix-prefetch");
+					       thread.setDaemon(true);
+					       return thread;
+					     });
+  }
+
+  /**
+   * Wait for and return the slice being loaded by the given
+   * <tt>future</tt>.
+   */
+  static private Slice await (Future<Slice> future)
+  {
+    try
+      {
+	return future.get();
+      }
+    catch (InterruptedException e)
+      {
+	Thread.currentThread().interrupt();
+	throw new RuntimeException("Interrupted while prefetching matrix entries",e);
+      }
+    catch (ExecutionException e)
+      {
+	if (e.getCause() instanceof RuntimeException)
+	  throw (RuntimeException)e.getCause();
+	throw new RuntimeException(e.getCause());
+      }
+  }
+
+  /**
+   * Create a matrix file at the given <tt>path</tt> for a
+   * <tt>rows</tt>-by-<tt>cols</tt> result in the given <tt>algebra</tt>,
+   * replacing any existing file; return its channel, positioned at the
+   * beginning of the payload.
+   */
+  static private FileChannel create (Path path, int rows, int cols, NumberAlgebra algebra) throws IOException
+  {
+    FileChannel channel = FileChannel.open(path,
+					   StandardOpenOption.CREATE,
+					   StandardOpenOption.TRUNCATE_EXISTING,
+					   StandardOpenOption.WRITE);
+    try
+      {
+	byte[] header = new byte[MatrixFile.PAGE_SIZE];
+	MatrixFile.writeHeader(MemorySegment.ofArray(header),rows,cols,algebra.toString());
+	write(channel,ByteBuffer.wrap(header));
+	return channel;
+      }
+    catch (IOException | RuntimeException e)
+      {
+	channel.close();
+	throw e;
+      }
+  }
+
+  /**
+   * Append the first <tt>length</tt> entries of <tt>entries</tt> to the
+   * payload written through the given <tt>channel</tt>, in the native
+   * byte order.
+   */
+  static private void write (FileChannel channel, double[] entries, int length) throws IOException
+  {
+    ByteBuffer buffer = chunk.get();
+
+    for (int offset = 0; offset < length; )
+      {
+	int count = Math.min(length-offset,WRITE_CHUNK/8);
+
+	buffer.clear();
+	buffer.asDoubleBuffer().put(entries,offset,count);
+	buffer.limit(count*8);
+	write(channel,buffer);
+	offset += count;
+      }
+  }
+
+  static private final ThreadLocal<ByteBuffer> chunk =
+    ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WRITE_CHUNK).order(ByteOrder.nativeOrder()));
+
+  static private void write (FileChannel channel, ByteBuffer buffer) throws IOException
+  {
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+}
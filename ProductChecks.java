@@ -0,0 +1,431 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ProductChecks.java
+// STARTED ON. . Thu Apr 16 09:12:58 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking the dense products of
+ * <tt>Matrix</tt> against a naive triple loop: the blocked kernels of
+ * <tt>MatrixProduct</tt> under each algebra that has one, for
+ * dimensions straddling their block sizes and for factors that are
+ * views; and the same operations run in parallel on a
+ * <tt>ForkJoinPool</tt>, which must compute exactly the same entries;
+ * and the generic loops, used for algebras other than the built-in
+ * ones, against the specialized ones on algebras with the same
+ * operations. It also checks <tt>gemm</tt> and the other operations
+ * into a given target, for targets that are views laid out by rows or
+ * by columns; and the products of <tt>StrassenProduct</tt>, for odd and
+ * even orders, against the blocked kernel. It is run by
+ * <tt>MatrixChecks</tt>.
+ *
+ * @see         MatrixProduct
+ * @see         MatrixChecks
+ */
+final class ProductChecks
+{
+  static void run (Random random)
+  {
+    checkBlockedProducts(random);
+    checkParallelOperations(random);
+    checkGenericAlgebras(random);
+    checkIntoOperations(random);
+    checkStrassen(random);
+  }
+
+  /**
+   * The algebras with a specialized product kernel.
+   */
+  static final NumberAlgebra[] ALGEBRAS = { NumberAlgebra.standardAlgebra(), NumberAlgebra.maxMinAlgebra(),
+					    NumberAlgebra.minPlusAlgebra(), NumberAlgebra.maxPlusAlgebra() };
+
+  /**
+   * An algebra with the operations of the <tt>StandardAlgebra</tt> that
+   * is not one, hence of the generic kind.
+   */
+  static final NumberAlgebra GENERIC_STANDARD = new NumberAlgebra()
+    {
+      public String toString ()
+      {
+	return "Generic Standard Algebra";
+      }
+    };
+
+  /**
+   * An algebra with the operations of the <tt>MinPlusAlgebra</tt> that
+   * is not one, hence of the generic kind.
+   */
+  static final NumberAlgebra GENERIC_MIN_PLUS = new NumberAlgebra()
+    {
+      public double zero ()
+      {
+	return Double.POSITIVE_INFINITY;
+      }
+
+      public double one ()
+      {
+	return 0.0;
+      }
+
+      public double sum (double x, double y)
+      {
+	return Math.min(x,y);
+      }
+
+      public double product (double x, double y)
+      {
+	return x + y;
+      }
+
+      public boolean isIdempotent ()
+      {
+	return true;
+      }
+
+      public double star (double x)
+      {
+	if (x < 0.0)
+	  throw new RuntimeException("Negative cycle of length "+x+": there is no shortest path");
+
+	return 0.0;
+      }
+
+      public String toString ()
+      {
+	return "Generic Min/Plus Algebra";
+      }
+    };
+
+  /**
+   * Return the product of <tt>A</tt> by <tt>B</tt> under the current
+   * algebra computed by the textbook triple loop.
+   */
+  static Matrix naiveProduct (Matrix A, Matrix B)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    Matrix C = new Matrix(A.rows(),B.cols());
+
+    for (int i = 1; i <= A.rows(); i++)
+      for (int j = 1; j <= B.cols(); j++)
+	{
+	  double sum = algebra.zero();
+	  for (int k = 1; k <= A.cols(); k++)
+	    sum = algebra.sum(sum,algebra.product(A.get(i,k),B.get(k,j)));
+	  C.set(i,j,sum);
+	}
+
+    return C;
+  }
+
+  /**
+   * Return the tolerance on an entry of a product of depth
+   * <tt>k</tt>: none under an algebra whose sum picks one of its
+   * arguments, and a rounding error growing with <tt>k</tt> under the
+   * <tt>StandardAlgebra</tt>.
+   */
+  static double tolerance (int k)
+  {
+    return NumberAlgebra.getCurrentAlgebra() instanceof StandardAlgebra ? 1e-12*k : 0.0;
+  }
+
+  /**
+   * The dimensions <tt>m</tt>, <tt>k</tt>, and <tt>n</tt> of products
+   * straddling the block sizes of <tt>MatrixProduct</tt> (<i>e.g.</i>,
+   * <tt>KC = 256</tt> and <tt>MC = 96</tt>) and those of its
+   * micro-kernels.
+   */
+  static final int[][] SHAPES = { { 1, 1, 1 }, { 3, 5, 7 }, { 4, 8, 8 }, { 17, 9, 33 }, { 97, 257, 13 },
+				  { 5, 300, 130 }, { 200, 17, 33 }, { 96, 256, 64 }, { 1, 513, 1 } };
+
+  static private void checkBlockedProducts (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int[] shape : SHAPES)
+	      {
+		int m = shape[0], k = shape[1], n = shape[2];
+		Matrix A = MatrixChecks.randomMatrix(random,m,k);
+		Matrix B = MatrixChecks.randomMatrix(random,k,n);
+		Matrix C = naiveProduct(A,B);
+		String what = algebra+" product of "+m+"x"+k+" by "+k+"x"+n;
+
+		MatrixChecks.check(MatrixChecks.distance(A.times(B),C) <= tolerance(k),what);
+
+		// the same factors as views: a block of a larger matrix,
+		// and the transposed view of a matrix laid out by columns
+		Matrix L = new Matrix(m+3,k+2).fill(Double.NaN);
+		Matrix V = L.submatrix(2,m+1,3,k+2).update(A);
+		Matrix T = B.transpose().transposed();
+
+		MatrixChecks.check(MatrixChecks.distance(V.times(T),C) <= tolerance(k),what+" (views)");
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkParallelOperations (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	// the pool's workers must compute under the algebra of the
+	// thread that submits the operation
+	for (NumberAlgebra algebra : ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int[] shape : new int[][] { { 300, 70, 200 }, { 500, 300, 41 }, { 9, 20, 1000 } })
+	      {
+		int m = shape[0], k = shape[1], n = shape[2];
+		Matrix A = MatrixChecks.randomMatrix(random,m,k);
+		Matrix B = MatrixChecks.randomMatrix(random,k,n);
+		Matrix D = MatrixChecks.randomMatrix(random,m,n);
+		String what = algebra+" parallel operation on "+m+"x"+k+" by "+k+"x"+n;
+
+		Matrix.setParallel(false);
+		Matrix C = A.times(B);
+		Matrix S = C.plus(D);
+		Matrix T = A.transposed().copy();
+
+		Matrix.setParallel(true);
+		Matrix.setParallelThreshold(1);
+		Matrix.setForkJoinPool(pool);
+
+		MatrixChecks.check(MatrixChecks.distance(A.times(B),C) == 0.0,what+": product");
+		MatrixChecks.check(MatrixChecks.distance(C.plus(D),S) == 0.0,what+": sum");
+		MatrixChecks.check(MatrixChecks.distance(A.transpose(),T) == 0.0,what+": transpose");
+	      }
+	  }
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkGenericAlgebras (Random random)
+  {
+    NumberAlgebra[][] pairs = { { GENERIC_STANDARD, NumberAlgebra.standardAlgebra() },
+				{ GENERIC_MIN_PLUS, NumberAlgebra.minPlusAlgebra() } };
+
+    try
+      {
+	for (NumberAlgebra[] pair : pairs)
+	  for (int[] shape : SHAPES)
+	    {
+	      int m = shape[0], k = shape[1], n = shape[2];
+	      Matrix A = MatrixChecks.randomMatrix(random,m,k);
+	      Matrix B = MatrixChecks.randomMatrix(random,k,n);
+	      Matrix D = MatrixChecks.randomMatrix(random,m,n);
+	      String what = pair[0]+" on "+m+"x"+k+" by "+k+"x"+n;
+
+	      NumberAlgebra.setCurrentAlgebra(pair[1]);
+	      Matrix product = A.times(B), sum = D.plus(product), scaled = D.scale(0.5);
+	      Matrix transposed = B.transpose().transposed().times(D.transposed());
+	      boolean standard = pair[1] instanceof StandardAlgebra;
+	      Matrix difference = standard ? D.minus(product) : null;
+	      Matrix negation = standard ? D.minus() : null;
+
+	      NumberAlgebra.setCurrentAlgebra(pair[0]);
+	      MatrixChecks.check(MatrixChecks.distance(A.times(B),product) <= 1e-12*k,what+": product");
+	      MatrixChecks.check(MatrixChecks.distance(D.plus(product),sum) == 0.0,what+": sum");
+	      MatrixChecks.check(MatrixChecks.distance(D.scale(0.5),scaled) == 0.0,what+": scale");
+	      MatrixChecks.check(MatrixChecks.distance(B.transpose().transposed().times(D.transposed()),
+						       transposed) <= 1e-12*m,
+				 what+": product of views");
+
+	      if (standard)
+		{
+		  MatrixChecks.check(MatrixChecks.distance(D.minus(product),difference) == 0.0,
+				     what+": difference");
+		  MatrixChecks.check(MatrixChecks.distance(D.minus(),negation) == 0.0,what+": negation");
+		}
+	    }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  /**
+   * Return a <tt>rows</tt>-by-<tt>cols</tt> target with the entries of
+   * <tt>M</tt>, laid out according to <tt>layout</tt>: a new matrix
+   * (<tt>0</tt>), a block inside the returned <tt>frame[0]</tt> whose
+   * other entries are <tt>NaN</tt> (<tt>1</tt>), or the transposed view
+   * of a matrix laid out by columns (<tt>2</tt>).
+   */
+  static private Matrix target (Matrix M, int layout, Matrix[] frame)
+  {
+    int rows = M.rows(), cols = M.cols();
+
+    switch (layout)
+      {
+      case 0:
+	return frame[0] = M.copy();
+      case 1:
+	frame[0] = new Matrix(rows+3,cols+2).fill(Double.NaN);
+	return frame[0].submatrix(3,rows+2,2,cols+1).update(M);
+      default:
+	frame[0] = new Matrix(cols,rows);
+	return frame[0].transposed().update(M);
+      }
+  }
+
+  /**
+   * Return <tt>true</tt> iff the only entries of <tt>frame</tt> that are
+   * not <tt>NaN</tt> are those of <tt>target</tt>.
+   */
+  static private boolean framed (Matrix frame, Matrix target)
+  {
+    int count = 0;
+
+    for (int i = 1; i <= frame.rows(); i++)
+      for (int j = 1; j <= frame.cols(); j++)
+	if (!Double.isNaN(frame.get(i,j)))
+	  count++;
+
+    return count == target.rows()*target.cols();
+  }
+
+  static private void checkIntoOperations (Random random)
+  {
+    NumberAlgebra[] algebras = { NumberAlgebra.standardAlgebra(), NumberAlgebra.minPlusAlgebra(),
+				 GENERIC_MIN_PLUS };
+    Matrix[] frame = new Matrix[1];
+
+    try
+      {
+	for (NumberAlgebra algebra : algebras)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int[] shape : SHAPES)
+	      for (int layout = 0; layout < 3; layout++)
+		{
+		  int m = shape[0], k = shape[1], n = shape[2];
+		  Matrix A = MatrixChecks.randomMatrix(random,m,k);
+		  Matrix B = MatrixChecks.randomMatrix(random,k,n);
+		  Matrix C0 = MatrixChecks.randomMatrix(random,m,n);
+		  Matrix P = naiveProduct(A,B);
+		  double alpha = standard ? 2*random.nextDouble()-1 : 1.0;
+		  double beta = standard ? 2*random.nextDouble()-1 : 1.0;
+		  String what = algebra+" into a "+m+"x"+n+" target of layout "+layout;
+
+		  Matrix C = target(new Matrix(m,n).fill(Double.NaN),layout,frame);
+		  MatrixChecks.check(Matrix.multiplyInto(A,B,C) == C
+				     && MatrixChecks.distance(C,P) <= tolerance(k),what+": multiplyInto");
+		  MatrixChecks.check(layout != 1 || framed(frame[0],C),what+": multiplyInto outside");
+
+		  Matrix expected = standard ? P.scale(alpha).plus(C0.scale(beta)) : C0.plus(P);
+		  C = target(C0,layout,frame);
+		  MatrixChecks.check(MatrixChecks.distance(Matrix.gemm(alpha,A,B,beta,C),expected) <= tolerance(k),
+				     what+": gemm("+alpha+","+beta+")");
+		  MatrixChecks.check(layout != 1 || framed(frame[0],C),what+": gemm outside");
+
+		  C = target(C0,layout,frame);
+		  MatrixChecks.check(MatrixChecks.distance(Matrix.plusInto(C,P,C),C0.plus(P)) == 0.0,
+				     what+": plusInto");
+		  C = target(C0,layout,frame);
+		  MatrixChecks.check(MatrixChecks.distance(Matrix.scaleInto(alpha,C,C),C0.scale(alpha)) == 0.0,
+				     what+": scaleInto");
+		  C = target(new Matrix(n,m),layout,frame);
+		  MatrixChecks.check(MatrixChecks.distance(Matrix.transposeInto(P,C),P.transpose()) == 0.0,
+				     what+": transposeInto");
+		  MatrixChecks.check(layout != 1 || framed(frame[0],C),what+": transposeInto outside");
+
+		  if (standard)
+		    {
+		      C = target(C0,layout,frame);
+		      MatrixChecks.check(MatrixChecks.distance(Matrix.minusInto(P,C,C),P.minus(C0)) == 0.0,
+					 what+": minusInto");
+		    }
+		  else
+		    MatrixChecks.check(MatrixChecks.fails(() -> Matrix.gemm(2.0,A,B,0.0,new Matrix(m,n))),
+				       what+": gemm scaled by 2");
+
+		  Matrix S = target(MatrixChecks.randomMatrix(random,k,k),layout,frame);
+		  MatrixChecks.check(MatrixChecks.fails(() -> Matrix.multiplyInto(S,S.copy(),S)),
+				     what+": multiplyInto a factor");
+		  MatrixChecks.check(MatrixChecks.fails(() -> Matrix.multiplyInto(A,B,new Matrix(m+1,n))),
+				     what+": multiplyInto a target of the wrong dimensions");
+		}
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkStrassen (Random random)
+  {
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int cutoff = Matrix.strassenCutoff();
+
+    try
+      {
+	Matrix.setStrassenCutoff(16);
+
+	for (int n : new int[] { 17, 32, 33, 64, 65, 100, 127, 128 })
+	  {
+	    double[] a = new double[n*n], b = new double[n*n];
+	    double[] c = new double[n*n], d = new double[n*n];
+
+	    for (int i = 0; i < n*n; i++)
+	      {
+		a[i] = random.nextDouble();
+		b[i] = random.nextDouble();
+	      }
+
+	    StrassenProduct.multiply(algebra,n,a,0,n,b,0,n,c,0,n);
+	    MatrixProduct.multiply(algebra,1.0,n,n,n,a,0,n,1,b,0,n,1,d,0,n);
+
+	    double distance = 0.0;
+	    for (int i = 0; i < n*n; i++)
+	      distance = Math.max(distance,Math.abs(c[i]-d[i]));
+
+	    MatrixChecks.check(distance <= 1e-12*n*n,"Strassen product of order "+n+" off by "+distance);
+
+	    // the same through times and gemm, with blocks of larger
+	    // matrices as factors and target
+	    Matrix A = new Matrix(n,n,a,true), B = new Matrix(n,n,b,true);
+	    Matrix P = new Matrix(n,n,d,true);
+	    Matrix V = new Matrix(n+2,n+1).fill(Double.NaN).submatrix(2,n+1,1,n).update(A);
+	    Matrix W = new Matrix(n+1,n+3).fill(Double.NaN).submatrix(1,n,4,n+3).update(B);
+	    Matrix C = new Matrix(n+1,n+1).fill(Double.NaN).submatrix(2,n+1,2,n+1);
+
+	    MatrixChecks.check(MatrixChecks.distance(A.times(B),P) <= 1e-12*n*n,
+			       "Strassen product of order "+n+" by times");
+	    MatrixChecks.check(MatrixChecks.distance(Matrix.gemm(1.0,V,W,0.0,C),P) <= 1e-12*n*n,
+			       "Strassen product of order "+n+" by gemm on views");
+	  }
+      }
+    finally
+      {
+	Matrix.setStrassenCutoff(cutoff);
+      }
+  }
+}
@@ -0,0 +1,282 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/QuantizedChecks.java
+// STARTED ON. . Thu Apr 23 10:26:41 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>QuantizedMatrix</tt> for
+ * fixed-point and half-precision encodings of several scales: that
+ * encoding an entry errs by no more than the bound documented for its
+ * encoding and scale, and decoding it is exact; that entry-wise
+ * operations (in place or not, with quantized or heap operands) are
+ * the encodings of what they compute on the decoded entries under
+ * several algebras, and that those yielding entries out of the
+ * fixed-point range fail without modifying any matrix; that products
+ * (including <tt>Matrix.times(QuantizedMatrix)</tt>) and products with
+ * vectors are those of the decoded entries; and that all these are the
+ * same in parallel. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         QuantizedMatrix
+ * @see         MatrixChecks
+ */
+final class QuantizedChecks
+{
+  static void run (Random random)
+  {
+    checkEncodings(random);
+    checkOperations(random);
+    checkParallelOperations(random);
+  }
+
+  /**
+   * The encodings checked, with their scales, and the largest absolute
+   * value of the random entries drawn for each.
+   */
+  static private final int[] ENCODINGS =
+    { QuantizedMatrix.FIXED_POINT, QuantizedMatrix.FIXED_POINT,
+      QuantizedMatrix.HALF_FLOAT, QuantizedMatrix.HALF_FLOAT };
+
+  static private final double[] SCALES = { QuantizedMatrix.UNIT_SCALE, 1e-3, 1.0, 1e3 };
+
+  static private final double[] RANGES = { 1.0, 65.535, 1.0, 1e4 };
+
+  /**
+   * Return a new random <tt>m</tt>-by-<tt>n</tt> matrix for the
+   * <tt>e</tt>-th encoding: in the lower half of its range for a
+   * fixed-point one (so that sums stay in range), and of either sign for
+   * a half-precision one.
+   */
+  static private Matrix randomEntries (Random random, int m, int n, int e)
+  {
+    Matrix M = new Matrix(m,n);
+    boolean fixed = ENCODINGS[e] == QuantizedMatrix.FIXED_POINT;
+
+    for (int i = 1; i <= m; i++)
+      for (int j = 1; j <= n; j++)
+	M.set(i,j,fixed ? RANGES[e]/2*random.nextDouble() : RANGES[e]*(2*random.nextDouble()-1));
+
+    return M;
+  }
+
+  /**
+   * Return the largest error allowed in encoding <tt>value</tt> with the
+   * given <tt>encoding</tt> and <tt>scale</tt>: half a code for a
+   * fixed-point one, and half a unit in the last place of a normal or
+   * subnormal half-precision number otherwise.
+   */
+  static private double bound (double value, int encoding, double scale)
+  {
+    if (encoding == QuantizedMatrix.FIXED_POINT)
+      return scale*(0.5+1e-9);
+
+    return Math.max(Math.abs(value)*0x1p-11,scale*0x1p-25)*(1+0x1p-12);
+  }
+
+  static private void checkEncodings (Random random)
+  {
+    for (int e = 0; e < ENCODINGS.length; e++)
+      for (int trial = 0; trial < 20; trial++)
+	{
+	  int m = 1+random.nextInt(40), n = 1+random.nextInt(40);
+	  int encoding = ENCODINGS[e];
+	  double scale = SCALES[e];
+	  Matrix M = randomEntries(random,m,n,e);
+	  Matrix V = new Matrix(m+1,n+2).fill(Double.NaN).submatrix(2,m+1,2,n+1).update(M);
+	  QuantizedMatrix Q = new QuantizedMatrix(M,encoding,scale);
+	  String what = (encoding == QuantizedMatrix.FIXED_POINT ? "fixed-point " : "half-precision ")
+			+m+"x"+n+" matrix of scale "+scale;
+
+	  MatrixChecks.check(Q.rows() == m && Q.cols() == n && Q.encoding() == encoding && Q.scale() == scale,
+			     what);
+
+	  boolean bounded = true;
+	  for (int i = 1; i <= m; i++)
+	    for (int j = 1; j <= n; j++)
+	      bounded &= Math.abs(Q.get(i,j)-M.get(i,j)) <= bound(M.get(i,j),encoding,scale);
+	  MatrixChecks.check(bounded,what+": encoding error");
+
+	  // decoding is exact, and so is encoding decoded entries
+	  Matrix D = Q.toMatrix();
+	  MatrixChecks.check(Q.equals(D) && new QuantizedMatrix(D,encoding,scale).equals(Q)
+			     && new QuantizedMatrix(V,encoding,scale).equals(Q),what+": decoding");
+
+	  int i = 1+random.nextInt(m), j = 1+random.nextInt(n);
+	  double value = randomEntries(random,1,1,e).get(1,1);
+	  QuantizedMatrix C = Q.copy();
+	  MatrixChecks.check(C.set(i,j,value) == C.get(i,j)
+			     && Math.abs(C.get(i,j)-value) <= bound(value,encoding,scale)
+			     && Q.get(i,j) == D.get(i,j),what+": set");
+	  MatrixChecks.check(C.fill(value).equals(new Matrix(m,n).fill(C.get(1,1))),what+": fill");
+	}
+
+    // the bounds of the default range are exact
+    QuantizedMatrix Q = new QuantizedMatrix(new Matrix(2,3).fill(1.0));
+    MatrixChecks.check(Q.encoding() == QuantizedMatrix.FIXED_POINT && Q.scale() == QuantizedMatrix.UNIT_SCALE
+		       && Q.get(2,3) == 1.0 && Q.set(1,1,0.0) == 0.0,"unit fixed-point bounds");
+
+    MatrixChecks.check(MatrixChecks.fails(() -> Q.set(1,1,-1e-3))
+		       && MatrixChecks.fails(() -> Q.set(1,1,1.001))
+		       && MatrixChecks.fails(() -> new QuantizedMatrix(new Matrix(2,3).fill(2.0)))
+		       && Q.get(1,2) == 1.0,"entry out of the fixed-point range");
+    MatrixChecks.check(MatrixChecks.fails(() -> new QuantizedMatrix(0,3))
+		       && MatrixChecks.fails(() -> new QuantizedMatrix(2,3,2,1.0))
+		       && MatrixChecks.fails(() -> new QuantizedMatrix(2,3,QuantizedMatrix.HALF_FLOAT,0.0))
+		       && MatrixChecks.fails(() -> new QuantizedMatrix(2,3,QuantizedMatrix.HALF_FLOAT,Double.NaN))
+		       && MatrixChecks.fails(() -> new QuantizedMatrix(2,3,QuantizedMatrix.FIXED_POINT,
+								       Double.POSITIVE_INFINITY)),
+		       "illegal quantized matrix");
+    MatrixChecks.check(MatrixChecks.fails(() -> Q.get(3,1))
+		       && MatrixChecks.fails(() -> Q.plus(new QuantizedMatrix(3,2)))
+		       && MatrixChecks.fails(() -> Q.times(new Matrix(2,3)))
+		       && MatrixChecks.fails(() -> Q.leftTimes(new double[3]))
+		       && MatrixChecks.fails(() -> Q.times(new double[2])),
+		       "quantized matrix of incompatible dimensions");
+  }
+
+  static private void checkOperations (Random random)
+  {
+    // the products of the last shape span several blocks, for the
+    // default scale of each encoding
+    int[][] shapes = java.util.Arrays.copyOf(ProductChecks.SHAPES,ProductChecks.SHAPES.length+1);
+    shapes[shapes.length-1] = new int[] { 70, QuantizedMatrix.BLOCK+88, QuantizedMatrix.BLOCK+3 };
+
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+	    boolean standard = algebra instanceof StandardAlgebra;
+
+	    for (int e = 0; e < ENCODINGS.length; e++)
+	      for (int s = 0; s < shapes.length-e%2; s++)
+		{
+		  int m = shapes[s][0], k = shapes[s][1], n = shapes[s][2];
+		  int encoding = ENCODINGS[e];
+		  double scale = SCALES[e];
+		  QuantizedMatrix A = new QuantizedMatrix(randomEntries(random,m,k,e),encoding,scale);
+		  QuantizedMatrix B = new QuantizedMatrix(randomEntries(random,m,k,e),encoding,scale);
+		  QuantizedMatrix K = new QuantizedMatrix(randomEntries(random,k,n,e),encoding,scale);
+		  Matrix a = A.toMatrix(), b = B.toMatrix(), c = K.toMatrix();
+		  Matrix v = new Matrix(m+2,k+1).fill(Double.NaN).submatrix(2,m+1,1,k).update(b);
+		  String what = algebra+(encoding == QuantizedMatrix.FIXED_POINT ? " fixed-point " : " half-precision ")
+				+m+"x"+k+" matrix of scale "+scale;
+
+		  // entry-wise operations encode what they compute on the
+		  // decoded entries
+		  QuantizedMatrix sum = new QuantizedMatrix(a.plus(b),encoding,scale);
+		  MatrixChecks.check(A.plus(B).equals(sum) && A.plus(v).equals(sum),what+": plus");
+		  MatrixChecks.check(A.scale(0.5).equals(new QuantizedMatrix(a.scale(0.5),encoding,scale)),
+				     what+": scale");
+
+		  QuantizedMatrix C = A.copy();
+		  MatrixChecks.check(C.i_plus(B) == C && C.equals(sum),what+": i_plus");
+		  MatrixChecks.check(C.i_scale(0.5) == C
+				     && C.equals(new QuantizedMatrix(sum.toMatrix().scale(0.5),encoding,scale)),
+				     what+": i_scale");
+		  MatrixChecks.check(A.equals(a),what+": copy shares codes");
+
+		  if (standard)
+		    {
+		      // differences of a sum and one of its terms stay in
+		      // the fixed-point range
+		      QuantizedMatrix difference = new QuantizedMatrix(sum.toMatrix().minus(b),encoding,scale);
+		      MatrixChecks.check(sum.minus(B).equals(difference) && sum.minus(v).equals(difference),
+					 what+": minus");
+		      C = sum.copy();
+		      MatrixChecks.check(C.i_minus(B) == C && C.equals(difference),what+": i_minus");
+
+		      if (encoding == QuantizedMatrix.FIXED_POINT)
+			{
+			  QuantizedMatrix X = A.copy(), Y = X.copy();
+			  QuantizedMatrix F = new QuantizedMatrix(m,k,encoding,scale).fill(RANGES[e]);
+			  X.set(m,k,RANGES[e]/2);
+			  Y.set(m,k,RANGES[e]/2);
+			  MatrixChecks.check(MatrixChecks.fails(() -> Y.plus(F))
+					     && MatrixChecks.fails(() -> Y.i_plus(F))
+					     && MatrixChecks.fails(() -> Y.i_minus(F))
+					     && MatrixChecks.fails(() -> Y.i_scale(-1.0))
+					     && Y.equals(X),what+": operation out of the fixed-point range");
+			}
+		    }
+
+		  // products are those of the decoded entries
+		  Matrix product = a.times(c);
+		  double tolerance = ProductChecks.tolerance(k)*RANGES[e]*RANGES[e];
+		  MatrixChecks.check(MatrixChecks.distance(A.times(K),product) <= tolerance,what+": times");
+		  MatrixChecks.check(MatrixChecks.distance(A.times(c),product) <= tolerance,what+": times a Matrix");
+		  MatrixChecks.check(MatrixChecks.distance(QuantizedMatrix.times(a,K),product) <= tolerance,
+				     what+": times from the left");
+		  MatrixChecks.check(MatrixChecks.distance(a.times(K),product) <= tolerance,what+": Matrix.times");
+
+		  double[] x = new double[m], y = new double[k];
+		  for (int i = 0; i < m; i++)
+		    x[i] = random.nextDouble();
+		  for (int j = 0; j < k; j++)
+		    y[j] = random.nextDouble();
+		  MatrixChecks.check(FloatMatrixChecks.distance(A.leftTimes(x),FloatMatrixChecks.leftProduct(x,a))
+				     <= ProductChecks.tolerance(m)*RANGES[e],what+": leftTimes");
+		  MatrixChecks.check(FloatMatrixChecks.distance(A.times(y),FloatMatrixChecks.leftProduct(y,a.transpose()))
+				     <= ProductChecks.tolerance(k)*RANGES[e],what+": times a vector");
+		}
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkParallelOperations (Random random)
+  {
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	for (int e = 0; e < ENCODINGS.length; e += 2)
+	  {
+	    QuantizedMatrix A = new QuantizedMatrix(randomEntries(random,700,600,e),ENCODINGS[e],SCALES[e]);
+	    QuantizedMatrix B = new QuantizedMatrix(randomEntries(random,700,600,e),ENCODINGS[e],SCALES[e]);
+	    QuantizedMatrix K = new QuantizedMatrix(randomEntries(random,600,550,e),ENCODINGS[e],SCALES[e]);
+	    double[] x = new double[700], y = new double[600];
+	    for (int i = 0; i < x.length; i++)
+	      x[i] = random.nextDouble();
+	    for (int j = 0; j < y.length; j++)
+	      y[j] = random.nextDouble();
+
+	    Matrix.setParallel(false);
+	    Matrix product = A.times(K);
+	    QuantizedMatrix sum = A.plus(B);
+	    double[] left = A.leftTimes(x), right = A.times(y);
+
+	    Matrix.setParallel(true);
+	    Matrix.setParallelThreshold(1);
+	    Matrix.setForkJoinPool(pool);
+	    String what = (ENCODINGS[e] == QuantizedMatrix.FIXED_POINT ? "fixed-point" : "half-precision")
+			  +" matrix in parallel";
+	    MatrixChecks.check(MatrixChecks.distance(A.times(K),product) == 0.0,what+": product");
+	    MatrixChecks.check(A.plus(B).equals(sum),what+": sum");
+	    MatrixChecks.check(java.util.Arrays.equals(A.leftTimes(x),left)
+			       && java.util.Arrays.equals(A.times(y),right),what+": vector products");
+	    MatrixChecks.check(new QuantizedMatrix(A.toMatrix(),ENCODINGS[e],SCALES[e]).equals(A),
+			       what+": conversions");
+	    Matrix.setParallel(false);
+	  }
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+      }
+  }
+}
@@ -0,0 +1,723 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/QuantizedMatrix.java
+// STARTED ON. . Mon Mar 23 11:08:14 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import hlt.math.matrix.OffHeapMatrix.Operand;
+
+/**
+ * This is a class of dense matrices whose entries are stored as 16-bit
+ * codes in a flat row-major <tt>short[]</tt> array: it takes a quarter
+ * of the memory (and memory bandwidth) of a <tt>Matrix</tt> of the same
+ * dimensions. It is meant for large matrices of bounded entries, such as
+ * the stochastic matrices checked by <tt>isRowStochastic</tt> or drawn
+ * by the random generators of <tt>Matrix</tt>, all of whose entries are
+ * in <tt>[0,1]</tt>, when keeping more of them in cache matters more
+ * than their last bits of precision.<p/>
+ *
+ * A <tt>QuantizedMatrix</tt> has one of two <i>encodings</i>, and a
+ * <i>scale</i> by which decoded values are multiplied:
+ *
+ * <ul>
+ * <li><tt>FIXED_POINT</tt>: a code is an unsigned integer <tt>q</tt> in
+ * <tt>[0,65535]</tt> denoting <tt>q*scale</tt>; entries must thus be in
+ * <tt>[0,65535*scale]</tt> and are stored with an absolute error of at
+ * most <tt>scale/2</tt>. The default scale, <tt>UNIT_SCALE</tt>, is
+ * <tt>1/65535</tt>, so that the entries are in <tt>[0,1]</tt> (both
+ * bounds being exact) to within <tt>7.6e-6</tt>. In particular, this
+ * encoding cannot represent negative values: <tt>M.minus(N)</tt> is
+ * only defined when no entry of <tt>N</tt> exceeds the corresponding
+ * entry of <tt>M</tt>, and scaling by a negative factor only when all
+ * the entries are <tt>0</tt>.</li>
+ * <li><tt>HALF_FLOAT</tt>: a code is an IEEE 754 half-precision
+ * (binary16) number <tt>h</tt> (see <tt>Float.floatToFloat16</tt>)
+ * denoting <tt>h*scale</tt>; entries may then be of any sign and are
+ * stored with a relative error of at most <tt>2<sup>-11</sup></tt>
+ * (about 3 significant digits) as long as they are within the normal
+ * range of <tt>h</tt> (whose default scale is <tt>1</tt>).</li>
+ * </ul>
+ *
+ * Codes are decoded (<i>dequantized</i>) on the fly into small
+ * <tt>double</tt> buffers by the product and entry-wise operations, which
+ * then run the very kernels used for <tt>Matrix</tt> and accumulate in
+ * <tt>double</tt>, as for <tt>FloatMatrix</tt>. Entry-wise operations
+ * (<tt>plus</tt>, <tt>minus</tt>, <tt>scale</tt> and their in-place
+ * variants) return matrices of the same encoding and scale, re-encoding
+ * their results; one of them that yields an entry out of the fixed-point
+ * range throws a <tt>RuntimeException</tt> and leaves its operands
+ * (including the matrix modified by an in-place variant) unchanged.
+ * Products (<tt>times</tt>, <tt>leftTimes</tt>) return
+ * <tt>double</tt> matrices or vectors so that quantization errors do not
+ * compound. All run under the current number algebra, by blocks of rows
+ * or tiles in parallel in <a href="Matrix.html#parallel">parallel
+ * execution mode</a>; decoding fixed-point codes is vectorized when <a
+ * href="Vectorization.html">vectorization</a> is enabled. Like those of
+ * <tt>Matrix</tt>, the <tt>get</tt> and <tt>set</tt> methods count rows
+ * and columns from <tt>1</tt>.
+ *
+ * @see         Matrix
+ * @see         FloatMatrix
+ */
+public class QuantizedMatrix
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * Codes of the encodings of entries.
+   */
+  static public final int FIXED_POINT = 0, HALF_FLOAT = 1;
+
+  /**
+   * The largest fixed-point code.
+   */
+  static final int MAX_CODE = 0xFFFF;
+
+  /**
+   * The default scale of <tt>FIXED_POINT</tt> matrices, mapping the codes
+   * onto <tt>[0,1]</tt>.
+   */
+  static public final double UNIT_SCALE = 1.0/MAX_CODE;
+
+  /**
+   * The number of rows of this matrix.
+   */
+  private final int rows;
+
+  /**
+   * The number of columns of this matrix, which is also the number of
+   * entries between the starts of two consecutive rows.
+   */
+  private final int cols;
+
+  /**
+   * The encoding of the entries of this matrix.
+   */
+  private final int encoding;
+
+  /**
+   * The scale of the entries of this matrix.
+   */
+  private final double scale;
+
+  /**
+   * The row-major codes of the entries of this matrix.
+   */
+  private final short[] codes;
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>FIXED_POINT</tt>
+   * <tt>QuantizedMatrix</tt> of <tt>0.0</tt>'s with entries in
+   * <tt>[0,1]</tt>.
+   */
+  public QuantizedMatrix (int rows, int cols)
+  {
+    this(rows,cols,FIXED_POINT,UNIT_SCALE);
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>QuantizedMatrix</tt>
+   * of <tt>0.0</tt>'s with the given <tt>encoding</tt> and
+   * <tt>scale</tt> (which must be positive and finite).
+   */
+  public QuantizedMatrix (int rows, int cols, int encoding, double scale)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+
+    if (encoding != FIXED_POINT && encoding != HALF_FLOAT)
+      throw new RuntimeException("Unknown quantized matrix encoding: "+encoding);
+
+    if (!(scale > 0.0 && scale < Double.POSITIVE_INFINITY))
+      throw new RuntimeException("Illegal quantization scale: "+scale);
+
+    this.rows = rows;
+    this.cols = cols;
+    this.encoding = encoding;
+    this.scale = scale;
+    codes = new short[Math.multiplyExact(rows,cols)];
+  }
+
+  /**
+   * Construct a new <tt>FIXED_POINT</tt> <tt>QuantizedMatrix</tt>
+   * encoding the entries of the given <tt>Matrix</tt>, which must be in
+   * <tt>[0,1]</tt>.
+   */
+  public QuantizedMatrix (Matrix M)
+  {
+    this(M,FIXED_POINT,UNIT_SCALE);
+  }
+
+  /**
+   * Construct a new <tt>QuantizedMatrix</tt> encoding the entries of the
+   * given <tt>Matrix</tt> with the given <tt>encoding</tt> and
+   * <tt>scale</tt>.
+   */
+  public QuantizedMatrix (Matrix M, int encoding, double scale)
+  {
+    this(M.rows(),M.cols(),encoding,scale);
+
+    Operand source = OffHeapMatrix.operand(M);
+    int cols = this.cols;
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       double[] a = RowStaging.rowBuffers(1,cols)[0];
+
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   source.readRow(row,0,a,0,cols);
+				   writeRow(row,0,a,0,cols);
+				 }
+			     });
+  }
+
+  /**
+   * Construct a new <tt>QuantizedMatrix</tt> with the same dimensions,
+   * encoding, scale, and entries as the given one.
+   */
+  public QuantizedMatrix (QuantizedMatrix M)
+  {
+    this(M.rows,M.cols,M.encoding,M.scale);
+    System.arraycopy(M.codes,0,codes,0,codes.length);
+  }
+
+  /**
+   * Return a new matrix of 0's with the dimensions, encoding and scale
+   * of this one.
+   */
+  private QuantizedMatrix like ()
+  {
+    return new QuantizedMatrix(rows,cols,encoding,scale);
+  }
+
+  /**
+   * Copy the codes of <tt>result</tt>, a matrix made by <tt>like()</tt>,
+   * into this one and return it. The in-place operations compute their
+   * results into such a scratch matrix first, so that an entry out of
+   * the fixed-point range leaves this matrix unchanged.
+   */
+  private QuantizedMatrix update (QuantizedMatrix result)
+  {
+    System.arraycopy(result.codes,0,codes,0,codes.length);
+    return this;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Component Access and Conversions
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of rows of this matrix.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return the encoding (<tt>FIXED_POINT</tt> or <tt>HALF_FLOAT</tt>) of
+   * the entries of this matrix.
+   */
+  public final int encoding ()
+  {
+    return encoding;
+  }
+
+  /**
+   * Return the scale of the entries of this matrix.
+   */
+  public final double scale ()
+  {
+    return scale;
+  }
+
+  /**
+   * Return the (shared) row-major codes of the entries of this matrix.
+   */
+  public final short[] codes ()
+  {
+    return codes;
+  }
+
+  /**
+   * Return the entry at row <tt>i</tt> and column <tt>j</tt> (counted
+   * from <tt>1</tt>).
+   */
+  public final double get (int i, int j)
+  {
+    checkLegalEntry(i,j);
+    return decode(codes[(i-1)*cols+(j-1)]);
+  }
+
+  /**
+   * Set the entry at row <tt>i</tt> and column <tt>j</tt> (counted from
+   * <tt>1</tt>) to the encoding of <tt>value</tt>, and return the value
+   * stored.
+   */
+  public final double set (int i, int j, double value)
+  {
+    checkLegalEntry(i,j);
+    return decode(codes[(i-1)*cols+(j-1)] = encode(value));
+  }
+
+  private void checkLegalEntry (int i, int j)
+  {
+    if (i < 1 || i > rows || j < 1 || j > cols)
+      throw new RuntimeException("Matrix entry ("+i+","+j+") out of bounds [1,"+rows+"]x[1,"+cols+"]");
+  }
+
+  /**
+   * Return the value denoted by the given <tt>code</tt>.
+   */
+  final double decode (short code)
+  {
+    if (encoding == FIXED_POINT)
+      return (code & MAX_CODE)*scale;
+
+    return Float.float16ToFloat(code)*scale;
+  }
+
+  /**
+   * Return the code of the given <tt>value</tt>: the nearest fixed-point
+   * or half-precision one; this throws a <tt>RuntimeException</tt> if
+   * <tt>value</tt> is out of the range of fixed-point codes.
+   */
+  final short encode (double value)
+  {
+    if (encoding == HALF_FLOAT)
+      return Float.floatToFloat16((float)(value/scale));
+
+    double code = Math.rint(value/scale);
+
+    if (!(code >= 0.0 && code <= MAX_CODE))
+      throw new RuntimeException("Entry "+value+" out of the fixed-point range [0,"+
+				 MAX_CODE*scale+"]");
+
+    return (short)(int)code;
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of row <tt>row</tt> starting at column
+   * <tt>col</tt> (both counted from <tt>0</tt>), decoded, into
+   * <tt>target</tt> from <tt>offset</tt> on.
+   */
+  final void readRow (int row, int col, double[] target, int offset, int length)
+  {
+    int base = row*cols+col;
+
+    if (encoding == FIXED_POINT && Vectorization.ENABLED)
+      VectorKernels.dequantize(codes,base,scale,target,offset,length);
+    else
+      for (int i = 0; i < length; i++)
+	target[offset+i] = decode(codes[base+i]);
+  }
+
+  /**
+   * Copy <tt>length</tt> entries of <tt>source</tt> from <tt>offset</tt>
+   * on, encoded, into row <tt>row</tt> starting at column <tt>col</tt>
+   * (both counted from <tt>0</tt>).
+   */
+  final void writeRow (int row, int col, double[] source, int offset, int length)
+  {
+    int base = row*cols+col;
+
+    for (int i = 0; i < length; i++)
+      codes[base+i] = encode(source[offset+i]);
+  }
+
+  /**
+   * Set all the entries of this matrix to the encoding of <tt>value</tt>
+   * and return it.
+   */
+  public QuantizedMatrix fill (double value)
+  {
+    java.util.Arrays.fill(codes,encode(value));
+    return this;
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> whose entries are the values of those
+   * of this one.
+   */
+  public Matrix toMatrix ()
+  {
+    Matrix M = new Matrix(rows,cols);
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       for (int row = fromRow; row < toRow; row++)
+				 readRow(row,0,M.entries(),row*M.stride(),cols);
+			     });
+    return M;
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> with a copy of the codes of
+   * this one.
+   */
+  public QuantizedMatrix copy ()
+  {
+    return new QuantizedMatrix(this);
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Operations
+   * </span></h3>
+   *
+   * The operand of an operation may be another <tt>QuantizedMatrix</tt>
+   * or a <tt>Matrix</tt>: either is seen through an <tt>Operand</tt>
+   * (see <tt>OffHeapMatrix</tt>) reading its rows as <tt>double</tt>s.
+   */
+
+  /**
+   * Return an <tt>Operand</tt> reading the rows of this matrix.
+   */
+  final Operand operand ()
+  {
+    return new Operand()
+      {
+	public int rows () { return rows; }
+	public int cols () { return cols; }
+	public void readRow (int row, int col, double[] target, int offset, int length)
+	{
+	  QuantizedMatrix.this.readRow(row,col,target,offset,length);
+	}
+      };
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public QuantizedMatrix plus (QuantizedMatrix M)
+  {
+    return combine(EntryKernels.SUM,M.operand(),like());
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> equal to <tt>this+M</tt>.
+   */
+  public QuantizedMatrix plus (Matrix M)
+  {
+    return combine(EntryKernels.SUM,OffHeapMatrix.operand(M),like());
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public QuantizedMatrix i_plus (QuantizedMatrix M)
+  {
+    return update(combine(EntryKernels.SUM,M.operand(),like()));
+  }
+
+  /**
+   * Modify this matrix to <tt>this+M</tt> and return it.
+   */
+  public QuantizedMatrix i_plus (Matrix M)
+  {
+    return update(combine(EntryKernels.SUM,OffHeapMatrix.operand(M),like()));
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public QuantizedMatrix minus (QuantizedMatrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,M.operand(),like());
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> equal to <tt>this-M</tt>.
+   */
+  public QuantizedMatrix minus (Matrix M)
+  {
+    return combine(EntryKernels.DIFFERENCE,OffHeapMatrix.operand(M),like());
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public QuantizedMatrix i_minus (QuantizedMatrix M)
+  {
+    return update(combine(EntryKernels.DIFFERENCE,M.operand(),like()));
+  }
+
+  /**
+   * Modify this matrix to <tt>this-M</tt> and return it.
+   */
+  public QuantizedMatrix i_minus (Matrix M)
+  {
+    return update(combine(EntryKernels.DIFFERENCE,OffHeapMatrix.operand(M),like()));
+  }
+
+  /**
+   * Return a new <tt>QuantizedMatrix</tt> equal to <tt>factor*this</tt>.
+   */
+  public QuantizedMatrix scale (double factor)
+  {
+    return map(factor,like());
+  }
+
+  /**
+   * Modify this matrix to <tt>factor*this</tt> and return it.
+   */
+  public QuantizedMatrix i_scale (double factor)
+  {
+    return update(map(factor,like()));
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> to the <tt>SUM</tt> or
+   * <tt>DIFFERENCE</tt> of the corresponding entries of this matrix and
+   * <tt>B</tt>, and return it. Rows are decoded into per-thread
+   * <tt>double</tt> buffers and the results encoded into <tt>C</tt> (see
+   * <tt>RowStaging</tt>).
+   */
+  private QuantizedMatrix combine (int op, Operand B, QuantizedMatrix C)
+  {
+    Operand A = operand();
+
+    RowStaging.checkSum(A,B);
+    RowStaging.combine(op,A,B,C::writeRow);
+    return C;
+  }
+
+  /**
+   * Set each entry of <tt>C</tt> to the <tt>SCALE</tt> by
+   * <tt>factor</tt> of the corresponding entry of this matrix, and
+   * return it.
+   */
+  private QuantizedMatrix map (double factor, QuantizedMatrix C)
+  {
+    RowStaging.map(EntryKernels.SCALE,factor,operand(),C::writeRow);
+    return C;
+  }
+
+  /**
+   * The order of the square blocks decoded into <tt>double</tt> buffers
+   * by products.
+   */
+  static final int BLOCK = 512;
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public Matrix times (QuantizedMatrix M)
+  {
+    return multiply(operand(),M.operand());
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to <tt>this</tt> times
+   * <tt>M</tt> under the current number algebra.
+   */
+  public Matrix times (Matrix M)
+  {
+    return multiply(operand(),OffHeapMatrix.operand(M));
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to the <tt>Matrix</tt>
+   * <tt>M</tt> times the <tt>QuantizedMatrix</tt> <tt>N</tt> under the
+   * current number algebra.
+   */
+  static public Matrix times (Matrix M, QuantizedMatrix N)
+  {
+    return multiply(OffHeapMatrix.operand(M),N.operand());
+  }
+
+  /**
+   * Return a new <tt>Matrix</tt> equal to <tt>A</tt> times <tt>B</tt>
+   * under the current number algebra, computed by
+   * <tt>BLOCK</tt>-by-<tt>BLOCK</tt> blocks decoded into <tt>double</tt>
+   * buffers (see <tt>RowStaging</tt>) and copied into its entries.
+   */
+  static private Matrix multiply (Operand A, Operand B)
+  {
+    RowStaging.checkProduct(A,B);
+
+    int n = B.cols();
+    Matrix C = new Matrix(A.rows(),n);
+    double[] c = C.entries();
+    RowStaging.multiply(NumberAlgebra.getCurrentAlgebra(),A,B,
+			(row,col,source,offset,length) ->
+			System.arraycopy(source,offset,c,row*n+col,length),
+			BLOCK);
+    return C;
+  }
+
+  /**
+   * Return a new <tt>double[]</tt> row vector equal to the row vector
+   * <tt>x</tt> times this matrix under the current number algebra
+   * (<i>e.g.</i>, the next distribution of states of a Markov chain of
+   * which this is the transition matrix): the rows of this matrix,
+   * decoded on the fly, scaled by the entries of <tt>x</tt> are
+   * accumulated in <tt>double</tt> in the order of the rows, by blocks
+   * of columns in parallel in parallel execution mode.
+   */
+  public double[] leftTimes (double[] x)
+  {
+    if (x.length != rows)
+      throw new RuntimeException("Cannot multiply a vector of size "+x.length+
+				 " by a "+rows+"x"+cols+" matrix");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    boolean direct = kind == NumberAlgebra.STANDARD && encoding == FIXED_POINT;
+    double[] y = new double[cols];
+
+    java.util.Arrays.fill(y,algebra.zero());
+
+    MatrixTasks.forRowBlocks(cols,rows,
+			     (fromCol,toCol) ->
+			     {
+			       int length = toCol-fromCol;
+			       double[] b = direct ? null : RowStaging.rowBuffers(1,length)[0];
+
+			       for (int row = 0; row < rows; row++)
+				 if (!direct)
+				   {
+				     readRow(row,fromCol,b,0,length);
+				     EntryKernels.accumulate(kind,algebra,x[row],b,0,y,fromCol,length);
+				   }
+				 else if (Vectorization.ENABLED)
+				   VectorKernels.accumulate(x[row],codes,row*cols+fromCol,scale,y,fromCol,length);
+				 else
+				   for (int i = 0, base = row*cols+fromCol; i < length; i++)
+				     y[fromCol+i] += x[row]*((codes[base+i] & MAX_CODE)*scale);
+			     });
+    return y;
+  }
+
+  /**
+   * Return a new <tt>double[]</tt> column vector equal to this matrix
+   * times the column vector <tt>x</tt> under the current number algebra,
+   * each of its entries being accumulated in <tt>double</tt> in the
+   * order of the columns, by blocks of rows in parallel in parallel
+   * execution mode.
+   */
+  public double[] times (double[] x)
+  {
+    if (x.length != cols)
+      throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
+				 " matrix by a vector of size "+x.length);
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    double zero = algebra.zero();
+    double[] y = new double[rows];
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       double[] a = RowStaging.rowBuffers(1,cols)[0];
+
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   double sum = zero;
+
+				   readRow(row,0,a,0,cols);
+
+				   if (kind == NumberAlgebra.STANDARD)
+				     for (int col = 0; col < cols; col++)
+				       sum += a[col]*x[col];
+				   else
+				     for (int col = 0; col < cols; col++)
+				       sum = algebra.sum(sum,algebra.product(a[col],x[col]));
+
+				   y[row] = sum;
+				 }
+			     });
+    return y;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and <tt>M</tt> have the same
+   * entry values.
+   */
+  public boolean equals (QuantizedMatrix M)
+  {
+    if (M.rows != rows || M.cols != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,M.rows,M.cols);
+
+    if (M.encoding == encoding && M.scale == scale)
+      return java.util.Arrays.equals(codes,M.codes);
+
+    return equalEntries(M.operand());
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix and the <tt>Matrix</tt>
+   * <tt>M</tt> have the same entry values.
+   */
+  public boolean equals (Matrix M)
+  {
+    if (M.rows() != rows || M.cols() != cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,M.rows(),M.cols());
+
+    return equalEntries(OffHeapMatrix.operand(M));
+  }
+
+  private boolean equalEntries (Operand M)
+  {
+    double[][] buffers = RowStaging.rowBuffers(2,cols);
+    double[] a = buffers[0], b = buffers[1];
+
+    for (int row = 0; row < rows; row++)
+      {
+	readRow(row,0,a,0,cols);
+	M.readRow(row,0,b,0,cols);
+
+	for (int col = 0; col < cols; col++)
+	  if (a[col] != b[col])
+	    return false;
+      }
+
+    return true;
+  }
+
+  /**
+   * Print this matrix like <tt>Matrix.show()</tt> does.
+   */
+  public void show ()
+  {
+    double[] a = new double[cols];
+
+    System.out.println();
+    for (int row = 0; row < rows; row++)
+      {
+	readRow(row,0,a,0,cols);
+	for (int col = 0; col < cols; col++)
+	  System.out.printf(Matrix.floatFormatString(),a[col]);
+	System.out.println();
+      }
+    System.out.println();
+  }
+
+  public String toString ()
+  {
+    return rows+"x"+cols+(encoding == FIXED_POINT ? " fixed-point" : " half-float")+" matrix";
+  }
+}
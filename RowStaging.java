@@ -0,0 +1,186 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/RowStaging.java
+// STARTED ON. . Sat Apr  4 10:12:31 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import hlt.math.matrix.OffHeapMatrix.Operand;
+
+/**
+ * This is a non-public class gathering the operations shared by the
+ * alternate storages of dense matrices (<tt>OffHeapMatrix</tt>,
+ * <tt>FloatMatrix</tt>, and <tt>QuantizedMatrix</tt>), which all work
+ * by staging rows of <tt>double</tt>s: their entries are read through an
+ * <tt>Operand</tt> into per-thread heap buffers, computed upon there by
+ * the kernels of <tt>EntryKernels</tt> and <tt>MatrixProduct</tt>, and
+ * written back through a <tt>Target</tt>.
+ *
+ * @see         OffHeapMatrix
+ * @see         FloatMatrix
+ * @see         QuantizedMatrix
+ */
+final class RowStaging
+{
+  /**
+   * The type of a matrix whose rows can be written from <tt>double</tt>s.
+   */
+  interface Target
+  {
+    /**
+     * Copy <tt>length</tt> entries of <tt>source</tt> from
+     * <tt>offset</tt> on into row <tt>row</tt> starting at column
+     * <tt>col</tt> (both counted from <tt>0</tt>).
+     */
+    void writeRow (int row, int col, double[] source, int offset, int length);
+  }
+
+  /**
+   * Per-thread row buffers for staging; they only ever grow.
+   */
+  static private final ThreadLocal<double[][]> rowBuffers =
+    ThreadLocal.withInitial(() -> new double[][] { new double[0], new double[0] });
+
+  /**
+   * Return the first <tt>count</tt> (at most 2) per-thread row buffers,
+   * each of at least <tt>length</tt> entries.
+   */
+  static double[][] rowBuffers (int count, int length)
+  {
+    double[][] buffers = rowBuffers.get();
+
+    for (int i = 0; i < count; i++)
+      if (buffers[i].length < length)
+	buffers[i] = new double[length];
+
+    return buffers;
+  }
+
+  /**
+   * Throw an <tt>IncompatibleMatrixDimensionException</tt> unless
+   * <tt>A</tt> and <tt>B</tt> have the same dimensions. This is checked
+   * by the callers of <tt>combine</tt> before they allocate its target.
+   */
+  static void checkSum (Operand A, Operand B)
+  {
+    if (B.rows() != A.rows() || B.cols() != A.cols())
+      throw new IncompatibleMatrixDimensionException(A.rows(),A.cols(),B.rows(),B.cols());
+  }
+
+  /**
+   * Write into <tt>C</tt> the <tt>SUM</tt> or <tt>DIFFERENCE</tt> (according
+   * to <tt>op</tt>) of the corresponding entries of <tt>A</tt> and
+   * <tt>B</tt>, which must have the same dimensions, under the current
+   * number algebra, by blocks of rows in parallel in parallel execution
+   * mode.
+   */
+  static void combine (int op, Operand A, Operand B, Target C)
+  {
+    int rows = A.rows(), cols = A.cols();
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       double[][] buffers = rowBuffers(2,cols);
+			       double[] a = buffers[0], b = buffers[1];
+
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   A.readRow(row,0,a,0,cols);
+				   B.readRow(row,0,b,0,cols);
+				   EntryKernels.combine(op,kind,algebra,a,0,b,0,a,0,cols);
+				   C.writeRow(row,0,a,0,cols);
+				 }
+			     });
+  }
+
+  /**
+   * Write into <tt>C</tt> the <tt>NEGATION</tt> or <tt>SCALE</tt> by
+   * <tt>factor</tt> (according to <tt>op</tt>) of the corresponding
+   * entries of <tt>A</tt> under the current number algebra, by blocks of
+   * rows in parallel in parallel execution mode.
+   */
+  static void map (int op, double factor, Operand A, Target C)
+  {
+    int rows = A.rows(), cols = A.cols();
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+
+    MatrixTasks.forRowBlocks(rows,cols,
+			     (fromRow,toRow) ->
+			     {
+			       double[] a = rowBuffers(1,cols)[0];
+
+			       for (int row = fromRow; row < toRow; row++)
+				 {
+				   A.readRow(row,0,a,0,cols);
+				   EntryKernels.map(op,kind,algebra,factor,a,0,a,0,cols);
+				   if (op == EntryKernels.SCALE)
+				     Matrix.truncate(a,0,cols);
+				   C.writeRow(row,0,a,0,cols);
+				 }
+			     });
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> unless <tt>A</tt> can be multiplied
+   * by <tt>B</tt>. This is checked by the callers of <tt>multiply</tt>
+   * before they allocate its target.
+   */
+  static void checkProduct (Operand A, Operand B)
+  {
+    if (A.cols() != B.rows())
+      throw new RuntimeException("Cannot multiply a "+A.rows()+"x"+A.cols()+
+				 " matrix by a "+B.rows()+"x"+B.cols()+" matrix");
+  }
+
+  /**
+   * Write into <tt>C</tt> the product of <tt>A</tt> by <tt>B</tt> in the
+   * given <tt>algebra</tt>. The result is computed by
+   * <tt>block</tt>-by-<tt>block</tt> blocks, each accumulated in a heap
+   * buffer over the blocks of the depth dimension (whose entries are
+   * staged in heap buffers), then written once. Each block product is
+   * computed by the blocked kernel of <tt>MatrixProduct</tt> (by tiles in
+   * parallel in parallel execution mode). Staging costs
+   * <tt>O(n<sup>3</sup>/block)</tt> and is thus negligible next to the
+   * <tt>O(n<sup>3</sup>)</tt> product.
+   */
+  static void multiply (NumberAlgebra algebra, Operand A, Operand B, Target C, int block)
+  {
+    int m = A.rows(), k = A.cols(), n = B.cols();
+    int bm = Math.min(block,m), bn = Math.min(block,n), bk = Math.min(block,k);
+    double[] a = new double[bm*bk];
+    double[] b = new double[bk*bn];
+    double[] c = new double[bm*bn];
+    double zero = algebra.zero();
+
+    for (int i0 = 0; i0 < m; i0 += bm)
+      for (int j0 = 0; j0 < n; j0 += bn)
+	{
+	  int mb = Math.min(bm,m-i0), nb = Math.min(bn,n-j0);
+
+	  java.util.Arrays.fill(c,0,mb*nb,zero);
+
+	  for (int p0 = 0; p0 < k; p0 += bk)
+	    {
+	      int kb = Math.min(bk,k-p0);
+
+	      for (int i = 0; i < mb; i++)
+		A.readRow(i0+i,p0,a,i*kb,kb);
+	      for (int p = 0; p < kb; p++)
+		B.readRow(p0+p,j0,b,p*nb,nb);
+
+	      MatrixTasks.multiply(algebra,1.0,mb,nb,kb,a,0,kb,1,b,0,nb,1,c,0,nb);
+	    }
+
+	  Matrix.truncate(c,0,mb*nb);
+
+	  for (int i = 0; i < mb; i++)
+	    C.writeRow(i0+i,j0,c,i*nb,nb);
+	}
+  }
+}
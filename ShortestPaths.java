@@ -0,0 +1,676 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ShortestPaths.java
+// STARTED ON. . Tue Mar  3 10:22:05 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This class computes all-pairs shortest paths of a weighted directed
+ * graph of <tt>n</tt> vertices, given by a square matrix of arc
+ * lengths: a dense <tt>Matrix</tt> whose entry <tt>(i,j)</tt> is the
+ * length of the arc from <tt>i</tt> to <tt>j</tt>, or
+ * <tt>POSITIVE_INFINITY</tt> if there is none (<i>i.e.</i>, the
+ * <tt>zero()</tt> of the <a
+ * href="MinPlusAlgebra.html"><tt>MinPlusAlgebra</tt></a>), or a
+ * <tt>SparseMatrix</tt> whose stored entries are the arcs
+ * (<i>e.g.</i>, one converted from such a dense matrix while the
+ * <tt>MinPlusAlgebra</tt> is current). Lengths may be negative, but
+ * there must be no cycle of negative length, otherwise a
+ * <tt>RuntimeException</tt> is thrown.<p/>
+ *
+ * The distances are computed once and for all when this object is
+ * constructed, using either of three methods:
+ *
+ * <ul>
+ * <li><tt>FLOYD_WARSHALL</tt>: a blocked Floyd-Warshall algorithm. It
+ * takes <tt>O(n<sup>3</sup>)</tt> time and suits dense graphs. Without
+ * predecessors, it is the blocked <a
+ * href="Matrix.html#closure">closure</a> by elimination under the
+ * <tt>MinPlusAlgebra</tt>, whose bulk is done by the (blocked, SIMD,
+ * parallel) min-plus product kernel. With predecessors, blocks of
+ * <tt>BLOCK</tt> vertices are relaxed so that they stay in cache: for
+ * each diagonal block, the blocks of its row and column, then all the
+ * others, are relaxed in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>.</li>
+ *
+ * <li><tt>SQUARING</tt>: the <a href="Matrix.html#closure">closure</a>
+ * of the matrix under the <tt>MinPlusAlgebra</tt> computed by repeated
+ * min-plus squaring of its dirty rows, using the (blocked, SIMD,
+ * parallel) min-plus product kernel. It does not record predecessors,
+ * and suits graphs of small diameter.</li>
+ *
+ * <li><tt>DIJKSTRA</tt>: Dijkstra's algorithm from each source with a
+ * binary heap over the compressed (CSR) adjacency arrays, the sources
+ * being processed in parallel. It takes <tt>O(n(n+m)log n)</tt> time for
+ * <tt>m</tt> arcs, suits sparse graphs, but needs non-negative
+ * lengths.</li>
+ * </ul>
+ *
+ * Unless specified, the method is chosen according to the input: dense
+ * graphs (where at least one pair of vertices in ten is an arc) use
+ * <tt>FLOYD_WARSHALL</tt>; sparse graphs use <tt>DIJKSTRA</tt> if all
+ * lengths are non-negative, and otherwise <tt>SQUARING</tt>, or
+ * <tt>FLOYD_WARSHALL</tt> if predecessors are needed.<p/>
+ *
+ * If so requested, a matrix of predecessors is also kept to
+ * reconstruct shortest paths: the predecessor of <tt>j</tt> on a
+ * shortest path from <tt>i</tt> to <tt>j</tt>. Like those of
+ * <tt>Matrix</tt>, all the vertex indices of this class's methods are
+ * counted from <tt>1</tt>.
+ *
+ * @see         MinPlusAlgebra
+ * @see         Matrix
+ * @see         SparseMatrix
+ */
+public class ShortestPaths
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * Denotes the blocked Floyd-Warshall method.
+   */
+  static final public int FLOYD_WARSHALL = 0;
+
+  /**
+   * Denotes the repeated min-plus squaring method.
+   */
+  static final public int SQUARING = 1;
+
+  /**
+   * Denotes the all-sources Dijkstra method.
+   */
+  static final public int DIJKSTRA = 2;
+
+  /**
+   * The number of vertices of a block of the Floyd-Warshall method: a
+   * block of distances (and one of predecessors) then fits in the L1
+   * cache.
+   */
+  static final int BLOCK = 64;
+
+  /**
+   * The number of vertices.
+   */
+  private int order;
+
+  /**
+   * The method that computed the distances.
+   */
+  private int method;
+
+  /**
+   * The <tt>order</tt>-by-<tt>order</tt> matrix of distances.
+   */
+  private Matrix distances;
+
+  /**
+   * The row-major <tt>order</tt>-by-<tt>order</tt> predecessors (counted
+   * from <tt>0</tt>, <tt>-1</tt> standing for none), or <tt>null</tt> if
+   * they are not kept.
+   */
+  private int[] predecessors;
+
+  /**
+   * Compute the shortest paths of the graph of the given dense matrix
+   * of arc lengths with the method best suited to it, without keeping
+   * predecessors.
+   */
+  public ShortestPaths (Matrix lengths)
+  {
+    this(lengths,false);
+  }
+
+  /**
+   * Compute the shortest paths of the graph of the given dense matrix
+   * of arc lengths with the method best suited to it, keeping
+   * predecessors iff <tt>withPredecessors</tt> is <tt>true</tt>.
+   */
+  public ShortestPaths (Matrix lengths, boolean withPredecessors)
+  {
+    this(lengths,withPredecessors,-1);
+  }
+
+  /**
+   * Compute the shortest paths of the graph of the given dense matrix
+   * of arc lengths with the given <tt>method</tt>, keeping predecessors
+   * iff <tt>withPredecessors</tt> is <tt>true</tt>.
+   */
+  public ShortestPaths (Matrix lengths, boolean withPredecessors, int method)
+  {
+    this(lengths,null,withPredecessors,method);
+  }
+
+  /**
+   * Compute the shortest paths of the graph whose arcs are the stored
+   * entries of the given <tt>SparseMatrix</tt> with the method best
+   * suited to it, keeping predecessors iff <tt>withPredecessors</tt> is
+   * <tt>true</tt>.
+   */
+  public ShortestPaths (SparseMatrix lengths, boolean withPredecessors)
+  {
+    this(lengths,withPredecessors,-1);
+  }
+
+  /**
+   * Compute the shortest paths of the graph whose arcs are the stored
+   * entries of the given <tt>SparseMatrix</tt> with the given
+   * <tt>method</tt>, keeping predecessors iff <tt>withPredecessors</tt>
+   * is <tt>true</tt>.
+   */
+  public ShortestPaths (SparseMatrix lengths, boolean withPredecessors, int method)
+  {
+    this(null,lengths.byRows(),withPredecessors,method);
+  }
+
+  /**
+   * Compute the shortest paths of the graph given either densely or
+   * sparsely (the other being <tt>null</tt>).
+   */
+  private ShortestPaths (Matrix dense, SparseMatrix sparse, boolean withPredecessors, int method)
+  {
+    order = dense != null ? dense.rows() : sparse.rows();
+
+    if (dense != null ? !dense.isSquare() : sparse.cols() != order)
+      throw new RuntimeException("A matrix of arc lengths must be square");
+
+    if (method < 0)
+      method = chooseMethod(dense,sparse,withPredecessors);
+
+    if (method == SQUARING && withPredecessors)
+      throw new RuntimeException("Shortest paths by squaring do not keep predecessors");
+
+    if (method == DIJKSTRA)
+      {
+	if (sparse == null)
+	  sparse = arcs(dense);
+	for (int k = 0; k < sparse.nonZeros(); k++)
+	  if (sparse.values()[k] < 0.0)
+	    throw new RuntimeException("Dijkstra's algorithm needs non-negative lengths: "+sparse.values()[k]);
+      }
+    else if (dense == null)
+      dense = lengths(sparse);
+
+    this.method = method;
+
+    switch (method)
+      {
+      case FLOYD_WARSHALL:
+	if (withPredecessors)
+	  floydWarshall(dense);
+	else
+	  closure(dense,Matrix.CLOSURE_BY_ELIMINATION);
+	break;
+      case SQUARING:
+	closure(dense,Matrix.CLOSURE_BY_SQUARING);
+	break;
+      case DIJKSTRA:
+	dijkstra(sparse,withPredecessors);
+	break;
+      default:
+	throw new RuntimeException("Unknown shortest path method: "+method);
+      }
+  }
+
+  /**
+   * Return the method best suited to the graph given either densely or
+   * sparsely (see the class documentation).
+   */
+  private int chooseMethod (Matrix dense, SparseMatrix sparse, boolean withPredecessors)
+  {
+    long arcs = 0;
+    boolean nonNegative = true;
+
+    if (sparse != null)
+      {
+	double[] values = sparse.values();
+	arcs = sparse.nonZeros();
+	for (int k = 0; k < arcs; k++)
+	  nonNegative &= values[k] >= 0.0;
+      }
+    else
+      for (int i = 1; i <= order; i++)
+	for (int j = 1; j <= order; j++)
+	  {
+	    double length = dense.get(i,j);
+	    if (length != Double.POSITIVE_INFINITY)
+	      {
+		arcs++;
+		nonNegative &= length >= 0.0;
+	      }
+	  }
+
+    if (arcs >= MatrixClosure.DENSE_FRACTION*order*order)
+      return FLOYD_WARSHALL;
+
+    if (nonNegative)
+      return DIJKSTRA;
+
+    return withPredecessors ? FLOYD_WARSHALL : SQUARING;
+  }
+
+  /**
+   * Return a <tt>SparseMatrix</tt> stored by rows whose stored entries
+   * are the arcs of the given dense matrix of arc lengths (<i>i.e.</i>,
+   * its entries other than <tt>POSITIVE_INFINITY</tt>).
+   */
+  static private SparseMatrix arcs (Matrix M)
+  {
+    return NumberAlgebra.minPlusAlgebra() == NumberAlgebra.getCurrentAlgebra()
+      ? new SparseMatrix(M)
+      : MatrixContext.current().withAlgebra(NumberAlgebra.minPlusAlgebra())
+			       .call(() -> new SparseMatrix(M));
+  }
+
+  /**
+   * Return the dense matrix of arc lengths of the graph whose arcs are
+   * the stored entries of the given <tt>SparseMatrix</tt> (stored by
+   * rows).
+   */
+  static private Matrix lengths (SparseMatrix arcs)
+  {
+    int n = arcs.rows();
+    int[] offsets = arcs.offsets(), targets = arcs.indices();
+    double[] values = arcs.values();
+    double[] entries = new double[Matrix.checkedSize(n,n)];
+
+    java.util.Arrays.fill(entries,Double.POSITIVE_INFINITY);
+
+    for (int i = 0; i < n; i++)
+      for (int k = offsets[i]; k < offsets[i+1]; k++)
+	entries[i*n+targets[k]] = values[k];
+
+    return new Matrix(n,n,entries,true);
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Accessors and Paths
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of vertices of the graph.
+   */
+  public final int order ()
+  {
+    return order;
+  }
+
+  /**
+   * Return the method (<tt>FLOYD_WARSHALL</tt>, <tt>SQUARING</tt>, or
+   * <tt>DIJKSTRA</tt>) that computed the distances.
+   */
+  public final int method ()
+  {
+    return method;
+  }
+
+  /**
+   * Return <tt>true</tt> iff predecessors are kept.
+   */
+  public final boolean hasPredecessors ()
+  {
+    return predecessors != null;
+  }
+
+  /**
+   * Return the matrix of distances, whose entry <tt>(i,j)</tt> is the
+   * length of a shortest path from <tt>i</tt> to <tt>j</tt>
+   * (<tt>POSITIVE_INFINITY</tt> if there is none, and <tt>0.0</tt> from
+   * a vertex to itself). It is owned by this object and must not be
+   * modified.
+   */
+  public final Matrix distances ()
+  {
+    return distances;
+  }
+
+  /**
+   * Return the length of a shortest path from <tt>source</tt> to
+   * <tt>target</tt>, or <tt>POSITIVE_INFINITY</tt> if there is none.
+   */
+  public final double distance (int source, int target)
+  {
+    return distances.get(source,target);
+  }
+
+  /**
+   * Return the predecessor of <tt>target</tt> on a shortest path from
+   * <tt>source</tt> to <tt>target</tt>, or <tt>0</tt> if there is no
+   * such path or if <tt>source</tt> is <tt>target</tt>. This throws a
+   * <tt>RuntimeException</tt> if predecessors are not kept.
+   */
+  public final int predecessor (int source, int target)
+  {
+    if (predecessors == null)
+      throw new RuntimeException("These shortest paths do not keep predecessors");
+
+    checkVertex(source);
+    checkVertex(target);
+
+    return predecessors[(source-1)*order+target-1]+1;
+  }
+
+  /**
+   * Return the vertices of a shortest path from <tt>source</tt> to
+   * <tt>target</tt>, both included (a single vertex if they are the
+   * same), or <tt>null</tt> if there is no such path. This throws a
+   * <tt>RuntimeException</tt> if predecessors are not kept.
+   */
+  public final int[] path (int source, int target)
+  {
+    if (source == target)
+      {
+	checkVertex(source);
+	return new int[] { source };
+      }
+
+    if (predecessor(source,target) == 0)
+      return null;
+
+    int[] reversed = new int[order];
+    int length = 0;
+    int base = (source-1)*order;
+
+    for (int v = target-1; v != source-1; v = predecessors[base+v])
+      reversed[length++] = v+1;
+
+    int[] path = new int[length+1];
+    path[0] = source;
+    for (int k = 1; k <= length; k++)
+      path[k] = reversed[length-k];
+
+    return path;
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> if <tt>vertex</tt> is not in
+   * <tt>[1,order]</tt>.
+   */
+  private void checkVertex (int vertex)
+  {
+    if (vertex < 1 || vertex > order)
+      throw new RuntimeException("Vertex "+vertex+" out of bounds [1,"+order+"]");
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Methods
+   * </span></h3>
+   */
+
+  /**
+   * Compute the distances and the predecessors of the graph of the
+   * given dense matrix of arc lengths with the blocked Floyd-Warshall
+   * algorithm.
+   */
+  private void floydWarshall (Matrix lengths)
+  {
+    int n = order;
+    double[] d = lengths.copy().entries();
+    int size = Matrix.checkedSize(n,n);
+    int[] p = new int[size];
+    int[] h = new int[size];
+
+    for (int i = 0; i < n; i++)
+      {
+	for (int j = 0; j < n; j++)
+	  {
+	    boolean isArc = i != j && d[i*n+j] != Double.POSITIVE_INFINITY;
+	    p[i*n+j] = isArc ? i : -1;
+	    h[i*n+j] = isArc ? 1 : 0;
+	  }
+	d[i*n+i] = Math.min(0.0,d[i*n+i]);
+      }
+
+    int blocks = (n+BLOCK-1)/BLOCK;
+
+    for (int kb = 0; kb < blocks; kb++)
+      {
+	final int k0 = kb*BLOCK, k1 = Math.min(n,k0+BLOCK), diagonal = kb;
+
+	// the diagonal block depends only on itself
+	relax(n,d,p,h,k0,k1,k0,k1,k0,k1);
+
+	// the blocks of its row and column depend only on it and
+	// themselves
+	MatrixTasks.forRowBlocks(blocks,2*BLOCK*BLOCK*BLOCK,(from,to) ->
+	  {
+	    for (int b = from; b < to; b++)
+	      if (b != diagonal)
+		{
+		  int b0 = b*BLOCK, b1 = Math.min(n,b0+BLOCK);
+		  relax(n,d,p,h,k0,k1,b0,b1,k0,k1);
+		  relax(n,d,p,h,b0,b1,k0,k1,k0,k1);
+		}
+	  });
+
+	// all other blocks depend only on those and themselves
+	MatrixTasks.forRowBlocks(blocks,n*BLOCK*BLOCK,(from,to) ->
+	  {
+	    for (int ib = from; ib < to; ib++)
+	      if (ib != diagonal)
+		for (int jb = 0; jb < blocks; jb++)
+		  if (jb != diagonal)
+		    relax(n,d,p,h,ib*BLOCK,Math.min(n,ib*BLOCK+BLOCK),
+			  jb*BLOCK,Math.min(n,jb*BLOCK+BLOCK),k0,k1);
+	  });
+      }
+
+    checkNoNegativeCycle(n,d);
+
+    distances = new Matrix(n,n,d,true);
+    predecessors = p;
+  }
+
+  /**
+   * Relax the distances <tt>d</tt>, predecessors <tt>p</tt>, and
+   * numbers of arcs <tt>h</tt> of the block of rows <tt>[i0,i1)</tt>
+   * and columns <tt>[j0,j1)</tt> through the intermediate vertices
+   * <tt>[k0,k1)</tt>, in this order.<p/>
+   *
+   * <b>N.B.:</b> Paths are compared by length then by number of arcs.
+   * Otherwise, as the blocks of the row and column of a diagonal block
+   * are relaxed through all its vertices before the other blocks, the
+   * predecessors of the vertices of a cycle of length <tt>0</tt> could
+   * end up pointing at each other.
+   */
+  static private void relax (int n, double[] d, int[] p, int[] h,
+			     int i0, int i1, int j0, int j1, int k0, int k1)
+  {
+    for (int k = k0; k < k1; k++)
+      {
+	int rk = k*n;
+
+	for (int i = i0; i < i1; i++)
+	  {
+	    int ri = i*n;
+	    double dik = d[ri+k];
+
+	    if (dik == Double.POSITIVE_INFINITY)
+	      continue;
+
+	    int hik = h[ri+k];
+
+	    for (int j = j0; j < j1; j++)
+	      {
+		double length = dik+d[rk+j];
+		if (length < d[ri+j]
+		    || length == d[ri+j] && length != Double.POSITIVE_INFINITY && hik+h[rk+j] < h[ri+j])
+		  {
+		    d[ri+j] = length;
+		    h[ri+j] = hik+h[rk+j];
+		    p[ri+j] = p[rk+j];
+		  }
+	      }
+	  }
+      }
+  }
+
+  /**
+   * Compute the distances of the graph of the given dense matrix of arc
+   * lengths as its closure under the <tt>MinPlusAlgebra</tt> computed
+   * with the given <tt>method</tt> (<tt>CLOSURE_BY_ELIMINATION</tt> or
+   * <tt>CLOSURE_BY_SQUARING</tt>).
+   */
+  private void closure (Matrix lengths, int method)
+  {
+    MatrixContext context = MatrixContext.current().withAlgebra(NumberAlgebra.minPlusAlgebra());
+    Matrix D = context.call(() -> lengths.closure(method));
+    double[] d = D.entries();
+    int n = order;
+
+    checkNoNegativeCycle(n,d);
+
+    for (int i = 0; i < n; i++)
+      d[i*n+i] = 0.0;
+
+    distances = D;
+  }
+
+  /**
+   * Throw a <tt>RuntimeException</tt> if some vertex lies on a cycle of
+   * negative length, <i>i.e.</i>, if its distance to itself in
+   * <tt>d</tt> is negative.
+   */
+  static private void checkNoNegativeCycle (int n, double[] d)
+  {
+    for (int i = 0; i < n; i++)
+      if (d[i*n+i] < 0.0)
+	throw new RuntimeException("Vertex "+(i+1)+" lies on a negative cycle: there is no shortest path");
+  }
+
+  /**
+   * Compute the distances (and the predecessors if
+   * <tt>withPredecessors</tt> is <tt>true</tt>) of the graph whose arcs
+   * are the stored entries of the given <tt>SparseMatrix</tt> (stored by
+   * rows) with Dijkstra's algorithm from each source.
+   */
+  private void dijkstra (SparseMatrix arcs, boolean withPredecessors)
+  {
+    int n = order;
+    int size = Matrix.checkedSize(n,n);
+    double[] d = new double[size];
+    int[] p = withPredecessors ? new int[size] : null;
+
+    MatrixTasks.forRowBlocks(n,n+arcs.nonZeros(),(from,to) ->
+      {
+	int[] heap = new int[n];
+	int[] position = new int[n];
+
+	for (int source = from; source < to; source++)
+	  dijkstra(n,arcs.offsets(),arcs.indices(),arcs.values(),source,d,p,heap,position);
+      });
+
+    distances = new Matrix(n,n,d,true);
+    predecessors = p;
+  }
+
+  /**
+   * Set the row <tt>source</tt> of the distances <tt>d</tt> (and
+   * predecessors <tt>p</tt> if not <tt>null</tt>) with Dijkstra's
+   * algorithm over the given compressed adjacency arrays, using the
+   * given binary <tt>heap</tt> of vertices ordered by distance and the
+   * <tt>position</tt> of each vertex in it (<tt>-1</tt> if it has not
+   * been reached yet, and <tt>-2</tt> once its distance is final).
+   */
+  static private void dijkstra (int n, int[] offsets, int[] targets, double[] lengths, int source,
+				double[] d, int[] p, int[] heap, int[] position)
+  {
+    int base = source*n;
+    java.util.Arrays.fill(d,base,base+n,Double.POSITIVE_INFINITY);
+    if (p != null)
+      java.util.Arrays.fill(p,base,base+n,-1);
+    java.util.Arrays.fill(position,-1);
+
+    d[base+source] = 0.0;
+    heap[0] = source;
+    position[source] = 0;
+    int size = 1;
+
+    while (size > 0)
+      {
+	int u = heap[0];
+	position[u] = -2;
+	if (--size > 0)
+	  siftDown(heap,position,d,base,size,heap[size],0);
+
+	double du = d[base+u];
+
+	for (int k = offsets[u]; k < offsets[u+1]; k++)
+	  {
+	    int v = targets[k];
+	    double length = du+lengths[k];
+
+	    if (position[v] == -2 || length >= d[base+v])
+	      continue;
+
+	    d[base+v] = length;
+	    if (p != null)
+	      p[base+v] = u;
+
+	    if (position[v] == -1)
+	      siftUp(heap,position,d,base,v,size++);
+	    else
+	      siftUp(heap,position,d,base,v,position[v]);
+	  }
+      }
+  }
+
+  /**
+   * Move the vertex <tt>v</tt> up the heap from the slot <tt>hole</tt>
+   * to its place according to its distance.
+   */
+  static private void siftUp (int[] heap, int[] position, double[] d, int base, int v, int hole)
+  {
+    double key = d[base+v];
+
+    while (hole > 0)
+      {
+	int parent = (hole-1) >>> 1;
+	int u = heap[parent];
+	if (d[base+u] <= key)
+	  break;
+	heap[hole] = u;
+	position[u] = hole;
+	hole = parent;
+      }
+
+    heap[hole] = v;
+    position[v] = hole;
+  }
+
+  /**
+   * Move the vertex <tt>v</tt> down the heap of the given <tt>size</tt>
+   * from the slot <tt>hole</tt> to its place according to its distance.
+   */
+  static private void siftDown (int[] heap, int[] position, double[] d, int base, int size, int v, int hole)
+  {
+    double key = d[base+v];
+
+    for (;;)
+      {
+	int child = 2*hole+1;
+	if (child >= size)
+	  break;
+	if (child+1 < size && d[base+heap[child+1]] < d[base+heap[child]])
+	  child++;
+	int u = heap[child];
+	if (key <= d[base+u])
+	  break;
+	heap[hole] = u;
+	position[u] = hole;
+	hole = child;
+      }
+
+    heap[hole] = v;
+    position[v] = hole;
+  }
+}
@@ -0,0 +1,262 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/SparseChecks.java
+// STARTED ON. . Fri Apr 17 09:47:31 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a non-public class checking <tt>SparseMatrix</tt> against
+ * dense matrices under several algebras: its construction from dense
+ * matrices (and views) and from entries in coordinate form, its
+ * conversions between storage by rows and by columns, its transpose and
+ * sum, and its products by dense matrices on either side and by other
+ * sparse matrices (under a generic algebra too, and in parallel), for
+ * all combinations of storage. It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         SparseMatrix
+ * @see         MatrixChecks
+ */
+final class SparseChecks
+{
+  static void run (Random random)
+  {
+    checkStorage(random);
+    checkCoordinates(random);
+    checkDenseProducts(random);
+    checkSparseProducts(random);
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> matrix whose entries are
+   * random in <tt>[0,1)</tt> with the given probability and the zero of
+   * the current algebra otherwise.
+   */
+  static Matrix randomSparse (Random random, int rows, int cols, double density)
+  {
+    Matrix M = new Matrix(rows,cols).fill(NumberAlgebra.getCurrentAlgebra().zero());
+
+    for (int i = 1; i <= rows; i++)
+      for (int j = 1; j <= cols; j++)
+	if (random.nextDouble() < density)
+	  M.set(i,j,random.nextDouble());
+
+    return M;
+  }
+
+  /**
+   * Return the number of entries of <tt>M</tt> that differ from the zero
+   * of the current algebra.
+   */
+  static private int nonZeros (Matrix M)
+  {
+    double zero = NumberAlgebra.getCurrentAlgebra().zero();
+    int count = 0;
+
+    for (int i = 1; i <= M.rows(); i++)
+      for (int j = 1; j <= M.cols(); j++)
+	if (M.get(i,j) != zero)
+	  count++;
+
+    return count;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>S</tt> has exactly the entries of
+   * <tt>M</tt>, stores exactly its non-zero ones, and reads them all
+   * back with <tt>get</tt>.
+   */
+  static private boolean holds (SparseMatrix S, Matrix M)
+  {
+    if (S.rows() != M.rows() || S.cols() != M.cols() || S.nonZeros() != nonZeros(M)
+	|| MatrixChecks.distance(S.toMatrix(),M) != 0.0)
+      return false;
+
+    for (int i = 1; i <= M.rows(); i++)
+      for (int j = 1; j <= M.cols(); j++)
+	if (S.get(i,j) != M.get(i,j))
+	  return false;
+
+    return true;
+  }
+
+  static private void checkStorage (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int trial = 0; trial < 20; trial++)
+	      {
+		int m = 1+random.nextInt(30), n = 1+random.nextInt(30);
+		Matrix A = randomSparse(random,m,n,random.nextDouble()/2);
+		Matrix B = randomSparse(random,m,n,random.nextDouble()/2);
+		Matrix V = new Matrix(m+2,n+2).fill(Double.NaN).submatrix(2,m+1,3,n+2).update(A);
+		String what = algebra+" "+m+"x"+n+" sparse matrix";
+
+		for (boolean byRows : new boolean[] { true, false })
+		  {
+		    SparseMatrix S = new SparseMatrix(A,byRows);
+		    SparseMatrix T = new SparseMatrix(B,!byRows);
+		    String form = what+(byRows ? " (CSR)" : " (CSC)");
+
+		    MatrixChecks.check(S.isByRows() == byRows && holds(S,A),form);
+		    MatrixChecks.check(holds(new SparseMatrix(V,byRows),A),form+" of a view");
+		    MatrixChecks.check(holds(new SparseMatrix(A.transpose().transposed(),byRows),A),
+				       form+" of a transposed view");
+		    MatrixChecks.check(S.byRows().isByRows() && holds(S.byRows(),A),form+": byRows");
+		    MatrixChecks.check(!S.byColumns().isByRows() && holds(S.byColumns(),A),form+": byColumns");
+		    MatrixChecks.check(holds(S.transpose(),A.transpose()),form+": transpose");
+		    MatrixChecks.check(S.plus(T).isByRows() == byRows && holds(S.plus(T),A.plus(B)),form+": plus");
+		  }
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkCoordinates (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int trial = 0; trial < 20; trial++)
+	      {
+		// small integer values, so that duplicates add up exactly
+		// (and may cancel out under the standard algebra)
+		int m = 1+random.nextInt(20), n = 1+random.nextInt(20), count = random.nextInt(2*m*n);
+		int[] rowIndices = new int[count], colIndices = new int[count];
+		double[] values = new double[count];
+		Matrix expected = new Matrix(m,n).fill(algebra.zero());
+
+		for (int k = 0; k < count; k++)
+		  {
+		    rowIndices[k] = random.nextInt(m);
+		    colIndices[k] = random.nextInt(n);
+		    values[k] = random.nextInt(7)-3;
+		    expected.set(rowIndices[k]+1,colIndices[k]+1,
+				 algebra.sum(expected.get(rowIndices[k]+1,colIndices[k]+1),values[k]));
+		  }
+
+		MatrixChecks.check(holds(new SparseMatrix(m,n,rowIndices,colIndices,values),expected),
+				   algebra+" "+m+"x"+n+" sparse matrix of "+count+" coordinates");
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkDenseProducts (Random random)
+  {
+    try
+      {
+	for (NumberAlgebra algebra : ProductChecks.ALGEBRAS)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int trial = 0; trial < 20; trial++)
+	      {
+		int m = 1+random.nextInt(40), k = 1+random.nextInt(40), n = 1+random.nextInt(40);
+		Matrix A = randomSparse(random,m,k,random.nextDouble()/2);
+		Matrix B = randomSparse(random,k,n,random.nextDouble()/2);
+		Matrix C = A.times(B);
+
+		for (boolean aByRows : new boolean[] { true, false })
+		  for (boolean bByRows : new boolean[] { true, false })
+		    {
+		      SparseMatrix S = new SparseMatrix(A,aByRows);
+		      SparseMatrix T = new SparseMatrix(B,bByRows);
+		      String what = algebra+" product of "+m+"x"+k+(aByRows ? " CSR" : " CSC")+
+				    " by "+k+"x"+n+(bByRows ? " CSR" : " CSC");
+
+		      MatrixChecks.check(MatrixChecks.distance(S.times(B),C) <= ProductChecks.tolerance(k),
+					 what+" (dense right)");
+		      MatrixChecks.check(MatrixChecks.distance(SparseMatrix.times(A,T),C)
+					 <= ProductChecks.tolerance(k),what+" (dense left)");
+		      MatrixChecks.check(MatrixChecks.distance(A.times(T),C) <= ProductChecks.tolerance(k),
+					 what+" (Matrix.times)");
+		    }
+	      }
+	  }
+      }
+    finally
+      {
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+
+  static private void checkSparseProducts (Random random)
+  {
+    NumberAlgebra[] algebras = java.util.Arrays.copyOf(ProductChecks.ALGEBRAS,ProductChecks.ALGEBRAS.length+1);
+    algebras[algebras.length-1] = ProductChecks.GENERIC_MIN_PLUS;
+
+    boolean parallel = Matrix.isParallel();
+    int threshold = Matrix.parallelThreshold();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try
+      {
+	for (NumberAlgebra algebra : algebras)
+	  {
+	    NumberAlgebra.setCurrentAlgebra(algebra);
+
+	    for (int trial = 0; trial < 24; trial++)
+	      {
+		// a few larger and sparser products among small ones
+		boolean large = trial % 8 == 0;
+		int m = large ? 300 : 1+random.nextInt(40);
+		int k = large ? 200 : 1+random.nextInt(40);
+		int n = large ? 250 : 1+random.nextInt(40);
+		double density = large ? 0.02 : random.nextDouble()/2;
+		Matrix A = randomSparse(random,m,k,density);
+		Matrix B = randomSparse(random,k,n,density);
+		Matrix C = ProductChecks.naiveProduct(A,B);
+
+		for (boolean aByRows : new boolean[] { true, false })
+		  for (boolean bByRows : new boolean[] { true, false })
+		    {
+		      SparseMatrix S = new SparseMatrix(A,aByRows);
+		      SparseMatrix T = new SparseMatrix(B,bByRows);
+		      String what = algebra+" product of "+m+"x"+k+(aByRows ? " CSR" : " CSC")+
+				    " by "+k+"x"+n+(bByRows ? " CSR" : " CSC");
+
+		      Matrix.setParallel(false);
+		      SparseMatrix P = S.times(T);
+		      MatrixChecks.check(MatrixChecks.distance(P.toMatrix(),C) <= 1e-12*k,what);
+		      MatrixChecks.check(P.nonZeros() == nonZeros(P.toMatrix()),what+": stored zeros");
+
+		      Matrix.setParallel(true);
+		      Matrix.setParallelThreshold(1);
+		      Matrix.setForkJoinPool(pool);
+		      MatrixChecks.check(MatrixChecks.distance(S.times(T).toMatrix(),P.toMatrix()) == 0.0,
+					 what+" in parallel");
+		    }
+	      }
+	  }
+      }
+    finally
+      {
+	Matrix.setParallel(parallel);
+	Matrix.setParallelThreshold(threshold);
+	Matrix.setForkJoinPool(null);
+	pool.shutdown();
+	NumberAlgebra.setStandardAlgebra();
+      }
+  }
+}
@@ -0,0 +1,696 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/SparseMatrix.java
+// STARTED ON. . Mon Jan 27 09:48:12 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a class of sparse matrices storing only their <i>non-zero</i>
+ * entries, where "zero" means the <tt>zero()</tt> of the current <a
+ * href="NumberAlgebra.html"><tt>NumberAlgebra</tt></a>: <tt>0.0</tt>
+ * for the <tt>StandardAlgebra</tt>, but <tt>-&infin;</tt> for the
+ * <tt>MaxMinAlgebra</tt> (whence, in the latter, a <tt>0.0</tt> entry
+ * is stored like any other). Entries that are not stored always denote
+ * the zero of the algebra in effect when they are used.<p/>
+ *
+ * A <tt>SparseMatrix</tt> is stored in either of two compressed forms:
+ *
+ * <ul>
+ * <li><i>by rows</i> (CSR): the stored entries of row <tt>i</tt> are
+ * <tt>values[offsets[i]..offsets[i+1])</tt>, and their column indices
+ * are <tt>indices[offsets[i]..offsets[i+1])</tt>;</li>
+ * <li><i>by columns</i> (CSC): likewise, with the roles of rows and
+ * columns exchanged.</li>
+ * </ul>
+ *
+ * In both forms, indices within a row (resp., column) are strictly
+ * increasing, and all indices of the arrays are counted from
+ * <tt>0</tt>; only the <tt>get</tt> method counts rows and columns from
+ * <tt>1</tt> like that of <tt>Matrix</tt>. The memory used is thus
+ * proportional to the number of stored entries plus the number of rows
+ * (resp., columns), never to the product of the dimensions.<p/>
+ *
+ * Conversions to and from a dense <tt>Matrix</tt>, and between both
+ * forms, are provided, together with sparse-by-dense and dense-by-sparse
+ * products (yielding a dense <tt>Matrix</tt>) and sparse sums, all
+ * under the current number algebra. Row-wise computations run by blocks
+ * of rows in parallel in <a href="Matrix.html#parallel">parallel
+ * execution mode</a>.
+ *
+ * @see         Matrix
+ * @see         NumberAlgebra
+ */
+public class SparseMatrix
+{
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Components and Constructors
+   * </span></h3>
+   */
+
+  /**
+   * The number of rows of this matrix.
+   */
+  private int rows;
+
+  /**
+   * The number of columns of this matrix.
+   */
+  private int cols;
+
+  /**
+   * <tt>true</tt> iff this matrix is stored by rows (CSR), <tt>false</tt>
+   * iff it is stored by columns (CSC).
+   */
+  private boolean byRows;
+
+  /**
+   * The offsets in <tt>indices</tt> and <tt>values</tt> of the stored
+   * entries of each row (resp., column), followed by their number.
+   */
+  private int[] offsets;
+
+  /**
+   * The column (resp., row) indices of the stored entries.
+   */
+  private int[] indices;
+
+  /**
+   * The values of the stored entries.
+   */
+  private double[] values;
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>SparseMatrix</tt>
+   * stored by rows if <tt>byRows</tt> is <tt>true</tt> or by columns
+   * otherwise, sharing the given compressed arrays (see the class
+   * documentation). The arrays are checked for consistency, but the
+   * strict increase of indices within rows (resp., columns) is only
+   * assumed.
+   */
+  public SparseMatrix (int rows, int cols, boolean byRows,
+		       int[] offsets, int[] indices, double[] values)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+
+    int major = byRows ? rows : cols;
+
+    if (offsets.length != major+1 || offsets[0] != 0
+	|| indices.length < offsets[major] || values.length < offsets[major])
+      throw new RuntimeException("Inconsistent compressed sparse matrix arrays");
+
+    this.rows = rows;
+    this.cols = cols;
+    this.byRows = byRows;
+    this.offsets = offsets;
+    this.indices = indices;
+    this.values = values;
+  }
+
+  /**
+   * Construct a <tt>rows</tt>-by-<tt>cols</tt> <tt>SparseMatrix</tt>
+   * stored by rows from the given entries in coordinate form: the
+   * <tt>k</tt>-th one has value <tt>values[k]</tt> at row
+   * <tt>rowIndices[k]</tt> and column <tt>colIndices[k]</tt> (counted
+   * from <tt>0</tt>). Entries may come in any order; those given several
+   * times are summed, and those equal to the zero of the current number
+   * algebra are dropped.
+   */
+  public SparseMatrix (int rows, int cols, int[] rowIndices, int[] colIndices, double[] values)
+  {
+    if (rows <= 0 || cols <= 0)
+      throw new RuntimeException("Illegal matrix dimensions: ("+
+				 rows+","+cols+")");
+
+    int count = values.length;
+
+    if (rowIndices.length != count || colIndices.length != count)
+      throw new RuntimeException("Inconsistent coordinate sparse matrix arrays");
+
+    for (int k = 0; k < count; k++)
+      if (rowIndices[k] < 0 || rowIndices[k] >= rows || colIndices[k] < 0 || colIndices[k] >= cols)
+	throw new RuntimeException("Matrix entry ("+rowIndices[k]+","+colIndices[k]+
+				   ") out of bounds [0,"+rows+")x[0,"+cols+")");
+
+    // a counting sort by column, then a stable one by row, sorts the
+    // entries by row and column in linear time
+    int[] byCol = countingSort(cols,colIndices,null);
+    int[] order = countingSort(rows,rowIndices,byCol);
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    double zero = algebra.zero();
+
+    int[] offsets = new int[rows+1];
+    int[] indices = new int[count];
+    double[] merged = new double[count];
+    int size = 0;
+
+    for (int k = 0; k < count; )
+      {
+	int row = rowIndices[order[k]];
+	int col = colIndices[order[k]];
+	double value = values[order[k++]];
+
+	while (k < count && rowIndices[order[k]] == row && colIndices[order[k]] == col)
+	  value = algebra.sum(value,values[order[k++]]);
+
+	if (value != zero)
+	  {
+	    indices[size] = col;
+	    merged[size++] = value;
+	    offsets[row+1]++;
+	  }
+      }
+
+    for (int row = 0; row < rows; row++)
+      offsets[row+1] += offsets[row];
+
+    this.rows = rows;
+    this.cols = cols;
+    this.byRows = true;
+    this.offsets = offsets;
+    this.indices = java.util.Arrays.copyOf(indices,size);
+    this.values = java.util.Arrays.copyOf(merged,size);
+  }
+
+  /**
+   * Construct a <tt>SparseMatrix</tt> stored by rows holding the entries
+   * of the given dense <tt>Matrix</tt> that differ from the zero of the
+   * current number algebra.
+   */
+  public SparseMatrix (Matrix M)
+  {
+    this(M,true);
+  }
+
+  /**
+   * Construct a <tt>SparseMatrix</tt> stored by rows if <tt>byRows</tt>
+   * is <tt>true</tt> or by columns otherwise, holding the entries of the
+   * given dense <tt>Matrix</tt> that differ from the zero of the current
+   * number algebra.
+   */
+  public SparseMatrix (Matrix M, boolean byRows)
+  {
+    double zero = NumberAlgebra.getCurrentAlgebra().zero();
+    double[] entries = M.entries();
+    int base = M.offset();
+    int major = byRows ? M.rows() : M.cols();
+    int minor = byRows ? M.cols() : M.rows();
+    int majorStride = byRows ? M.stride() : M.colStride();
+    int minorStride = byRows ? M.colStride() : M.stride();
+
+    int[] offsets = new int[major+1];
+
+    for (int i = 0; i < major; i++)
+      {
+	int count = 0;
+	for (int j = 0; j < minor; j++)
+	  if (entries[base+i*majorStride+j*minorStride] != zero)
+	    count++;
+	offsets[i+1] = offsets[i]+count;
+      }
+
+    int[] indices = new int[offsets[major]];
+    double[] values = new double[offsets[major]];
+
+    for (int i = 0, k = 0; i < major; i++)
+      for (int j = 0; j < minor; j++)
+	{
+	  double entry = entries[base+i*majorStride+j*minorStride];
+	  if (entry != zero)
+	    {
+	      indices[k] = j;
+	      values[k++] = entry;
+	    }
+	}
+
+    this.rows = M.rows();
+    this.cols = M.cols();
+    this.byRows = byRows;
+    this.offsets = offsets;
+    this.indices = indices;
+    this.values = values;
+  }
+
+  /**
+   * Return a permutation of <tt>[0,keys.length)</tt> (or of the given
+   * permutation <tt>order</tt> if not <tt>null</tt>) stably sorting it by
+   * the given <tt>keys</tt> in <tt>[0,range)</tt>.
+   */
+  static private int[] countingSort (int range, int[] keys, int[] order)
+  {
+    int count = keys.length;
+    int[] start = new int[range+1];
+
+    for (int k = 0; k < count; k++)
+      start[keys[k]+1]++;
+
+    for (int key = 0; key < range; key++)
+      start[key+1] += start[key];
+
+    int[] sorted = new int[count];
+
+    for (int k = 0; k < count; k++)
+      {
+	int index = order == null ? k : order[k];
+	sorted[start[keys[index]]++] = index;
+      }
+
+    return sorted;
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Component Access
+   * </span></h3>
+   */
+
+  /**
+   * Return the number of rows of this matrix.
+   */
+  public final int rows ()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of this matrix.
+   */
+  public final int cols ()
+  {
+    return cols;
+  }
+
+  /**
+   * Return <tt>true</tt> iff this matrix is stored by rows (CSR), and
+   * <tt>false</tt> iff it is stored by columns (CSC).
+   */
+  public final boolean isByRows ()
+  {
+    return byRows;
+  }
+
+  /**
+   * Return the number of stored entries of this matrix.
+   */
+  public final int nonZeros ()
+  {
+    return offsets[byRows ? rows : cols];
+  }
+
+  /**
+   * Return the (shared) offsets array of this matrix.
+   */
+  public final int[] offsets ()
+  {
+    return offsets;
+  }
+
+  /**
+   * Return the (shared) indices array of this matrix.
+   */
+  public final int[] indices ()
+  {
+    return indices;
+  }
+
+  /**
+   * Return the (shared) values array of this matrix.
+   */
+  public final double[] values ()
+  {
+    return values;
+  }
+
+  /**
+   * Return the entry at row <tt>i</tt> and column <tt>j</tt> (counted
+   * from <tt>1</tt>), which is the zero of the current number algebra if
+   * it is not stored. This takes a binary search in the row (resp.,
+   * column).
+   */
+  public final double get (int i, int j)
+  {
+    if (i < 1 || i > rows || j < 1 || j > cols)
+      throw new RuntimeException("Matrix entry ("+i+","+j+") out of bounds [1,"+rows+"]x[1,"+cols+"]");
+
+    int major = byRows ? i-1 : j-1;
+    int minor = byRows ? j-1 : i-1;
+    int k = java.util.Arrays.binarySearch(indices,offsets[major],offsets[major+1],minor);
+
+    return k >= 0 ? values[k] : NumberAlgebra.getCurrentAlgebra().zero();
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Conversions
+   * </span></h3>
+   */
+
+  /**
+   * Return a new dense <tt>Matrix</tt> with the entries of this one,
+   * its non-stored entries being the zero of the current number algebra.
+   */
+  public Matrix toMatrix ()
+  {
+    Matrix M = new Matrix(rows,cols);
+    double zero = NumberAlgebra.getCurrentAlgebra().zero();
+
+    if (zero != 0.0)
+      M.fill(zero);
+
+    double[] entries = M.entries();
+    int stride = M.stride();
+    int major = byRows ? rows : cols;
+
+    for (int i = 0; i < major; i++)
+      for (int k = offsets[i]; k < offsets[i+1]; k++)
+	if (byRows)
+	  entries[i*stride+indices[k]] = values[k];
+	else
+	  entries[indices[k]*stride+i] = values[k];
+
+    return M;
+  }
+
+  /**
+   * Return this matrix if it is stored by rows, or else a new copy of it
+   * stored by rows.
+   */
+  public SparseMatrix byRows ()
+  {
+    return byRows ? this : recompress();
+  }
+
+  /**
+   * Return this matrix if it is stored by columns, or else a new copy of
+   * it stored by columns.
+   */
+  public SparseMatrix byColumns ()
+  {
+    return byRows ? recompress() : this;
+  }
+
+  /**
+   * Return a new <tt>SparseMatrix</tt> equal to this one stored in the
+   * other form. This is a transposition of the compressed arrays by
+   * counting, which keeps indices sorted.
+   */
+  private SparseMatrix recompress ()
+  {
+    int major = byRows ? rows : cols;
+    int minor = byRows ? cols : rows;
+    int size = offsets[major];
+
+    int[] newOffsets = new int[minor+1];
+
+    for (int k = 0; k < size; k++)
+      newOffsets[indices[k]+1]++;
+
+    for (int j = 0; j < minor; j++)
+      newOffsets[j+1] += newOffsets[j];
+
+    int[] next = java.util.Arrays.copyOf(newOffsets,minor);
+    int[] newIndices = new int[size];
+    double[] newValues = new double[size];
+
+    for (int i = 0; i < major; i++)
+      for (int k = offsets[i]; k < offsets[i+1]; k++)
+	{
+	  int slot = next[indices[k]]++;
+	  newIndices[slot] = i;
+	  newValues[slot] = values[k];
+	}
+
+    return new SparseMatrix(rows,cols,!byRows,newOffsets,newIndices,newValues);
+  }
+
+  /**
+   * Return the transpose of this matrix. This takes no time: the
+   * transpose shares the arrays of this matrix, which it reads in the
+   * other form.
+   */
+  public SparseMatrix transpose ()
+  {
+    return new SparseMatrix(cols,rows,!byRows,offsets,indices,values);
+  }
+
+  /**
+   * <h3 align="center"><span style="font-family:arial,helvetica;">
+   * Operations
+   * </span></h3>
+   */
+
+  /**
+   * Return a new dense <tt>Matrix</tt> equal to this one times the dense
+   * <tt>Matrix</tt> <tt>M</tt> under the current number algebra. Each
+   * stored entry <tt>a<sub>ik</sub></tt> contributes <tt>a<sub>ik</sub>
+   * &otimes; M<sub>k</sub></tt> to row <tt>i</tt> of the result, so the
+   * work is proportional to the number of stored entries times the
+   * number of columns of <tt>M</tt>.
+   */
+  public Matrix times (Matrix M)
+  {
+    if (cols != M.rows())
+      throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
+				 " matrix by a "+M.rows()+"x"+M.cols()+" matrix");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    int n = M.cols();
+    // views are read through a contiguous copy
+    M = M.contiguous();
+    double[] b = M.entries();
+    int bStride = M.stride();
+
+    Matrix result = new Matrix(rows,n);
+    double[] c = result.entries();
+    int cStride = result.stride();
+
+    if (algebra.zero() != 0.0)
+      result.fill(algebra.zero());
+
+    if (byRows)
+      MatrixTasks.forRowBlocks(rows,n,
+			       (fromRow,toRow) ->
+			       {
+				 for (int i = fromRow; i < toRow; i++)
+				   for (int k = offsets[i]; k < offsets[i+1]; k++)
+				     EntryKernels.accumulate(kind,algebra,values[k],
+							     b,indices[k]*bStride,
+							     c,i*cStride,n);
+			       });
+    else
+      // N.B.: the entries of a column update different rows of the
+      // result, so this form is not split into blocks of rows
+      for (int j = 0; j < cols; j++)
+	for (int k = offsets[j]; k < offsets[j+1]; k++)
+	  EntryKernels.accumulate(kind,algebra,values[k],
+				  b,j*bStride,
+				  c,indices[k]*cStride,n);
+
+    return result;
+  }
+
+  /**
+   * Return a new dense <tt>Matrix</tt> equal to the dense <tt>Matrix</tt>
+   * <tt>M</tt> times the <tt>SparseMatrix</tt> <tt>S</tt> under the
+   * current number algebra. If <tt>S</tt> is stored by rows, each entry
+   * <tt>M<sub>ik</sub></tt> contributes <tt>M<sub>ik</sub> &otimes;
+   * S<sub>k</sub></tt> to row <tt>i</tt> of the result; if it is stored
+   * by columns, each result entry is the sum over the stored entries of
+   * a column. Either way, the work is proportional to the number of rows
+   * of <tt>M</tt> times the number of stored entries of <tt>S</tt>.
+   */
+  static public Matrix times (Matrix M, SparseMatrix S)
+  {
+    if (M.cols() != S.rows)
+      throw new RuntimeException("Cannot multiply a "+M.rows()+"x"+M.cols()+
+				 " matrix by a "+S.rows+"x"+S.cols+" matrix");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    int kind = NumberAlgebra.kindOf(algebra);
+    double zero = algebra.zero();
+    // views are read through a contiguous copy
+    M = M.contiguous();
+    double[] a = M.entries();
+    int aStride = M.stride();
+    int n = S.cols;
+    int[] offsets = S.offsets;
+    int[] indices = S.indices;
+    double[] values = S.values;
+
+    Matrix result = new Matrix(M.rows(),n);
+    double[] c = result.entries();
+    int cStride = result.stride();
+
+    if (zero != 0.0)
+      result.fill(zero);
+
+    MatrixTasks.forRowBlocks(M.rows(),n,
+			     (fromRow,toRow) ->
+			     {
+			       for (int i = fromRow; i < toRow; i++)
+				 if (S.byRows)
+				   for (int p = 0; p < S.rows; p++)
+				     {
+				       double x = a[i*aStride+p];
+				       if (x == zero)
+					 continue;
+				       for (int k = offsets[p]; k < offsets[p+1]; k++)
+					 c[i*cStride+indices[k]] = sumOfProduct(kind,algebra,
+										c[i*cStride+indices[k]],
+										x,values[k]);
+				     }
+				 else
+				   for (int j = 0; j < n; j++)
+				     {
+				       double sum = zero;
+				       for (int k = offsets[j]; k < offsets[j+1]; k++)
+					 sum = sumOfProduct(kind,algebra,sum,a[i*aStride+indices[k]],values[k]);
+				       c[i*cStride+j] = sum;
+				     }
+			     });
+
+    return result;
+  }
+
+  /**
+   * Return a new <tt>SparseMatrix</tt> equal to this one times the given
+   * one under the current number algebra, computed by Gustavson's
+   * row-wise algorithm with a sparse accumulator (see
+   * <tt>SparseProduct</tt>), by blocks of rows in parallel in <a
+   * href="Matrix.html#parallel">parallel execution mode</a>. The work
+   * is proportional to the number of elementary products, and nothing is
+   * ever densified but one row-sized accumulator per thread. The result
+   * is stored by rows unless both operands are stored by columns and the
+   * algebra's product commutes (<i>i.e.</i>, it is not a generic
+   * algebra), in which case it is computed as
+   * <tt>(S<sup>T</sup>this<sup>T</sup>)<sup>T</sup></tt> and stored by
+   * columns.
+   */
+  public SparseMatrix times (SparseMatrix S)
+  {
+    if (cols != S.rows)
+      throw new RuntimeException("Cannot multiply a "+rows+"x"+cols+
+				 " matrix by a "+S.rows+"x"+S.cols+" matrix");
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+
+    // the transposed product of the transposed factors is only equal to
+    // the product when the algebra's product commutes
+    if (!byRows && !S.byRows && NumberAlgebra.kindOf(algebra) != NumberAlgebra.GENERIC)
+      return SparseProduct.multiply(algebra,S.transpose(),transpose()).transpose();
+
+    return SparseProduct.multiply(algebra,byRows(),S.byRows());
+  }
+
+  /**
+   * Return <tt>sum &oplus; (x &otimes; y)</tt> in the given
+   * <tt>algebra</tt> of the given <tt>kind</tt>.
+   */
+  static final double sumOfProduct (int kind, NumberAlgebra algebra, double sum, double x, double y)
+  {
+    if (kind == NumberAlgebra.STANDARD)
+      return sum + x*y;
+
+    if (kind == NumberAlgebra.MAX_MIN)
+      return Math.max(sum,Math.min(x,y));
+
+    if (kind == NumberAlgebra.MIN_PLUS)
+      return Math.min(sum,x+y);
+
+    if (kind == NumberAlgebra.MAX_PLUS)
+      return Math.max(sum,x+y);
+
+    return algebra.sum(sum,algebra.product(x,y));
+  }
+
+  /**
+   * Return a new <tt>SparseMatrix</tt> equal to this one plus the given
+   * one under the current number algebra, stored in the form of this
+   * one. Stored entries are merged row by row (resp., column by column);
+   * sums equal to the algebra's zero are dropped.
+   */
+  public SparseMatrix plus (SparseMatrix S)
+  {
+    if (rows != S.rows || cols != S.cols)
+      throw new IncompatibleMatrixDimensionException(rows,cols,S.rows,S.cols);
+
+    S = byRows ? S.byRows() : S.byColumns();
+
+    NumberAlgebra algebra = NumberAlgebra.getCurrentAlgebra();
+    double zero = algebra.zero();
+    int major = byRows ? rows : cols;
+    int[] newOffsets = new int[major+1];
+    int[] newIndices = new int[nonZeros()+S.nonZeros()];
+    double[] newValues = new double[newIndices.length];
+    int size = 0;
+
+    for (int i = 0; i < major; i++)
+      {
+	int k = offsets[i], end = offsets[i+1];
+	int l = S.offsets[i], sEnd = S.offsets[i+1];
+
+	while (k < end || l < sEnd)
+	  {
+	    int index;
+	    double value;
+
+	    if (l == sEnd || (k < end && indices[k] < S.indices[l]))
+	      {
+		index = indices[k];
+		value = values[k++];
+	      }
+	    else if (k == end || S.indices[l] < indices[k])
+	      {
+		index = S.indices[l];
+		value = S.values[l++];
+	      }
+	    else
+	      {
+		index = indices[k];
+		value = algebra.sum(values[k++],S.values[l++]);
+	      }
+
+	    if (value != zero)
+	      {
+		newIndices[size] = index;
+		newValues[size++] = value;
+	      }
+	  }
+
+	newOffsets[i+1] = size;
+      }
+
+    return new SparseMatrix(rows,cols,byRows,newOffsets,
+			    java.util.Arrays.copyOf(newIndices,size),
+			    java.util.Arrays.copyOf(newValues,size));
+  }
+
+  /**
+   * Print this matrix as a list of its stored entries, with rows and
+   * columns counted from <tt>1</tt>.
+   */
+  public void show ()
+  {
+    int major = byRows ? rows : cols;
+
+    Matrix.say(rows+"x"+cols+" sparse matrix stored by "+(byRows ? "rows" : "columns")+
+	       " ("+nonZeros()+" entries):");
+
+    for (int i = 0; i < major; i++)
+      for (int k = offsets[i]; k < offsets[i+1]; k++)
+	Matrix.say("  ("+(byRows ? i+1 : indices[k]+1)+","+(byRows ? indices[k]+1 : i+1)+") = "+
+		   String.format(Matrix.floatFormatString(),values[k]).trim());
+  }
+
+  public String toString ()
+  {
+    return rows+"x"+cols+" sparse matrix ("+nonZeros()+" entries)";
+  }
+}
@@ -0,0 +1,220 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/SparseProduct.java
+// STARTED ON. . Wed Jan 29 14:05:33 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class computing the product of two sparse
+ * matrices stored by rows into a sparse matrix stored by rows, under any
+ * <tt>NumberAlgebra</tt>, without ever densifying them. It uses
+ * Gustavson's row-wise algorithm: row <tt>i</tt> of <tt>C = A&otimes;B</tt>
+ * is the sum over the stored entries <tt>a<sub>ik</sub></tt> of row
+ * <tt>i</tt> of <tt>A</tt> of <tt>a<sub>ik</sub> &otimes;
+ * B<sub>k</sub></tt>, gathered in a <i>sparse accumulator</i>: a dense
+ * array of values and a dense array of markers telling which of its
+ * columns the current row has touched, together with the list of these
+ * columns.<p/>
+ *
+ * The product is computed in two passes over the rows of <tt>A</tt>:
+ *
+ * <ol>
+ * <li>a <i>symbolic</i> pass counting the distinct columns of each row
+ * of <tt>C</tt>, from which the offsets of its rows (and hence the size
+ * of its arrays) are computed;</li>
+ * <li>a <i>numeric</i> pass computing the entries of each row of
+ * <tt>C</tt> directly into their final place, sorted by column.</li>
+ * </ol>
+ *
+ * Both passes run by blocks of rows in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>, each worker
+ * thread using its own accumulator; as the rows are independent,
+ * results do not depend on whether they run in parallel. Entries that
+ * sum up to the algebra's zero (<i>e.g.</i>, by cancellation under the
+ * <tt>StandardAlgebra</tt>) are dropped at the end.
+ *
+ * @see         SparseMatrix
+ */
+final class SparseProduct
+{
+  /**
+   * This is a per-thread sparse accumulator; its arrays only ever grow.
+   * A marker equal to the current stamp means that the row being
+   * computed has touched the corresponding column. Each row of each pass
+   * takes a new stamp, so markers only need resetting when stamps wrap
+   * around.
+   */
+  static final class Accumulator
+  {
+    int[] marker = new int[0];
+    double[] value = new double[0];
+    int stamp = 0;
+
+    void ensure (int size)
+    {
+      if (marker.length < size)
+	{
+	  marker = new int[size];
+	  value = new double[size];
+	  stamp = 0;
+	}
+    }
+
+    int nextStamp ()
+    {
+      if (stamp == Integer.MAX_VALUE)
+	{
+	  java.util.Arrays.fill(marker,0);
+	  stamp = 0;
+	}
+
+      return ++stamp;
+    }
+  }
+
+  static private final ThreadLocal<Accumulator> accumulator =
+    ThreadLocal.withInitial(Accumulator::new);
+
+  /**
+   * Return a new <tt>SparseMatrix</tt> stored by rows equal to
+   * <tt>A&otimes;B</tt> in the given <tt>algebra</tt>, where <tt>A</tt>
+   * and <tt>B</tt> are stored by rows.
+   */
+  static SparseMatrix multiply (NumberAlgebra algebra, SparseMatrix A, SparseMatrix B)
+  {
+    int rows = A.rows();
+    int cols = B.cols();
+    int[] aOffsets = A.offsets(), aIndices = A.indices();
+    double[] aValues = A.values();
+    int[] bOffsets = B.offsets(), bIndices = B.indices();
+    double[] bValues = B.values();
+
+    // the work is measured in elementary products, which is what decides
+    // whether (and how finely) to split it into blocks of rows
+    long work = 0;
+    for (int k = 0; k < aOffsets[rows]; k++)
+      work += bOffsets[aIndices[k]+1] - bOffsets[aIndices[k]];
+    int workPerRow = (int)Math.max(1,Math.min(Integer.MAX_VALUE,work/rows));
+
+    // symbolic pass: count the distinct columns of each row of C
+    int[] offsets = new int[rows+1];
+
+    MatrixTasks.forRowBlocks(rows,workPerRow,
+			     (fromRow,toRow) ->
+			     {
+			       Accumulator acc = accumulator.get();
+			       acc.ensure(cols);
+			       int[] marker = acc.marker;
+
+			       for (int i = fromRow; i < toRow; i++)
+				 {
+				   int stamp = acc.nextStamp();
+				   int count = 0;
+
+				   for (int p = aOffsets[i]; p < aOffsets[i+1]; p++)
+				     {
+				       int k = aIndices[p];
+				       for (int q = bOffsets[k]; q < bOffsets[k+1]; q++)
+					 if (marker[bIndices[q]] != stamp)
+					   {
+					     marker[bIndices[q]] = stamp;
+					     count++;
+					   }
+				     }
+
+				   offsets[i+1] = count;
+				 }
+			     });
+
+    for (int i = 0; i < rows; i++)
+      {
+	offsets[i+1] += offsets[i];
+	if (offsets[i+1] < 0)
+	  throw new RuntimeException("Sparse product too large: more than "+
+				     Integer.MAX_VALUE+" entries");
+      }
+
+    int[] indices = new int[offsets[rows]];
+    double[] values = new double[offsets[rows]];
+    int[] kept = new int[rows];
+    int kind = NumberAlgebra.kindOf(algebra);
+    double zero = algebra.zero();
+
+    // numeric pass: compute each row of C into its slot, sorted by
+    // column, noting how many of its entries are not zero
+    MatrixTasks.forRowBlocks(rows,workPerRow,
+			     (fromRow,toRow) ->
+			     {
+			       Accumulator acc = accumulator.get();
+			       acc.ensure(cols);
+			       int[] marker = acc.marker;
+			       double[] value = acc.value;
+
+			       for (int i = fromRow; i < toRow; i++)
+				 {
+				   int stamp = acc.nextStamp();
+				   int start = offsets[i];
+				   int end = start;
+
+				   for (int p = aOffsets[i]; p < aOffsets[i+1]; p++)
+				     {
+				       int k = aIndices[p];
+				       double a = aValues[p];
+
+				       for (int q = bOffsets[k]; q < bOffsets[k+1]; q++)
+					 {
+					   int j = bIndices[q];
+
+					   if (marker[j] != stamp)
+					     {
+					       marker[j] = stamp;
+					       indices[end++] = j;
+					       value[j] = EntryKernels.product(kind,algebra,a,bValues[q]);
+					     }
+					   else
+					     value[j] = SparseMatrix.sumOfProduct(kind,algebra,value[j],a,bValues[q]);
+					 }
+				     }
+
+				   java.util.Arrays.sort(indices,start,end);
+
+				   int last = start;
+				   for (int k = start; k < end; k++)
+				     {
+				       double v = value[indices[k]];
+				       if (v != zero)
+					 {
+					   indices[last] = indices[k];
+					   values[last++] = v;
+					 }
+				     }
+
+				   kept[i] = last-start;
+				 }
+			     });
+
+    // drop the slots of the entries that summed up to zero, if any
+    int size = 0;
+    for (int i = 0; i < rows; i++)
+      size += kept[i];
+
+    if (size == offsets[rows])
+      return new SparseMatrix(rows,cols,true,offsets,indices,values);
+
+    int[] newOffsets = new int[rows+1];
+    int[] newIndices = new int[size];
+    double[] newValues = new double[size];
+
+    for (int i = 0; i < rows; i++)
+      {
+	System.arraycopy(indices,offsets[i],newIndices,newOffsets[i],kept[i]);
+	System.arraycopy(values,offsets[i],newValues,newOffsets[i],kept[i]);
+	newOffsets[i+1] = newOffsets[i]+kept[i];
+      }
+
+    return new SparseMatrix(rows,cols,true,newOffsets,newIndices,newValues);
+  }
+}
@@ -0,0 +1,202 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/StorageChecks.java
+// STARTED ON. . Wed Apr 15 14:37:20 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+
+/**
+ * This is a non-public class checking the flat storage of
+ * <tt>Matrix</tt> against plain <tt>double[][]</tt> arrays on small
+ * random matrices: construction, access, copies, transposition, row and
+ * column swaps, and the stochasticity tests (public, and protected on
+ * flat or 2D arrays). It is run by <tt>MatrixChecks</tt>.
+ *
+ * @see         Matrix
+ * @see         MatrixChecks
+ */
+final class StorageChecks
+{
+  static void run (Random random)
+  {
+    checkStorage(random);
+    checkStochasticity(random);
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> array of random entries
+   * in <tt>[0,1)</tt>.
+   */
+  static private double[][] randomData (Random random, int rows, int cols)
+  {
+    double[][] data = new double[rows][cols];
+
+    for (int row = 0; row < rows; row++)
+      for (int col = 0; col < cols; col++)
+	data[row][col] = random.nextDouble();
+
+    return data;
+  }
+
+  /**
+   * Return <tt>true</tt> iff <tt>M</tt> has exactly the entries of
+   * <tt>data</tt>.
+   */
+  static private boolean holds (Matrix M, double[][] data)
+  {
+    if (M.rows() != data.length || M.cols() != data[0].length)
+      return false;
+
+    for (int row = 0; row < data.length; row++)
+      for (int col = 0; col < data[0].length; col++)
+	if (M.get(row+1,col+1) != data[row][col])
+	  return false;
+
+    return true;
+  }
+
+  static private void checkStorage (Random random)
+  {
+    for (int trial = 0; trial < 100; trial++)
+      {
+	int rows = 1+random.nextInt(12), cols = 1+random.nextInt(12);
+	double[][] data = randomData(random,rows,cols);
+	String what = rows+"x"+cols+" matrix";
+
+	Matrix M = new Matrix(data);
+	MatrixChecks.check(holds(M,data),what+" built from a 2D array");
+	MatrixChecks.check(Matrix.equalData(M.data(),data),what+": data()");
+
+	data[0][0] = -1.0;
+	MatrixChecks.check(M.get(1,1) != -1.0,what+" shares its 2D array");
+
+	double[] entries = new double[rows*cols];
+	for (int row = 0; row < rows; row++)
+	  for (int col = 0; col < cols; col++)
+	    entries[row*cols+col] = data[row][col];
+
+	Matrix shared = new Matrix(rows,cols,entries,true);
+	Matrix copied = new Matrix(rows,cols,entries,false);
+	MatrixChecks.check(holds(shared,data) && holds(copied,data),what+" built from a flat array");
+
+	shared.set(rows,cols,2.0);
+	MatrixChecks.check(entries[rows*cols-1] == 2.0,what+" does not share its flat array");
+	MatrixChecks.check(copied.get(rows,cols) == data[rows-1][cols-1],what+" shares a copied flat array");
+	data[rows-1][cols-1] = 2.0;
+
+	Matrix C = shared.copy();
+	C.set(1,1,3.0);
+	MatrixChecks.check(shared.get(1,1) == data[0][0] && C.get(1,1) == 3.0,what+": copy shares entries");
+
+	MatrixChecks.check(holds(new Matrix(1,1).setData(data),data),what+": setData");
+	MatrixChecks.check(holds(shared.transpose(),Matrix.dataTranspose(data)),what+": transpose");
+
+	int i = 1+random.nextInt(rows), k = 1+random.nextInt(rows);
+	double[] swapped = data[i-1];
+	data[i-1] = data[k-1];
+	data[k-1] = swapped;
+	shared.swapRows(i-1,k-1);
+	MatrixChecks.check(holds(shared,data),what+": swapRows("+i+","+k+")");
+
+	int j = 1+random.nextInt(cols), l = 1+random.nextInt(cols);
+	for (int row = 0; row < rows; row++)
+	  {
+	    double entry = data[row][j-1];
+	    data[row][j-1] = data[row][l-1];
+	    data[row][l-1] = entry;
+	  }
+	shared.swapCols(j-1,l-1);
+	MatrixChecks.check(holds(shared,data),what+": swapCols("+j+","+l+")");
+
+	double[][] square = randomData(random,rows,rows);
+	MatrixChecks.check(holds(new Matrix(square).i_transpose(),Matrix.dataTranspose(square)),
+			   rows+"x"+rows+" matrix: i_transpose");
+      }
+  }
+
+  /**
+   * Return a new <tt>rows</tt>-by-<tt>cols</tt> array each of whose rows
+   * is made of non-negative multiples of <tt>1/8</tt> adding up to
+   * <tt>1</tt> (exactly, as they are dyadic).
+   */
+  static private double[][] rowStochasticData (Random random, int rows, int cols)
+  {
+    double[][] data = new double[rows][cols];
+
+    for (int row = 0; row < rows; row++)
+      for (int unit = 0; unit < 8; unit++)
+	data[row][random.nextInt(cols)] += 0.125;
+
+    return data;
+  }
+
+  /**
+   * Return <tt>true</tt> iff all the entries of <tt>data</tt> are in
+   * <tt>[0.0,1.0]</tt> and those of each of its rows add up to
+   * <tt>1.0</tt>.
+   */
+  static private boolean isRowStochastic (double[][] data)
+  {
+    for (double[] row : data)
+      {
+	double sum = 0.0;
+	for (double entry : row)
+	  {
+	    if (entry < 0.0 || entry > 1.0)
+	      return false;
+	    sum += entry;
+	  }
+	if (sum != 1.0)
+	  return false;
+      }
+
+    return true;
+  }
+
+  static private void checkStochasticity (Random random)
+  {
+    for (int trial = 0; trial < 100; trial++)
+      {
+	int order = 1+random.nextInt(10);
+	double[][] stochastic = rowStochasticData(random,order,1+random.nextInt(10));
+	double[][] permutation = new double[order][order];
+	for (int row = 0; row < order; row++)
+	  permutation[row][(row+trial)%order] = 1.0;
+
+	for (double[][] data : new double[][][] { stochastic, Matrix.dataTranspose(stochastic),
+						  permutation, randomData(random,order,order) })
+	  {
+	    boolean byRows = isRowStochastic(data);
+	    boolean byCols = isRowStochastic(Matrix.dataTranspose(data));
+	    String what = data.length+"x"+data[0].length+" matrix";
+
+	    // the matrix itself, and a view of it at an offset within a
+	    // larger matrix, laid out by rows and by columns
+	    Matrix M = new Matrix(data);
+	    Matrix L = new Matrix(data.length+2,data[0].length+2).fill(0.5);
+	    Matrix V = L.submatrix(2,data.length+1,2,data[0].length+1).update(M);
+	    Matrix T = new Matrix(data[0].length+2,data.length+2).fill(0.5)
+			 .submatrix(2,data[0].length+1,2,data.length+1)
+			 .update(M.transpose()).transposed();
+
+	    for (Matrix A : new Matrix[] { M, V, T })
+	      {
+		MatrixChecks.check(A.isRowStochastic() == byRows,what+": isRowStochastic");
+		MatrixChecks.check(A.isColumnStochastic() == byCols,what+": isColumnStochastic");
+		MatrixChecks.check(A.isDoublyStochastic() == (byRows && byCols),
+				   what+": isDoublyStochastic");
+	      }
+
+	    MatrixChecks.check(M.isRowStochastic(data) == byRows,what+": isRowStochastic(double[][])");
+	    MatrixChecks.check(M.isColumnStochastic(data) == byCols,
+			       what+": isColumnStochastic(double[][])");
+	    MatrixChecks.check(M.isDoublyStochastic(data) == (byRows && byCols),
+			       what+": isDoublyStochastic(double[][])");
+	  }
+      }
+  }
+}
@@ -0,0 +1,227 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/StrassenProduct.java
+// STARTED ON. . Wed Jan 22 10:17:48 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class computing the product of two square
+ * matrices under the <tt>StandardAlgebra</tt> with the Winograd variant
+ * of Strassen's algorithm: 7 half-order products and 15 half-order
+ * additions or subtractions per level of recursion instead of 8
+ * products, hence <tt>O(n<sup>2.81</sup>)</tt> operations.<p/>
+ *
+ * The recursion stops at blocks of order at most
+ * <tt>Matrix.strassenCutoff()</tt>, which are multiplied by the blocked
+ * kernel of <tt>MatrixProduct</tt> (by tiles in parallel in <a
+ * href="Matrix.html#parallel">parallel execution mode</a>). A block of
+ * odd order is <i>peeled</i>: its leading even-order block is
+ * multiplied recursively, and its last row and column are fixed up by
+ * the blocked kernel.<p/>
+ *
+ * <b>N.B.:</b> This needs subtraction, so it is only ever used for the
+ * <tt>StandardAlgebra</tt>, which is a ring; algebras such as the
+ * <tt>MaxMinAlgebra</tt> (whose <tt>difference</tt> is undefined) always
+ * use the blocked kernel. Its results differ from those of the blocked
+ * kernel by rounding only, but they do not depend on whether it runs in
+ * parallel or not.<p/>
+ *
+ * Matrices are passed as for <tt>MatrixProduct</tt>, as an entries
+ * array, an offset, and a row stride (with a column stride of
+ * <tt>1</tt>). The temporaries of all levels of recursion are carved
+ * out of a single workspace allocated once per product.
+ *
+ * @see         Matrix
+ * @see         MatrixProduct
+ */
+final class StrassenProduct
+{
+  /**
+   * Return <tt>true</tt> iff a product of <tt>m</tt>-by-<tt>k</tt> by
+   * <tt>k</tt>-by-<tt>n</tt> matrices in the given <tt>algebra</tt>
+   * should be computed by this class.
+   */
+  static boolean applies (NumberAlgebra algebra, int m, int n, int k)
+  {
+    return m == n && n == k
+	&& n > Matrix.strassenCutoff()
+	&& NumberAlgebra.kindOf(algebra) == NumberAlgebra.STANDARD;
+  }
+
+  /**
+   * Compute <tt>C := A&times;B</tt> for <tt>n</tt>-by-<tt>n</tt>
+   * matrices in the given (standard) <tt>algebra</tt>. The former
+   * entries of <tt>C</tt> are ignored.
+   */
+  static void multiply (NumberAlgebra algebra, int n,
+			double[] a, int aOffset, int aRowStride,
+			double[] b, int bOffset, int bRowStride,
+			double[] c, int cOffset, int cRowStride)
+  {
+    if (NumberAlgebra.kindOf(algebra) != NumberAlgebra.STANDARD)
+      throw new RuntimeException("Strassen multiplication needs a ring, not the "+algebra);
+
+    int cutoff = Math.max(1,Matrix.strassenCutoff());
+    double[] ws = new double[(int)Math.min(Integer.MAX_VALUE,workspaceSize(n,cutoff))];
+
+    multiply(algebra,cutoff,n,a,aOffset,aRowStride,b,bOffset,bRowStride,c,cOffset,cRowStride,ws,0);
+  }
+
+  /**
+   * Return the number of workspace entries needed to multiply matrices
+   * of order <tt>n</tt> with the given <tt>cutoff</tt>: three
+   * half-order temporaries per level, the levels of a product's
+   * subproducts reusing the same space one after the other.
+   */
+  static long workspaceSize (int n, int cutoff)
+  {
+    long size = 0;
+
+    while (n > cutoff)
+      {
+	int h = n/2;
+	size += 3L*h*h;
+	n = h;
+      }
+
+    return size;
+  }
+
+  /**
+   * Compute <tt>C := A&times;B</tt> for <tt>n</tt>-by-<tt>n</tt>
+   * matrices using the workspace <tt>ws</tt> from <tt>wsOffset</tt> on.
+   */
+  static private void multiply (NumberAlgebra algebra, int cutoff, int n,
+				double[] a, int aOff, int aRs,
+				double[] b, int bOff, int bRs,
+				double[] c, int cOff, int cRs,
+				double[] ws, int wsOff)
+  {
+    if (n <= cutoff)
+      {
+	zero(n,n,c,cOff,cRs);
+	MatrixTasks.multiply(algebra,1.0,n,n,n,a,aOff,aRs,1,b,bOff,bRs,1,c,cOff,cRs);
+	return;
+      }
+
+    if ((n & 1) == 1)
+      {
+	peel(algebra,cutoff,n,a,aOff,aRs,b,bOff,bRs,c,cOff,cRs,ws,wsOff);
+	return;
+      }
+
+    int h = n/2;
+
+    // the quadrants of A, B, and C
+    int a11 = aOff, a12 = aOff+h, a21 = aOff+h*aRs, a22 = a21+h;
+    int b11 = bOff, b12 = bOff+h, b21 = bOff+h*bRs, b22 = b21+h;
+    int c11 = cOff, c12 = cOff+h, c21 = cOff+h*cRs, c22 = c21+h;
+
+    // three temporaries X, Y, and Z of order h
+    int x = wsOff, y = wsOff+h*h, z = wsOff+2*h*h, sub = wsOff+3*h*h;
+
+    // C21 := M7 = (A11-A21)(B22-B12)
+    combine(EntryKernels.DIFFERENCE,algebra,h,a,a11,aRs,a,a21,aRs,ws,x,h);
+    combine(EntryKernels.DIFFERENCE,algebra,h,b,b22,bRs,b,b12,bRs,ws,y,h);
+    multiply(algebra,cutoff,h,ws,x,h,ws,y,h,c,c21,cRs,ws,sub);
+
+    // C22 := M5 = S1.T1 where S1 = A21+A22 and T1 = B12-B11
+    combine(EntryKernels.SUM,algebra,h,a,a21,aRs,a,a22,aRs,ws,x,h);
+    combine(EntryKernels.DIFFERENCE,algebra,h,b,b12,bRs,b,b11,bRs,ws,y,h);
+    multiply(algebra,cutoff,h,ws,x,h,ws,y,h,c,c22,cRs,ws,sub);
+
+    // C12 := M6 = S2.T2 where S2 = S1-A11 and T2 = B22-T1
+    combine(EntryKernels.DIFFERENCE,algebra,h,ws,x,h,a,a11,aRs,ws,x,h);
+    combine(EntryKernels.DIFFERENCE,algebra,h,b,b22,bRs,ws,y,h,ws,y,h);
+    multiply(algebra,cutoff,h,ws,x,h,ws,y,h,c,c12,cRs,ws,sub);
+
+    // C11 := M3 = S4.B22 where S4 = A12-S2
+    combine(EntryKernels.DIFFERENCE,algebra,h,a,a12,aRs,ws,x,h,ws,x,h);
+    multiply(algebra,cutoff,h,ws,x,h,b,b22,bRs,c,c11,cRs,ws,sub);
+
+    // Z := M1 = A11.B11
+    multiply(algebra,cutoff,h,a,a11,aRs,b,b11,bRs,ws,z,h,ws,sub);
+
+    // C12 := U2 = M1+M6, C21 := U3 = U2+M7, C12 := U4 = U2+M5,
+    // C22 := U7 = U3+M5 (final), C12 := U5 = U4+M3 (final)
+    combine(EntryKernels.SUM,algebra,h,c,c12,cRs,ws,z,h,c,c12,cRs);
+    combine(EntryKernels.SUM,algebra,h,c,c21,cRs,c,c12,cRs,c,c21,cRs);
+    combine(EntryKernels.SUM,algebra,h,c,c12,cRs,c,c22,cRs,c,c12,cRs);
+    combine(EntryKernels.SUM,algebra,h,c,c22,cRs,c,c21,cRs,c,c22,cRs);
+    combine(EntryKernels.SUM,algebra,h,c,c12,cRs,c,c11,cRs,c,c12,cRs);
+
+    // C11 := M4 = A22.T4 where T4 = T2-B21, and C21 := U6 = U3-M4 (final)
+    combine(EntryKernels.DIFFERENCE,algebra,h,ws,y,h,b,b21,bRs,ws,y,h);
+    multiply(algebra,cutoff,h,a,a22,aRs,ws,y,h,c,c11,cRs,ws,sub);
+    combine(EntryKernels.DIFFERENCE,algebra,h,c,c21,cRs,c,c11,cRs,c,c21,cRs);
+
+    // C11 := U1 = M2+M1 where M2 = A12.B21 (final)
+    multiply(algebra,cutoff,h,a,a12,aRs,b,b21,bRs,c,c11,cRs,ws,sub);
+    combine(EntryKernels.SUM,algebra,h,c,c11,cRs,ws,z,h,c,c11,cRs);
+  }
+
+  /**
+   * Compute <tt>C := A&times;B</tt> for <tt>n</tt>-by-<tt>n</tt>
+   * matrices of odd order <tt>n</tt>: the leading block of order
+   * <tt>n-1</tt> of <tt>C</tt> is the (recursive) product of those of
+   * <tt>A</tt> and <tt>B</tt> plus the outer product of the last column
+   * of <tt>A</tt> by the last row of <tt>B</tt>; the last column and row
+   * of <tt>C</tt> are computed directly by the blocked kernel.
+   */
+  static private void peel (NumberAlgebra algebra, int cutoff, int n,
+			    double[] a, int aOff, int aRs,
+			    double[] b, int bOff, int bRs,
+			    double[] c, int cOff, int cRs,
+			    double[] ws, int wsOff)
+  {
+    int h = n-1;
+
+    multiply(algebra,cutoff,h,a,aOff,aRs,b,bOff,bRs,c,cOff,cRs,ws,wsOff);
+
+    MatrixTasks.multiply(algebra,1.0,h,h,1,
+			 a,aOff+h,aRs,1,
+			 b,bOff+h*bRs,bRs,1,
+			 c,cOff,cRs);
+
+    zero(h,1,c,cOff+h,cRs);
+    MatrixTasks.multiply(algebra,1.0,h,1,n,
+			 a,aOff,aRs,1,
+			 b,bOff+h,bRs,1,
+			 c,cOff+h,cRs);
+
+    zero(1,n,c,cOff+h*cRs,cRs);
+    MatrixTasks.multiply(algebra,1.0,1,n,n,
+			 a,aOff+h*aRs,aRs,1,
+			 b,bOff,bRs,1,
+			 c,cOff+h*cRs,cRs);
+  }
+
+  /**
+   * Set the <tt>n</tt>-by-<tt>n</tt> matrix <tt>C</tt> to the entry-wise
+   * <tt>SUM</tt> or <tt>DIFFERENCE</tt> (according to <tt>op</tt>) of
+   * the <tt>n</tt>-by-<tt>n</tt> matrices <tt>A</tt> and <tt>B</tt>;
+   * <tt>C</tt> may be <tt>A</tt> or <tt>B</tt>.
+   */
+  static private void combine (int op, NumberAlgebra algebra, int n,
+			       double[] a, int aOff, int aRs,
+			       double[] b, int bOff, int bRs,
+			       double[] c, int cOff, int cRs)
+  {
+    for (int row = 0; row < n; row++)
+      EntryKernels.combine(op,NumberAlgebra.STANDARD,algebra,
+			   a,aOff+row*aRs,b,bOff+row*bRs,c,cOff+row*cRs,n);
+  }
+
+  /**
+   * Set to <tt>0.0</tt> the entries of the <tt>m</tt>-by-<tt>n</tt>
+   * matrix <tt>C</tt>.
+   */
+  static private void zero (int m, int n, double[] c, int cOff, int cRs)
+  {
+    for (int row = 0; row < m; row++)
+      java.util.Arrays.fill(c,cOff+row*cRs,cOff+row*cRs+n,0.0);
+  }
+}
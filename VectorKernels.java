@@ -0,0 +1,509 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/VectorKernels.java
+// STARTED ON. . Wed Jan 15 14:22:51 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This is a non-public class gathering SIMD kernels written with the
+ * <tt>jdk.incubator.vector</tt> API for the entry-wise operations and
+ * the product micro-kernel of <tt>Matrix</tt> under the
+ * <tt>StandardAlgebra</tt> (lane-wise <tt>+</tt>, <tt>-</tt>,
+ * <tt>&times;</tt>), the <tt>MaxMinAlgebra</tt> (lane-wise
+ * <tt>max</tt> and <tt>min</tt>), and the tropical
+ * <tt>MinPlusAlgebra</tt> and <tt>MaxPlusAlgebra</tt> (lane-wise
+ * <tt>min</tt> or <tt>max</tt>, and <tt>+</tt>), as well as the
+ * conversions and mixed-precision kernels of <tt>FloatMatrix</tt> and
+ * <tt>QuantizedMatrix</tt>.<p/>
+ *
+ * <b>N.B.:</b> This class must only be used when <a
+ * href="Vectorization.html"><tt>Vectorization.ENABLED</tt></a> is
+ * <tt>true</tt>; otherwise, loading it fails for lack of the incubator
+ * module. Its kernels compute exactly the same values as the scalar
+ * loops they replace: in particular, products and sums are not fused
+ * into <tt>fma</tt>s so that results do not depend on whether the
+ * module is present.
+ *
+ * @see         Vectorization
+ * @see         MatrixProduct
+ * @see         Matrix
+ */
+final class VectorKernels
+{
+  /**
+   * The preferred species of <tt>double</tt> vectors of the platform
+   * (<i>e.g.</i>, 4 lanes with AVX2, 8 lanes with AVX-512).
+   */
+  static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * The number of <tt>double</tt> lanes of <tt>SPECIES</tt>.
+   */
+  static final int LANES = SPECIES.length();
+
+  /**
+   * The preferred species of <tt>float</tt> vectors of the platform,
+   * which has twice as many lanes as <tt>SPECIES</tt>.
+   */
+  static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+  /**
+   * The number of <tt>float</tt> lanes of <tt>FLOAT_SPECIES</tt>.
+   */
+  static final int FLOAT_LANES = FLOAT_SPECIES.length();
+
+  /**
+   * The species of <tt>float</tt> vectors of half the size of
+   * <tt>SPECIES</tt>, hence with <tt>LANES</tt> lanes: it is the species
+   * that converts to and from <tt>SPECIES</tt>.
+   */
+  static final VectorSpecies<Float> HALF_FLOAT_SPECIES =
+    VectorSpecies.of(float.class,VectorShape.forBitSize(SPECIES.vectorBitSize()/2));
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>a[aOffset+i]+b[bOffset+i]</tt> for
+   * <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void add (double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      DoubleVector.fromArray(SPECIES,a,aOffset+i)
+	.add(DoubleVector.fromArray(SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = a[aOffset+i] + b[bOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>a[aOffset+i]-b[bOffset+i]</tt> for
+   * <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void subtract (double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      DoubleVector.fromArray(SPECIES,a,aOffset+i)
+	.sub(DoubleVector.fromArray(SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = a[aOffset+i] - b[bOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>max(a[aOffset+i],b[bOffset+i])</tt>
+   * for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void max (double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      DoubleVector.fromArray(SPECIES,a,aOffset+i)
+	.max(DoubleVector.fromArray(SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = Math.max(a[aOffset+i],b[bOffset+i]);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>min(a[aOffset+i],b[bOffset+i])</tt>
+   * for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void min (double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      DoubleVector.fromArray(SPECIES,a,aOffset+i)
+	.min(DoubleVector.fromArray(SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = Math.min(a[aOffset+i],b[bOffset+i]);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>-a[aOffset+i]</tt> for <tt>i</tt> in
+   * <tt>[0,length)</tt>.
+   */
+  static void negate (double[] a, int aOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      DoubleVector.fromArray(SPECIES,a,aOffset+i)
+	.neg()
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = -a[aOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>factor*a[aOffset+i]</tt> for
+   * <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void scale (double factor, double[] a, int aOffset, double[] c, int cOffset, int length)
+  {
+    DoubleVector f = DoubleVector.broadcast(SPECIES,factor);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      f.mul(DoubleVector.fromArray(SPECIES,a,aOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = factor*a[aOffset+i];
+  }
+
+  /**
+   * Return <tt>true</tt> iff none of <tt>a[offset+i]</tt> for <tt>i</tt>
+   * in <tt>[0,length)</tt> is less than <tt>0.0</tt> or greater than
+   * <tt>1.0</tt> (so that <tt>NaN</tt>s pass, as in the scalar test).
+   */
+  static boolean inUnitInterval (double[] a, int offset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      {
+	DoubleVector v = DoubleVector.fromArray(SPECIES,a,offset+i);
+	// N.B.: NaN's fail both comparisons, hence are not outside, exactly
+	// as in the scalar test
+	VectorMask<Double> outside = v.compare(VectorOperators.LT,0.0)
+				      .or(v.compare(VectorOperators.GT,1.0));
+	if (outside.anyTrue())
+	  return false;
+      }
+    for (; i < length; i++)
+      if (a[offset+i] < 0.0 || a[offset+i] > 1.0)
+	return false;
+    return true;
+  }
+
+  /**
+   * Return the maximum of <tt>initial</tt> and all the <tt>a[offset+i]</tt>
+   * for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static double maxOf (double initial, double[] a, int offset, int length)
+  {
+    DoubleVector acc = DoubleVector.broadcast(SPECIES,initial);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      acc = acc.max(DoubleVector.fromArray(SPECIES,a,offset+i));
+    double result = acc.reduceLanes(VectorOperators.MAX);
+    for (; i < length; i++)
+      result = Math.max(result,a[offset+i]);
+    return result;
+  }
+
+  /**
+   * This is the SIMD version of the product micro-kernel of
+   * <tt>MatrixProduct</tt> for the <tt>StandardAlgebra</tt>: it computes
+   * a <tt>4</tt>-by-<tt>2*LANES</tt> tile of <tt>C</tt> in 8 vector
+   * accumulators from a sliver of packed <tt>A</tt> (4 rows) and a sliver
+   * of packed <tt>B</tt> (<tt>2*LANES</tt> columns) of depth <tt>kc</tt>.
+   */
+  static void standardKernel (int kc, double[] pa, int a, double[] pb, int b,
+			      double[] c, int cTile, int cRowStride)
+  {
+    DoubleVector c00 = DoubleVector.zero(SPECIES), c01 = c00;
+    DoubleVector c10 = c00, c11 = c00, c20 = c00, c21 = c00, c30 = c00, c31 = c00;
+
+    for (int p = 0; p < kc; p++, a += 4, b += 2*LANES)
+      {
+	DoubleVector b0 = DoubleVector.fromArray(SPECIES,pb,b);
+	DoubleVector b1 = DoubleVector.fromArray(SPECIES,pb,b+LANES);
+	double a0 = pa[a], a1 = pa[a+1], a2 = pa[a+2], a3 = pa[a+3];
+
+	c00 = c00.add(b0.mul(a0)); c01 = c01.add(b1.mul(a0));
+	c10 = c10.add(b0.mul(a1)); c11 = c11.add(b1.mul(a1));
+	c20 = c20.add(b0.mul(a2)); c21 = c21.add(b1.mul(a2));
+	c30 = c30.add(b0.mul(a3)); c31 = c31.add(b1.mul(a3));
+      }
+
+    addInto(c,cTile,c00,c01);
+    addInto(c,cTile+cRowStride,c10,c11);
+    addInto(c,cTile+2*cRowStride,c20,c21);
+    addInto(c,cTile+3*cRowStride,c30,c31);
+  }
+
+  /**
+   * Add the lanes of <tt>v0</tt> and <tt>v1</tt> to <tt>2*LANES</tt>
+   * consecutive entries of <tt>c</tt> starting at <tt>index</tt>.
+   */
+  static private void addInto (double[] c, int index, DoubleVector v0, DoubleVector v1)
+  {
+    DoubleVector.fromArray(SPECIES,c,index).add(v0).intoArray(c,index);
+    DoubleVector.fromArray(SPECIES,c,index+LANES).add(v1).intoArray(c,index+LANES);
+  }
+
+  /**
+   * This is the SIMD version of the product micro-kernel of
+   * <tt>MatrixProduct</tt> for the <tt>MaxMinAlgebra</tt>: like
+   * <tt>standardKernel</tt> but combining entries with lane-wise
+   * <tt>min</tt> and accumulating them with lane-wise <tt>max</tt>
+   * (which, being exact, commute with the scalar order of evaluation).
+   */
+  static void maxMinKernel (int kc, double[] pa, int a, double[] pb, int b,
+			    double[] c, int cTile, int cRowStride)
+  {
+    DoubleVector c00 = DoubleVector.broadcast(SPECIES,Double.NEGATIVE_INFINITY), c01 = c00;
+    DoubleVector c10 = c00, c11 = c00, c20 = c00, c21 = c00, c30 = c00, c31 = c00;
+
+    for (int p = 0; p < kc; p++, a += 4, b += 2*LANES)
+      {
+	DoubleVector b0 = DoubleVector.fromArray(SPECIES,pb,b);
+	DoubleVector b1 = DoubleVector.fromArray(SPECIES,pb,b+LANES);
+	double a0 = pa[a], a1 = pa[a+1], a2 = pa[a+2], a3 = pa[a+3];
+
+	c00 = c00.max(b0.min(a0)); c01 = c01.max(b1.min(a0));
+	c10 = c10.max(b0.min(a1)); c11 = c11.max(b1.min(a1));
+	c20 = c20.max(b0.min(a2)); c21 = c21.max(b1.min(a2));
+	c30 = c30.max(b0.min(a3)); c31 = c31.max(b1.min(a3));
+      }
+
+    maxInto(c,cTile,c00,c01);
+    maxInto(c,cTile+cRowStride,c10,c11);
+    maxInto(c,cTile+2*cRowStride,c20,c21);
+    maxInto(c,cTile+3*cRowStride,c30,c31);
+  }
+
+  /**
+   * Combine with <tt>max</tt> the lanes of <tt>v0</tt> and <tt>v1</tt>
+   * into <tt>2*LANES</tt> consecutive entries of <tt>c</tt> starting at
+   * <tt>index</tt>.
+   */
+  static private void maxInto (double[] c, int index, DoubleVector v0, DoubleVector v1)
+  {
+    DoubleVector.fromArray(SPECIES,c,index).max(v0).intoArray(c,index);
+    DoubleVector.fromArray(SPECIES,c,index+LANES).max(v1).intoArray(c,index+LANES);
+  }
+
+  /**
+   * This is the SIMD version of the product micro-kernel of
+   * <tt>MatrixProduct</tt> for the <tt>MinPlusAlgebra</tt>: like
+   * <tt>standardKernel</tt> but accumulating the lane-wise sums of
+   * entries with lane-wise <tt>min</tt>.
+   */
+  static void minPlusKernel (int kc, double[] pa, int a, double[] pb, int b,
+			     double[] c, int cTile, int cRowStride)
+  {
+    DoubleVector c00 = DoubleVector.broadcast(SPECIES,Double.POSITIVE_INFINITY), c01 = c00;
+    DoubleVector c10 = c00, c11 = c00, c20 = c00, c21 = c00, c30 = c00, c31 = c00;
+
+    for (int p = 0; p < kc; p++, a += 4, b += 2*LANES)
+      {
+	DoubleVector b0 = DoubleVector.fromArray(SPECIES,pb,b);
+	DoubleVector b1 = DoubleVector.fromArray(SPECIES,pb,b+LANES);
+	double a0 = pa[a], a1 = pa[a+1], a2 = pa[a+2], a3 = pa[a+3];
+
+	c00 = c00.min(b0.add(a0)); c01 = c01.min(b1.add(a0));
+	c10 = c10.min(b0.add(a1)); c11 = c11.min(b1.add(a1));
+	c20 = c20.min(b0.add(a2)); c21 = c21.min(b1.add(a2));
+	c30 = c30.min(b0.add(a3)); c31 = c31.min(b1.add(a3));
+      }
+
+    minInto(c,cTile,c00,c01);
+    minInto(c,cTile+cRowStride,c10,c11);
+    minInto(c,cTile+2*cRowStride,c20,c21);
+    minInto(c,cTile+3*cRowStride,c30,c31);
+  }
+
+  /**
+   * Combine with <tt>min</tt> the lanes of <tt>v0</tt> and <tt>v1</tt>
+   * into <tt>2*LANES</tt> consecutive entries of <tt>c</tt> starting at
+   * <tt>index</tt>.
+   */
+  static private void minInto (double[] c, int index, DoubleVector v0, DoubleVector v1)
+  {
+    DoubleVector.fromArray(SPECIES,c,index).min(v0).intoArray(c,index);
+    DoubleVector.fromArray(SPECIES,c,index+LANES).min(v1).intoArray(c,index+LANES);
+  }
+
+  /**
+   * This is the SIMD version of the product micro-kernel of
+   * <tt>MatrixProduct</tt> for the <tt>MaxPlusAlgebra</tt>: like
+   * <tt>minPlusKernel</tt> but accumulating with lane-wise
+   * <tt>max</tt>.
+   */
+  static void maxPlusKernel (int kc, double[] pa, int a, double[] pb, int b,
+			     double[] c, int cTile, int cRowStride)
+  {
+    DoubleVector c00 = DoubleVector.broadcast(SPECIES,Double.NEGATIVE_INFINITY), c01 = c00;
+    DoubleVector c10 = c00, c11 = c00, c20 = c00, c21 = c00, c30 = c00, c31 = c00;
+
+    for (int p = 0; p < kc; p++, a += 4, b += 2*LANES)
+      {
+	DoubleVector b0 = DoubleVector.fromArray(SPECIES,pb,b);
+	DoubleVector b1 = DoubleVector.fromArray(SPECIES,pb,b+LANES);
+	double a0 = pa[a], a1 = pa[a+1], a2 = pa[a+2], a3 = pa[a+3];
+
+	c00 = c00.max(b0.add(a0)); c01 = c01.max(b1.add(a0));
+	c10 = c10.max(b0.add(a1)); c11 = c11.max(b1.add(a1));
+	c20 = c20.max(b0.add(a2)); c21 = c21.max(b1.add(a2));
+	c30 = c30.max(b0.add(a3)); c31 = c31.max(b1.add(a3));
+      }
+
+    maxInto(c,cTile,c00,c01);
+    maxInto(c,cTile+cRowStride,c10,c11);
+    maxInto(c,cTile+2*cRowStride,c20,c21);
+    maxInto(c,cTile+3*cRowStride,c30,c31);
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>a[aOffset+i]+b[bOffset+i]</tt> for
+   * <tt>i</tt> in <tt>[0,length)</tt>, on <tt>float</tt>s.
+   */
+  static void add (float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES)
+      FloatVector.fromArray(FLOAT_SPECIES,a,aOffset+i)
+	.add(FloatVector.fromArray(FLOAT_SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = a[aOffset+i] + b[bOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>a[aOffset+i]-b[bOffset+i]</tt> for
+   * <tt>i</tt> in <tt>[0,length)</tt>, on <tt>float</tt>s.
+   */
+  static void subtract (float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES)
+      FloatVector.fromArray(FLOAT_SPECIES,a,aOffset+i)
+	.sub(FloatVector.fromArray(FLOAT_SPECIES,b,bOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = a[aOffset+i] - b[bOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the <tt>double</tt> value of
+   * <tt>a[aOffset+i]</tt> for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void widen (float[] a, int aOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      ((DoubleVector)FloatVector.fromArray(HALF_FLOAT_SPECIES,a,aOffset+i)
+       .convertShape(VectorOperators.F2D,SPECIES,0))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = a[aOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to the nearest <tt>float</tt> to
+   * <tt>a[aOffset+i]</tt> for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void narrow (double[] a, int aOffset, float[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      ((FloatVector)DoubleVector.fromArray(SPECIES,a,aOffset+i)
+       .convertShape(VectorOperators.D2F,HALF_FLOAT_SPECIES,0))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = (float)a[aOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>c[cOffset+i]+a*b[bOffset+i]</tt>,
+   * computed in <tt>double</tt>, for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void accumulate (double a, float[] b, int bOffset, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+      ((DoubleVector)FloatVector.fromArray(HALF_FLOAT_SPECIES,b,bOffset+i)
+       .convertShape(VectorOperators.F2D,SPECIES,0))
+	.mul(a)
+	.add(DoubleVector.fromArray(SPECIES,c,cOffset+i))
+	.intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] += a*b[bOffset+i];
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>scale</tt> times the unsigned value
+   * of <tt>a[aOffset+i]</tt> for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void dequantize (short[] a, int aOffset, double scale, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    if (Quantized.VECTORIZED)
+      for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+	Quantized.unsigned(a,aOffset+i).mul(scale).intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] = (a[aOffset+i] & 0xFFFF)*scale;
+  }
+
+  /**
+   * Set <tt>c[cOffset+i]</tt> to <tt>c[cOffset+i]+a*v</tt>, where
+   * <tt>v</tt> is <tt>scale</tt> times the unsigned value of
+   * <tt>b[bOffset+i]</tt>, for <tt>i</tt> in <tt>[0,length)</tt>.
+   */
+  static void accumulate (double a, short[] b, int bOffset, double scale, double[] c, int cOffset, int length)
+  {
+    int i = 0;
+    if (Quantized.VECTORIZED)
+      for (int bound = SPECIES.loopBound(length); i < bound; i += LANES)
+	Quantized.unsigned(b,bOffset+i).mul(scale).mul(a)
+	  .add(DoubleVector.fromArray(SPECIES,c,cOffset+i))
+	  .intoArray(c,cOffset+i);
+    for (; i < length; i++)
+      c[cOffset+i] += a*((b[bOffset+i] & 0xFFFF)*scale);
+  }
+
+  /**
+   * This holds the species of the <tt>QuantizedMatrix</tt> kernels, so
+   * that they are only initialized when these kernels are first used and
+   * never get in the way of the others. Reading <tt>LANES</tt>
+   * <tt>short</tt>s at once takes a quarter of the bit size of
+   * <tt>SPECIES</tt>, which is not a legal vector shape below 64 bits
+   * (<i>e.g.</i>, on 128-bit SSE or NEON platforms); the quantized
+   * kernels then use scalar loops only.
+   */
+  static final class Quantized
+  {
+    /**
+     * Whether the quantized kernels use SIMD loops.
+     */
+    static final boolean VECTORIZED = SPECIES.vectorBitSize()/4 >= 64;
+
+    /**
+     * The species of <tt>short</tt> vectors with <tt>LANES</tt> lanes,
+     * or <tt>null</tt> if not <tt>VECTORIZED</tt>.
+     */
+    static final VectorSpecies<Short> QUARTER_SHORT_SPECIES = VECTORIZED
+      ? VectorSpecies.of(short.class,VectorShape.forBitSize(SPECIES.vectorBitSize()/4))
+      : null;
+
+    /**
+     * The species of <tt>int</tt> vectors with <tt>LANES</tt> lanes, or
+     * <tt>null</tt> if not <tt>VECTORIZED</tt>.
+     */
+    static final VectorSpecies<Integer> HALF_INT_SPECIES = VECTORIZED
+      ? VectorSpecies.of(int.class,VectorShape.forBitSize(SPECIES.vectorBitSize()/2))
+      : null;
+
+    /**
+     * Return the vector of the unsigned values of the <tt>LANES</tt>
+     * <tt>short</tt>s of <tt>a</tt> from <tt>offset</tt> on.
+     */
+    static DoubleVector unsigned (short[] a, int offset)
+    {
+      return (DoubleVector)ShortVector.fromArray(QUARTER_SHORT_SPECIES,a,offset)
+	.convertShape(VectorOperators.ZERO_EXTEND_S2I,HALF_INT_SPECIES,0)
+	.convertShape(VectorOperators.I2D,SPECIES,0);
+    }
+  }
+}
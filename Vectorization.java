@@ -0,0 +1,53 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/Vectorization.java
+// STARTED ON. . Wed Jan 15 14:05:17 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+/**
+ * This is a non-public class deciding once and for all whether the SIMD
+ * kernels of <tt>VectorKernels</tt> may be used. They are used iff the
+ * <tt>jdk.incubator.vector</tt> module is present in the boot layer
+ * (<i>e.g.</i>, when running with <tt>--add-modules
+ * jdk.incubator.vector</tt>), the platform has at least two
+ * <tt>double</tt> lanes, and the system property
+ * <tt>hlt.math.matrix.vectorize</tt> is not set to <tt>false</tt>.
+ * Otherwise, all <tt>Matrix</tt> operations fall back to scalar loops
+ * and <tt>VectorKernels</tt> is never loaded.
+ *
+ * @see         VectorKernels
+ */
+final class Vectorization
+{
+  /**
+   * Whether the SIMD kernels of <tt>VectorKernels</tt> may be used.
+   */
+  static final boolean ENABLED = isEnabled();
+
+  /**
+   * The number of <tt>double</tt> lanes of the SIMD kernels, or
+   * <tt>1</tt> if they are not used.
+   */
+  static final int LANES = ENABLED ? VectorKernels.LANES : 1;
+
+  static private boolean isEnabled ()
+  {
+    if (!Boolean.parseBoolean(System.getProperty("hlt.math.matrix.vectorize","true")))
+      return false;
+
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+      return false;
+
+    try
+      {
+	return VectorKernels.LANES >= 2;
+      }
+    catch (LinkageError e)
+      {
+	return false;
+      }
+  }
+}
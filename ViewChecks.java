@@ -0,0 +1,323 @@
+// FILE. . . . . d:/hak/hlt/src/hlt/math/matrix/sources/ViewChecks.java
+// STARTED ON. . Mon Apr 20 09:31:17 2020
+
+package hlt.math.matrix;
+/**
+ * <a href="000StartHere.html"><tt>package hlt.math.matrix</tt>
+ * documentation listing</a>
+ */
+
+import java.util.Random;
+
+/**
+ * This is a non-public class checking the <a
+ * href="Matrix.html#views">views</a> of <tt>Matrix</tt>: that random
+ * nestings of blocks, strided slices, rows, columns and transposed
+ * views read exactly the entries they should of the matrix they view,
+ * that writing through a view (entry by entry or by in-place
+ * operations) modifies those entries and no other, that operations on
+ * views compute what they do on copies, and that <tt>overlaps</tt>
+ * never misses shared entries (and is exact for blocks). It is run by
+ * <tt>MatrixChecks</tt>.
+ *
+ * @see         Matrix
+ * @see         MatrixChecks
+ */
+final class ViewChecks
+{
+  static void run (Random random)
+  {
+    checkViews(random);
+    checkOverlaps(random);
+  }
+
+  /**
+   * A view together with the row and column (counted from <tt>1</tt>)
+   * of the viewed matrix of each of its entries.
+   */
+  static private final class View
+  {
+    final Matrix M;
+    final int[][] rows;
+    final int[][] cols;
+
+    View (Matrix M, int[][] rows, int[][] cols)
+    {
+      this.M = M;
+      this.rows = rows;
+      this.cols = cols;
+    }
+
+    /**
+     * Return a new <tt>View</tt> of the whole of <tt>M</tt>.
+     */
+    static View of (Matrix M)
+    {
+      int[][] rows = new int[M.rows()][M.cols()], cols = new int[M.rows()][M.cols()];
+
+      for (int i = 0; i < M.rows(); i++)
+	for (int j = 0; j < M.cols(); j++)
+	  {
+	    rows[i][j] = i+1;
+	    cols[i][j] = j+1;
+	  }
+
+      return new View(M,rows,cols);
+    }
+
+    /**
+     * Return the view of this one by the given slice, both as a
+     * <tt>Matrix</tt> and by its reference positions.
+     */
+    View slice (int firstRow, int lastRow, int rowStep, int firstCol, int lastCol, int colStep)
+    {
+      int m = (lastRow-firstRow)/rowStep+1, n = (lastCol-firstCol)/colStep+1;
+      int[][] r = new int[m][n], c = new int[m][n];
+
+      for (int i = 0; i < m; i++)
+	for (int j = 0; j < n; j++)
+	  {
+	    r[i][j] = rows[firstRow-1+i*rowStep][firstCol-1+j*colStep];
+	    c[i][j] = cols[firstRow-1+i*rowStep][firstCol-1+j*colStep];
+	  }
+
+      return new View(M.slice(firstRow,lastRow,rowStep,firstCol,lastCol,colStep),r,c);
+    }
+
+    View transposed ()
+    {
+      int m = M.cols(), n = M.rows();
+      int[][] r = new int[m][n], c = new int[m][n];
+
+      for (int i = 0; i < m; i++)
+	for (int j = 0; j < n; j++)
+	  {
+	    r[i][j] = rows[j][i];
+	    c[i][j] = cols[j][i];
+	  }
+
+      return new View(M.transposed(),r,c);
+    }
+
+    /**
+     * Return a random view of this one.
+     */
+    View random (Random random)
+    {
+      int m = M.rows(), n = M.cols();
+
+      switch (random.nextInt(5))
+	{
+	case 0:
+	  return transposed();
+	case 1:
+	  {
+	    int i = 1+random.nextInt(m);
+	    View V = slice(i,i,1,1,n,1);
+	    MatrixChecks.check(V.M.equals(M.row(i)),"row view");
+	    return V;
+	  }
+	case 2:
+	  {
+	    int j = 1+random.nextInt(n);
+	    View V = slice(1,m,1,j,j,1);
+	    MatrixChecks.check(V.M.equals(M.column(j)),"column view");
+	    return V;
+	  }
+	default:
+	  {
+	    int firstRow = 1+random.nextInt(m), lastRow = firstRow+random.nextInt(m-firstRow+1);
+	    int firstCol = 1+random.nextInt(n), lastCol = firstCol+random.nextInt(n-firstCol+1);
+	    int rowStep = 1+random.nextInt(3), colStep = 1+random.nextInt(3);
+	    View V = slice(firstRow,lastRow,rowStep,firstCol,lastCol,colStep);
+	    if (rowStep == 1 && colStep == 1)
+	      MatrixChecks.check(V.M.equals(M.submatrix(firstRow,lastRow,firstCol,lastCol)),"block view");
+	    return V;
+	  }
+	}
+    }
+
+    /**
+     * Return <tt>true</tt> iff this view reads the entries of <tt>B</tt>
+     * at its reference positions.
+     */
+    boolean reads (Matrix B)
+    {
+      for (int i = 0; i < M.rows(); i++)
+	for (int j = 0; j < M.cols(); j++)
+	  if (M.get(i+1,j+1) != B.get(rows[i][j],cols[i][j]))
+	    return false;
+
+      return true;
+    }
+
+    /**
+     * Return a new array of the reference positions of this view, as
+     * booleans indexed like the entries of an <tt>m</tt>-by-<tt>n</tt>
+     * matrix.
+     */
+    boolean[][] positions (int m, int n)
+    {
+      boolean[][] positions = new boolean[m][n];
+
+      for (int i = 0; i < M.rows(); i++)
+	for (int j = 0; j < M.cols(); j++)
+	  positions[rows[i][j]-1][cols[i][j]-1] = true;
+
+      return positions;
+    }
+  }
+
+  /**
+   * Return <tt>true</tt> iff the entries of <tt>B</tt> are the
+   * corresponding ones of <tt>expected</tt> where <tt>positions</tt> is
+   * true, and those of <tt>before</tt> elsewhere.
+   */
+  static private boolean changed (Matrix B, Matrix before, Matrix expected, boolean[][] positions)
+  {
+    for (int i = 1; i <= B.rows(); i++)
+      for (int j = 1; j <= B.cols(); j++)
+	if (B.get(i,j) != (positions[i-1][j-1] ? expected : before).get(i,j))
+	  return false;
+
+    return true;
+  }
+
+  /**
+   * Return a new matrix equal to <tt>B</tt>, with the entries of
+   * <tt>V</tt> written at its reference positions.
+   */
+  static private Matrix written (Matrix B, View view, Matrix V)
+  {
+    Matrix result = B.copy();
+
+    for (int i = 0; i < V.rows(); i++)
+      for (int j = 0; j < V.cols(); j++)
+	result.set(view.rows[i][j],view.cols[i][j],V.get(i+1,j+1));
+
+    return result;
+  }
+
+  static private void checkViews (Random random)
+  {
+    for (int trial = 0; trial < 300; trial++)
+      {
+	int m = 1+random.nextInt(40), n = 1+random.nextInt(40);
+	Matrix B = MatrixChecks.randomMatrix(random,m,n);
+	View view = View.of(B);
+
+	for (int depth = random.nextInt(5); depth >= 0; depth--)
+	  view = view.random(random);
+
+	Matrix V = view.M, C = V.copy();
+	boolean[][] positions = view.positions(m,n);
+	String what = V.rows()+"x"+V.cols()+" view of a "+m+"x"+n+" matrix";
+
+	MatrixChecks.check(V.isView() && view.reads(B),what);
+	MatrixChecks.check(!C.isView() && C.equals(V) && V.contiguous().equals(V)
+			   && (V.contiguous() == V) == (V.offset() == 0 && V.colStride() == 1),
+			   what+": copy");
+	MatrixChecks.check(V.transposed().transposed().equals(V) && V.transpose().equals(C.transpose()),
+			   what+": transpose");
+
+	// operations read views as they read copies
+	Matrix D = MatrixChecks.randomMatrix(random,V.rows(),V.cols());
+	MatrixChecks.check(V.plus(D).equals(C.plus(D)) && D.minus(V).equals(D.minus(C))
+			   && V.scale(3.0).equals(C.scale(3.0)) && V.minus().equals(C.minus()),
+			   what+": entry-wise operations");
+	MatrixChecks.check(MatrixChecks.distance(V.times(V.transposed()),C.times(C.transpose()))
+			   <= ProductChecks.tolerance(V.cols()),what+": product by its transposed view");
+
+	// writing through a view modifies the viewed entries only
+	Matrix before = B.copy();
+	int i = 1+random.nextInt(V.rows()), j = 1+random.nextInt(V.cols());
+	V.set(i,j,-1.0);
+	C.set(i,j,-1.0);
+	MatrixChecks.check(changed(B,before,written(before,view,C),positions),what+": set");
+
+	Matrix expected = written(before,view,C.plus(D).scale(0.5));
+	MatrixChecks.check(V.i_plus(D).i_scale(0.5) == V && changed(B,before,expected,positions),
+			   what+": in-place operations");
+	MatrixChecks.check(V.update(D) == V && changed(B,before,written(before,view,D),positions),
+			   what+": update");
+	MatrixChecks.check(V.fill(2.0) == V && changed(B,before,written(before,view,D.fill(2.0)),positions),
+			   what+": fill");
+
+	if (V.rows() == V.cols())
+	  {
+	    V.update(D = MatrixChecks.randomMatrix(random,V.rows(),V.cols()));
+	    MatrixChecks.check(V.i_transpose() == V
+			       && changed(B,before,written(before,view,D.transpose()),positions),
+			       what+": i_transpose");
+	    MatrixChecks.check(MatrixChecks.distance(V.i_times(D),D.transpose().times(D))
+			       <= ProductChecks.tolerance(V.cols()),what+": i_times");
+	  }
+      }
+
+    Matrix B = new Matrix(5,7);
+    MatrixChecks.check(MatrixChecks.fails(() -> B.slice(3,2,1,1,7,1))
+		       && MatrixChecks.fails(() -> B.slice(1,5,0,1,7,1))
+		       && MatrixChecks.fails(() -> B.submatrix(1,6,1,7))
+		       && MatrixChecks.fails(() -> B.column(8))
+		       && MatrixChecks.fails(() -> B.submatrix(2,3,2,3).get(3,1)),"illegal views");
+  }
+
+  static private void checkOverlaps (Random random)
+  {
+    for (int trial = 0; trial < 1000; trial++)
+      {
+	int m = 1+random.nextInt(20), n = 1+random.nextInt(20);
+	Matrix B = new Matrix(m,n);
+	boolean blocks = trial % 2 == 0;
+	View[] views = new View[2];
+
+	for (int k = 0; k < 2; k++)
+	  {
+	    views[k] = View.of(random.nextBoolean() ? B : B.transposed());
+	    if (blocks)
+	      {
+		// blocks of the matrix or of its transposed view
+		int rows = views[k].M.rows(), cols = views[k].M.cols();
+		int firstRow = 1+random.nextInt(rows), lastRow = firstRow+random.nextInt(rows-firstRow+1);
+		int firstCol = 1+random.nextInt(cols), lastCol = firstCol+random.nextInt(cols-firstCol+1);
+		views[k] = views[k].slice(firstRow,lastRow,1,firstCol,lastCol,1);
+	      }
+	    else
+	      for (int depth = random.nextInt(4); depth >= 0; depth--)
+		views[k] = views[k].random(random);
+	  }
+
+	// the positions in B of the entries of each view
+	boolean[][][] positions = new boolean[2][][];
+	for (int k = 0; k < 2; k++)
+	  {
+	    positions[k] = new boolean[m][n];
+	    for (int i = 0; i < views[k].M.rows(); i++)
+	      for (int j = 0; j < views[k].M.cols(); j++)
+		{
+		  int index = views[k].M.offset()+i*views[k].M.stride()+j*views[k].M.colStride();
+		  positions[k][index/n][index%n] = true;
+		}
+	  }
+
+	boolean shared = false;
+	for (int i = 0; i < m; i++)
+	  for (int j = 0; j < n; j++)
+	    shared |= positions[0][i][j] && positions[1][i][j];
+
+	boolean overlaps = views[0].M.overlaps(views[1].M);
+	String what = (blocks ? "blocks " : "views ")+views[0].M.rows()+"x"+views[0].M.cols()+
+		      " and "+views[1].M.rows()+"x"+views[1].M.cols()+" of a "+m+"x"+n+" matrix";
+
+	MatrixChecks.check(!shared || overlaps,what+" overlap");
+	if (blocks && views[0].M.stride() == views[1].M.stride()
+	    && views[0].M.colStride() == views[1].M.colStride())
+	  MatrixChecks.check(shared == overlaps,what+" do not overlap");
+      }
+
+    Matrix B = new Matrix(4,4);
+    MatrixChecks.check(!B.overlaps(B.copy()),"a copy overlaps");
+    MatrixChecks.check(MatrixChecks.fails(() -> Matrix.multiplyInto(B,B,B.submatrix(1,4,1,4))),
+		       "product into a view of a factor");
+  }
+}